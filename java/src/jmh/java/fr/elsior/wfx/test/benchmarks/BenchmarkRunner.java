@@ -0,0 +1,41 @@
+package fr.elsior.wfx.test.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Author: Elimane
+ *
+ * Runs the selected benchmarks once per thread count and writes one JSON result file per run,
+ * so results can be diffed between releases.
+ * Arguments: include regex, comma separated thread counts, result directory.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {}
+
+    public static void main(String... args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+        String threads = args.length > 1 ? args[1] : "1";
+        File results = new File(args.length > 2 ? args[2] : "target/jmh");
+        if (!results.isDirectory() && !results.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + results);
+        }
+
+        for (String count : threads.split(",")) {
+            int threadCount = Integer.parseInt(count.trim());
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(results, "results-" + threadCount + "-threads.json").getPath())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package fr.elsior.wfx.test.config;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.services.PetEventFeed;
+import fr.elsior.wfx.test.services.PetServiceImpl;
+import fr.elsior.wfx.test.services.dao.PetCatalogs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.logging.LoggingInitializationContext;
+import org.springframework.boot.logging.logback.LogbackLoggingSystem;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.util.FileSystemUtils;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Elimane
+ *
+ * Measures the request hot path of {@link PetServiceImpl} with logback-spring.xml initialised by Spring Boot,
+ * once with the default synchronous file appenders and once with the prod profile
+ * (asynchronous appenders, rolling files and sampled "Fetching..." lines).
+ * Logs are written to a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private static final int CATALOG_SIZE = 100_000;
+
+    @Param({"default", "prod"})
+    String profile;
+
+    private Path logs;
+
+    private LogbackLoggingSystem loggingSystem;
+
+    private PetServiceImpl petService;
+
+    @Setup
+    public void setUp() throws IOException {
+        logs = Files.createTempDirectory("pet-logs");
+        System.setProperty("LOG_PATH", logs.toString());
+        StandardEnvironment environment = new StandardEnvironment();
+        if ("prod".equals(profile)) {
+            environment.setActiveProfiles("prod");
+        }
+        loggingSystem = new LogbackLoggingSystem(getClass().getClassLoader());
+        loggingSystem.beforeInitialize();
+        loggingSystem.initialize(new LoggingInitializationContext(environment), "classpath:logback-spring.xml", null);
+        petService = new PetServiceImpl(PetCatalogs.create("concurrent", CATALOG_SIZE), Schedulers.immediate(),
+                new PetEventFeed(1024, 256, PetEventFeed.SlowConsumerPolicy.DROP));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        loggingSystem.cleanUp();
+        FileSystemUtils.deleteRecursively(logs);
+    }
+
+    @Benchmark
+    public Pet getPet() {
+        return petService.getPet(randomId()).block();
+    }
+
+    @Benchmark
+    public Pet updatePet() {
+        int id = randomId();
+        return petService.updatePet(id, PetCatalogs.pet(id, CATALOG_SIZE)).block();
+    }
+
+    private static int randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(CATALOG_SIZE);
+    }
+}
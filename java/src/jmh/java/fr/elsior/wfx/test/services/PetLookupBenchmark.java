@@ -0,0 +1,145 @@
+package fr.elsior.wfx.test.services;
+
+import fr.elsior.wfx.test.config.SchedulerConfig;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.services.dao.ConcurrentPetDaoImpl;
+import fr.elsior.wfx.test.services.dao.PetCatalogs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Author: Elimane
+ *
+ * Measures bursts of concurrent pet lookups against a store taking a millisecond per call, like a remote one.
+ * The baseline* methods read each pet with its own store call, as the service did before coalescing and batching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PetLookupBenchmark {
+
+    private static final int CATALOG_SIZE = 100_000;
+
+    private static final int BURST = 64;
+
+    private static final int HOT_KEYS = 4;
+
+    @Param({"0", "1"})
+    long batchWindowMs;
+
+    private SlowPetDao petDao;
+
+    private Scheduler petDaoScheduler;
+
+    private PetServiceImpl petService;
+
+    @Setup
+    public void setUp() {
+        petDao = new SlowPetDao();
+        for (int id = 1; id <= CATALOG_SIZE; id++) {
+            petDao.addPet(PetCatalogs.pet(id, CATALOG_SIZE));
+        }
+        petDaoScheduler = new SchedulerConfig().petDaoScheduler("list", "dedicated", 8, 10_000);
+        petService = new PetServiceImpl(petDao, petDaoScheduler,
+                new PetEventFeed(1024, 256, PetEventFeed.SlowConsumerPolicy.DROP), batchWindowMs, 128);
+    }
+
+    @TearDown
+    public void tearDown() {
+        petDaoScheduler.dispose();
+    }
+
+    /**
+     * A burst of lookups of a few hot pets.
+     */
+    @Benchmark
+    public Long hotKeys() {
+        return burst(i -> petService.getPet(1 + i % HOT_KEYS));
+    }
+
+    @Benchmark
+    public Long baselineHotKeys() {
+        return burst(i -> daoGetPet(1 + i % HOT_KEYS));
+    }
+
+    /**
+     * A burst of lookups of distinct random pets.
+     */
+    @Benchmark
+    public Long distinctIds() {
+        return burst(i -> petService.getPet(randomId()));
+    }
+
+    @Benchmark
+    public Long baselineDistinctIds() {
+        return burst(i -> daoGetPet(randomId()));
+    }
+
+    private static Long burst(IntFunction<Mono<Pet>> lookup) {
+        return Flux.range(0, BURST).flatMap(lookup::apply, BURST).count().block();
+    }
+
+    private Mono<Pet> daoGetPet(int id) {
+        return Mono.fromCallable(() -> petDao.getPet(id)).subscribeOn(petDaoScheduler);
+    }
+
+    private static int randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(CATALOG_SIZE);
+    }
+
+    /**
+     * Takes a millisecond per call, whatever the number of pets it reads.
+     */
+    static final class SlowPetDao extends ConcurrentPetDaoImpl {
+
+        @Override
+        public Pet getPet(int id) {
+            pause();
+            return super.getPet(id);
+        }
+
+        @Override
+        public Map<Integer, Pet> getPetsById(Collection<Integer> ids) {
+            pause();
+            Map<Integer, Pet> pets = new HashMap<>();
+            for (Integer id : ids) {
+                Pet pet = super.getPet(id);
+                if (pet != null) {
+                    pets.put(id, pet);
+                }
+            }
+            return pets;
+        }
+
+        private static void pause() {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package fr.elsior.wfx.test.services;
+
+import fr.elsior.wfx.test.config.SchedulerConfig;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.services.dao.IPetDao;
+import fr.elsior.wfx.test.services.dao.PetCatalogs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Elimane
+ *
+ * Measures the reactive wrappers of {@link PetServiceImpl} against direct calls to the same store.
+ * The dao* methods are the baseline, the difference is the cost of Mono.fromCallable and handle,
+ * plus the thread hop when DAO calls run on a separate scheduler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PetServiceBenchmark {
+
+    @Param({"concurrent"})
+    String store;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    int catalogSize;
+
+    @Param({"event-loop", "bounded-elastic"})
+    String execution;
+
+    private IPetDao petDao;
+
+    private Scheduler petDaoScheduler;
+
+    private PetServiceImpl petService;
+
+    @Setup
+    public void setUp() {
+        petDao = PetCatalogs.create(store, catalogSize);
+        petDaoScheduler = new SchedulerConfig().petDaoScheduler(store, execution, 8, 10_000);
+        petService = new PetServiceImpl(petDao, petDaoScheduler, new PetEventFeed(1024, 256, PetEventFeed.SlowConsumerPolicy.DROP));
+    }
+
+    @TearDown
+    public void tearDown() {
+        petDaoScheduler.dispose();
+    }
+
+    @Benchmark
+    public Pet daoGetPet() throws Exception {
+        return petDao.getPet(randomId());
+    }
+
+    @Benchmark
+    public Pet getPet() {
+        return petService.getPet(randomId()).block();
+    }
+
+    @Benchmark
+    public List<Pet> daoGetPetsByOwner() throws Exception {
+        return petDao.getPetsByOwner(randomOwner());
+    }
+
+    @Benchmark
+    public List<Pet> getPetsByOwner() {
+        return petService.getPetsByOwner(randomOwner()).collectList().block();
+    }
+
+    @Benchmark
+    public Pet daoUpdatePet() throws Exception {
+        int id = randomId();
+        return petDao.updatePet(id, PetCatalogs.pet(id, catalogSize));
+    }
+
+    @Benchmark
+    public Pet updatePet() {
+        int id = randomId();
+        return petService.updatePet(id, PetCatalogs.pet(id, catalogSize)).block();
+    }
+
+    private int randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(catalogSize);
+    }
+
+    private String randomOwner() {
+        return PetCatalogs.owner(ThreadLocalRandom.current().nextInt(PetCatalogs.owners(catalogSize)));
+    }
+}
@@ -0,0 +1,90 @@
+package fr.elsior.wfx.test.services.dao;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Elimane
+ *
+ * Measures the heap retained by each in-memory store once loaded, reported as the {@code bytesPerPet} counter,
+ * along with the time to load it. The heap is read after full collections before and after loading, with the
+ * store still referenced, so the difference is what the store keeps alive. JMH sums the counter over the
+ * measured iterations, hence a single one.
+ * Run it with a single thread: {@code -Djmh.include=PetCatalogFootprintBenchmark -Djmh.threads=1}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-XX:+UseParallelGC"})
+public class PetCatalogFootprintBenchmark {
+
+    @Param({"concurrent", "versioned", "columnar"})
+    String store;
+
+    @Param({"1000000"})
+    int catalogSize;
+
+    /**
+     * The retained heap of the store loaded by the iteration, read after the load is timed.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+        public long bytesPerPet;
+
+        private long before;
+
+        private IPetDao petDao;
+
+        private int catalogSize;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            petDao = null;
+            bytesPerPet = 0;
+            before = usedHeap();
+        }
+
+        @TearDown(Level.Iteration)
+        public void measure() {
+            // The store is still referenced by the field while the heap is read
+            bytesPerPet = (usedHeap() - before) / catalogSize;
+            petDao = null;
+        }
+
+        private static long usedHeap() {
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            return MEMORY.getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    @Benchmark
+    public int load(Footprint footprint) {
+        footprint.catalogSize = catalogSize;
+        footprint.petDao = PetCatalogs.create(store, catalogSize);
+        return footprint.petDao.countPets();
+    }
+}
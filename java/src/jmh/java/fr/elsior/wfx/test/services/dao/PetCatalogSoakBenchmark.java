@@ -0,0 +1,114 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Elimane
+ *
+ * Soaks a store with a growing catalog: each iteration adds {@code step} pets, updates half as many and replaces
+ * a quarter as many, and the store is kept from one iteration to the next. After each iteration, the old generation
+ * and the direct memory in use after a full collection are reported as the {@code oldGenBytes} and
+ * {@code directBytes} counters of the iteration lines: they grow with the catalog for a heap store, while the old
+ * generation stays flat for the off-heap store. The scores JMH prints at the end sum the iterations, so only the
+ * iteration lines are meaningful. The GC log of each fork is written to {@code target/gc-soak-<pid>.log}.
+ * Run it with a single thread: {@code -Djmh.include=PetCatalogSoakBenchmark -Djmh.threads=1}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 8)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-XX:+UseParallelGC", "-Xlog:gc*:file=target/gc-soak-%p.log"})
+public class PetCatalogSoakBenchmark {
+
+    @Param({"concurrent", "offheap"})
+    String store;
+
+    @Param({"250000"})
+    int step;
+
+    private final Random random = new Random(42);
+
+    private IPetDao petDao;
+
+    private int lastId;
+
+    /**
+     * The memory in use after the iteration, once collected.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Occupancy {
+
+        public long oldGenBytes;
+
+        public long directBytes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            oldGenBytes = 0;
+            directBytes = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void measure() {
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.getName().contains("Old Gen")) {
+                    oldGenBytes = pool.getCollectionUsage().getUsed();
+                }
+            }
+            for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+                if ("direct".equals(pool.getName())) {
+                    directBytes = pool.getMemoryUsed();
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        petDao = PetCatalogs.create(store, 0);
+    }
+
+    @Benchmark
+    public int grow(Occupancy occupancy) throws Exception {
+        for (int i = 0; i < step; i++) {
+            lastId++;
+            petDao.addPet(PetCatalogs.pet(lastId, lastId));
+        }
+        for (int i = 0; i < step / 2; i++) {
+            int id = 1 + random.nextInt(lastId);
+            String owner = PetCatalogs.owner(random.nextInt(PetCatalogs.owners(lastId)));
+            petDao.updatePet(id, new Pet(id, "Renamed" + i, random.nextInt(20), owner));
+        }
+        for (int i = 0; i < step / 4; i++) {
+            int id = 1 + random.nextInt(lastId);
+            if (petDao.deletePet(id)) {
+                petDao.addPet(PetCatalogs.pet(id, lastId));
+            }
+        }
+        return petDao.countPets();
+    }
+}
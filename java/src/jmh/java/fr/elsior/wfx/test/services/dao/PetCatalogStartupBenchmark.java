@@ -0,0 +1,97 @@
+package fr.elsior.wfx.test.services.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.services.dao.mapped.PetCatalogFile;
+import fr.elsior.wfx.test.services.dao.wal.SnapshotStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Author: Elimane
+ *
+ * Measures the time from startup to the first answered request, for a catalog
+ * mapped from a {@link PetCatalogFile} versus rebuilt into a {@link ConcurrentPetDaoImpl}
+ * from a durable store snapshot or from a JSON export.
+ * Files are read from the page cache after the first iteration, so this measures the CPU cost of startup.
+ * Run it with a single thread: {@code -Djmh.include=PetCatalogStartupBenchmark -Djmh.threads=1}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PetCatalogStartupBenchmark {
+
+    @Param({"100000", "1000000", "5000000"})
+    int catalogSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void writeCatalogs() throws IOException {
+        directory = Files.createTempDirectory("pet-catalog-startup");
+        List<Pet> pets = new ArrayList<>(catalogSize);
+        for (int id = 1; id <= catalogSize; id++) {
+            pets.add(PetCatalogs.pet(id, catalogSize));
+        }
+        PetCatalogFile.write(directory.resolve("pets.catalog"), pets);
+        new SnapshotStore(directory.resolve("snapshots")).write(0, pets);
+        objectMapper.writeValue(directory.resolve("pets.json").toFile(), pets);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCatalogs() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Pet mapped() throws IOException {
+        MappedPetDaoImpl petDao = new MappedPetDaoImpl(directory.resolve("pets.catalog").toString());
+        petDao.open();
+        return petDao.getPet(catalogSize / 2);
+    }
+
+    @Benchmark
+    public Pet rebuildFromSnapshot() throws IOException {
+        ConcurrentPetDaoImpl petDao = new ConcurrentPetDaoImpl();
+        new SnapshotStore(directory.resolve("snapshots")).readLatest().getPets().forEach(petDao::addPet);
+        return petDao.getPet(catalogSize / 2);
+    }
+
+    @Benchmark
+    public Pet rebuildFromJson() throws IOException {
+        ConcurrentPetDaoImpl petDao = new ConcurrentPetDaoImpl();
+        for (Pet pet : objectMapper.readValue(directory.resolve("pets.json").toFile(), Pet[].class)) {
+            petDao.addPet(pet);
+        }
+        return petDao.getPet(catalogSize / 2);
+    }
+}
@@ -0,0 +1,92 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Author: Elimane
+ *
+ * Builds stores pre-filled with a synthetic catalog for the benchmarks.
+ * Every owner holds about {@link #PETS_PER_OWNER} pets whatever the catalog size.
+ */
+public final class PetCatalogs {
+
+    public static final int PETS_PER_OWNER = 10;
+
+    private PetCatalogs() {}
+
+    /**
+     * Creates a store holding pets with IDs 1 to size.
+     *
+     * @param store The store name, as used by the pets.store property.
+     * @param size  The number of pets to load.
+     * @return The filled store.
+     */
+    public static IPetDao create(String store, int size) {
+        switch (store) {
+            case "list":
+                PetDaoImpl list = new PetDaoImpl();
+                for (int id = 1; id <= size; id++) {
+                    list.datas.add(pet(id, size));
+                }
+                return list;
+            case "concurrent":
+                ConcurrentPetDaoImpl concurrent = new ConcurrentPetDaoImpl();
+                for (int id = 1; id <= size; id++) {
+                    concurrent.addPet(pet(id, size));
+                }
+                return concurrent;
+            case "versioned":
+                VersionedPetDaoImpl versioned = new VersionedPetDaoImpl();
+                List<Pet> pets = new ArrayList<>(size);
+                for (int id = 1; id <= size; id++) {
+                    pets.add(pet(id, size));
+                }
+                versioned.addPets(pets);
+                return versioned;
+            case "columnar":
+                ColumnarPetDaoImpl columnar = new ColumnarPetDaoImpl(size);
+                for (int id = 1; id <= size; id++) {
+                    columnar.addPet(pet(id, size));
+                }
+                return columnar;
+            case "offheap":
+                OffHeapPetDaoImpl offHeap = new OffHeapPetDaoImpl(size);
+                for (int id = 1; id <= size; id++) {
+                    offHeap.addPet(pet(id, size));
+                }
+                return offHeap;
+            default:
+                throw new IllegalArgumentException("Unknown store: " + store);
+        }
+    }
+
+    /**
+     * Builds the synthetic pet stored under an ID.
+     *
+     * @param id   The ID of the pet.
+     * @param size The catalog size, used to spread pets over owners.
+     * @return The pet.
+     */
+    public static Pet pet(int id, int size) {
+        return new Pet(id, "Pet" + id, id % 20, owner(id % owners(size)));
+    }
+
+    /**
+     * @param size The catalog size.
+     * @return The number of distinct owners in a catalog of that size.
+     */
+    public static int owners(int size) {
+        return Math.max(1, size / PETS_PER_OWNER);
+    }
+
+    /**
+     * @param index The owner index.
+     * @return The owner name for that index.
+     */
+    public static String owner(int index) {
+        return "Owner" + index;
+    }
+}
@@ -0,0 +1,131 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Author: Elimane
+ *
+ * Measures every {@link IPetDao} operation for each store and catalog size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PetDaoBenchmark {
+
+    @Param({"list", "concurrent", "versioned", "columnar"})
+    String store;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    int catalogSize;
+
+    private IPetDao petDao;
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        petDao = PetCatalogs.create(store, catalogSize);
+        nextId.set(catalogSize + 1);
+    }
+
+    @Benchmark
+    public Pet getPet() throws Exception {
+        return petDao.getPet(randomId());
+    }
+
+    @Benchmark
+    public List<Pet> getPetsByOwner() throws Exception {
+        int owner = ThreadLocalRandom.current().nextInt(PetCatalogs.owners(catalogSize));
+        return petDao.getPetsByOwner(PetCatalogs.owner(owner));
+    }
+
+    /**
+     * Queries an owner's pets within an age range, the owner index drives the lookup.
+     */
+    @Benchmark
+    public List<Pet> findPetsByOwnerAndAge() throws Exception {
+        int owner = ThreadLocalRandom.current().nextInt(PetCatalogs.owners(catalogSize));
+        return petDao.findPets(new PetQuery(5, 10, null, PetCatalogs.owner(owner)));
+    }
+
+    /**
+     * Queries the pets of an age range whose names start with a prefix matching about a hundred pets,
+     * the name index drives the lookup.
+     */
+    @Benchmark
+    public List<Pet> findPetsByNameAndAge() throws Exception {
+        String prefix = "Pet" + Math.max(1, randomId() / 100);
+        return petDao.findPets(new PetQuery(5, 10, prefix, null));
+    }
+
+    /**
+     * Reads the catalog aggregates and the pet count of one owner.
+     */
+    @Benchmark
+    public PetStats getStats() {
+        int owner = ThreadLocalRandom.current().nextInt(PetCatalogs.owners(catalogSize));
+        return petDao.getStats(Collections.singletonList(PetCatalogs.owner(owner)));
+    }
+
+    /**
+     * Reads the catalog aggregates without any owner, as GET /pets/stats does by default.
+     */
+    @Benchmark
+    public PetStats getStatsWithoutOwners() {
+        return petDao.getStats(Collections.emptyList());
+    }
+
+    /**
+     * Inserts pets with fresh IDs, the catalog grows during an iteration and is rebuilt for the next one.
+     */
+    @Benchmark
+    public Pet addPet() throws Exception {
+        int id = nextId.getAndIncrement();
+        return petDao.addPet(PetCatalogs.pet(id, catalogSize));
+    }
+
+    @Benchmark
+    public Pet updatePet() throws Exception {
+        int id = randomId();
+        return petDao.updatePet(id, PetCatalogs.pet(id, catalogSize));
+    }
+
+    /**
+     * Deletes a pet and puts it back, so the catalog size stays constant.
+     */
+    @Benchmark
+    public Pet deletePet() throws Exception {
+        int id = randomId();
+        if (petDao.deletePet(id)) {
+            return petDao.addPet(PetCatalogs.pet(id, catalogSize));
+        }
+        return null;
+    }
+
+    private int randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(catalogSize);
+    }
+}
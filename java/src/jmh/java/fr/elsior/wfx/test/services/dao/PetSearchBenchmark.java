@@ -0,0 +1,93 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Elimane
+ *
+ * Measures fuzzy searches of a misspelled pet name, scanning the list store versus the trigram index of the
+ * concurrent store. Names are made of random syllables, so their trigrams spread like real names do,
+ * unlike the "Pet&lt;id&gt;" names of {@link PetCatalogs}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PetSearchBenchmark {
+
+    private static final String[] SYLLABLES = {
+            "ba", "be", "bi", "bo", "bu", "ca", "ce", "co", "da", "de", "di", "do", "fa", "fe", "fi", "ga", "go", "gu",
+            "ka", "ki", "la", "le", "li", "lo", "lu", "ma", "me", "mi", "mo", "na", "ne", "ni", "no", "pa", "pe", "pi",
+            "po", "ra", "re", "ri", "ro", "ru", "sa", "se", "si", "so", "ta", "te", "ti", "to", "va", "ve", "vi", "za",
+            "rex", "max", "ly", "sy", "nn", "tt", "ll", "rt", "ck", "sh", "ch", "th", "ph", "el", "ar", "or", "in", "on"};
+
+    @Param({"list", "concurrent"})
+    String store;
+
+    @Param({"100000", "3000000"})
+    int catalogSize;
+
+    private IPetDao petDao;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        if ("list".equals(store)) {
+            PetDaoImpl list = new PetDaoImpl();
+            for (int id = 1; id <= catalogSize; id++) {
+                list.datas.add(pet(id, random));
+            }
+            petDao = list;
+        } else {
+            ConcurrentPetDaoImpl concurrent = new ConcurrentPetDaoImpl();
+            for (int id = 1; id <= catalogSize; id++) {
+                concurrent.addPet(pet(id, random));
+            }
+            petDao = concurrent;
+        }
+    }
+
+    /**
+     * Searches the name of a random pet with two adjacent letters swapped.
+     */
+    @Benchmark
+    public List<PetSearchResult> searchMisspelledName() throws Exception {
+        String name = petDao.getPet(1 + ThreadLocalRandom.current().nextInt(catalogSize)).getName();
+        int swap = name.length() / 2;
+        String typo = name.substring(0, swap - 1) + name.charAt(swap) + name.charAt(swap - 1) + name.substring(swap + 1);
+        return petDao.searchPets(typo, 10);
+    }
+
+    private static Pet pet(int id, Random random) {
+        return new Pet(id, word(random, 2 + random.nextInt(3)), random.nextInt(20), word(random, 2 + random.nextInt(2)));
+    }
+
+    private static String word(Random random, int syllables) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+}
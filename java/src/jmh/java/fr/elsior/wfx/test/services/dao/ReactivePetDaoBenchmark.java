@@ -0,0 +1,145 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Elimane
+ *
+ * Compares the throughput of the R2DBC and partitioned stores with the concurrent in-memory store,
+ * all used through {@link IReactivePetDao} as the service does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 8, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReactivePetDaoBenchmark {
+
+    private static final int BURST = 64;
+
+    private static final int LOAD_BATCH = 1000;
+
+    @Param({"concurrent", "r2dbc", "partitioned"})
+    String store;
+
+    @Param({"100000"})
+    int catalogSize;
+
+    private IReactivePetDao petDao;
+
+    private R2dbcPetDao r2dbc;
+
+    private PartitionedPetDao partitioned;
+
+    @Setup
+    public void setUp() {
+        if ("r2dbc".equals(store)) {
+            r2dbc = new R2dbcPetDao("r2dbc:h2:mem:///bench-" + UUID.randomUUID() + "?DB_CLOSE_DELAY=-1",
+                    BURST, BURST, 1000);
+            r2dbc.open();
+            r2dbc.deletePets(List.of(1, 2, 3, 4, 5, 6)).block();
+            for (int first = 1; first <= catalogSize; first += LOAD_BATCH) {
+                List<Pet> pets = new ArrayList<>(LOAD_BATCH);
+                for (int id = first; id < first + LOAD_BATCH && id <= catalogSize; id++) {
+                    pets.add(PetCatalogs.pet(id, catalogSize));
+                }
+                r2dbc.addPets(pets).block();
+            }
+            petDao = r2dbc;
+        } else if ("partitioned".equals(store)) {
+            partitioned = new PartitionedPetDao(0);
+            for (int first = 1; first <= catalogSize; first += LOAD_BATCH) {
+                List<Pet> pets = new ArrayList<>(LOAD_BATCH);
+                for (int id = first; id < first + LOAD_BATCH && id <= catalogSize; id++) {
+                    pets.add(PetCatalogs.pet(id, catalogSize));
+                }
+                partitioned.addPets(pets).block();
+            }
+            petDao = partitioned;
+        } else {
+            petDao = new BlockingPetDaoAdapter(PetCatalogs.create(store, catalogSize), Schedulers.immediate());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        if (r2dbc != null) {
+            r2dbc.close();
+        }
+        if (partitioned != null) {
+            partitioned.close();
+        }
+    }
+
+    @Benchmark
+    public Pet getPet() {
+        return petDao.getPet(randomId()).block();
+    }
+
+    @Benchmark
+    public List<Pet> getPetsByOwner() {
+        int owner = ThreadLocalRandom.current().nextInt(PetCatalogs.owners(catalogSize));
+        return petDao.getPetsByOwner(PetCatalogs.owner(owner)).collectList().block();
+    }
+
+    @Benchmark
+    public Pet updatePet() {
+        int id = randomId();
+        return petDao.updatePet(id, PetCatalogs.pet(id, catalogSize)).block();
+    }
+
+    /**
+     * A burst of concurrent lookups, all in flight at once.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public Long getPetBurst() {
+        return Flux.range(0, BURST).flatMap(i -> petDao.getPet(randomId()), BURST).count().block();
+    }
+
+    /**
+     * A burst of concurrent updates of random pets, all in flight at once.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public Long updatePetBurst() {
+        return Flux.range(0, BURST).flatMap(i -> {
+            int id = randomId();
+            return petDao.updatePet(id, PetCatalogs.pet(id, catalogSize));
+        }, BURST).count().block();
+    }
+
+    /**
+     * Reads a page of a thousand pets after a random ID.
+     */
+    @Benchmark
+    public Long streamPage() {
+        return petDao.getPets(randomId(), 1000).count().block();
+    }
+
+    private int randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(catalogSize);
+    }
+}
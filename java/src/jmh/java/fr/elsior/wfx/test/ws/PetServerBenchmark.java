@@ -0,0 +1,176 @@
+package fr.elsior.wfx.test.ws;
+
+import fr.elsior.wfx.test.Application;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.services.dao.IPetDao;
+import fr.elsior.wfx.test.services.dao.PetCatalogs;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Elimane
+ *
+ * Compares the two ways of serving /pets over HTTP on the same store: WebFlux on Reactor Netty, and the blocking
+ * handler on virtual threads. The application is started once per runtime with both servers, and each benchmark
+ * thread sends requests over loopback with the JDK HTTP client, waiting for each response.
+ * Throughput comes from the Throughput mode, p99 latency from the SampleTime mode, and the heap in use after a
+ * full collection and the number of platform threads are reported by the Throughput iterations as the
+ * {@code heapBytes} and {@code platformThreads} counters.
+ * The {@code virtual-threads} runtime needs Java 21: {@code mvn -Pbenchmark,loom clean test-compile exec:exec
+ * -Djmh.include=PetServerBenchmark -Djmh.threads=64}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g", "-Djdk.tracePinnedThreads=short"})
+public class PetServerBenchmark {
+
+    @Param({"reactive", "virtual-threads"})
+    String runtime;
+
+    @Param({"10000"})
+    int catalogSize;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient client;
+
+    private String baseUri;
+
+    /**
+     * The memory in use at the end of the iteration, recorded by the first thread only since JMH adds the counters
+     * of all threads.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long heapBytes;
+
+        public long platformThreads;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            heapBytes = 0;
+            platformThreads = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void measure(ThreadParams threadParams) {
+            if (threadParams.getThreadIndex() != 0) {
+                return;
+            }
+            System.gc();
+            heapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            platformThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SpringApplication application = new SpringApplication(Application.class);
+        application.addInitializers(initialized -> initialized.getBeanFactory()
+                .registerSingleton(SkipTestConfigurations.class.getName(), new SkipTestConfigurations()));
+        context = application.run(
+                "--server.port=0",
+                "--pets.store=concurrent",
+                "--pets.cache.enabled=false",
+                "--pets.admission.enabled=false",
+                "--pets.virtual-threads.enabled=" + runtime.equals("virtual-threads"),
+                "--pets.virtual-threads.port=0",
+                "--logging.level.root=WARN");
+        List<Pet> pets = new ArrayList<>(catalogSize);
+        for (int id = 1; id <= catalogSize; id++) {
+            pets.add(PetCatalogs.pet(id, catalogSize));
+        }
+        context.getBean(IPetDao.class).addPets(pets);
+        int port = runtime.equals("virtual-threads") ?
+                context.getBean(BlockingPetServer.class).port() :
+                ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUri = "http://localhost:" + port + "/pets";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String getPet(Footprint footprint) throws Exception {
+        return send(HttpRequest.newBuilder(URI.create(baseUri + "/" + randomId())).build());
+    }
+
+    @Benchmark
+    public String getPetsByOwner(Footprint footprint) throws Exception {
+        String owner = PetCatalogs.owner(ThreadLocalRandom.current().nextInt(PetCatalogs.owners(catalogSize)));
+        return send(HttpRequest.newBuilder(URI.create(baseUri + "/owner/" + owner)).build());
+    }
+
+    @Benchmark
+    public String updatePet(Footprint footprint) throws Exception {
+        int id = randomId();
+        Pet pet = PetCatalogs.pet(id, catalogSize);
+        String body = "{\"id\":" + id + ",\"name\":\"" + pet.getName() + "\",\"age\":" + pet.getAge()
+                + ",\"owner\":\"" + pet.getOwner() + "\"}";
+        return send(HttpRequest.newBuilder(URI.create(baseUri + "/update/" + id))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+    }
+
+    private String send(HttpRequest request) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + ": " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    /**
+     * Keeps the test configurations, on the benchmark classpath, out of the component scan.
+     */
+    static class SkipTestConfigurations extends TypeExcludeFilter {
+
+        @Override
+        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+            return metadataReader.getAnnotationMetadata().hasAnnotation(TestConfiguration.class.getName());
+        }
+    }
+
+    private int randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(catalogSize);
+    }
+}
@@ -0,0 +1,90 @@
+package fr.elsior.wfx.test.ws;
+
+import fr.elsior.wfx.test.services.PetEventFeed;
+import fr.elsior.wfx.test.services.PetServiceImpl;
+import fr.elsior.wfx.test.services.dao.PetCatalogs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Elimane
+ *
+ * Measures full round trips through the WebFlux handler chain, JSON encoding included, without a network hop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PetsRestControllerBenchmark {
+
+    @Param({"concurrent"})
+    String store;
+
+    @Param({"10", "1000", "100000"})
+    int catalogSize;
+
+    private WebTestClient webTestClient;
+
+    @Setup
+    public void setUp() {
+        PetServiceImpl petService = new PetServiceImpl(PetCatalogs.create(store, catalogSize), Schedulers.immediate(),
+                new PetEventFeed(1024, 256, PetEventFeed.SlowConsumerPolicy.DROP));
+        webTestClient = WebTestClient.bindToController(new PetsRestController(petService, 1000, 500, 100)).build();
+    }
+
+    @Benchmark
+    public byte[] getPet() {
+        return webTestClient.get().uri("/pets/{id}", randomId())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectBody().returnResult().getResponseBody();
+    }
+
+    @Benchmark
+    public byte[] getPetsByOwner() {
+        String owner = PetCatalogs.owner(ThreadLocalRandom.current().nextInt(PetCatalogs.owners(catalogSize)));
+        return webTestClient.get().uri("/pets/owner/{owner}", owner)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectBody().returnResult().getResponseBody();
+    }
+
+    @Benchmark
+    public byte[] updatePet() {
+        int id = randomId();
+        return webTestClient.put().uri("/pets/update/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(PetCatalogs.pet(id, catalogSize))
+                .exchange()
+                .expectBody().returnResult().getResponseBody();
+    }
+
+    @Benchmark
+    public byte[] listPets() {
+        return webTestClient.get().uri("/pets")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectBody().returnResult().getResponseBody();
+    }
+
+    private int randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(catalogSize);
+    }
+}
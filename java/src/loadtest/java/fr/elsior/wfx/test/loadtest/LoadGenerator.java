@@ -0,0 +1,290 @@
+package fr.elsior.wfx.test.loadtest;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetBulkResult;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Author: Elimane
+ *
+ * Sends the route mix at a fixed rate (open model): each request is sent at its planned time whether or not the
+ * previous ones were answered, as independent clients would. Latencies are measured from the planned time, so a
+ * server that stalls is charged for the requests queued behind the stall and not only for the one it held
+ * (coordinated omission). They are recorded in microseconds, per route, in HdrHistograms.
+ */
+final class LoadGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final WebClient client;
+
+    private final LoadTestSettings settings;
+
+    private final PetRoute[] routes;
+
+    private final int[] cumulativeWeights;
+
+    private final int owners;
+
+    private final Map<PetRoute, Recorder> recorders = new EnumMap<>(PetRoute.class);
+
+    private final Map<PetRoute, Histogram> latencies = new EnumMap<>(PetRoute.class);
+
+    private final Map<PetRoute, LongAdder> requests = new EnumMap<>(PetRoute.class);
+
+    private final Map<PetRoute, LongAdder> errors = new EnumMap<>(PetRoute.class);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger nextId;
+
+    /**
+     * Pets added by the run, removed in the order they were added.
+     */
+    private final Queue<Integer> added = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param client   The client of the application under test.
+     * @param settings The load to send.
+     */
+    LoadGenerator(WebClient client, LoadTestSettings settings) {
+        this.client = client;
+        this.settings = settings;
+        this.owners = Math.max(1, settings.getCatalogSize() / 10);
+        this.nextId = new AtomicInteger(settings.getCatalogSize() + 1);
+        List<PetRoute> weighted = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<PetRoute, Integer> entry : settings.getMix().entrySet()) {
+            if (entry.getValue() > 0) {
+                total += entry.getValue();
+                weighted.add(entry.getKey());
+                weights.add(total);
+            }
+        }
+        this.routes = weighted.toArray(new PetRoute[0]);
+        this.cumulativeWeights = weights.stream().mapToInt(Integer::intValue).toArray();
+        for (PetRoute route : PetRoute.values()) {
+            recorders.put(route, new Recorder(3));
+            latencies.put(route, new Histogram(3));
+            requests.put(route, new LongAdder());
+            errors.put(route, new LongAdder());
+        }
+    }
+
+    /**
+     * Adds or replaces the pets with IDs 1 to the catalog size through the bulk route, so that any store can be
+     * tested, including the default pets of an empty store.
+     *
+     * @throws IllegalStateException If a pet of the catalog was not stored.
+     */
+    void loadCatalog() {
+        List<Pet> pets = new ArrayList<>(settings.getCatalogSize());
+        for (int id = 1; id <= settings.getCatalogSize(); id++) {
+            pets.add(pet(id, id % 20));
+        }
+        List<PetBulkResult> results = client.put()
+                .uri("/pets/bulk/update")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(pets)
+                .retrieve()
+                .bodyToFlux(PetBulkResult.class)
+                .collectList()
+                .block();
+        long stored = results == null ? 0 : results.stream()
+                .filter(result -> result.getStatus() == PetBulkResult.Status.CREATED
+                        || result.getStatus() == PetBulkResult.Status.UPDATED)
+                .count();
+        if (stored != settings.getCatalogSize()) {
+            throw new IllegalStateException("Stored " + stored + " of the " + settings.getCatalogSize()
+                    + " pets of the catalog");
+        }
+    }
+
+    /**
+     * Sends the load for the warmup then the measured duration, logging the latencies of each report interval,
+     * and waits for the last responses.
+     *
+     * @param log Receives the latencies of each route and interval, tagged with the route.
+     * @return The latencies and errors of the measured duration.
+     */
+    LoadTestResult run(HistogramLogWriter log) {
+        double periodNanos = (double) TimeUnit.SECONDS.toNanos(1) / settings.getRate();
+        long start = System.nanoTime();
+        long measureFrom = start + settings.getWarmup().toNanos();
+        long end = measureFrom + settings.getDuration().toNanos();
+        long nextReport = measureFrom + settings.getReportInterval().toNanos();
+        long intervalStart = System.currentTimeMillis() + settings.getWarmup().toMillis();
+        logger.info("Sending {} requests per second to {} for {}s of warmup and {}s of measurement", settings.getRate(),
+                settings.getMix(), settings.getWarmup().toSeconds(), settings.getDuration().toSeconds());
+
+        for (long sent = 0; ; sent++) {
+            long planned = start + (long) (sent * periodNanos);
+            if (planned >= end) {
+                break;
+            }
+            if (planned >= nextReport) {
+                intervalStart = report(log, intervalStart, planned - measureFrom);
+                nextReport += settings.getReportInterval().toNanos();
+            }
+            for (long wait = planned - System.nanoTime(); wait > 0; wait = planned - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            send(route(), planned, planned >= measureFrom);
+        }
+
+        long deadline = System.nanoTime() + settings.getTimeout().toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        report(log, intervalStart, end - measureFrom);
+        if (inFlight.get() > 0) {
+            logger.warn("{} requests were still awaiting a response at the end of the run", inFlight.get());
+        }
+
+        Map<PetRoute, Long> requestCounts = new EnumMap<>(PetRoute.class);
+        Map<PetRoute, Long> errorCounts = new EnumMap<>(PetRoute.class);
+        for (PetRoute route : PetRoute.values()) {
+            requestCounts.put(route, requests.get(route).sum());
+            errorCounts.put(route, errors.get(route).sum());
+        }
+        return new LoadTestResult(latencies, requestCounts, errorCounts, settings.getDuration());
+    }
+
+    private PetRoute route() {
+        int draw = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; ; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return routes[i];
+            }
+        }
+    }
+
+    /**
+     * Sends a request without waiting for its response. A removal is sent as an addition when every pet added
+     * by the run was already removed, as the pets of the catalog are never removed.
+     */
+    private void send(PetRoute route, long planned, boolean measured) {
+        PetRoute sent = route == PetRoute.REMOVE && added.isEmpty() ? PetRoute.ADD : route;
+        if (measured) {
+            requests.get(sent).increment();
+        }
+        if (inFlight.get() >= settings.getMaxInFlight()) {
+            if (measured) {
+                errors.get(sent).increment();
+            }
+            return;
+        }
+        inFlight.incrementAndGet();
+        request(sent)
+                .timeout(settings.getTimeout())
+                .subscribe(status -> complete(sent, planned, measured, status == sent.getExpectedStatus().value()),
+                        error -> complete(sent, planned, measured, false));
+    }
+
+    private void complete(PetRoute route, long planned, boolean measured, boolean succeeded) {
+        if (measured) {
+            recorders.get(route).recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - planned)));
+            if (!succeeded) {
+                errors.get(route).increment();
+            }
+        }
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @return The status of the response, whose body is discarded.
+     */
+    private Mono<Integer> request(PetRoute route) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (route) {
+            case LIST:
+                return exchange(client.get().uri("/pets?after={after}&limit={limit}",
+                        random.nextInt(settings.getCatalogSize()), settings.getPageSize()));
+            case GET:
+                return exchange(client.get().uri("/pets/{id}", 1 + random.nextInt(settings.getCatalogSize())));
+            case OWNER:
+                return exchange(client.get().uri("/pets/owner/{owner}", owner(random.nextInt(owners))));
+            case ADD:
+                int id = nextId.getAndIncrement();
+                return exchange(client.post().uri("/pets/add").bodyValue(pet(id, random.nextInt(20))))
+                        .doOnNext(status -> {
+                            if (status == PetRoute.ADD.getExpectedStatus().value()) {
+                                added.offer(id);
+                            }
+                        });
+            case UPDATE:
+                int updated = 1 + random.nextInt(settings.getCatalogSize());
+                return exchange(client.put().uri("/pets/update/{id}", updated).bodyValue(pet(updated, random.nextInt(20))));
+            case REMOVE:
+                return exchange(client.delete().uri("/pets/remove/{id}", added.poll()));
+            default:
+                throw new IllegalArgumentException("Unknown route: " + route);
+        }
+    }
+
+    private static Mono<Integer> exchange(WebClient.RequestHeadersSpec<?> request) {
+        return request.exchangeToMono(response -> response.releaseBody().thenReturn(response.rawStatusCode()));
+    }
+
+    /**
+     * Moves the latencies recorded since the last report to the totals and the log, and logs them.
+     *
+     * @return The start of the next interval, in epoch milliseconds.
+     */
+    private long report(HistogramLogWriter log, long intervalStart, long elapsedNanos) {
+        long intervalEnd = System.currentTimeMillis();
+        Histogram interval = new Histogram(3);
+        long intervalErrors = 0;
+        for (PetRoute route : PetRoute.values()) {
+            Histogram histogram = recorders.get(route).getIntervalHistogram();
+            if (histogram.getTotalCount() > 0) {
+                histogram.setTag(route.key());
+                histogram.setStartTimeStamp(intervalStart);
+                histogram.setEndTimeStamp(intervalEnd);
+                log.outputIntervalHistogram(histogram);
+            }
+            latencies.get(route).add(histogram);
+            interval.add(histogram);
+            intervalErrors += errors.get(route).sum();
+        }
+        logger.info("{}s: {} responses, {} errors in total, p50 {} ms, p99 {} ms, max {} ms, heap {} MB",
+                TimeUnit.NANOSECONDS.toSeconds(elapsedNanos), interval.getTotalCount(), intervalErrors,
+                millis(interval.getValueAtPercentile(50)), millis(interval.getValueAtPercentile(99)),
+                millis(interval.getMaxValue()),
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024));
+        return intervalEnd;
+    }
+
+    private Pet pet(int id, int age) {
+        return new Pet(id, "Pet" + id, age, owner(id % owners));
+    }
+
+    private static String owner(int index) {
+        return "Owner" + index;
+    }
+
+    static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+}
@@ -0,0 +1,146 @@
+package fr.elsior.wfx.test.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static fr.elsior.wfx.test.loadtest.LoadGenerator.millis;
+
+/**
+ * Author: Elimane
+ *
+ * The latencies, in microseconds, and the errors of each route over the measured duration of a load test.
+ * A request is an error when it is not answered with the status of a success of its route, in time.
+ */
+final class LoadTestResult {
+
+    private final Map<PetRoute, Histogram> latencies;
+
+    private final Map<PetRoute, Long> requests;
+
+    private final Map<PetRoute, Long> errors;
+
+    private final Duration duration;
+
+    LoadTestResult(Map<PetRoute, Histogram> latencies, Map<PetRoute, Long> requests, Map<PetRoute, Long> errors,
+                   Duration duration) {
+        this.latencies = latencies;
+        this.requests = requests;
+        this.errors = errors;
+        this.duration = duration;
+    }
+
+    /**
+     * @return The latencies of all routes.
+     */
+    Histogram getLatencies() {
+        Histogram total = new Histogram(3);
+        latencies.values().forEach(total::add);
+        return total;
+    }
+
+    /**
+     * @return The number of requests sent.
+     */
+    long getRequests() {
+        return requests.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * @return The number of requests that failed.
+     */
+    long getErrors() {
+        return errors.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * @return The number of successful responses per second.
+     */
+    double getThroughput() {
+        return (getRequests() - getErrors()) * 1000.0 / duration.toMillis();
+    }
+
+    /**
+     * @return The share of the requests that failed.
+     */
+    double getErrorRate() {
+        return getRequests() == 0 ? 1 : (double) getErrors() / getRequests();
+    }
+
+    /**
+     * Compares the result with the objectives of the settings.
+     *
+     * @param settings The objectives.
+     * @return A description of each objective that was not met, empty if the run passed.
+     */
+    List<String> violations(LoadTestSettings settings) {
+        List<String> violations = new ArrayList<>();
+        double p99 = getLatencies().getValueAtPercentile(99) / 1000.0;
+        if (p99 > settings.getMaxP99Millis()) {
+            violations.add(String.format("p99 latency %.2f ms is above loadtest.max-p99-ms=%s",
+                    p99, settings.getMaxP99Millis()));
+        }
+        if (getThroughput() < settings.getMinThroughput()) {
+            violations.add(String.format("throughput %.1f/s is below loadtest.min-throughput=%s",
+                    getThroughput(), settings.getMinThroughput()));
+        }
+        if (getErrorRate() > settings.getMaxErrorRate()) {
+            violations.add(String.format("error rate %.4f (%d of %d requests) is above loadtest.max-error-rate=%s",
+                    getErrorRate(), getErrors(), getRequests(), settings.getMaxErrorRate()));
+        }
+        return violations;
+    }
+
+    /**
+     * @return One line per route and one for all routes: requests, errors, latency percentiles in milliseconds.
+     */
+    List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-8s %10s %8s %9s %9s %9s %9s %9s", "route", "requests", "errors",
+                "p50", "p90", "p99", "p99.9", "max"));
+        for (Map.Entry<PetRoute, Histogram> entry : latencies.entrySet()) {
+            if (requests.get(entry.getKey()) > 0) {
+                lines.add(line(entry.getKey().key(), requests.get(entry.getKey()), errors.get(entry.getKey()),
+                        entry.getValue()));
+            }
+        }
+        lines.add(line("all", getRequests(), getErrors(), getLatencies()));
+        lines.add(String.format("throughput %.1f/s over %ds", getThroughput(), duration.toSeconds()));
+        return lines;
+    }
+
+    private static String line(String name, long requests, long errors, Histogram latencies) {
+        return String.format("%-8s %10d %8d %9s %9s %9s %9s %9s", name, requests, errors,
+                millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(90)),
+                millis(latencies.getValueAtPercentile(99)), millis(latencies.getValueAtPercentile(99.9)),
+                millis(latencies.getMaxValue()));
+    }
+
+    /**
+     * Writes the percentile distribution of each route, and of all routes, in milliseconds: one
+     * {@code <route>.hgrm} file per route, readable by the HdrHistogram plotter.
+     *
+     * @param directory The directory to write to.
+     * @throws FileNotFoundException If a file cannot be created.
+     */
+    void write(File directory) throws FileNotFoundException {
+        for (Map.Entry<PetRoute, Histogram> entry : latencies.entrySet()) {
+            if (entry.getValue().getTotalCount() > 0) {
+                write(new File(directory, entry.getKey().key() + ".hgrm"), entry.getValue());
+            }
+        }
+        write(new File(directory, "all.hgrm"), getLatencies());
+    }
+
+    private static void write(File file, Histogram latencies) throws FileNotFoundException {
+        try (PrintStream out = new PrintStream(file)) {
+            latencies.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
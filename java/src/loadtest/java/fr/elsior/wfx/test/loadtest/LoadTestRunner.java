@@ -0,0 +1,100 @@
+package fr.elsior.wfx.test.loadtest;
+
+import fr.elsior.wfx.test.Application;
+import org.HdrHistogram.HistogramLogWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Author: Elimane
+ *
+ * Starts the application on a random port, loads a catalog, sends the load of the {@code loadtest.*} properties
+ * and checks its objectives. Latencies are written to the {@code loadtest.results} directory: the intervals of
+ * each route to {@code latency.hlog}, and the percentiles of the run to one {@code .hgrm} file per route.
+ * Exits with status 1 when an objective is not met, failing the Maven build.
+ * The client runs on its own event loops, so that it does not take them from the server.
+ */
+public final class LoadTestRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestRunner.class);
+
+    private LoadTestRunner() {}
+
+    public static void main(String... args) throws IOException {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        File results = settings.getResults();
+        if (!results.isDirectory() && !results.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + results);
+        }
+
+        List<String> violations;
+        SpringApplication application = new SpringApplication(Application.class);
+        application.addInitializers(initialized -> initialized.getBeanFactory()
+                .registerSingleton(SkipTestConfigurations.class.getName(), new SkipTestConfigurations()));
+        String[] applicationArgs = new String[settings.getApplicationArgs().length + 1];
+        applicationArgs[0] = "--server.port=0";
+        System.arraycopy(settings.getApplicationArgs(), 0, applicationArgs, 1, settings.getApplicationArgs().length);
+        try (ConfigurableApplicationContext context = application.run(applicationArgs)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LoopResources loops = LoopResources.create("loadtest", settings.getClientThreads(), true);
+            ConnectionProvider connections = ConnectionProvider.builder("loadtest")
+                    .maxConnections(settings.getConnections())
+                    .pendingAcquireMaxCount(-1)
+                    .build();
+            HistogramLogWriter log = new HistogramLogWriter(new File(results, "latency.hlog"));
+            try {
+                WebClient client = WebClient.builder()
+                        .baseUrl("http://localhost:" + port)
+                        .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections).runOn(loops)))
+                        .build();
+                log.outputLogFormatVersion();
+                log.outputStartTime(System.currentTimeMillis());
+                log.outputLegend();
+
+                LoadGenerator generator = new LoadGenerator(client, settings);
+                generator.loadCatalog();
+                LoadTestResult result = generator.run(log);
+                result.summary().forEach(logger::info);
+                result.write(results);
+                violations = result.violations(settings);
+            } finally {
+                log.close();
+                connections.dispose();
+                loops.dispose();
+            }
+        }
+
+        if (!violations.isEmpty()) {
+            violations.forEach(violation -> logger.error("Objective not met: {}", violation));
+            System.exit(1);
+        }
+        logger.info("All objectives met, latencies written to {}", results);
+    }
+
+    /**
+     * Keeps the test configurations, on the load test classpath, out of the component scan.
+     */
+    static class SkipTestConfigurations extends TypeExcludeFilter {
+
+        @Override
+        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+            return metadataReader.getAnnotationMetadata().hasAnnotation(TestConfiguration.class.getName());
+        }
+    }
+}
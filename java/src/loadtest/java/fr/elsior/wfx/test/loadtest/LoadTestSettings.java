@@ -0,0 +1,248 @@
+package fr.elsior.wfx.test.loadtest;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Author: Elimane
+ *
+ * The load to generate and the objectives it must meet, read from the {@code loadtest.*} system properties
+ * set by the loadtest profile.
+ */
+final class LoadTestSettings {
+
+    private final int rate;
+
+    private final Duration warmup;
+
+    private final Duration duration;
+
+    private final Duration reportInterval;
+
+    private final Map<PetRoute, Integer> mix;
+
+    private final int catalogSize;
+
+    private final int pageSize;
+
+    private final int connections;
+
+    private final int clientThreads;
+
+    private final int maxInFlight;
+
+    private final Duration timeout;
+
+    private final double maxP99Millis;
+
+    private final double minThroughput;
+
+    private final double maxErrorRate;
+
+    private final File results;
+
+    private final String[] applicationArgs;
+
+    private LoadTestSettings(int rate, Duration warmup, Duration duration, Duration reportInterval,
+                             Map<PetRoute, Integer> mix, int catalogSize, int pageSize, int connections,
+                             int clientThreads, int maxInFlight, Duration timeout, double maxP99Millis,
+                             double minThroughput, double maxErrorRate, File results, String[] applicationArgs) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("loadtest.rate must be positive: " + rate);
+        }
+        if (catalogSize <= 0) {
+            throw new IllegalArgumentException("loadtest.catalog-size must be positive: " + catalogSize);
+        }
+        this.rate = rate;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.reportInterval = reportInterval;
+        this.mix = mix;
+        this.catalogSize = catalogSize;
+        this.pageSize = pageSize;
+        this.connections = connections;
+        this.clientThreads = clientThreads;
+        this.maxInFlight = maxInFlight;
+        this.timeout = timeout;
+        this.maxP99Millis = maxP99Millis;
+        this.minThroughput = minThroughput;
+        this.maxErrorRate = maxErrorRate;
+        this.results = results;
+        this.applicationArgs = applicationArgs;
+    }
+
+    /**
+     * Reads the settings from the system properties, the defaults being those of the loadtest profile.
+     *
+     * @return The settings.
+     * @throws IllegalArgumentException If a property has an invalid value.
+     */
+    static LoadTestSettings fromSystemProperties() {
+        int rate = intProperty("loadtest.rate", 500);
+        return new LoadTestSettings(
+                rate,
+                Duration.ofSeconds(intProperty("loadtest.warmup", 20)),
+                Duration.ofSeconds(intProperty("loadtest.duration", 60)),
+                Duration.ofSeconds(intProperty("loadtest.report-interval", 10)),
+                mix(System.getProperty("loadtest.mix", "list=5,get=50,owner=15,add=10,update=10,remove=10")),
+                intProperty("loadtest.catalog-size", 10000),
+                intProperty("loadtest.page-size", 100),
+                intProperty("loadtest.connections", 256),
+                intProperty("loadtest.client-threads", 2),
+                intProperty("loadtest.max-in-flight", 10000),
+                Duration.ofMillis(intProperty("loadtest.timeout-ms", 5000)),
+                doubleProperty("loadtest.max-p99-ms", 100),
+                doubleProperty("loadtest.min-throughput", rate * 0.95),
+                doubleProperty("loadtest.max-error-rate", 0.001),
+                new File(System.getProperty("loadtest.results", "target/loadtest")),
+                System.getProperty("loadtest.args", "--pets.store=concurrent --pets.admission.enabled=false")
+                        .trim().split("\\s+"));
+    }
+
+    /**
+     * Parses a route mix such as {@code get=50,add=10}: each route is sent in proportion to its weight.
+     */
+    static Map<PetRoute, Integer> mix(String value) {
+        Map<PetRoute, Integer> mix = new EnumMap<>(PetRoute.class);
+        for (String entry : value.split(",")) {
+            int equals = entry.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("loadtest.mix entries are route=weight: " + entry);
+            }
+            int weight = Integer.parseInt(entry.substring(equals + 1).trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("loadtest.mix weights cannot be negative: " + entry);
+            }
+            mix.merge(PetRoute.of(entry.substring(0, equals)), weight, Integer::sum);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("loadtest.mix sends no request: " + value);
+        }
+        return mix;
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        String value = System.getProperty(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value == null || value.isBlank() ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    /**
+     * @return The requests sent per second, whatever the response times (open model).
+     */
+    int getRate() {
+        return rate;
+    }
+
+    /**
+     * @return How long the load is sent before latencies are recorded.
+     */
+    Duration getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * @return How long latencies are recorded, after the warmup.
+     */
+    Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return How often the latencies of the last interval are logged.
+     */
+    Duration getReportInterval() {
+        return reportInterval;
+    }
+
+    /**
+     * @return The weight of each route in the load.
+     */
+    Map<PetRoute, Integer> getMix() {
+        return mix;
+    }
+
+    /**
+     * @return The number of pets loaded before the run, which are read and updated but never removed.
+     */
+    int getCatalogSize() {
+        return catalogSize;
+    }
+
+    /**
+     * @return The limit of the list requests.
+     */
+    int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return The size of the client connection pool.
+     */
+    int getConnections() {
+        return connections;
+    }
+
+    /**
+     * @return The number of client event loops, kept apart from those of the server.
+     */
+    int getClientThreads() {
+        return clientThreads;
+    }
+
+    /**
+     * @return The number of requests awaiting a response above which new requests are counted as failed
+     * instead of being sent.
+     */
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return How long a response is awaited before the request is counted as failed.
+     */
+    Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return The highest acceptable 99th percentile of the latency of all routes, in milliseconds.
+     */
+    double getMaxP99Millis() {
+        return maxP99Millis;
+    }
+
+    /**
+     * @return The lowest acceptable number of successful responses per second.
+     */
+    double getMinThroughput() {
+        return minThroughput;
+    }
+
+    /**
+     * @return The highest acceptable share of failed requests.
+     */
+    double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    /**
+     * @return The directory the latency histograms are written to.
+     */
+    File getResults() {
+        return results;
+    }
+
+    /**
+     * @return The arguments of the application under test.
+     */
+    String[] getApplicationArgs() {
+        return applicationArgs;
+    }
+}
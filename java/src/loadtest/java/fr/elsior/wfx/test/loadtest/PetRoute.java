@@ -0,0 +1,76 @@
+package fr.elsior.wfx.test.loadtest;
+
+import org.springframework.http.HttpStatus;
+
+import java.util.Locale;
+
+/**
+ * Author: Elimane
+ *
+ * The /pets routes a load test can send, named in {@code loadtest.mix} by their lower case name.
+ */
+enum PetRoute {
+
+    /**
+     * GET /pets?after={id}&limit={page size}
+     */
+    LIST(HttpStatus.OK),
+
+    /**
+     * GET /pets/{id} of a pet of the catalog.
+     */
+    GET(HttpStatus.OK),
+
+    /**
+     * GET /pets/owner/{owner} of an owner of the catalog.
+     */
+    OWNER(HttpStatus.OK),
+
+    /**
+     * POST /pets/add of a new pet.
+     */
+    ADD(HttpStatus.CREATED),
+
+    /**
+     * PUT /pets/update/{id} of a pet of the catalog.
+     */
+    UPDATE(HttpStatus.OK),
+
+    /**
+     * DELETE /pets/remove/{id} of a pet added by the run.
+     */
+    REMOVE(HttpStatus.NO_CONTENT);
+
+    private final HttpStatus expectedStatus;
+
+    PetRoute(HttpStatus expectedStatus) {
+        this.expectedStatus = expectedStatus;
+    }
+
+    /**
+     * @param name The name of the route, in any case.
+     * @return The route.
+     * @throws IllegalArgumentException If there is no route with that name.
+     */
+    static PetRoute of(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown route: " + name.trim(), e);
+        }
+    }
+
+    /**
+     * @return The status of a successful response.
+     */
+    HttpStatus getExpectedStatus() {
+        return expectedStatus;
+    }
+
+    /**
+     * @return The name of the route in the mix, reports and histogram tags.
+     */
+    String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
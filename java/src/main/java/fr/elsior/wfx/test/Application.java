@@ -2,12 +2,15 @@ package fr.elsior.wfx.test;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 import org.springframework.web.reactive.config.EnableWebFlux;
 
 /**
  * Author: Elimane
+ *
+ * The R2DBC store opens its own connection pool, so Spring Boot does not configure a second one.
  */
-@SpringBootApplication
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 @EnableWebFlux
 public class Application {
 	public static void main(String... args) {
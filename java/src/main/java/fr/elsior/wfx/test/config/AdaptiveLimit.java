@@ -0,0 +1,96 @@
+package fr.elsior.wfx.test.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Author: Elimane
+ *
+ * Concurrency limit adapted with AIMD (additive increase, multiplicative decrease) from the latency of each request:
+ * a request slower than the target shrinks the limit by the backoff ratio, while a request within the target
+ * grows it by one every limit requests, as long as the limit is actually used.
+ * The limit starts at its maximum, so it only drops below the static limit when requests queue up downstream.
+ */
+final class AdaptiveLimit {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long targetLatencyNanos;
+
+    private final double backoff;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+
+    /**
+     * @param minLimit           The lowest limit.
+     * @param maxLimit           The highest limit, also the initial one.
+     * @param targetLatencyNanos The latency above which a request shrinks the limit.
+     * @param backoff            The ratio applied to the limit by a slow request, between 0 and 1.
+     */
+    AdaptiveLimit(int minLimit, int maxLimit, long targetLatencyNanos, double backoff) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.backoff = backoff;
+        this.limit = maxLimit;
+    }
+
+    /**
+     * Takes a permit if fewer requests than the limit are in flight.
+     *
+     * @return True if the request is admitted and must release its permit, false if it must be shed.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases the permit of a completed request and adapts the limit to its latency.
+     *
+     * @param latencyNanos The time the request took.
+     */
+    void release(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (latencyNanos > targetLatencyNanos) {
+                limit = Math.max(minLimit, limit * backoff);
+            } else if (current * 2 >= limit) {
+                // Only grow a limit that is used, else an idle route would reach its maximum unchecked
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+
+    /**
+     * Releases the permit of a cancelled request, whose latency says nothing of the load.
+     */
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return The fraction of the limit in use.
+     */
+    double load() {
+        return inFlight.get() / limit;
+    }
+}
@@ -0,0 +1,63 @@
+package fr.elsior.wfx.test.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.server.WebFilter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Elimane
+ */
+@Configuration
+@ConditionalOnProperty(name = "pets.admission.enabled", havingValue = "true")
+public class AdmissionControlConfig {
+
+    private static final double BACKOFF = 0.9;
+
+    /**
+     * Sheds the /pets requests a traffic spike would otherwise queue, see {@link AdmissionControlFilter}.
+     *
+     * @param readLimit         The highest concurrency limit of reads.
+     * @param readLatencyMs     The latency above which a read lowers the read limit.
+     * @param writeLimit        The highest concurrency limit of writes.
+     * @param writeLatencyMs    The latency above which a write lowers the write limit.
+     * @param scanLimit         The highest concurrency limit of scans.
+     * @param scanLatencyMs     The latency above which a scan lowers the scan limit.
+     * @param scanYield         The share of the read limit in use above which scans are rejected.
+     * @param tokensPerSecond   The sustained request rate of a client.
+     * @param burst             The number of requests a client can send at once.
+     * @param scanCost          The number of tokens a scan takes.
+     * @param retryAfterSeconds The delay advised to clients rejected for overload.
+     * @param registry          The registry the meters are published to.
+     * @return The admission control filter.
+     */
+    @Bean
+    public WebFilter admissionControlFilter(@Value("${pets.admission.read.max-limit:256}") int readLimit,
+                                            @Value("${pets.admission.read.target-latency-ms:100}") long readLatencyMs,
+                                            @Value("${pets.admission.write.max-limit:128}") int writeLimit,
+                                            @Value("${pets.admission.write.target-latency-ms:200}") long writeLatencyMs,
+                                            @Value("${pets.admission.scan.max-limit:8}") int scanLimit,
+                                            @Value("${pets.admission.scan.target-latency-ms:5000}") long scanLatencyMs,
+                                            @Value("${pets.admission.scan.yield:0.5}") double scanYield,
+                                            @Value("${pets.admission.rate.per-second:200}") double tokensPerSecond,
+                                            @Value("${pets.admission.rate.burst:400}") int burst,
+                                            @Value("${pets.admission.rate.scan-cost:10}") int scanCost,
+                                            @Value("${pets.admission.retry-after-seconds:1}") long retryAfterSeconds,
+                                            MeterRegistry registry) {
+        Map<AdmissionControlFilter.Route, AdaptiveLimit> limits = new EnumMap<>(AdmissionControlFilter.Route.class);
+        limits.put(AdmissionControlFilter.Route.READ, limit(readLimit, readLatencyMs));
+        limits.put(AdmissionControlFilter.Route.WRITE, limit(writeLimit, writeLatencyMs));
+        limits.put(AdmissionControlFilter.Route.SCAN, limit(scanLimit, scanLatencyMs));
+        return new AdmissionControlFilter(limits, scanYield, tokensPerSecond, burst, scanCost, retryAfterSeconds, registry);
+    }
+
+    private static AdaptiveLimit limit(int maxLimit, long targetLatencyMs) {
+        return new AdaptiveLimit(1, maxLimit, TimeUnit.MILLISECONDS.toNanos(targetLatencyMs), BACKOFF);
+    }
+}
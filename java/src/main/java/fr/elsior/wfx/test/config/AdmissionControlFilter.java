@@ -0,0 +1,199 @@
+package fr.elsior.wfx.test.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Elimane
+ *
+ * Admission control in front of the /pets routes, so a traffic spike is shed at once instead of queuing behind
+ * the store and slowing every client down together:
+ * <ul>
+ *     <li>each client address gets a token bucket, a request without enough tokens is rejected with 429;</li>
+ *     <li>each route class gets an {@link AdaptiveLimit} on its requests in flight, a request over it is rejected
+ *     with 503;</li>
+ *     <li>scans cost more tokens and yield to reads: they are rejected with 503 once reads use a given share of
+ *     their limit.</li>
+ * </ul>
+ * Both rejections carry a Retry-After header and are counted by route class and reason.
+ * The change feed, a long-lived stream, and the /commands routes are not limited.
+ */
+final class AdmissionControlFilter implements WebFilter, Ordered {
+
+    static final String SHED_COUNTER = "pets.admission.shed";
+    static final String LIMIT_GAUGE = "pets.admission.limit";
+    static final String IN_FLIGHT_GAUGE = "pets.admission.in-flight";
+
+    private static final long MAX_CLIENTS = 100_000;
+
+    /**
+     * Route classes, each with its own concurrency limit.
+     */
+    enum Route {
+        /** Single pet, owner, page, query, search and statistics reads. */
+        READ,
+        /** Additions, updates and deletions of one pet. */
+        WRITE,
+        /** Whole catalog listings and bulk requests. */
+        SCAN;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Map<Route, AdaptiveLimit> limits;
+
+    private final double scanYield;
+
+    private final double tokensPerSecond;
+
+    private final int burst;
+
+    private final int scanCost;
+
+    private final long retryAfterSeconds;
+
+    private final Cache<String, TokenBucket> buckets;
+
+    private final Map<Route, Counter> rateLimited = new EnumMap<>(Route.class);
+
+    private final Map<Route, Counter> overloaded = new EnumMap<>(Route.class);
+
+    /**
+     * @param limits            The concurrency limit of each route class.
+     * @param scanYield         The share of the read limit in use above which scans are rejected.
+     * @param tokensPerSecond   The sustained request rate of a client.
+     * @param burst             The number of requests a client can send at once.
+     * @param scanCost          The number of tokens a scan takes.
+     * @param retryAfterSeconds The delay advised to clients rejected for overload.
+     * @param registry          The registry the meters are published to.
+     */
+    AdmissionControlFilter(Map<Route, AdaptiveLimit> limits, double scanYield, double tokensPerSecond, int burst,
+                           int scanCost, long retryAfterSeconds, MeterRegistry registry) {
+        this.limits = new EnumMap<>(limits);
+        this.scanYield = scanYield;
+        this.tokensPerSecond = tokensPerSecond;
+        this.burst = burst;
+        this.scanCost = scanCost;
+        this.retryAfterSeconds = retryAfterSeconds;
+        // An idle bucket is full again after burst / rate seconds, so evicting it then loses nothing
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(MAX_CLIENTS)
+                .expireAfterAccess(Duration.ofNanos((long) Math.ceil(burst / tokensPerSecond * TimeUnit.SECONDS.toNanos(1))))
+                .build();
+        for (Route route : Route.values()) {
+            AdaptiveLimit limit = this.limits.get(route);
+            Gauge.builder(LIMIT_GAUGE, limit, AdaptiveLimit::getLimit)
+                    .description("Concurrency limit of the route class")
+                    .tag("route", route.tag())
+                    .register(registry);
+            Gauge.builder(IN_FLIGHT_GAUGE, limit, AdaptiveLimit::getInFlight)
+                    .description("Requests in flight of the route class")
+                    .tag("route", route.tag())
+                    .register(registry);
+            rateLimited.put(route, shedCounter(registry, route, "rate-limited"));
+            overloaded.put(route, shedCounter(registry, route, "overloaded"));
+        }
+    }
+
+    /**
+     * Runs after the actuator metrics filter, so shed requests still show in http.server.requests.
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 10;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        Route route = route(exchange.getRequest());
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+        TokenBucket bucket = buckets.get(client(exchange.getRequest()), key -> new TokenBucket(tokensPerSecond, burst));
+        long wait = bucket.tryConsume(route == Route.SCAN ? scanCost : 1);
+        if (wait > 0) {
+            rateLimited.get(route).increment();
+            return reject(exchange, HttpStatus.TOO_MANY_REQUESTS, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999)));
+        }
+        AdaptiveLimit limit = limits.get(route);
+        if ((route == Route.SCAN && limits.get(Route.READ).load() >= scanYield) || !limit.tryAcquire()) {
+            overloaded.get(route).increment();
+            return reject(exchange, HttpStatus.SERVICE_UNAVAILABLE, retryAfterSeconds);
+        }
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        limit.release();
+                    } else {
+                        limit.release(System.nanoTime() - start);
+                    }
+                });
+    }
+
+    /**
+     * @param request The request.
+     * @return The class of the route, or null if the route is not limited.
+     */
+    static Route route(ServerHttpRequest request) {
+        String path = request.getPath().pathWithinApplication().value();
+        if (!(path.equals("/pets") || path.startsWith("/pets/")) || path.startsWith("/pets/events")) {
+            return null;
+        }
+        HttpMethod method = request.getMethod();
+        boolean read = method == HttpMethod.GET || method == HttpMethod.HEAD;
+        if (path.startsWith("/pets/bulk/") || path.equals("/pets/stream") || path.equals("/pets/export")
+                || (read && path.equals("/pets") && !request.getQueryParams().containsKey("limit"))) {
+            return Route.SCAN;
+        }
+        return read ? Route.READ : Route.WRITE;
+    }
+
+    /**
+     * Identifies the client by its address. Behind a proxy, server.forward-headers-strategy makes it the
+     * address the proxy forwarded.
+     */
+    private static String client(ServerHttpRequest request) {
+        InetSocketAddress address = request.getRemoteAddress();
+        if (address == null) {
+            return "unknown";
+        }
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, HttpStatus status, long retryAfterSeconds) {
+        exchange.getResponse().setStatusCode(status);
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        return exchange.getResponse().setComplete();
+    }
+
+    private static Counter shedCounter(MeterRegistry registry, Route route, String reason) {
+        return Counter.builder(SHED_COUNTER)
+                .description("Requests rejected by admission control")
+                .tag("route", route.tag())
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
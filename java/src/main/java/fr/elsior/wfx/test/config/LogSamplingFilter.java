@@ -0,0 +1,52 @@
+package fr.elsior.wfx.test.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Author: Elimane
+ *
+ * Keeps one in {@code rate} INFO lines whose message template starts with {@code prefix}, counted per template,
+ * so each operation ("Fetching pet with ID {}", "Fetching pets for owner: {}"...) stays visible at a lower volume.
+ * Sampled out lines are denied before their message is formatted.
+ * <p>
+ * Configured in logback-spring.xml:
+ * <pre>
+ * &lt;turboFilter class="fr.elsior.wfx.test.config.LogSamplingFilter"&gt;
+ *     &lt;prefix&gt;Fetching&lt;/prefix&gt;
+ *     &lt;rate&gt;100&lt;/rate&gt;
+ * &lt;/turboFilter&gt;
+ * </pre>
+ */
+public class LogSamplingFilter extends TurboFilter {
+
+    private final ConcurrentMap<String, AtomicLong> countsByTemplate = new ConcurrentHashMap<>();
+
+    private String prefix = "";
+
+    private int rate = 1;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (rate <= 1 || level != Level.INFO || format == null || !format.startsWith(prefix)) {
+            return FilterReply.NEUTRAL;
+        }
+        long count = countsByTemplate.computeIfAbsent(format, template -> new AtomicLong()).getAndIncrement();
+        return count % rate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public void setRate(int rate) {
+        this.rate = rate;
+    }
+}
@@ -0,0 +1,26 @@
+package fr.elsior.wfx.test.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Author: Elimane
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Times every pet store and pet service call, see {@link PetMetricsPostProcessor}.
+     * Routes are timed by the actuator as http.server.requests.
+     *
+     * @param meterRegistry The registry the meters are published to.
+     * @return The post processor wrapping the pet beans.
+     */
+    @Bean
+    public static BeanPostProcessor petMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new PetMetricsPostProcessor(meterRegistry);
+    }
+}
@@ -0,0 +1,156 @@
+package fr.elsior.wfx.test.config;
+
+import fr.elsior.wfx.test.services.IPetService;
+import fr.elsior.wfx.test.services.dao.BlockingPetDaoAdapter;
+import fr.elsior.wfx.test.services.dao.IPetDao;
+import fr.elsior.wfx.test.services.dao.IReactivePetDao;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.util.ClassUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Author: Elimane
+ *
+ * Wraps every {@link IPetDao}, {@link IReactivePetDao} and {@link IPetService} bean in a proxy timing each method
+ * of the interface, and registers a gauge of the catalog size for each store.
+ * A reactive store is never blocked on when the gauge is sampled: each sample starts a count and publishes the last
+ * one completed, so its size lags by one sample.
+ * Adapters of blocking stores are not wrapped, since the store they call already is.
+ * Timers are tagged with the bean, the method and the exception class, or "none" on success,
+ * so their counts give the throughput and the error rate by exception type.
+ * A reactive result is timed from subscription to termination, not when it is assembled.
+ */
+final class PetMetricsPostProcessor implements BeanPostProcessor {
+
+    static final String DAO_TIMER = "pets.dao";
+    static final String SERVICE_TIMER = "pets.service";
+    static final String CATALOG_SIZE_GAUGE = "pets.catalog.size";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    /**
+     * @param meterRegistry The registry, resolved lazily since post processors are created before it.
+     */
+    PetMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof IPetDao) {
+            MeterRegistry registry = meterRegistry.getObject();
+            Gauge.builder(CATALOG_SIZE_GAUGE, (IPetDao) bean, IPetDao::countPets)
+                    .description("Number of pets in the store")
+                    .tag("bean", beanName)
+                    .register(registry);
+            return metered(bean, beanName, IPetDao.class, DAO_TIMER, registry);
+        }
+        if (bean instanceof IReactivePetDao && !(bean instanceof BlockingPetDaoAdapter)) {
+            MeterRegistry registry = meterRegistry.getObject();
+            AtomicInteger lastCount = new AtomicInteger();
+            Gauge.builder(CATALOG_SIZE_GAUGE, (IReactivePetDao) bean, dao -> {
+                        // A failed count keeps the last size
+                        dao.countPets().subscribe(lastCount::set, e -> { });
+                        return lastCount.get();
+                    })
+                    .description("Number of pets in the store")
+                    .tag("bean", beanName)
+                    .register(registry);
+            return metered(bean, beanName, IReactivePetDao.class, DAO_TIMER, registry);
+        }
+        if (bean instanceof IPetService) {
+            return metered(bean, beanName, IPetService.class, SERVICE_TIMER, meterRegistry.getObject());
+        }
+        return bean;
+    }
+
+    /**
+     * Proxies the bean class, so the bean can still be injected by its concrete type.
+     */
+    private static Object metered(Object bean, String beanName, Class<?> api, String timer, MeterRegistry registry) {
+        ProxyFactory factory = new ProxyFactory(bean);
+        factory.setProxyTargetClass(true);
+        factory.addAdvisor(new DefaultPointcutAdvisor(new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return ClassUtils.hasMethod(api, method.getName(), method.getParameterTypes());
+            }
+        }, new TimingInterceptor(registry, timer, beanName)));
+        return factory.getProxy(bean.getClass().getClassLoader());
+    }
+
+    /**
+     * Records the duration and the outcome of each call.
+     */
+    static final class TimingInterceptor implements MethodInterceptor {
+
+        private static final String NO_EXCEPTION = "none";
+        private static final String CANCELLED = "cancelled";
+
+        private final MeterRegistry registry;
+
+        private final String timer;
+
+        private final String beanName;
+
+        TimingInterceptor(MeterRegistry registry, String timer, String beanName) {
+            this.registry = registry;
+            this.timer = timer;
+            this.beanName = beanName;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            String method = invocation.getMethod().getName();
+            Timer.Sample sample = Timer.start(registry);
+            Object result;
+            try {
+                result = invocation.proceed();
+            } catch (Throwable e) {
+                stop(sample, method, e.getClass().getSimpleName());
+                throw e;
+            }
+            if (result instanceof Mono) {
+                Mono<?> mono = (Mono<?>) result;
+                return Mono.defer(() -> {
+                    Timer.Sample subscription = Timer.start(registry);
+                    return mono.doOnSuccess(value -> stop(subscription, method, NO_EXCEPTION))
+                            .doOnError(e -> stop(subscription, method, e.getClass().getSimpleName()))
+                            .doOnCancel(() -> stop(subscription, method, CANCELLED));
+                });
+            }
+            if (result instanceof Flux) {
+                Flux<?> flux = (Flux<?>) result;
+                return Flux.defer(() -> {
+                    Timer.Sample subscription = Timer.start(registry);
+                    return flux.doOnComplete(() -> stop(subscription, method, NO_EXCEPTION))
+                            .doOnError(e -> stop(subscription, method, e.getClass().getSimpleName()))
+                            .doOnCancel(() -> stop(subscription, method, CANCELLED));
+                });
+            }
+            stop(sample, method, NO_EXCEPTION);
+            return result;
+        }
+
+        private void stop(Timer.Sample sample, String method, String exception) {
+            sample.stop(Timer.builder(timer)
+                    .tag("bean", beanName)
+                    .tag("method", method)
+                    .tag("exception", exception)
+                    .register(registry));
+        }
+    }
+}
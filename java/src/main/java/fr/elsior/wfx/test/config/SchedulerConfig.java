@@ -0,0 +1,73 @@
+package fr.elsior.wfx.test.config;
+
+import fr.elsior.wfx.test.services.dao.BlockingPetDaoAdapter;
+import fr.elsior.wfx.test.services.dao.IPetDao;
+import fr.elsior.wfx.test.services.dao.IReactivePetDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Author: Elimane
+ */
+@Configuration
+public class SchedulerConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchedulerConfig.class);
+
+    /**
+     * Builds the scheduler the pet service runs its DAO calls on.
+     * <ul>
+     *     <li>event-loop: the calling thread, for in-memory stores that never block.</li>
+     *     <li>bounded-elastic: the shared Reactor bounded elastic pool.</li>
+     *     <li>dedicated: a bounded elastic pool reserved to the DAO, so a slow store cannot starve other blocking work.</li>
+     * </ul>
+     * The durable store waits for the disk on every write, so it never runs on the event loop:
+     * event-loop is replaced with dedicated for it.
+     *
+     * @param store     The selected store.
+     * @param execution The execution strategy.
+     * @param threads   The thread cap of the dedicated pool.
+     * @param queueSize The number of tasks the dedicated pool queues before rejecting work.
+     * @return The scheduler for DAO calls.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler petDaoScheduler(@Value("${pets.store:list}") String store,
+                                     @Value("${pets.dao.execution:event-loop}") String execution,
+                                     @Value("${pets.dao.dedicated.threads:8}") int threads,
+                                     @Value("${pets.dao.dedicated.queue-size:10000}") int queueSize) {
+        if (store.equals("durable") && execution.equals("event-loop")) {
+            logger.warn("pets.store=durable blocks on the disk, running it with pets.dao.execution=dedicated");
+            execution = "dedicated";
+        }
+        switch (execution) {
+            case "event-loop":
+                return Schedulers.immediate();
+            case "bounded-elastic":
+                return Schedulers.boundedElastic();
+            case "dedicated":
+                return Schedulers.newBoundedElastic(threads, queueSize, "pet-dao");
+            default:
+                throw new IllegalArgumentException("Unknown pets.dao.execution: " + execution);
+        }
+    }
+
+    /**
+     * Exposes the blocking store to the pet service, its calls running on the DAO scheduler.
+     * Not created for the reactive stores, which the service uses directly.
+     *
+     * @param petDao          The blocking store.
+     * @param petDaoScheduler The scheduler DAO calls run on.
+     * @return The reactive view of the store.
+     */
+    @Bean
+    @ConditionalOnExpression("!{'r2dbc', 'partitioned'}.contains('${pets.store:list}')")
+    public IReactivePetDao blockingPetDaoAdapter(IPetDao petDao, Scheduler petDaoScheduler) {
+        return new BlockingPetDaoAdapter(petDao, petDaoScheduler);
+    }
+}
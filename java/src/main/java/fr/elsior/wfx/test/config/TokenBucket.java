@@ -0,0 +1,49 @@
+package fr.elsior.wfx.test.config;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Elimane
+ *
+ * Rate limit of one client: the bucket holds up to a burst of tokens, refilled continuously at a steady rate,
+ * and each request takes tokens from it. Refills are computed lazily when a request comes.
+ */
+final class TokenBucket {
+
+    private final double tokensPerNano;
+
+    private final double capacity;
+
+    private double tokens;
+
+    private long refilledAt;
+
+    /**
+     * @param tokensPerSecond The refill rate.
+     * @param capacity        The largest burst, the bucket starts full.
+     */
+    TokenBucket(double tokensPerSecond, double capacity) {
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Takes tokens if the bucket holds enough of them.
+     *
+     * @param cost The number of tokens of the request, capped to the capacity.
+     * @return 0 if the tokens were taken, else the time in nanoseconds until the bucket holds enough of them.
+     */
+    synchronized long tryConsume(double cost) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        double needed = Math.min(cost, capacity);
+        if (tokens >= needed) {
+            tokens -= needed;
+            return 0;
+        }
+        return (long) Math.ceil((needed - tokens) / tokensPerNano);
+    }
+}
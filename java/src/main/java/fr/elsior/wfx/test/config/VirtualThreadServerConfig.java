@@ -0,0 +1,67 @@
+package fr.elsior.wfx.test.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.elsior.wfx.test.services.BlockingPetService;
+import fr.elsior.wfx.test.services.PetEventFeed;
+import fr.elsior.wfx.test.services.dao.IPetDao;
+import fr.elsior.wfx.test.ws.BlockingPetServer;
+import fr.elsior.wfx.test.ws.BlockingPetsHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Author: Elimane
+ *
+ * Serves the /pets routes a second time, on {@code pets.virtual-threads.port}, in the blocking style on Java 21
+ * virtual threads: one virtual thread per exchange calls the blocking store directly, without Reactor.
+ * Both servers share the store and the change feed, so the two programming models can be compared side by side.
+ * Only the blocking stores can be served this way.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pets.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadServerConfig {
+
+    /**
+     * Starts the virtual thread server.
+     *
+     * @param petDao       The blocking store.
+     * @param petEvents    The change feed each successful write is published to.
+     * @param objectMapper Reads and writes the JSON bodies.
+     * @param port         The port to listen on, 0 for any free port.
+     * @param backlog      The number of connections queued before they are accepted.
+     * @param maxPageSize  The largest page a client can request.
+     * @return The started server, stopped with the application.
+     * @throws IOException If the server cannot listen on the port.
+     */
+    @Bean
+    public BlockingPetServer virtualThreadPetServer(IPetDao petDao, PetEventFeed petEvents, ObjectMapper objectMapper,
+                                                    @Value("${pets.virtual-threads.port:8085}") int port,
+                                                    @Value("${pets.virtual-threads.backlog:1024}") int backlog,
+                                                    @Value("${pets.page.max-size:1000}") int maxPageSize) throws IOException {
+        BlockingPetsHandler handler = new BlockingPetsHandler(new BlockingPetService(petDao, petEvents), objectMapper, maxPageSize);
+        return new BlockingPetServer(new InetSocketAddress(port), backlog, handler, newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Looks the virtual thread executor up at runtime, the code being compiled for Java 11.
+     *
+     * @return An executor starting a virtual thread per task.
+     * @throws IllegalStateException If the JVM has no virtual threads.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("pets.virtual-threads.enabled needs Java 21 or later, not " + Runtime.version(), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create the virtual thread executor", e);
+        }
+    }
+}
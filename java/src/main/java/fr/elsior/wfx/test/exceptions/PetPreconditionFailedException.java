@@ -0,0 +1,18 @@
+package fr.elsior.wfx.test.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * @Author: Elimane
+ */
+public class PetPreconditionFailedException extends PetException{
+    @Override
+    public HttpStatus getStatus() {
+        return HttpStatus.PRECONDITION_FAILED;
+    }
+
+    @Override
+    public String getMessage() {
+        return "Pet has been modified.";
+    }
+}
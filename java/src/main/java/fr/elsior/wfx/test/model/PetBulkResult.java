@@ -0,0 +1,44 @@
+package fr.elsior.wfx.test.model;
+
+/**
+ * Author: Elimane
+ *
+ * Outcome of one item of a bulk request.
+ */
+public class PetBulkResult {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        DELETED,
+        ALREADY_EXISTS,
+        NOT_FOUND
+    }
+
+    int id;
+
+    Status status;
+
+    public PetBulkResult() {}
+
+    public PetBulkResult(int id, Status status) {
+        this.id = id;
+        this.status = status;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,66 @@
+package fr.elsior.wfx.test.model;
+
+/**
+ * Author: Elimane
+ *
+ * A change applied to the catalog, numbered in publication order.
+ */
+public class PetEvent {
+
+    public enum Type {
+        ADDED,
+        UPDATED,
+        DELETED
+    }
+
+    long sequence;
+
+    Type type;
+
+    int id;
+
+    Pet pet;
+
+    public PetEvent() {}
+
+    public PetEvent(Type type, int id, Pet pet) {
+        this.type = type;
+        this.id = id;
+        this.pet = pet;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return The pet as stored after the change, or null for a deletion.
+     */
+    public Pet getPet() {
+        return pet;
+    }
+
+    public void setPet(Pet pet) {
+        this.pet = pet;
+    }
+}
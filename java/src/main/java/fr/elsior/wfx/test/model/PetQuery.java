@@ -0,0 +1,152 @@
+package fr.elsior.wfx.test.model;
+
+import java.util.Locale;
+
+/**
+ * Author: Elimane
+ *
+ * Criteria of a pet search. Every criterion is optional and the pets must match all the given ones.
+ * Names and owners are compared ignoring case. The matches can be read page by page, in ID order.
+ */
+public class PetQuery {
+
+    Integer minAge;
+
+    Integer maxAge;
+
+    String namePrefix;
+
+    String owner;
+
+    Integer afterId;
+
+    int limit = Integer.MAX_VALUE;
+
+    public PetQuery() {}
+
+    /**
+     * @param minAge     The lowest age, inclusive, or null.
+     * @param maxAge     The highest age, inclusive, or null.
+     * @param namePrefix The start of the name, or null.
+     * @param owner      The owner's name, or null.
+     */
+    public PetQuery(Integer minAge, Integer maxAge, String namePrefix, String owner) {
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        this.namePrefix = namePrefix;
+        this.owner = owner;
+    }
+
+    /**
+     * @param minAge     The lowest age, inclusive, or null.
+     * @param maxAge     The highest age, inclusive, or null.
+     * @param namePrefix The start of the name, or null.
+     * @param owner      The owner's name, or null.
+     * @param afterId    The ID of the last pet of the previous page, or null for the first page.
+     * @param limit      The maximum number of pets to return.
+     */
+    public PetQuery(Integer minAge, Integer maxAge, String namePrefix, String owner, Integer afterId, int limit) {
+        this(minAge, maxAge, namePrefix, owner);
+        this.afterId = afterId;
+        this.limit = limit;
+    }
+
+    /**
+     * Normalizes a name or an owner so that comparisons ignore case.
+     *
+     * @param value The name or owner.
+     * @return The normalized value or null if the value is null.
+     */
+    public static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return True if the query has an age criterion.
+     */
+    public boolean hasAgeRange() {
+        return minAge != null || maxAge != null;
+    }
+
+    /**
+     * @return True if the query has at least one criterion, so that it can be answered through an index.
+     */
+    public boolean hasCriterion() {
+        return hasAgeRange() || namePrefix != null || owner != null;
+    }
+
+    /**
+     * @param pet The pet to test.
+     * @return True if the pet meets every criterion and comes after the previous page.
+     */
+    public boolean matches(Pet pet) {
+        if (afterId != null && pet.getId() <= afterId) {
+            return false;
+        }
+        if (minAge != null && pet.getAge() < minAge) {
+            return false;
+        }
+        if (maxAge != null && pet.getAge() > maxAge) {
+            return false;
+        }
+        if (namePrefix != null &&
+                (pet.getName() == null || !pet.getName().regionMatches(true, 0, namePrefix, 0, namePrefix.length()))) {
+            return false;
+        }
+        return owner == null || owner.equalsIgnoreCase(pet.getOwner());
+    }
+
+    public Integer getMinAge() {
+        return minAge;
+    }
+
+    public void setMinAge(Integer minAge) {
+        this.minAge = minAge;
+    }
+
+    public Integer getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(Integer maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public void setNamePrefix(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Integer getAfterId() {
+        return afterId;
+    }
+
+    public void setAfterId(Integer afterId) {
+        this.afterId = afterId;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public String toString() {
+        return "PetQuery{minAge=" + minAge + ", maxAge=" + maxAge +
+                ", namePrefix='" + namePrefix + "', owner='" + owner + "', afterId=" + afterId + ", limit=" + limit + "}";
+    }
+}
@@ -0,0 +1,39 @@
+package fr.elsior.wfx.test.model;
+
+/**
+ * Author: Elimane
+ *
+ * A pet found by a fuzzy search, with how closely its name or owner matches the searched text.
+ */
+public class PetSearchResult {
+
+    Pet pet;
+
+    double score;
+
+    public PetSearchResult() {}
+
+    public PetSearchResult(Pet pet, double score) {
+        this.pet = pet;
+        this.score = score;
+    }
+
+    public Pet getPet() {
+        return pet;
+    }
+
+    public void setPet(Pet pet) {
+        this.pet = pet;
+    }
+
+    /**
+     * @return The trigram similarity of the best matching field, from 0 to 1.
+     */
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+}
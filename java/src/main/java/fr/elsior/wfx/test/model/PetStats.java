@@ -0,0 +1,86 @@
+package fr.elsior.wfx.test.model;
+
+import java.util.Map;
+
+/**
+ * Author: Elimane
+ *
+ * Aggregates of the whole catalog: number of pets, average age, number of pets of each age and of each owner.
+ * Owners are lowercased, as owner lookups ignore case, and only the requested ones are listed.
+ */
+public class PetStats {
+
+    long count;
+
+    double averageAge;
+
+    Map<Integer, Long> ageHistogram;
+
+    int owners;
+
+    Map<String, Long> petsByOwner;
+
+    public PetStats() {}
+
+    public PetStats(long count, double averageAge, Map<Integer, Long> ageHistogram, int owners,
+                    Map<String, Long> petsByOwner) {
+        this.count = count;
+        this.averageAge = averageAge;
+        this.ageHistogram = ageHistogram;
+        this.owners = owners;
+        this.petsByOwner = petsByOwner;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * @return The average age of the pets, 0 without pets.
+     */
+    public double getAverageAge() {
+        return averageAge;
+    }
+
+    public void setAverageAge(double averageAge) {
+        this.averageAge = averageAge;
+    }
+
+    /**
+     * @return The number of pets of each age, by increasing age.
+     */
+    public Map<Integer, Long> getAgeHistogram() {
+        return ageHistogram;
+    }
+
+    public void setAgeHistogram(Map<Integer, Long> ageHistogram) {
+        this.ageHistogram = ageHistogram;
+    }
+
+    /**
+     * @return The number of distinct owners.
+     */
+    public int getOwners() {
+        return owners;
+    }
+
+    public void setOwners(int owners) {
+        this.owners = owners;
+    }
+
+    /**
+     * @return The number of pets of each requested owner, or of every owner if none was requested, by owner name.
+     * Pets without owner are not counted.
+     */
+    public Map<String, Long> getPetsByOwner() {
+        return petsByOwner;
+    }
+
+    public void setPetsByOwner(Map<String, Long> petsByOwner) {
+        this.petsByOwner = petsByOwner;
+    }
+}
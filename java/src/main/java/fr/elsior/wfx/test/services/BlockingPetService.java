@@ -0,0 +1,164 @@
+package fr.elsior.wfx.test.services;
+
+import fr.elsior.wfx.test.exceptions.OwnerNotFoundException;
+import fr.elsior.wfx.test.exceptions.PetAlreadyExistsException;
+import fr.elsior.wfx.test.exceptions.PetNotFoundException;
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetEvent;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetStats;
+import fr.elsior.wfx.test.services.dao.IPetDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Author: Elimane
+ *
+ * Blocking counterpart of {@link PetServiceImpl}, for callers running on threads that may block, such as
+ * virtual threads. Each method calls the store on the caller's thread and returns its result or throws, with
+ * the same errors, logs and change events as the reactive service.
+ */
+public class BlockingPetService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockingPetService.class);
+
+    private final IPetDao petDao;
+
+    private final PetEventFeed petEvents;
+
+    /**
+     * @param petDao    The store holding the pets.
+     * @param petEvents The change feed each successful write is published to.
+     */
+    public BlockingPetService(IPetDao petDao, PetEventFeed petEvents) {
+        this.petDao = petDao;
+        this.petEvents = petEvents;
+    }
+
+    /**
+     * @return All pets.
+     */
+    public List<Pet> getPets() {
+        logger.info("Fetching all pets");
+        return petDao.getPets();
+    }
+
+    /**
+     * @param afterId The ID of the last pet of the previous page, or null for the first page.
+     * @param limit   The maximum number of pets to return.
+     * @return The pets of the page, in ID order.
+     */
+    public List<Pet> getPets(Integer afterId, int limit) {
+        logger.info("Fetching {} pets after ID {}", limit, afterId);
+        return petDao.getPets(afterId, limit);
+    }
+
+    /**
+     * @param pet The pet to add.
+     * @return The added pet.
+     * @throws PetAlreadyExistsException If a pet with the same ID already exists.
+     */
+    public Pet addPet(Pet pet) throws PetAlreadyExistsException {
+        logger.info("Adding a new pet: {}", pet);
+        Pet addedPet = petDao.addPet(pet);
+        if (addedPet == null) {
+            logger.error("Pet with ID {} already exists", pet.getId());
+            throw new PetAlreadyExistsException();
+        }
+        petEvents.publish(PetEvent.Type.ADDED, addedPet.getId(), addedPet);
+        return addedPet;
+    }
+
+    /**
+     * @param id The ID of the pet to retrieve.
+     * @return The pet with the given ID.
+     * @throws PetNotFoundException If no pet is found with the given ID.
+     */
+    public Pet getPet(int id) throws PetNotFoundException {
+        logger.info("Fetching pet with ID {}", id);
+        Pet pet = petDao.getPet(id);
+        if (pet == null) {
+            logger.error("No pet found with ID {}", id);
+            throw new PetNotFoundException();
+        }
+        return pet;
+    }
+
+    /**
+     * @param owner The name of the owner.
+     * @return The pets owned by the owner.
+     * @throws OwnerNotFoundException If the owner has no pet.
+     */
+    public List<Pet> getPetsByOwner(String owner) throws OwnerNotFoundException {
+        logger.info("Fetching pets for owner: {}", owner);
+        List<Pet> pets = petDao.getPetsByOwner(owner);
+        if (pets.isEmpty()) {
+            logger.error("No pets found for owner: {}", owner);
+            throw new OwnerNotFoundException();
+        }
+        return pets;
+    }
+
+    /**
+     * @param query The query criteria and page.
+     * @return The matching pets, in ID order, at most the query limit, empty if none match.
+     */
+    public List<Pet> findPets(PetQuery query) {
+        logger.info("Fetching pets matching {}", query);
+        return petDao.findPets(query);
+    }
+
+    /**
+     * @param owners The owners whose pets are counted, or null for every owner.
+     * @return The number of pets, their average age and their counts by age and by owner.
+     */
+    public PetStats getStats(List<String> owners) {
+        logger.info("Fetching pet statistics of owners {}", owners == null ? "all" : owners);
+        return petDao.getStats(owners);
+    }
+
+    /**
+     * Updates an existing pet, only if the stored pet matches an expected state when one is given.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet, atomically with the update, or null to always update.
+     * @return The updated pet.
+     * @throws PetNotFoundException           If no pet is found with the given ID.
+     * @throws PetPreconditionFailedException If the stored pet does not match.
+     */
+    public Pet updatePet(int id, Pet updatedPet, Predicate<Pet> expected)
+            throws PetNotFoundException, PetPreconditionFailedException {
+        logger.info(expected == null ? "Updating pet with ID {}" : "Updating pet with ID {} if unchanged", id);
+        Pet pet;
+        try {
+            pet = expected == null ? petDao.updatePet(id, updatedPet) : petDao.updatePet(id, updatedPet, expected);
+        } catch (PetPreconditionFailedException e) {
+            logger.error("Pet with ID {} has been modified concurrently", id);
+            throw e;
+        }
+        if (pet == null) {
+            logger.error("No pet found with ID {}", id);
+            throw new PetNotFoundException();
+        }
+        petEvents.publish(PetEvent.Type.UPDATED, id, pet);
+        return pet;
+    }
+
+    /**
+     * @param id The ID of the pet to delete.
+     * @throws PetNotFoundException If no pet is found with the given ID.
+     */
+    public void deletePet(int id) throws PetNotFoundException {
+        logger.info("Deleting pet with ID {}", id);
+        if (!petDao.deletePet(id)) {
+            logger.error("No pet found with ID {}", id);
+            throw new PetNotFoundException();
+        }
+        petEvents.publish(PetEvent.Type.DELETED, id, null);
+    }
+}
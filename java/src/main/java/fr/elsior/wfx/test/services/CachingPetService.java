@@ -0,0 +1,342 @@
+package fr.elsior.wfx.test.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.elsior.wfx.test.exceptions.OwnerNotFoundException;
+import fr.elsior.wfx.test.exceptions.PetAlreadyExistsException;
+import fr.elsior.wfx.test.exceptions.PetNotFoundException;
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetBulkResult;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Author: Elimane
+ *
+ * Read-through cache in front of {@link PetServiceImpl}, enabled with {@code pets.cache.enabled}.
+ * Pets by ID and pets by owner are kept in bounded caches with W-TinyLFU eviction, so hits skip the service,
+ * its logs and the store. Missing pets and owners are not cached.
+ * <p>
+ * A successful write invalidates the entry of its ID, the entry of the new owner and the entry of any owner
+ * listing that ID, found through an index of the owner entries listing each ID, kept in step with the owner cache:
+ * entries are stored and dropped through the cache's compute, and evictions update the index as they happen.
+ * A read racing with a write drops what it cached when the write generation has moved, so a stale read never
+ * outlives the write that made it stale.
+ * <p>
+ * Writes that do not go through this service, such as those of the virtual thread server, are invalidated
+ * from the {@link PetEventFeed}: their entries are dropped once the change is dispatched, shortly after the write.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "pets.cache.enabled", havingValue = "true")
+public class CachingPetService implements IPetService {
+
+    private final IPetService delegate;
+
+    private final Cache<Integer, Pet> petsById;
+
+    private final Cache<String, List<Pet>> petsByOwner;
+
+    /**
+     * The keys of the owner entries listing each ID.
+     */
+    private final ConcurrentMap<Integer, Set<String>> ownerKeysById = new ConcurrentHashMap<>();
+
+    private final AtomicLong writeGeneration = new AtomicLong();
+
+    private final Disposable petEventsSubscription;
+
+    /**
+     * Constructor with dependency injection.
+     *
+     * @param delegate  The service answering cache misses and writes.
+     * @param petEvents The change feed of every write, including those not made through this service.
+     * @param maxPets   The maximum number of pets cached by ID.
+     * @param maxOwners The maximum number of owners whose pets are cached.
+     */
+    public CachingPetService(@Qualifier("petServiceImpl") IPetService delegate, PetEventFeed petEvents,
+                             @Value("${pets.cache.pets.max-size:10000}") long maxPets,
+                             @Value("${pets.cache.owners.max-size:1000}") long maxOwners) {
+        this.delegate = delegate;
+        this.petsById = Caffeine.newBuilder()
+                .maximumSize(maxPets)
+                .recordStats()
+                .build();
+        this.petsByOwner = Caffeine.newBuilder()
+                .maximumSize(maxOwners)
+                .evictionListener(this::unindex)
+                .recordStats()
+                .build();
+        this.petEventsSubscription = petEvents.events()
+                .subscribe(event -> invalidate(event.getId(), event.getPet() == null ? null : event.getPet().getOwner()));
+    }
+
+    /**
+     * Stops following the change feed.
+     * This method is called automatically before the bean is destroyed.
+     */
+    @PreDestroy
+    void close() {
+        petEventsSubscription.dispose();
+    }
+
+    @Override
+    public Flux<Pet> getPets() {
+        return delegate.getPets();
+    }
+
+    @Override
+    public Flux<Pet> getPets(Integer afterId, int limit) {
+        return delegate.getPets(afterId, limit);
+    }
+
+    @Override
+    public Flux<Pet> streamPets(int batchSize) {
+        return delegate.streamPets(batchSize);
+    }
+
+    /**
+     * Retrieves a pet by its ID, from the cache when present.
+     *
+     * @param id The ID of the pet to retrieve.
+     * @return A Mono containing the pet with the given ID.
+     */
+    @Override
+    public Mono<Pet> getPet(int id) throws PetNotFoundException {
+        return Mono.defer(() -> {
+            Pet cached = petsById.getIfPresent(id);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            long generation = writeGeneration.get();
+            try {
+                return delegate.getPet(id)
+                        .doOnNext(pet -> {
+                            petsById.put(id, pet);
+                            if (writeGeneration.get() != generation) {
+                                petsById.invalidate(id);
+                            }
+                        });
+            } catch (PetNotFoundException e) {
+                return Mono.error(e);
+            }
+        });
+    }
+
+    /**
+     * Retrieves all pets owned by a specific owner, ignoring case, from the cache when present.
+     *
+     * @param owner The name of the owner.
+     * @return A reactive stream (Flux) of pets owned by the specified owner.
+     */
+    @Override
+    public Flux<Pet> getPetsByOwner(String owner) throws OwnerNotFoundException {
+        if (owner == null) {
+            return delegate.getPetsByOwner(null);
+        }
+        return Flux.defer(() -> {
+            String key = ownerKey(owner);
+            List<Pet> cached = petsByOwner.getIfPresent(key);
+            if (cached != null) {
+                return Flux.fromIterable(cached);
+            }
+            long generation = writeGeneration.get();
+            try {
+                return delegate.getPetsByOwner(owner)
+                        .collectList()
+                        .doOnNext(pets -> {
+                            List<Pet> entry = List.copyOf(pets);
+                            petsByOwner.asMap().compute(key, (k, previous) -> {
+                                unindex(k, previous, null);
+                                index(k, entry);
+                                return entry;
+                            });
+                            if (writeGeneration.get() != generation) {
+                                petsByOwner.invalidate(key);
+                            }
+                        })
+                        .flatMapMany(Flux::fromIterable);
+            } catch (OwnerNotFoundException e) {
+                return Flux.error(e);
+            }
+        });
+    }
+
+    @Override
+    public Flux<Pet> findPets(PetQuery query) {
+        return delegate.findPets(query);
+    }
+
+    @Override
+    public Flux<PetSearchResult> searchPets(String text, int limit) {
+        return delegate.searchPets(text, limit);
+    }
+
+    @Override
+    public Mono<PetStats> getStats(List<String> owners) {
+        return delegate.getStats(owners);
+    }
+
+    @Override
+    public Mono<Pet> addPet(Pet pet) throws PetAlreadyExistsException {
+        return delegate.addPet(pet)
+                .doOnNext(added -> invalidate(added.getId(), added.getOwner()));
+    }
+
+    @Override
+    public Mono<Pet> updatePet(int id, Pet updatedPet) throws PetNotFoundException {
+        return delegate.updatePet(id, updatedPet)
+                .doOnNext(updated -> invalidate(id, updated.getOwner()));
+    }
+
+    @Override
+    public Mono<Pet> updatePet(int id, Pet updatedPet, Predicate<Pet> expected) throws PetNotFoundException, PetPreconditionFailedException {
+        return delegate.updatePet(id, updatedPet, expected)
+                .doOnNext(updated -> invalidate(id, updated.getOwner()));
+    }
+
+    @Override
+    public Mono<Void> deletePet(int id) throws PetNotFoundException {
+        return delegate.deletePet(id)
+                .doOnSuccess(done -> invalidate(id, null));
+    }
+
+    @Override
+    public Flux<PetBulkResult> addPets(Flux<Pet> pets, int batchSize) {
+        return writeAll(pets, batchSize, delegate::addPets);
+    }
+
+    @Override
+    public Flux<PetBulkResult> upsertPets(Flux<Pet> pets, int batchSize) {
+        return writeAll(pets, batchSize, delegate::upsertPets);
+    }
+
+    @Override
+    public Flux<PetBulkResult> deletePets(Flux<Integer> ids, int batchSize) {
+        return delegate.deletePets(ids, batchSize)
+                .doOnNext(result -> {
+                    if (result.getStatus() == PetBulkResult.Status.DELETED) {
+                        invalidate(result.getId(), null);
+                    }
+                });
+    }
+
+    /**
+     * Runs a bulk write, remembering the owner of each pet until its result arrives,
+     * so that the entry of its new owner can be invalidated as well.
+     */
+    private Flux<PetBulkResult> writeAll(Flux<Pet> pets, int batchSize,
+                                         BiFunction<Flux<Pet>, Integer, Flux<PetBulkResult>> write) {
+        return Flux.defer(() -> {
+            Map<Integer, String> pendingOwners = new ConcurrentHashMap<>();
+            return write.apply(pets.doOnNext(pet -> {
+                        if (pet.getOwner() != null) {
+                            pendingOwners.put(pet.getId(), pet.getOwner());
+                        }
+                    }), batchSize)
+                    .doOnNext(result -> {
+                        String owner = pendingOwners.remove(result.getId());
+                        if (result.getStatus() == PetBulkResult.Status.CREATED
+                                || result.getStatus() == PetBulkResult.Status.UPDATED) {
+                            invalidate(result.getId(), owner);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * @return The hit, miss and eviction counters of each cache.
+     */
+    public Map<String, CacheStats> stats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        stats.put("pets", petsById.stats());
+        stats.put("owners", petsByOwner.stats());
+        return stats;
+    }
+
+    /**
+     * Drops every entry a write has touched. The generation is bumped first,
+     * so a read that started before the write cannot cache its result after this call.
+     *
+     * @param id    The ID of the written pet.
+     * @param owner The owner of the pet after the write, or null for a deletion.
+     */
+    private void invalidate(int id, String owner) {
+        writeGeneration.incrementAndGet();
+        petsById.invalidate(id);
+        Set<String> ownerKeys = ownerKeysById.remove(id);
+        if (ownerKeys != null) {
+            ownerKeys.forEach(this::invalidateOwner);
+        }
+        if (owner != null) {
+            invalidateOwner(ownerKey(owner));
+        }
+    }
+
+    /**
+     * Drops an owner entry and, atomically with it, its IDs from the index.
+     */
+    private void invalidateOwner(String key) {
+        petsByOwner.asMap().computeIfPresent(key, (k, pets) -> {
+            unindex(k, pets, null);
+            return null;
+        });
+    }
+
+    private static String ownerKey(String owner) {
+        return owner.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Indexes the IDs listed by an owner entry. Called while the cache computes the entry, so the index never
+     * misses an ID of a cached entry.
+     */
+    private void index(String key, List<Pet> pets) {
+        for (Pet pet : pets) {
+            ownerKeysById.compute(pet.getId(), (id, keys) -> {
+                Set<String> updated = keys != null ? keys : ConcurrentHashMap.newKeySet();
+                updated.add(key);
+                return updated;
+            });
+        }
+    }
+
+    /**
+     * Removes the IDs of an owner entry from the index. Called while the cache computes or evicts the entry.
+     */
+    private void unindex(String key, List<Pet> pets, RemovalCause cause) {
+        if (key == null || pets == null) {
+            return;
+        }
+        for (Pet pet : pets) {
+            ownerKeysById.computeIfPresent(pet.getId(), (id, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+}
@@ -3,23 +3,57 @@ package fr.elsior.wfx.test.services;
 import fr.elsior.wfx.test.exceptions.OwnerNotFoundException;
 import fr.elsior.wfx.test.exceptions.PetAlreadyExistsException;
 import fr.elsior.wfx.test.exceptions.PetNotFoundException;
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
 import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetBulkResult;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.function.Predicate;
+
 /**
  * Author: Elimane
  */
 public interface IPetService {
     Flux<Pet> getPets();
 
+    Flux<Pet> getPets(Integer afterId, int limit);
+
+    Flux<Pet> streamPets(int batchSize);
+
     Mono<Pet> addPet(Pet pet) throws PetAlreadyExistsException;
 
     Mono<Pet> getPet(int id) throws PetNotFoundException;
 
     Flux<Pet> getPetsByOwner(String owner) throws OwnerNotFoundException;
 
+    Flux<Pet> findPets(PetQuery query);
+
+    Flux<PetSearchResult> searchPets(String text, int limit);
+
+    Mono<PetStats> getStats(List<String> owners);
+
     Mono<Pet> updatePet(int id, Pet updatedPet) throws PetNotFoundException;
 
-    void deletePet(int id) throws PetNotFoundException;
+    /**
+     * Updates an existing pet only if the stored pet matches an expected state.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet, atomically with the update.
+     * @return A Mono containing the updated pet, or failing with PetNotFoundException or PetPreconditionFailedException.
+     */
+    Mono<Pet> updatePet(int id, Pet updatedPet, Predicate<Pet> expected) throws PetNotFoundException, PetPreconditionFailedException;
+
+    Mono<Void> deletePet(int id) throws PetNotFoundException;
+
+    Flux<PetBulkResult> addPets(Flux<Pet> pets, int batchSize);
+
+    Flux<PetBulkResult> upsertPets(Flux<Pet> pets, int batchSize);
+
+    Flux<PetBulkResult> deletePets(Flux<Integer> ids, int batchSize);
 }
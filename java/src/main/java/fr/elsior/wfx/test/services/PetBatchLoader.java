@@ -0,0 +1,116 @@
+package fr.elsior.wfx.test.services;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.services.dao.IReactivePetDao;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Elimane
+ *
+ * Batches pet lookups by ID, DataLoader style: the IDs requested within a window are read by one
+ * {@link IReactivePetDao#getPetsById} call, sent when the window closes or as soon as the batch holds the maximum number
+ * of distinct IDs. Each lookup waits at most the window, so batching trades that latency for fewer store calls.
+ */
+final class PetBatchLoader {
+
+    private final IReactivePetDao petDao;
+
+    private final long windowNanos;
+
+    private final int maxBatchSize;
+
+    private Batch pending;
+
+    /**
+     * @param petDao       The store read by batches.
+     * @param windowNanos  How long a batch collects IDs after its first lookup.
+     * @param maxBatchSize The number of distinct IDs that sends a batch before its window closes.
+     */
+    PetBatchLoader(IReactivePetDao petDao, long windowNanos, int maxBatchSize) {
+        this.petDao = petDao;
+        this.windowNanos = windowNanos;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @param id The ID of the pet.
+     * @return A Mono emitting the pet once its batch is read, or empty if not found.
+     */
+    Mono<Pet> load(int id) {
+        return Mono.create(sink -> {
+            Batch full = null;
+            synchronized (this) {
+                if (pending == null) {
+                    Batch batch = new Batch();
+                    pending = batch;
+                    Schedulers.parallel().schedule(() -> flush(batch), windowNanos, TimeUnit.NANOSECONDS);
+                }
+                pending.add(id, sink);
+                if (pending.size() >= maxBatchSize) {
+                    full = pending;
+                    pending = null;
+                }
+            }
+            if (full != null) {
+                send(full);
+            }
+        });
+    }
+
+    private void flush(Batch batch) {
+        synchronized (this) {
+            if (pending != batch) {
+                // Already sent when it became full
+                return;
+            }
+            pending = null;
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        petDao.getPetsById(batch.lookups.keySet())
+                .subscribe(batch::complete, batch::fail);
+    }
+
+    /**
+     * The lookups of one window, by distinct ID.
+     */
+    private static final class Batch {
+
+        private final Map<Integer, List<MonoSink<Pet>>> lookups = new LinkedHashMap<>();
+
+        void add(int id, MonoSink<Pet> sink) {
+            lookups.computeIfAbsent(id, key -> new ArrayList<>(1)).add(sink);
+        }
+
+        int size() {
+            return lookups.size();
+        }
+
+        void complete(Map<Integer, Pet> pets) {
+            lookups.forEach((id, sinks) -> {
+                Pet pet = pets.get(id);
+                for (MonoSink<Pet> sink : sinks) {
+                    if (pet == null) {
+                        sink.success();
+                    } else {
+                        sink.success(pet);
+                    }
+                }
+            });
+        }
+
+        void fail(Throwable e) {
+            lookups.values().forEach(sinks -> sinks.forEach(sink -> sink.error(e)));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package fr.elsior.wfx.test.services;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Author: Elimane
+ *
+ * Change feed of the catalog, fed by {@link PetServiceImpl} after each successful write.
+ * <p>
+ * Publishing only appends the event to a lock-free queue: a single dispatcher thread drains it, numbers the events,
+ * keeps the latest ones in a replay ring and emits them to a multicast sink, so writers never run subscriber code.
+ * Each subscriber reads through its own bounded buffer; when a slow subscriber fills it, the configured
+ * {@link SlowConsumerPolicy} applies. A subscriber can resume after the last sequence number it received,
+ * as long as the following events are still in the replay ring.
+ * <p>
+ * Sequence numbers restart at 1 with the application.
+ */
+@Component
+public class PetEventFeed {
+
+    /**
+     * What happens to the events of a subscriber whose buffer is full.
+     */
+    public enum SlowConsumerPolicy {
+        /** New events are dropped until the subscriber catches up. */
+        DROP,
+        /** The oldest buffered events are dropped, so the subscriber gets the latest ones. */
+        LATEST,
+        /** The subscriber is disconnected with an error, and can resume from its last sequence number. */
+        DISCONNECT
+    }
+
+    private final Queue<PetEvent> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingDrains = new AtomicInteger();
+
+    private final Sinks.Many<PetEvent> sink = Sinks.many().multicast().directBestEffort();
+
+    private final AtomicReferenceArray<PetEvent> replay;
+
+    private final int bufferSize;
+
+    private final SlowConsumerPolicy slowConsumerPolicy;
+
+    private final Scheduler dispatcher = Schedulers.newSingle("pet-events", true);
+
+    private volatile long lastSequence;
+
+    /**
+     * Constructor with dependency injection.
+     *
+     * @param replaySize         The number of latest events kept to resume subscriptions.
+     * @param bufferSize         The number of events buffered per subscriber.
+     * @param slowConsumerPolicy What happens when a subscriber's buffer is full.
+     */
+    public PetEventFeed(@Value("${pets.events.replay-size:10000}") int replaySize,
+                        @Value("${pets.events.buffer-size:256}") int bufferSize,
+                        @Value("${pets.events.slow-consumer:drop}") SlowConsumerPolicy slowConsumerPolicy) {
+        this.replay = new AtomicReferenceArray<>(replaySize);
+        this.bufferSize = bufferSize;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    /**
+     * Stops the dispatcher thread and completes the subscriptions.
+     * This method is called automatically before the bean is destroyed.
+     */
+    @PreDestroy
+    void close() {
+        dispatcher.dispose();
+        sink.tryEmitComplete();
+    }
+
+    /**
+     * Publishes a change without waiting for it to be dispatched.
+     *
+     * @param type The kind of change.
+     * @param id   The ID of the changed pet.
+     * @param pet  The pet as stored after the change, or null for a deletion.
+     */
+    public void publish(PetEvent.Type type, int id, Pet pet) {
+        pending.offer(new PetEvent(type, id, pet));
+        if (pendingDrains.getAndIncrement() == 0) {
+            dispatcher.schedule(this::drain);
+        }
+    }
+
+    /**
+     * @return The sequence number of the latest dispatched event, 0 if none.
+     */
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @param afterSequence The last sequence number a subscriber received.
+     * @return True if every later event is still kept, so the subscriber can resume without a gap.
+     */
+    public boolean canResumeAfter(long afterSequence) {
+        long last = lastSequence;
+        return afterSequence >= 0 && afterSequence <= last && afterSequence >= last - replay.length();
+    }
+
+    /**
+     * Subscribes to the events published from now on.
+     *
+     * @return A reactive stream (Flux) of events, through a buffer of pets.events.buffer-size.
+     */
+    public Flux<PetEvent> events() {
+        return withSlowConsumerPolicy(sink.asFlux());
+    }
+
+    /**
+     * Subscribes to the events following a sequence number: the kept ones first, then the live ones.
+     *
+     * @param afterSequence The last sequence number received.
+     * @return A reactive stream (Flux) of events, failing if some of them are no longer kept.
+     */
+    public Flux<PetEvent> eventsAfter(long afterSequence) {
+        return withSlowConsumerPolicy(Flux.defer(() -> {
+            // Listen before reading the ring, so no event is dispatched in between unseen
+            Sinks.Many<PetEvent> live = Sinks.many().unicast().onBackpressureBuffer();
+            Disposable subscription = sink.asFlux().subscribe(live::tryEmitNext);
+            List<PetEvent> replayed = replayAfter(afterSequence);
+            if (replayed == null) {
+                subscription.dispose();
+                return Flux.error(new IllegalStateException("Events after " + afterSequence + " are no longer kept"));
+            }
+            long replayedUpTo = replayed.isEmpty() ? afterSequence : replayed.get(replayed.size() - 1).getSequence();
+            return Flux.fromIterable(replayed)
+                    .concatWith(live.asFlux().filter(event -> event.getSequence() > replayedUpTo))
+                    .doFinally(signal -> subscription.dispose());
+        }));
+    }
+
+    private Flux<PetEvent> withSlowConsumerPolicy(Flux<PetEvent> events) {
+        switch (slowConsumerPolicy) {
+            case LATEST:
+                return events.onBackpressureBuffer(bufferSize, BufferOverflowStrategy.DROP_OLDEST);
+            case DISCONNECT:
+                return events.onBackpressureBuffer(bufferSize, BufferOverflowStrategy.ERROR);
+            default:
+                return events.onBackpressureBuffer(bufferSize, BufferOverflowStrategy.DROP_LATEST);
+        }
+    }
+
+    /**
+     * @return The kept events after the sequence number, or null if some of them have been overwritten.
+     */
+    private List<PetEvent> replayAfter(long afterSequence) {
+        if (!canResumeAfter(afterSequence)) {
+            return null;
+        }
+        long last = lastSequence;
+        List<PetEvent> events = new ArrayList<>((int) (last - afterSequence));
+        for (long sequence = afterSequence + 1; sequence <= last; sequence++) {
+            PetEvent event = replay.get(slot(sequence));
+            if (event == null || event.getSequence() != sequence) {
+                return null;
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * Dispatches every pending event, on the dispatcher thread only.
+     */
+    private void drain() {
+        int drains = 1;
+        do {
+            PetEvent event;
+            while ((event = pending.poll()) != null) {
+                long sequence = lastSequence + 1;
+                event.setSequence(sequence);
+                replay.set(slot(sequence), event);
+                lastSequence = sequence;
+                sink.tryEmitNext(event);
+            }
+            drains = pendingDrains.addAndGet(-drains);
+        } while (drains != 0);
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % replay.length());
+    }
+}
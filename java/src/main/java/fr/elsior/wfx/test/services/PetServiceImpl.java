@@ -1,27 +1,96 @@
 package fr.elsior.wfx.test.services;
 
+import fr.elsior.wfx.test.services.dao.BlockingPetDaoAdapter;
 import fr.elsior.wfx.test.services.dao.IPetDao;
+import fr.elsior.wfx.test.services.dao.IReactivePetDao;
 import fr.elsior.wfx.test.exceptions.OwnerNotFoundException;
 import fr.elsior.wfx.test.exceptions.PetAlreadyExistsException;
 import fr.elsior.wfx.test.exceptions.PetNotFoundException;
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
 import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetBulkResult;
+import fr.elsior.wfx.test.model.PetEvent;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 /**
  * Author: Elimane
+ *
+ * Reactive service in front of the store. The store answers a missing pet, or a taken ID on add, with an empty
+ * result rather than an error: {@code switchIfEmpty} turns it into {@link PetNotFoundException} or
+ * {@link PetAlreadyExistsException}, so that these requests answer 404 or 409 instead of 200 with an empty body.
  */
 @Service
 public class PetServiceImpl implements IPetService {
 
     private static final Logger logger = LoggerFactory.getLogger(PetServiceImpl.class);
-    final IPetDao petDao;
+    final IReactivePetDao petDao;
+
+    final PetEventFeed petEvents;
+
+    private final SingleFlight<Integer, Pet> petLookups = new SingleFlight<>();
+
+    private final SingleFlight<String, List<Pet>> ownerLookups = new SingleFlight<>();
 
-    public PetServiceImpl(IPetDao petDao) {
+    private final PetBatchLoader petBatchLoader;
+
+    /**
+     * Constructor reading each pet on its own.
+     *
+     * @param petDao          The store holding the pets.
+     * @param petDaoScheduler The scheduler DAO calls run on.
+     * @param petEvents       The change feed each successful write is published to.
+     */
+    public PetServiceImpl(IPetDao petDao, Scheduler petDaoScheduler, PetEventFeed petEvents) {
+        this(petDao, petDaoScheduler, petEvents, 0, 1);
+    }
+
+    /**
+     * Constructor over a blocking store.
+     *
+     * @param petDao          The store holding the pets.
+     * @param petDaoScheduler The scheduler DAO calls run on.
+     * @param petEvents       The change feed each successful write is published to.
+     * @param batchWindowMs   How long pet lookups by ID are collected into one store call, 0 to read each pet on its own.
+     * @param maxBatchSize    The number of distinct IDs that sends a batch before its window closes.
+     */
+    public PetServiceImpl(IPetDao petDao, Scheduler petDaoScheduler, PetEventFeed petEvents,
+                          long batchWindowMs, int maxBatchSize) {
+        this(new BlockingPetDaoAdapter(petDao, petDaoScheduler), petEvents, batchWindowMs, maxBatchSize);
+    }
+
+    /**
+     * Constructor with dependency injection.
+     *
+     * @param petDao        The store holding the pets.
+     * @param petEvents     The change feed each successful write is published to.
+     * @param batchWindowMs How long pet lookups by ID are collected into one store call, 0 to read each pet on its own.
+     * @param maxBatchSize  The number of distinct IDs that sends a batch before its window closes.
+     */
+    @Autowired
+    public PetServiceImpl(IReactivePetDao petDao, PetEventFeed petEvents,
+                          @Value("${pets.batch.window-ms:0}") long batchWindowMs,
+                          @Value("${pets.batch.max-size:128}") int maxBatchSize) {
         this.petDao = petDao;
+        this.petEvents = petEvents;
+        this.petBatchLoader = batchWindowMs > 0 ?
+                new PetBatchLoader(petDao, TimeUnit.MILLISECONDS.toNanos(batchWindowMs), maxBatchSize) :
+                null;
     }
 
     /**
@@ -32,8 +101,37 @@ public class PetServiceImpl implements IPetService {
     @Override
     public Flux<Pet> getPets() {
         logger.info("Fetching all pets");
-        return Mono.fromCallable(petDao::getPets)
-                .flatMapMany(Flux::fromIterable);
+        return petDao.getPets();
+    }
+
+    /**
+     * Retrieves a page of pets ordered by ID.
+     *
+     * @param afterId The ID of the last pet of the previous page, or null for the first page.
+     * @param limit   The maximum number of pets to return.
+     * @return A reactive stream (Flux) of the pets of the page.
+     */
+    @Override
+    public Flux<Pet> getPets(Integer afterId, int limit) {
+        logger.info("Fetching {} pets after ID {}", limit, afterId);
+        return petDao.getPets(afterId, limit);
+    }
+
+    /**
+     * Streams the whole catalog page by page.
+     * A page is only read from the store once the previous one has been requested downstream.
+     *
+     * @param batchSize The number of pets read from the store at once.
+     * @return A reactive stream (Flux) of all pets, in ID order.
+     */
+    @Override
+    public Flux<Pet> streamPets(int batchSize) {
+        logger.info("Streaming all pets by batches of {}", batchSize);
+        return petDao.getPets(null, batchSize).collectList()
+                .expand(page -> page.size() < batchSize ?
+                        Mono.empty() :
+                        petDao.getPets(page.get(page.size() - 1).getId(), batchSize).collectList())
+                .flatMapIterable(page -> page, 1);
     }
 
     /**
@@ -45,20 +143,21 @@ public class PetServiceImpl implements IPetService {
     @Override
     public Mono<Pet> addPet(Pet pet) {
         logger.info("Adding a new pet: {}", pet);
-        return Mono.fromCallable(() -> petDao.addPet(pet))
-                .handle((addedPet, sink) -> {
-                    if (addedPet == null) {
-                        logger.error("Pet with ID {} already exists", pet.getId());
-                        sink.error(new PetAlreadyExistsException());
-                    } else {
-                        logger.debug("Pet added successfully: {}", addedPet);
-                        sink.next(addedPet);
-                    }
-                });
+        return petDao.addPet(pet)
+                .doOnNext(addedPet -> {
+                    logger.debug("Pet added successfully: {}", addedPet);
+                    forgetLookups(addedPet.getId());
+                    petEvents.publish(PetEvent.Type.ADDED, addedPet.getId(), addedPet);
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    logger.error("Pet with ID {} already exists", pet.getId());
+                    return Mono.error(new PetAlreadyExistsException());
+                }));
     }
 
     /**
-     * Retrieves a pet by its ID.
+     * Retrieves a pet by its ID. Concurrent lookups of the same ID share one store read, and when batching is on,
+     * lookups of distinct IDs within the window share one multi-get.
      *
      * @param id The ID of the pet to retrieve.
      * @return A Mono containing the pet with the given ID.
@@ -66,19 +165,16 @@ public class PetServiceImpl implements IPetService {
     @Override
     public Mono<Pet> getPet(int id) {
         logger.info("Fetching pet with ID {}", id);
-        return Mono.fromCallable(() -> petDao.getPet(id))
-                .handle((pet, sink) -> {
-                    if (pet == null) {
-                        logger.error("No pet found with ID {}", id);
-                        sink.error(new PetNotFoundException());
-                    } else {
-                        sink.next(pet);
-                    }
-                });
+        return petLookups.run(id, () -> petBatchLoader != null ? petBatchLoader.load(id) : petDao.getPet(id))
+                .switchIfEmpty(Mono.defer(() -> {
+                    logger.error("No pet found with ID {}", id);
+                    return Mono.error(new PetNotFoundException());
+                }));
     }
 
     /**
-     * Retrieves all pets owned by a specific owner.
+     * Retrieves all pets owned by a specific owner. Concurrent lookups of the same owner, ignoring case,
+     * share one store read.
      *
      * @param owner The name of the owner.
      * @return A reactive stream (Flux) of pets owned by the specified owner.
@@ -86,13 +182,54 @@ public class PetServiceImpl implements IPetService {
     @Override
     public Flux<Pet> getPetsByOwner(String owner) {
         logger.info("Fetching pets for owner: {}", owner);
-        return Mono.fromCallable(() -> petDao.getPetsByOwner(owner))
+        if (owner == null) {
+            logger.error("No pets found for owner: null");
+            return Flux.error(new OwnerNotFoundException());
+        }
+        return ownerLookups.run(ownerKey(owner), () -> petDao.getPetsByOwner(owner).collectList())
                 .flatMapMany(pets -> pets.isEmpty() ?
                         Flux.error(new OwnerNotFoundException()) :
                         Flux.fromIterable(pets))
                 .doOnError(e -> logger.error("No pets found for owner: {}", owner));
     }
 
+    /**
+     * Finds the pets matching every criterion of a query.
+     *
+     * @param query The query criteria and page.
+     * @return A reactive stream (Flux) of the matching pets, in ID order, at most the query limit, empty if none match.
+     */
+    @Override
+    public Flux<Pet> findPets(PetQuery query) {
+        logger.info("Fetching pets matching {}", query);
+        return petDao.findPets(query);
+    }
+
+    /**
+     * Finds the pets whose name or owner is the closest to a text, tolerating typos.
+     *
+     * @param text  The searched text.
+     * @param limit The maximum number of results.
+     * @return A reactive stream (Flux) of the best matches, best first, empty if none match.
+     */
+    @Override
+    public Flux<PetSearchResult> searchPets(String text, int limit) {
+        logger.info("Searching {} pets matching '{}'", limit, text);
+        return petDao.searchPets(text, limit);
+    }
+
+    /**
+     * Retrieves the catalog aggregates.
+     *
+     * @param owners The owners whose pets are counted, or null for every owner.
+     * @return A Mono containing the number of pets, their average age and their counts by age and by owner.
+     */
+    @Override
+    public Mono<PetStats> getStats(List<String> owners) {
+        logger.info("Fetching pet statistics of owners {}", owners == null ? "all" : owners);
+        return petDao.getStats(owners);
+    }
+
     /**
      * Updates an existing pet.
      *
@@ -103,32 +240,169 @@ public class PetServiceImpl implements IPetService {
     @Override
     public Mono<Pet> updatePet(int id, Pet updatedPet) {
         logger.info("Updating pet with ID {}", id);
-        return Mono.fromCallable(() -> petDao.updatePet(id, updatedPet))
-                .handle((pet, sink) -> {
-                    if (pet == null) {
+        return petDao.updatePet(id, updatedPet)
+                .doOnNext(pet -> {
+                    logger.debug("Updated pet details: {}", pet);
+                    forgetLookups(id);
+                    petEvents.publish(PetEvent.Type.UPDATED, id, pet);
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    logger.error("No pet found with ID {}", id);
+                    return Mono.error(new PetNotFoundException());
+                }));
+    }
+
+    /**
+     * Updates an existing pet only if the stored pet matches an expected state.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet, atomically with the update.
+     * @return A Mono containing the updated pet.
+     */
+    @Override
+    public Mono<Pet> updatePet(int id, Pet updatedPet, Predicate<Pet> expected) {
+        logger.info("Updating pet with ID {} if unchanged", id);
+        return petDao.updatePet(id, updatedPet, expected)
+                .doOnNext(pet -> {
+                    logger.debug("Updated pet details: {}", pet);
+                    forgetLookups(id);
+                    petEvents.publish(PetEvent.Type.UPDATED, id, pet);
+                })
+                .doOnError(PetPreconditionFailedException.class,
+                        e -> logger.error("Pet with ID {} has been modified concurrently", id))
+                .switchIfEmpty(Mono.defer(() -> {
+                    logger.error("No pet found with ID {}", id);
+                    return Mono.error(new PetNotFoundException());
+                }));
+    }
+
+    /**
+     * Deletes a pet by its ID.
+     *
+     * @param id The ID of the pet to delete.
+     * @return An empty Mono completing once the pet is deleted, or failing with PetNotFoundException.
+     */
+    @Override
+    public Mono<Void> deletePet(int id) {
+        logger.info("Deleting pet with ID {}", id);
+        return petDao.deletePet(id)
+                .handle((removed, sink) -> {
+                    if (!removed) {
                         logger.error("No pet found with ID {}", id);
                         sink.error(new PetNotFoundException());
                     } else {
-                        logger.debug("Updated pet details: {}", pet);
-                        sink.next(pet);
+                        logger.debug("Pet with ID {} deleted successfully", id);
+                        forgetLookups(id);
+                        petEvents.publish(PetEvent.Type.DELETED, id, null);
+                        sink.complete();
                     }
-                });
+                })
+                .then();
     }
 
     /**
-     * Deletes a pet by its ID.
+     * Adds pets by batches, as they arrive.
+     * A batch is only read from the source once the previous one has been stored.
      *
-     * @param id The ID of the pet to delete.
-     * @throws PetNotFoundException If the pet is not found.
+     * @param pets      The pets to add.
+     * @param batchSize The number of pets stored at once.
+     * @return A reactive stream (Flux) with the result of each pet, in order.
      */
     @Override
-    public void deletePet(int id) throws PetNotFoundException {
-        logger.info("Deleting pet with ID {}", id);
-        boolean removed = petDao.deletePet(id);
-        if (!removed) {
-            logger.error("No pet found with ID {}", id);
-            throw new PetNotFoundException();
-        }
-        logger.debug("Pet with ID {} deleted successfully", id);
+    public Flux<PetBulkResult> addPets(Flux<Pet> pets, int batchSize) {
+        return pets.buffer(batchSize)
+                .concatMap(batch -> {
+                    logger.info("Adding a batch of {} pets", batch.size());
+                    return petDao.addPets(batch)
+                            .flatMapIterable(added -> {
+                                List<PetBulkResult> results = new ArrayList<>(batch.size());
+                                for (int i = 0; i < batch.size(); i++) {
+                                    Pet pet = added.get(i);
+                                    if (pet != null) {
+                                        forgetLookups(pet.getId());
+                                        petEvents.publish(PetEvent.Type.ADDED, pet.getId(), pet);
+                                    }
+                                    results.add(new PetBulkResult(batch.get(i).getId(), pet == null ?
+                                            PetBulkResult.Status.ALREADY_EXISTS : PetBulkResult.Status.CREATED));
+                                }
+                                return results;
+                            });
+                }, 1);
+    }
+
+    /**
+     * Adds or replaces pets by batches, as they arrive.
+     * A batch is only read from the source once the previous one has been stored.
+     *
+     * @param pets      The pets to store.
+     * @param batchSize The number of pets stored at once.
+     * @return A reactive stream (Flux) with the result of each pet, in order.
+     */
+    @Override
+    public Flux<PetBulkResult> upsertPets(Flux<Pet> pets, int batchSize) {
+        return pets.buffer(batchSize)
+                .concatMap(batch -> {
+                    logger.info("Storing a batch of {} pets", batch.size());
+                    return petDao.upsertPets(batch)
+                            .flatMapIterable(created -> {
+                                List<PetBulkResult> results = new ArrayList<>(batch.size());
+                                for (int i = 0; i < batch.size(); i++) {
+                                    Pet pet = batch.get(i);
+                                    forgetLookups(pet.getId());
+                                    petEvents.publish(created[i] ? PetEvent.Type.ADDED : PetEvent.Type.UPDATED, pet.getId(), pet);
+                                    results.add(new PetBulkResult(pet.getId(), created[i] ?
+                                            PetBulkResult.Status.CREATED : PetBulkResult.Status.UPDATED));
+                                }
+                                return results;
+                            });
+                }, 1);
+    }
+
+    /**
+     * Deletes pets by batches, as their IDs arrive.
+     * A batch is only read from the source once the previous one has been deleted.
+     *
+     * @param ids       The IDs of the pets to delete.
+     * @param batchSize The number of pets deleted at once.
+     * @return A reactive stream (Flux) with the result of each ID, in order.
+     */
+    @Override
+    public Flux<PetBulkResult> deletePets(Flux<Integer> ids, int batchSize) {
+        return ids.buffer(batchSize)
+                .concatMap(batch -> {
+                    logger.info("Deleting a batch of {} pets", batch.size());
+                    return petDao.deletePets(batch)
+                            .flatMapIterable(deleted -> {
+                                List<PetBulkResult> results = new ArrayList<>(batch.size());
+                                for (int i = 0; i < batch.size(); i++) {
+                                    if (deleted[i]) {
+                                        forgetLookups(batch.get(i));
+                                        petEvents.publish(PetEvent.Type.DELETED, batch.get(i), null);
+                                    }
+                                    results.add(new PetBulkResult(batch.get(i), deleted[i] ?
+                                            PetBulkResult.Status.DELETED : PetBulkResult.Status.NOT_FOUND));
+                                }
+                                return results;
+                            });
+                }, 1);
+    }
+
+    /**
+     * Keeps the lookups in flight before a write from answering the lookups made after it. Every owner lookup is
+     * forgotten, as the previous owner of the pet is unknown; only the lookups in flight are kept, so this is cheap.
+     *
+     * @param id The ID of the written pet.
+     */
+    private void forgetLookups(int id) {
+        petLookups.forget(id);
+        ownerLookups.forgetAll();
+    }
+
+    /**
+     * Owner lookups ignore case, so they are shared by the lowercased name.
+     */
+    private static String ownerKey(String owner) {
+        return owner.toLowerCase(Locale.ROOT);
     }
 }
@@ -0,0 +1,68 @@
+package fr.elsior.wfx.test.services;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Author: Elimane
+ *
+ * Coalesces concurrent identical lookups: while a lookup of a key is in flight, other lookups of the same key
+ * subscribe to it instead of starting their own, and all receive its result or its error.
+ * The lookup is cancelled only once every subscriber has cancelled, and forgotten once it terminates,
+ * so a later lookup reads fresh data. A write forgets the lookups it may have made stale, so the lookups
+ * following it do not join one that read the store before it.
+ *
+ * @param <K> The key type.
+ * @param <V> The result type.
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param key    The key looked up.
+     * @param lookup Creates the lookup when none is in flight for the key.
+     * @return A Mono sharing the lookup in flight for the key, or starting one on subscription.
+     */
+    Mono<V> run(K key, Supplier<Mono<V>> lookup) {
+        return Mono.defer(() -> {
+            Mono<V> running = inFlight.get(key);
+            if (running != null) {
+                return running;
+            }
+            Object[] self = new Object[1];
+            Mono<V> shared = lookup.get()
+                    .doFinally(signal -> inFlight.remove(key, self[0]))
+                    .share();
+            self[0] = shared;
+            running = inFlight.putIfAbsent(key, shared);
+            return running != null ? running : shared;
+        });
+    }
+
+    /**
+     * Lets the next lookup of a key start afresh. The subscribers of the lookup in flight still receive its result.
+     *
+     * @param key The key whose lookup may be stale.
+     */
+    void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    /**
+     * Lets the next lookup of every key start afresh, for writes whose stale keys are unknown.
+     */
+    void forgetAll() {
+        inFlight.clear();
+    }
+
+    /**
+     * @return The number of lookups in flight.
+     */
+    int size() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,121 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+
+/**
+ * Author: Elimane
+ *
+ * Exposes an {@link IPetDao} as an {@link IReactivePetDao}: each call runs on the DAO scheduler when subscribed,
+ * and a null result becomes an empty publisher.
+ */
+public final class BlockingPetDaoAdapter implements IReactivePetDao {
+
+    private final IPetDao petDao;
+
+    private final Scheduler petDaoScheduler;
+
+    /**
+     * @param petDao          The blocking store.
+     * @param petDaoScheduler The scheduler its calls run on.
+     */
+    public BlockingPetDaoAdapter(IPetDao petDao, Scheduler petDaoScheduler) {
+        this.petDao = petDao;
+        this.petDaoScheduler = petDaoScheduler;
+    }
+
+    @Override
+    public Flux<Pet> getPets() {
+        return call(petDao::getPets).flatMapIterable(pets -> pets);
+    }
+
+    @Override
+    public Flux<Pet> getPets(Integer afterId, int limit) {
+        return call(() -> petDao.getPets(afterId, limit)).flatMapIterable(pets -> pets);
+    }
+
+    @Override
+    public Mono<Pet> addPet(Pet pet) {
+        return call(() -> petDao.addPet(pet));
+    }
+
+    @Override
+    public Mono<Pet> getPet(int id) {
+        return call(() -> petDao.getPet(id));
+    }
+
+    @Override
+    public Flux<Pet> getPetsByOwner(String owner) {
+        return call(() -> petDao.getPetsByOwner(owner)).flatMapIterable(pets -> pets);
+    }
+
+    @Override
+    public Mono<Pet> updatePet(int id, Pet updatedPet) {
+        return call(() -> petDao.updatePet(id, updatedPet));
+    }
+
+    @Override
+    public Mono<Pet> updatePet(int id, Pet updatedPet, Predicate<Pet> expected) {
+        return call(() -> petDao.updatePet(id, updatedPet, expected));
+    }
+
+    @Override
+    public Mono<Boolean> deletePet(int id) {
+        return call(() -> petDao.deletePet(id));
+    }
+
+    @Override
+    public Mono<Integer> countPets() {
+        return call(petDao::countPets);
+    }
+
+    @Override
+    public Mono<Map<Integer, Pet>> getPetsById(Collection<Integer> ids) {
+        return call(() -> petDao.getPetsById(ids));
+    }
+
+    @Override
+    public Flux<Pet> findPets(PetQuery query) {
+        return call(() -> petDao.findPets(query)).flatMapIterable(pets -> pets);
+    }
+
+    @Override
+    public Flux<PetSearchResult> searchPets(String text, int limit) {
+        return call(() -> petDao.searchPets(text, limit)).flatMapIterable(results -> results);
+    }
+
+    @Override
+    public Mono<PetStats> getStats(List<String> owners) {
+        return call(() -> petDao.getStats(owners));
+    }
+
+    @Override
+    public Mono<List<Pet>> addPets(List<Pet> pets) {
+        return call(() -> petDao.addPets(pets));
+    }
+
+    @Override
+    public Mono<boolean[]> upsertPets(List<Pet> pets) {
+        return call(() -> petDao.upsertPets(pets));
+    }
+
+    @Override
+    public Mono<boolean[]> deletePets(List<Integer> ids) {
+        return call(() -> petDao.deletePets(ids));
+    }
+
+    private <T> Mono<T> call(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(petDaoScheduler);
+    }
+}
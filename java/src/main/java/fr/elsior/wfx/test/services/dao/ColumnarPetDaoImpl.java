@@ -0,0 +1,453 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
+import fr.elsior.wfx.test.services.dao.columnar.PetColumns;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Author: Elimane
+ *
+ * Columnar store, selected with {@code pets.store=columnar}.
+ * Pets are kept in {@link PetColumns}: primitive columns with a dictionary of owners and an arena of names,
+ * so the catalog holds no object per pet and the garbage collector has almost nothing to trace.
+ * A {@link Pet} is built for each pet returned, and never kept: changing it does not change the store.
+ * <p>
+ * Reads share a read lock and writes take the write lock, which a batch holds once for all its pets.
+ * A full listing takes the read lock once per page of {@link #LISTING_PAGE_SIZE} pets, so that writers are never
+ * held for the whole catalog: like the concurrent store, it may see the writes made between two pages.
+ * The catalog aggregates are kept by the writes, owner counts coming from the owner dictionary.
+ */
+@Component
+@ConditionalOnProperty(name = "pets.store", havingValue = "columnar")
+public class ColumnarPetDaoImpl implements IPetDao {
+
+    private static final Comparator<Pet> BY_ID = Comparator.comparingInt(Pet::getId);
+
+    /**
+     * The number of pets a full listing builds under one hold of the read lock.
+     */
+    static final int LISTING_PAGE_SIZE = 1024;
+
+    private final PetColumns columns;
+
+    private final Lock readLock;
+
+    private final Lock writeLock;
+
+    private final Map<Integer, Long> petsByAge = new TreeMap<>();
+
+    private long totalAge;
+
+    public ColumnarPetDaoImpl() {
+        this(16);
+    }
+
+    /**
+     * @param capacity The number of pets to hold before growing the columns.
+     */
+    ColumnarPetDaoImpl(int capacity) {
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        this.columns = new PetColumns(capacity);
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+    }
+
+    /**
+     * Initializes the store with default values.
+     * This method is called automatically after the bean is constructed.
+     */
+    @PostConstruct
+    void initPetList() {
+        addPets(DefaultPets.create());
+    }
+
+    /**
+     * Retrieves the list of all pets, page by page.
+     *
+     * @return New pets, in ID order.
+     */
+    @Override
+    public List<Pet> getPets() {
+        List<Pet> pets = new ArrayList<>(countPets());
+        List<Pet> page = getPets(null, LISTING_PAGE_SIZE);
+        pets.addAll(page);
+        while (page.size() == LISTING_PAGE_SIZE) {
+            page = getPets(page.get(page.size() - 1).getId(), LISTING_PAGE_SIZE);
+            pets.addAll(page);
+        }
+        return pets;
+    }
+
+    /**
+     * @return The number of stored pets.
+     */
+    @Override
+    public int countPets() {
+        readLock.lock();
+        try {
+            return columns.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves a page of pets ordered by ID. The cost is proportional to the page size.
+     *
+     * @param afterId The ID of the last pet of the previous page, or null for the first page.
+     * @param limit   The maximum number of pets to return.
+     * @return The pets with an ID greater than afterId, in ID order.
+     */
+    @Override
+    public List<Pet> getPets(Integer afterId, int limit) {
+        readLock.lock();
+        try {
+            List<Pet> pets = new ArrayList<>(Math.min(limit, columns.size()));
+            if (limit > 0) {
+                columns.forEachSlotAfter(afterId, slot -> {
+                    pets.add(columns.pet(slot));
+                    return pets.size() < limit;
+                });
+            }
+            return pets;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a new pet if no pet is stored under its ID.
+     *
+     * @param pet The pet to add.
+     * @return A copy of the stored pet or null if the ID is already taken.
+     */
+    @Override
+    public Pet addPet(Pet pet) {
+        writeLock.lock();
+        try {
+            return add(pet);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves a pet by its ID through the ID index.
+     *
+     * @param id The ID of the pet to retrieve.
+     * @return A new pet or null if not found.
+     */
+    @Override
+    public Pet getPet(int id) {
+        readLock.lock();
+        try {
+            int slot = columns.slotOf(id);
+            return slot < 0 ? null : columns.pet(slot);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves several pets by their IDs under one read lock, so they are consistent with each other.
+     *
+     * @param ids The IDs of the pets to retrieve.
+     * @return The pets found, by ID. Missing IDs have no entry.
+     */
+    @Override
+    public Map<Integer, Pet> getPetsById(Collection<Integer> ids) {
+        readLock.lock();
+        try {
+            Map<Integer, Pet> pets = new HashMap<>();
+            for (Integer id : ids) {
+                int slot = columns.slotOf(id);
+                if (slot >= 0) {
+                    pets.put(id, columns.pet(slot));
+                }
+            }
+            return pets;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves all pets owned by a specific owner, ignoring case, following the owner's chain of slots.
+     *
+     * @param owner The owner's name.
+     * @return The owner's pets in ID order, or an empty list if none found.
+     */
+    @Override
+    public List<Pet> getPetsByOwner(String owner) {
+        return findPets(new PetQuery(null, null, null, owner));
+    }
+
+    /**
+     * Finds the pets matching a query, following the owner's chain of slots when the query has an owner
+     * and scanning the columns otherwise. Ages are tested on their column, so only the pets in the age range
+     * are built.
+     *
+     * @param query The query criteria and page.
+     * @return The matching pets, in ID order, at most the query limit.
+     */
+    @Override
+    public List<Pet> findPets(PetQuery query) {
+        List<Pet> pets = new ArrayList<>();
+        readLock.lock();
+        try {
+            if (query.getOwner() != null) {
+                columns.forEachSlotOfOwner(query.getOwner(), slot -> collect(query, slot, pets));
+                pets.sort(BY_ID);
+                if (pets.size() > query.getLimit()) {
+                    pets.subList(query.getLimit(), pets.size()).clear();
+                }
+            } else {
+                columns.forEachSlotAfter(query.getAfterId(), slot -> {
+                    collect(query, slot, pets);
+                    return pets.size() < query.getLimit();
+                });
+            }
+        } finally {
+            readLock.unlock();
+        }
+        return pets;
+    }
+
+    /**
+     * Scores every pet, built one at a time, so only the best matches are kept in memory.
+     *
+     * @param text  The searched text.
+     * @param limit The maximum number of results.
+     * @return The best matches, best first.
+     */
+    @Override
+    public List<PetSearchResult> searchPets(String text, int limit) {
+        readLock.lock();
+        try {
+            return PetSearchIndex.scan(() -> IntStream.range(0, columns.size()).mapToObj(columns::pet).iterator(),
+                    text, limit);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the catalog aggregates, kept up to date by the writes.
+     * It takes time in the number of distinct ages and of listed owners, whatever the number of pets.
+     *
+     * @param owners The owners to list, or null for every owner.
+     * @return The catalog aggregates.
+     */
+    @Override
+    public PetStats getStats(List<String> owners) {
+        readLock.lock();
+        try {
+            Map<String, Long> petsByOwner = new TreeMap<>();
+            if (owners == null) {
+                columns.owners().forEachOwner((owner, count) -> petsByOwner.put(owner, (long) count));
+            } else {
+                for (String owner : owners) {
+                    petsByOwner.put(OwnerIndex.key(owner), columns.owners().count(owner));
+                }
+            }
+            int count = columns.size();
+            return new PetStats(count, count > 0 ? (double) totalAge / count : 0,
+                    new TreeMap<>(petsByAge), columns.owners().size(), petsByOwner);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the fields of an existing pet.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @return A copy of the updated pet or null if not found.
+     */
+    @Override
+    public Pet updatePet(int id, Pet updatedPet) {
+        writeLock.lock();
+        try {
+            int slot = columns.slotOf(id);
+            return slot < 0 ? null : set(slot, updatedPet);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the fields of an existing pet if the stored pet matches an expected state.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet before updating it.
+     * @return A copy of the updated pet or null if not found.
+     * @throws PetPreconditionFailedException If the stored pet does not match.
+     */
+    @Override
+    public Pet updatePet(int id, Pet updatedPet, Predicate<Pet> expected) throws PetPreconditionFailedException {
+        writeLock.lock();
+        try {
+            int slot = columns.slotOf(id);
+            if (slot < 0) {
+                return null;
+            }
+            if (!expected.test(columns.pet(slot))) {
+                throw new PetPreconditionFailedException();
+            }
+            return set(slot, updatedPet);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes a pet by its ID.
+     *
+     * @param id The ID of the pet to delete.
+     * @return True if the pet was deleted, false otherwise.
+     */
+    @Override
+    public boolean deletePet(int id) {
+        writeLock.lock();
+        try {
+            return remove(id);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a batch of pets under one write lock.
+     *
+     * @param pets The pets to add.
+     * @return For each pet, in order, a copy of the stored pet or null if its ID is already taken.
+     */
+    @Override
+    public List<Pet> addPets(List<Pet> pets) {
+        List<Pet> added = new ArrayList<>(pets.size());
+        writeLock.lock();
+        try {
+            for (Pet pet : pets) {
+                added.add(add(pet));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return added;
+    }
+
+    /**
+     * Stores a batch of pets under one write lock.
+     *
+     * @param pets The pets to store.
+     * @return For each pet, in order, true if it was added or false if it replaced a stored pet.
+     */
+    @Override
+    public boolean[] upsertPets(List<Pet> pets) {
+        boolean[] created = new boolean[pets.size()];
+        writeLock.lock();
+        try {
+            for (int i = 0; i < created.length; i++) {
+                Pet pet = pets.get(i);
+                int slot = columns.slotOf(pet.getId());
+                created[i] = slot < 0;
+                if (created[i]) {
+                    add(pet);
+                } else {
+                    set(slot, pet);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return created;
+    }
+
+    /**
+     * Deletes a batch of pets under one write lock.
+     *
+     * @param ids The IDs of the pets to delete.
+     * @return For each ID, in order, true if the pet was deleted or false if not found.
+     */
+    @Override
+    public boolean[] deletePets(List<Integer> ids) {
+        boolean[] deleted = new boolean[ids.size()];
+        writeLock.lock();
+        try {
+            for (int i = 0; i < deleted.length; i++) {
+                deleted[i] = remove(ids.get(i));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return deleted;
+    }
+
+    private void collect(PetQuery query, int slot, List<Pet> pets) {
+        int age = columns.age(slot);
+        if (query.getMinAge() != null && age < query.getMinAge()
+                || query.getMaxAge() != null && age > query.getMaxAge()) {
+            return;
+        }
+        Pet pet = columns.pet(slot);
+        if (query.matches(pet)) {
+            pets.add(pet);
+        }
+    }
+
+    private Pet add(Pet pet) {
+        if (columns.slotOf(pet.getId()) >= 0) {
+            return null;
+        }
+        columns.add(pet);
+        countAge(pet.getAge(), 1);
+        return copyOf(pet.getId(), pet);
+    }
+
+    private Pet set(int slot, Pet updatedPet) {
+        countAge(columns.age(slot), -1);
+        columns.set(slot, updatedPet);
+        countAge(updatedPet.getAge(), 1);
+        return copyOf(columns.id(slot), updatedPet);
+    }
+
+    private boolean remove(int id) {
+        int slot = columns.slotOf(id);
+        if (slot < 0) {
+            return false;
+        }
+        countAge(columns.age(slot), -1);
+        columns.remove(slot);
+        return true;
+    }
+
+    private void countAge(int age, int delta) {
+        totalAge += (long) age * delta;
+        petsByAge.merge(age, (long) delta, (count, more) -> count + more == 0 ? null : count + more);
+    }
+
+    private static Pet copyOf(int id, Pet pet) {
+        return new Pet(id, pet.getName(), pet.getAge(), pet.getOwner());
+    }
+}
@@ -0,0 +1,298 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+/**
+ * Author: Elimane
+ *
+ * Store backed by a concurrent map keyed on the pet ID, selected with {@code pets.store=concurrent}.
+ * Reads never lock, and writes are atomic per ID.
+ * Owner lookups, pages, queries and searches go through secondary indexes maintained under the same per ID step as the write.
+ * Batches are applied one pet at a time, so a concurrent reader may see part of a batch;
+ * the versioned store applies them all at once.
+ */
+@Component
+@ConditionalOnProperty(name = "pets.store", havingValue = "concurrent")
+public class ConcurrentPetDaoImpl implements IPetDao {
+
+    private final ConcurrentMap<Integer, Pet> datas = new ConcurrentHashMap<>();
+
+    private final OwnerIndex ownerIndex = new OwnerIndex();
+
+    private final NavigableSet<Integer> orderedIds = new ConcurrentSkipListSet<>();
+
+    private final SortedIndex<Integer> ageIndex = new SortedIndex<>();
+
+    private final SortedIndex<String> nameIndex = new SortedIndex<>();
+
+    private final PetQueryPlanner queryPlanner = new PetQueryPlanner(datas, orderedIds, ownerIndex, ageIndex, nameIndex);
+
+    private final PetSearchIndex searchIndex = new PetSearchIndex(datas, ownerIndex);
+
+    private final PetStatistics statistics = new PetStatistics();
+
+    /**
+     * Initializes the store with default values.
+     * This method is called automatically after the bean is constructed.
+     */
+    @PostConstruct
+    void initPetList() {
+        DefaultPets.create().forEach(this::addPet);
+    }
+
+    /**
+     * Retrieves the list of all pets.
+     *
+     * @return A copy of the list of all pets.
+     */
+    @Override
+    public List<Pet> getPets() {
+        return new ArrayList<>(datas.values());
+    }
+
+    /**
+     * @return The number of stored pets.
+     */
+    @Override
+    public int countPets() {
+        return datas.size();
+    }
+
+    /**
+     * Retrieves a page of pets ordered by ID.
+     * The cost is proportional to the page size.
+     *
+     * @param afterId The ID of the last pet of the previous page, or null for the first page.
+     * @param limit   The maximum number of pets to return.
+     * @return The pets with an ID greater than afterId, in ID order.
+     */
+    @Override
+    public List<Pet> getPets(Integer afterId, int limit) {
+        NavigableSet<Integer> ids = afterId == null ? orderedIds : orderedIds.tailSet(afterId, false);
+        List<Pet> pets = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<Integer> iterator = ids.iterator();
+        while (pets.size() < limit && iterator.hasNext()) {
+            Pet pet = datas.get(iterator.next());
+            if (pet != null) {
+                pets.add(pet);
+            }
+        }
+        return pets;
+    }
+
+    /**
+     * Adds a new pet if no pet is stored under its ID.
+     *
+     * @param pet The pet to add.
+     * @return The added pet or null if the ID is already taken.
+     */
+    @Override
+    public Pet addPet(Pet pet) {
+        boolean[] added = new boolean[1];
+        datas.computeIfAbsent(pet.getId(), id -> {
+            index(id, pet);
+            added[0] = true;
+            return pet;
+        });
+        return added[0] ? pet : null;
+    }
+
+    private void index(int id, Pet pet) {
+        ownerIndex.add(pet.getOwner(), id);
+        orderedIds.add(id);
+        ageIndex.add(pet.getAge(), id);
+        nameIndex.add(PetQuery.normalize(pet.getName()), id);
+        searchIndex.add(pet);
+        statistics.add(pet);
+    }
+
+    /**
+     * Retrieves a pet by its ID.
+     *
+     * @param id The ID of the pet to retrieve.
+     * @return The pet with the given ID or null if not found.
+     */
+    @Override
+    public Pet getPet(int id) {
+        return datas.get(id);
+    }
+
+    /**
+     * Retrieves all pets owned by a specific owner, ignoring case.
+     * The cost is proportional to the number of pets returned.
+     *
+     * @param owner The owner's name.
+     * @return List of pets owned by the specified owner or an empty list if none found.
+     */
+    @Override
+    public List<Pet> getPetsByOwner(String owner) {
+        String key = OwnerIndex.key(owner);
+        Set<Integer> ids = ownerIndex.get(owner);
+        List<Pet> pets = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Pet pet = datas.get(id);
+            if (pet != null && Objects.equals(key, OwnerIndex.key(pet.getOwner()))) {
+                pets.add(pet);
+            }
+        }
+        return pets;
+    }
+
+    /**
+     * Finds the pets matching a query, looked up through the most selective of the owner, age and name indexes.
+     * The cost is proportional to the number of pets matched by that index, or to the page without any criterion.
+     *
+     * @param query The query criteria and page.
+     * @return The matching pets, in ID order, at most the query limit.
+     */
+    @Override
+    public List<Pet> findPets(PetQuery query) {
+        return queryPlanner.find(query);
+    }
+
+    /**
+     * Finds the pets whose name or owner is the closest to a text, tolerating typos, through trigram indexes.
+     * The cost is proportional to the number of pets sharing the rarest trigrams of the text.
+     *
+     * @param text  The searched text.
+     * @param limit The maximum number of results.
+     * @return The best matches, best first.
+     */
+    @Override
+    public List<PetSearchResult> searchPets(String text, int limit) {
+        return searchIndex.search(text, limit);
+    }
+
+    /**
+     * Reads the catalog aggregates, maintained by each write.
+     *
+     * @param owners The owners whose pets are counted, or null for every owner.
+     * @return The catalog aggregates.
+     */
+    @Override
+    public PetStats getStats(List<String> owners) {
+        return statistics.snapshot(owners);
+    }
+
+    /**
+     * Replaces an existing pet with a new instance holding the updated details,
+     * so readers never observe a partially updated pet.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @return The updated pet or null if not found.
+     */
+    @Override
+    public Pet updatePet(int id, Pet updatedPet) {
+        return datas.computeIfPresent(id, (key, pet) -> replace(key, pet, updatedPet));
+    }
+
+    /**
+     * Replaces an existing pet if the stored pet matches an expected state, within the same per ID step.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet before updating it.
+     * @return The updated pet or null if not found.
+     * @throws PetPreconditionFailedException If the stored pet does not match.
+     */
+    @Override
+    public Pet updatePet(int id, Pet updatedPet, Predicate<Pet> expected) throws PetPreconditionFailedException {
+        boolean[] mismatch = new boolean[1];
+        Pet updated = datas.computeIfPresent(id, (key, pet) -> {
+            if (!expected.test(pet)) {
+                mismatch[0] = true;
+                return pet;
+            }
+            return replace(key, pet, updatedPet);
+        });
+        if (mismatch[0]) {
+            throw new PetPreconditionFailedException();
+        }
+        return updated;
+    }
+
+    /**
+     * Stores a batch of pets, replacing the pets already stored under their IDs.
+     * Each pet is added or replaced in one per ID step, instead of an update followed by an addition.
+     *
+     * @param pets The pets to store.
+     * @return For each pet, in order, true if it was added or false if it replaced a stored pet.
+     */
+    @Override
+    public boolean[] upsertPets(List<Pet> pets) {
+        boolean[] created = new boolean[pets.size()];
+        for (int i = 0; i < created.length; i++) {
+            Pet upserted = pets.get(i);
+            int index = i;
+            datas.compute(upserted.getId(), (key, pet) -> {
+                if (pet != null) {
+                    return replace(key, pet, upserted);
+                }
+                index(key, upserted);
+                created[index] = true;
+                return upserted;
+            });
+        }
+        return created;
+    }
+
+    private Pet replace(int key, Pet pet, Pet updatedPet) {
+        Pet updated = new Pet(key, updatedPet.getName(), updatedPet.getAge(), updatedPet.getOwner());
+        if (!Objects.equals(OwnerIndex.key(pet.getOwner()), OwnerIndex.key(updated.getOwner()))) {
+            ownerIndex.remove(pet.getOwner(), key);
+            ownerIndex.add(updated.getOwner(), key);
+        }
+        if (pet.getAge() != updated.getAge()) {
+            ageIndex.remove(pet.getAge(), key);
+            ageIndex.add(updated.getAge(), key);
+        }
+        if (!Objects.equals(PetQuery.normalize(pet.getName()), PetQuery.normalize(updated.getName()))) {
+            nameIndex.remove(PetQuery.normalize(pet.getName()), key);
+            nameIndex.add(PetQuery.normalize(updated.getName()), key);
+        }
+        searchIndex.update(pet, updated);
+        statistics.update(pet, updated);
+        return updated;
+    }
+
+    /**
+     * Deletes a pet by its ID.
+     *
+     * @param id The ID of the pet to delete.
+     * @return True if the pet was deleted, false otherwise.
+     */
+    @Override
+    public boolean deletePet(int id) {
+        boolean[] deleted = new boolean[1];
+        datas.computeIfPresent(id, (key, pet) -> {
+            ownerIndex.remove(pet.getOwner(), key);
+            orderedIds.remove(key);
+            ageIndex.remove(pet.getAge(), key);
+            nameIndex.remove(PetQuery.normalize(pet.getName()), key);
+            searchIndex.remove(pet);
+            statistics.remove(pet);
+            deleted[0] = true;
+            return null;
+        });
+        return deleted[0];
+    }
+}
@@ -0,0 +1,29 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Author: Elimane
+ */
+final class DefaultPets {
+
+    private DefaultPets() {}
+
+    /**
+     * Builds the catalog every in-memory store is seeded with on startup.
+     *
+     * @return A fresh list of the default pets.
+     */
+    static List<Pet> create() {
+        return Arrays.asList(
+                new Pet(1, "Medor", 12, "Peter"),
+                new Pet(2, "Mistigri", 5, "Jack"),
+                new Pet(3, "Pepette", 8, "Sarah"),
+                new Pet(4, "Snoopy", 21, "Sarah"),
+                new Pet(5, "Garfield", 8, "Sarah"),
+                new Pet(6, "Rex", 15, "Jack"));
+    }
+}
@@ -0,0 +1,476 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
+import fr.elsior.wfx.test.services.dao.wal.SnapshotStore;
+import fr.elsior.wfx.test.services.dao.wal.WalRecord;
+import fr.elsior.wfx.test.services.dao.wal.WriteAheadLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Author: Elimane
+ *
+ * Store surviving restarts, selected with {@code pets.store=durable}.
+ * Reads are served by an in-memory {@link ConcurrentPetDaoImpl}. Every write is appended to a write-ahead log,
+ * and only applied in memory once the log is fsynced, under the lock of its ID: readers never see a write that
+ * could be lost, and a write that fails to be logged leaves the store unchanged.
+ * A snapshot is written in the background each time a log segment fills up, and the covered segments are deleted,
+ * so startup replays at most one snapshot and one segment worth of records.
+ * <p>
+ * Writes block on the disk, so this store never runs on the event loop: see {@code SchedulerConfig}.
+ */
+@Component
+@ConditionalOnProperty(name = "pets.store", havingValue = "durable")
+public class DurablePetDaoImpl implements IPetDao {
+
+    private static final Logger logger = LoggerFactory.getLogger(DurablePetDaoImpl.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentPetDaoImpl memory = new ConcurrentPetDaoImpl();
+
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+
+    private final Path directory;
+
+    private final int batchSize;
+
+    private final boolean fsync;
+
+    private final int snapshotEvery;
+
+    private final SnapshotStore snapshots;
+
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pet-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WriteAheadLog wal;
+
+    /**
+     * Constructor with dependency injection.
+     *
+     * @param directory     The directory holding the log segments and snapshots.
+     * @param batchSize     The maximum number of writes committed by a single fsync.
+     * @param fsync         Whether commits are forced to the storage device.
+     * @param snapshotEvery The number of writes per log segment, a snapshot is taken when a segment is full.
+     */
+    public DurablePetDaoImpl(@Value("${pets.durable.dir:data}") String directory,
+                             @Value("${pets.durable.batch-size:256}") int batchSize,
+                             @Value("${pets.durable.fsync:true}") boolean fsync,
+                             @Value("${pets.durable.snapshot-every:100000}") int snapshotEvery) {
+        this.directory = Paths.get(directory);
+        this.batchSize = batchSize;
+        this.fsync = fsync;
+        this.snapshotEvery = snapshotEvery;
+        this.snapshots = new SnapshotStore(this.directory);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Restores the catalog from the latest snapshot and the log tail, or seeds the default pets on a first start.
+     * This method is called automatically after the bean is constructed.
+     *
+     * @throws IOException If the data directory cannot be read.
+     */
+    @PostConstruct
+    void open() throws IOException {
+        long start = System.nanoTime();
+        SnapshotStore.Snapshot snapshot = snapshots.readLatest();
+        long snapshotLsn = snapshot == null ? 0 : snapshot.getLsn();
+        if (snapshot != null) {
+            snapshot.getPets().forEach(memory::addPet);
+        }
+        int[] replayed = new int[1];
+        long lastLsn = WriteAheadLog.replay(directory, snapshotLsn, record -> {
+            apply(record);
+            replayed[0]++;
+        });
+        wal = new WriteAheadLog(directory, lastLsn, batchSize, fsync, snapshotEvery, this::scheduleSnapshot);
+        logger.info("Recovered {} pets from {} ({} snapshot pets, {} log records) in {} ms",
+                memory.getPets().size(), directory, snapshot == null ? 0 : snapshot.getPets().size(),
+                replayed[0], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        if (snapshot == null && lastLsn == 0) {
+            DefaultPets.create().forEach(this::addPet);
+        }
+    }
+
+    /**
+     * Flushes the log and writes a final snapshot, so the next startup has nothing to replay.
+     * This method is called automatically before the bean is destroyed.
+     *
+     * @throws IOException If the log cannot be closed.
+     */
+    @PreDestroy
+    void close() throws IOException {
+        wal.close();
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        takeSnapshot();
+    }
+
+    @Override
+    public List<Pet> getPets() {
+        return memory.getPets();
+    }
+
+    @Override
+    public int countPets() {
+        return memory.countPets();
+    }
+
+    @Override
+    public List<Pet> getPets(Integer afterId, int limit) {
+        return memory.getPets(afterId, limit);
+    }
+
+    @Override
+    public Pet getPet(int id) {
+        return memory.getPet(id);
+    }
+
+    @Override
+    public List<Pet> getPetsByOwner(String owner) {
+        return memory.getPetsByOwner(owner);
+    }
+
+    @Override
+    public List<Pet> findPets(PetQuery query) {
+        return memory.findPets(query);
+    }
+
+    @Override
+    public List<PetSearchResult> searchPets(String text, int limit) {
+        return memory.searchPets(text, limit);
+    }
+
+    @Override
+    public PetStats getStats(List<String> owners) {
+        return memory.getStats(owners);
+    }
+
+    /**
+     * Adds a new pet once the addition is durable.
+     *
+     * @param pet The pet to add.
+     * @return The added pet or null if the ID is already taken.
+     */
+    @Override
+    public Pet addPet(Pet pet) {
+        Lock lock = lockFor(pet.getId());
+        lock.lock();
+        try {
+            if (memory.getPet(pet.getId()) != null) {
+                return null;
+            }
+            awaitDurable(wal.appendPut(pet));
+            return memory.addPet(pet);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Updates an existing pet once the update is durable.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @return The updated pet or null if not found.
+     */
+    @Override
+    public Pet updatePet(int id, Pet updatedPet) {
+        Lock lock = lockFor(id);
+        lock.lock();
+        try {
+            if (memory.getPet(id) == null) {
+                return null;
+            }
+            return put(new Pet(id, updatedPet.getName(), updatedPet.getAge(), updatedPet.getOwner()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Updates an existing pet if the stored pet matches an expected state, once the update is durable.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet before updating it.
+     * @return The updated pet or null if not found.
+     * @throws PetPreconditionFailedException If the stored pet does not match.
+     */
+    @Override
+    public Pet updatePet(int id, Pet updatedPet, Predicate<Pet> expected) throws PetPreconditionFailedException {
+        Lock lock = lockFor(id);
+        lock.lock();
+        try {
+            Pet stored = memory.getPet(id);
+            if (stored == null) {
+                return null;
+            }
+            if (!expected.test(stored)) {
+                throw new PetPreconditionFailedException();
+            }
+            return put(new Pet(id, updatedPet.getName(), updatedPet.getAge(), updatedPet.getOwner()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes a pet once the deletion is durable.
+     *
+     * @param id The ID of the pet to delete.
+     * @return True if the pet was deleted, false otherwise.
+     */
+    @Override
+    public boolean deletePet(int id) {
+        Lock lock = lockFor(id);
+        lock.lock();
+        try {
+            if (memory.getPet(id) == null) {
+                return false;
+            }
+            awaitDurable(wal.appendDelete(id));
+            return memory.deletePet(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a batch of pets once the whole batch is durable, usually a single group commit.
+     * A pet too long to be logged rejects the whole batch before any record is queued.
+     *
+     * @param pets The pets to add.
+     * @return For each pet, in order, the added pet or null if its ID is already taken.
+     */
+    @Override
+    public List<Pet> addPets(List<Pet> pets) {
+        List<Lock> locked = lockAll(pets.stream().map(Pet::getId).collect(Collectors.toList()));
+        try {
+            pets.forEach(wal::checkPut);
+            List<Pet> added = new ArrayList<>(pets.size());
+            Set<Integer> ids = new HashSet<>();
+            List<WalWrite> writes = new ArrayList<>(pets.size());
+            for (Pet pet : pets) {
+                if (memory.getPet(pet.getId()) != null || !ids.add(pet.getId())) {
+                    added.add(null);
+                    continue;
+                }
+                writes.add(new WalWrite(wal.appendPut(pet), () -> memory.addPet(pet)));
+                added.add(pet);
+            }
+            awaitDurable(writes);
+            return added;
+        } finally {
+            locked.forEach(Lock::unlock);
+        }
+    }
+
+    /**
+     * Stores a batch of pets once the whole batch is durable, usually a single group commit.
+     * A pet too long to be logged rejects the whole batch before any record is queued.
+     *
+     * @param pets The pets to store.
+     * @return For each pet, in order, true if it was added or false if it replaced a stored pet.
+     */
+    @Override
+    public boolean[] upsertPets(List<Pet> pets) {
+        List<Lock> locked = lockAll(pets.stream().map(Pet::getId).collect(Collectors.toList()));
+        try {
+            pets.forEach(wal::checkPut);
+            boolean[] created = new boolean[pets.size()];
+            Set<Integer> ids = new HashSet<>();
+            List<WalWrite> writes = new ArrayList<>(pets.size());
+            for (int i = 0; i < created.length; i++) {
+                Pet pet = pets.get(i);
+                created[i] = memory.getPet(pet.getId()) == null && ids.add(pet.getId());
+                writes.add(new WalWrite(wal.appendPut(pet), () -> apply(WalRecord.Type.PUT, pet.getId(), pet)));
+            }
+            awaitDurable(writes);
+            return created;
+        } finally {
+            locked.forEach(Lock::unlock);
+        }
+    }
+
+    /**
+     * Deletes a batch of pets once the whole batch is durable, usually a single group commit.
+     *
+     * @param ids The IDs of the pets to delete.
+     * @return For each ID, in order, true if the pet was deleted or false if not found.
+     */
+    @Override
+    public boolean[] deletePets(List<Integer> ids) {
+        List<Lock> locked = lockAll(ids);
+        try {
+            boolean[] deleted = new boolean[ids.size()];
+            Set<Integer> deletedIds = new HashSet<>();
+            List<WalWrite> writes = new ArrayList<>(ids.size());
+            for (int i = 0; i < deleted.length; i++) {
+                int id = ids.get(i);
+                if (memory.getPet(id) != null && deletedIds.add(id)) {
+                    writes.add(new WalWrite(wal.appendDelete(id), () -> memory.deletePet(id)));
+                    deleted[i] = true;
+                }
+            }
+            awaitDurable(writes);
+            return deleted;
+        } finally {
+            locked.forEach(Lock::unlock);
+        }
+    }
+
+    /**
+     * Stores a pet once it is durable. The caller holds the lock of its ID.
+     */
+    private Pet put(Pet pet) {
+        awaitDurable(wal.appendPut(pet));
+        apply(WalRecord.Type.PUT, pet.getId(), pet);
+        return memory.getPet(pet.getId());
+    }
+
+    /**
+     * Applies a replayed record, whatever the current state of the pet.
+     */
+    private void apply(WalRecord record) {
+        apply(record.getType(), record.getId(), record.getPet());
+    }
+
+    private void apply(WalRecord.Type type, int id, Pet pet) {
+        if (type == WalRecord.Type.DELETE) {
+            memory.deletePet(id);
+        } else if (memory.updatePet(id, pet) == null) {
+            memory.addPet(pet);
+        }
+    }
+
+    private void scheduleSnapshot() {
+        snapshotExecutor.execute(this::takeSnapshot);
+    }
+
+    /**
+     * Writes a snapshot of the catalog, then deletes the log segments it covers.
+     * The LSN is read under every lock, when each logged mutation up to it has been applied in memory,
+     * and before copying the catalog: the copy holds at least every mutation up to it,
+     * and replaying the later records on top of it is idempotent.
+     */
+    private void takeSnapshot() {
+        long lsn;
+        List<Lock> locked = lockAll(null);
+        try {
+            lsn = wal.lastLsn();
+        } finally {
+            locked.forEach(Lock::unlock);
+        }
+        try {
+            snapshots.write(lsn, memory.getPets());
+            wal.deleteSegmentsCoveredBy(lsn);
+        } catch (IOException e) {
+            logger.error("Cannot write pet snapshot at LSN {}", lsn, e);
+        }
+    }
+
+    private Lock lockFor(int id) {
+        return locks[Math.floorMod(id, LOCK_STRIPES)];
+    }
+
+    /**
+     * Takes the locks of the given IDs, or every lock if null, in stripe order so that batches never deadlock.
+     *
+     * @return The locks taken.
+     */
+    private List<Lock> lockAll(List<Integer> ids) {
+        SortedSet<Integer> stripes = new TreeSet<>();
+        if (ids == null) {
+            IntStream.range(0, LOCK_STRIPES).forEach(stripes::add);
+        } else {
+            ids.forEach(id -> stripes.add(Math.floorMod(id, LOCK_STRIPES)));
+        }
+        List<Lock> locked = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+            locked.add(locks[stripe]);
+        }
+        return locked;
+    }
+
+    private static void awaitDurable(CompletableFuture<Void> durable) {
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for a batch of records, then applies in memory those that are durable, failed or not.
+     */
+    private static void awaitDurable(List<WalWrite> writes) {
+        try {
+            awaitDurable(CompletableFuture.allOf(writes.stream().map(write -> write.durable)
+                    .toArray(CompletableFuture[]::new)));
+        } finally {
+            writes.stream().filter(write -> !write.durable.isCompletedExceptionally()).forEach(write -> write.apply.run());
+        }
+    }
+
+    /**
+     * A logged record, and how to apply it in memory once it is durable.
+     */
+    private static final class WalWrite {
+
+        private final CompletableFuture<Void> durable;
+
+        private final Runnable apply;
+
+        private WalWrite(CompletableFuture<Void> durable, Runnable apply) {
+            this.durable = durable;
+            this.apply = apply;
+        }
+    }
+}
@@ -3,9 +3,19 @@ package fr.elsior.wfx.test.services.dao;
 import fr.elsior.wfx.test.exceptions.OwnerNotFoundException;
 import fr.elsior.wfx.test.exceptions.PetAlreadyExistsException;
 import fr.elsior.wfx.test.exceptions.PetNotFoundException;
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
 import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 /**
  * Author: Elimane
@@ -13,6 +23,8 @@ import java.util.List;
 public interface IPetDao {
     List<Pet> getPets();
 
+    List<Pet> getPets(Integer afterId, int limit);
+
     Pet addPet(Pet pet) throws PetAlreadyExistsException;
 
     Pet getPet(int id) throws PetNotFoundException;
@@ -21,5 +33,131 @@ public interface IPetDao {
 
     Pet updatePet(int id, Pet updatedPet) throws PetNotFoundException;
 
+    /**
+     * Updates an existing pet only if the stored pet matches an expected state, atomically with the update.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet before updating it.
+     * @return The updated pet or null if not found.
+     * @throws PetPreconditionFailedException If the stored pet does not match.
+     */
+    Pet updatePet(int id, Pet updatedPet, Predicate<Pet> expected) throws PetNotFoundException, PetPreconditionFailedException;
+
     boolean deletePet(int id) throws PetNotFoundException;
+
+    /**
+     * Retrieves several pets by their IDs in one call. The default reads each pet in turn,
+     * stores may read them all at once.
+     *
+     * @param ids The IDs of the pets to retrieve.
+     * @return The pets found, by ID. Missing IDs have no entry.
+     */
+    default Map<Integer, Pet> getPetsById(Collection<Integer> ids) throws PetNotFoundException {
+        Map<Integer, Pet> pets = new HashMap<>();
+        for (Integer id : ids) {
+            Pet pet = getPet(id);
+            if (pet != null) {
+                pets.put(id, pet);
+            }
+        }
+        return pets;
+    }
+
+    /**
+     * @return The number of stored pets. The default copies the catalog, stores should override it.
+     */
+    default int countPets() {
+        return getPets().size();
+    }
+
+    /**
+     * Finds the pets matching every criterion of a query. The default scans the catalog, stores may use indexes.
+     *
+     * @param query The query criteria and page.
+     * @return The matching pets, in ID order, at most the query limit.
+     */
+    default List<Pet> findPets(PetQuery query) {
+        List<Pet> pets = new ArrayList<>();
+        for (Pet pet : getPets()) {
+            if (query.matches(pet)) {
+                pets.add(pet);
+            }
+        }
+        pets.sort(Comparator.comparingInt(Pet::getId));
+        return pets.size() > query.getLimit() ? new ArrayList<>(pets.subList(0, query.getLimit())) : pets;
+    }
+
+    /**
+     * Finds the pets whose name or owner is the closest to a text, tolerating typos.
+     * The default scores every pet, stores may use indexes.
+     *
+     * @param text  The searched text.
+     * @param limit The maximum number of results.
+     * @return The pets whose trigram similarity reaches 0.3, best first.
+     */
+    default List<PetSearchResult> searchPets(String text, int limit) {
+        return PetSearchIndex.scan(getPets(), text, limit);
+    }
+
+    /**
+     * Reads the number of pets, their average age and the number of pets of each age and of some owners.
+     * The default aggregates the catalog, stores may keep the aggregates up to date on each write.
+     *
+     * @param owners The owners whose pets are counted, or null for every owner.
+     * @return The catalog aggregates.
+     */
+    default PetStats getStats(List<String> owners) {
+        return PetStatistics.of(getPets(), owners);
+    }
+
+    /**
+     * Adds a batch of pets. Stores may apply the whole batch at once, the default adds each pet in turn.
+     *
+     * @param pets The pets to add.
+     * @return For each pet, in order, the added pet or null if its ID is already taken.
+     */
+    default List<Pet> addPets(List<Pet> pets) throws PetAlreadyExistsException {
+        List<Pet> added = new ArrayList<>(pets.size());
+        for (Pet pet : pets) {
+            added.add(addPet(pet));
+        }
+        return added;
+    }
+
+    /**
+     * Stores a batch of pets, replacing the pets already stored under their IDs.
+     * Stores may apply the whole batch at once, the default stores each pet in turn.
+     *
+     * @param pets The pets to store.
+     * @return For each pet, in order, true if it was added or false if it replaced a stored pet.
+     */
+    default boolean[] upsertPets(List<Pet> pets) throws PetNotFoundException, PetAlreadyExistsException {
+        boolean[] created = new boolean[pets.size()];
+        for (int i = 0; i < created.length; i++) {
+            Pet pet = pets.get(i);
+            // Retry when the pet is added or deleted concurrently between both calls
+            while (updatePet(pet.getId(), pet) == null) {
+                if (addPet(pet) != null) {
+                    created[i] = true;
+                    break;
+                }
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Deletes a batch of pets. Stores may apply the whole batch at once, the default deletes each pet in turn.
+     *
+     * @param ids The IDs of the pets to delete.
+     * @return For each ID, in order, true if the pet was deleted or false if not found.
+     */
+    default boolean[] deletePets(List<Integer> ids) throws PetNotFoundException {
+        boolean[] deleted = new boolean[ids.size()];
+        for (int i = 0; i < deleted.length; i++) {
+            deleted[i] = deletePet(ids.get(i));
+        }
+        return deleted;
+    }
 }
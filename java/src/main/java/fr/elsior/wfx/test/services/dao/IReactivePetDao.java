@@ -0,0 +1,126 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Author: Elimane
+ *
+ * Non-blocking counterpart of {@link IPetDao}: results are published instead of returned, so a store can serve them
+ * without holding a thread while it waits. Not found results are empty publishers instead of null,
+ * and nothing is read before subscription.
+ */
+public interface IReactivePetDao {
+
+    /**
+     * @return All pets, emitted as the subscriber requests them.
+     */
+    Flux<Pet> getPets();
+
+    /**
+     * @param afterId The ID of the last pet of the previous page, or null for the first page.
+     * @param limit   The maximum number of pets to emit.
+     * @return A page of pets ordered by ID.
+     */
+    Flux<Pet> getPets(Integer afterId, int limit);
+
+    /**
+     * @param pet The pet to add.
+     * @return The added pet, or empty if its ID is already taken.
+     */
+    Mono<Pet> addPet(Pet pet);
+
+    /**
+     * @param id The ID of the pet.
+     * @return The pet, or empty if not found.
+     */
+    Mono<Pet> getPet(int id);
+
+    /**
+     * @param owner The owner's name, compared ignoring case.
+     * @return The pets of the owner, empty if the owner is unknown.
+     */
+    Flux<Pet> getPetsByOwner(String owner);
+
+    /**
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @return The updated pet, or empty if not found.
+     */
+    Mono<Pet> updatePet(int id, Pet updatedPet);
+
+    /**
+     * Updates an existing pet only if the stored pet matches an expected state, atomically with the update.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet before updating it.
+     * @return The updated pet, empty if not found, or an error {@link PetPreconditionFailedException}
+     * if the stored pet does not match.
+     */
+    Mono<Pet> updatePet(int id, Pet updatedPet, Predicate<Pet> expected);
+
+    /**
+     * @param id The ID of the pet to delete.
+     * @return True if the pet was deleted or false if not found.
+     */
+    Mono<Boolean> deletePet(int id);
+
+    /**
+     * @return The number of stored pets.
+     */
+    Mono<Integer> countPets();
+
+    /**
+     * @param ids The IDs of the pets to retrieve.
+     * @return The pets found, by ID. Missing IDs have no entry.
+     */
+    Mono<Map<Integer, Pet>> getPetsById(Collection<Integer> ids);
+
+    /**
+     * @param query The query criteria and page.
+     * @return The pets matching every criterion, in ID order, at most the query limit.
+     */
+    Flux<Pet> findPets(PetQuery query);
+
+    /**
+     * @param text  The searched text.
+     * @param limit The maximum number of results.
+     * @return The pets whose name or owner is the closest to the text, best first.
+     */
+    Flux<PetSearchResult> searchPets(String text, int limit);
+
+    /**
+     * @param owners The owners whose pets are counted, or null for every owner.
+     * @return The catalog aggregates.
+     */
+    Mono<PetStats> getStats(List<String> owners);
+
+    /**
+     * @param pets The pets to add.
+     * @return For each pet, in order, the added pet or null if its ID is already taken.
+     */
+    Mono<List<Pet>> addPets(List<Pet> pets);
+
+    /**
+     * @param pets The pets to store.
+     * @return For each pet, in order, true if it was added or false if it replaced a stored pet.
+     */
+    Mono<boolean[]> upsertPets(List<Pet> pets);
+
+    /**
+     * @param ids The IDs of the pets to delete.
+     * @return For each ID, in order, true if the pet was deleted or false if not found.
+     */
+    Mono<boolean[]> deletePets(List<Integer> ids);
+}
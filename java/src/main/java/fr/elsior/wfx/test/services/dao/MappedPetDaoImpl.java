@@ -0,0 +1,301 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.services.dao.mapped.MappedPetCatalog;
+import fr.elsior.wfx.test.services.dao.mapped.PetCatalogFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Author: Elimane
+ *
+ * Store reading the catalog in place from a memory-mapped {@link PetCatalogFile}, selected with {@code pets.store=mapped}.
+ * Startup only maps the file, so the first request is served without loading the catalog,
+ * and pets are only built when they are returned.
+ * <p>
+ * Writes go to an in-memory overlay keyed on the pet ID, where a deletion is kept as a tombstone,
+ * and the catalog file is rewritten with the overlay merged when the store is closed.
+ * Writes since the last clean shutdown are lost on a crash: use the durable store when they must survive one.
+ */
+@Component
+@ConditionalOnProperty(name = "pets.store", havingValue = "mapped")
+public class MappedPetDaoImpl implements IPetDao {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedPetDaoImpl.class);
+
+    /**
+     * Overlay value of a deleted pet, compared by identity.
+     */
+    private static final Pet DELETED = new Pet();
+
+    private final Path file;
+
+    private final ConcurrentMap<Integer, Pet> overlay = new ConcurrentHashMap<>();
+
+    private final OwnerIndex ownerIndex = new OwnerIndex();
+
+    private final NavigableSet<Integer> overlayIds = new ConcurrentSkipListSet<>();
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    private MappedPetCatalog catalog;
+
+    /**
+     * Constructor with dependency injection.
+     *
+     * @param file The catalog file.
+     */
+    public MappedPetDaoImpl(@Value("${pets.mapped.file:data/pets.catalog}") String file) {
+        this.file = Paths.get(file);
+    }
+
+    /**
+     * Maps the catalog file, writing one with the default pets on a first start.
+     * This method is called automatically after the bean is constructed.
+     *
+     * @throws IOException If the file cannot be mapped.
+     */
+    @PostConstruct
+    void open() throws IOException {
+        long start = System.nanoTime();
+        if (!Files.exists(file)) {
+            PetCatalogFile.write(file, DefaultPets.create());
+        }
+        catalog = MappedPetCatalog.open(file);
+        count.set(catalog.size());
+        logger.info("Mapped {} pets from {} in {} ms",
+                catalog.size(), file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Rewrites the catalog file with the overlay merged, if anything was written.
+     * This method is called automatically before the bean is destroyed.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    @PreDestroy
+    void close() throws IOException {
+        if (!overlay.isEmpty()) {
+            PetCatalogFile.write(file, getPets());
+        }
+    }
+
+    /**
+     * Retrieves the list of all pets.
+     *
+     * @return A copy of the list of all pets, in ID order.
+     */
+    @Override
+    public List<Pet> getPets() {
+        return getPets(null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return The number of stored pets, kept up to date by the writes.
+     */
+    @Override
+    public int countPets() {
+        return count.get();
+    }
+
+    /**
+     * Retrieves a page of pets ordered by ID, merging the mapped catalog with the overlay.
+     * The cost is proportional to the page size.
+     *
+     * @param afterId The ID of the last pet of the previous page, or null for the first page.
+     * @param limit   The maximum number of pets to return.
+     * @return The pets with an ID greater than afterId, in ID order.
+     */
+    @Override
+    public List<Pet> getPets(Integer afterId, int limit) {
+        List<Pet> pets = new ArrayList<>(Math.min(limit, 1024));
+        int slot = catalog.firstSlotAfter(afterId);
+        Iterator<Integer> written = (afterId == null ? overlayIds : overlayIds.tailSet(afterId, false)).iterator();
+        Integer nextWritten = written.hasNext() ? written.next() : null;
+        while (pets.size() < limit && (slot < catalog.size() || nextWritten != null)) {
+            if (nextWritten != null && (slot == catalog.size() || nextWritten <= catalog.id(slot))) {
+                if (slot < catalog.size() && nextWritten == catalog.id(slot)) {
+                    slot++;
+                }
+                Pet pet = overlay.get(nextWritten);
+                if (pet != null && pet != DELETED) {
+                    pets.add(pet);
+                }
+                nextWritten = written.hasNext() ? written.next() : null;
+            } else {
+                pets.add(catalog.pet(slot++));
+            }
+        }
+        return pets;
+    }
+
+    /**
+     * Adds a new pet if no pet is stored under its ID.
+     *
+     * @param pet The pet to add.
+     * @return The added pet or null if the ID is already taken.
+     */
+    @Override
+    public Pet addPet(Pet pet) {
+        boolean[] added = new boolean[1];
+        overlay.compute(pet.getId(), (id, current) -> {
+            if (stored(id, current) != null) {
+                return current;
+            }
+            ownerIndex.add(pet.getOwner(), id);
+            overlayIds.add(id);
+            count.incrementAndGet();
+            added[0] = true;
+            return pet;
+        });
+        return added[0] ? pet : null;
+    }
+
+    /**
+     * Retrieves a pet by its ID, from the overlay or by binary search in the mapped catalog.
+     *
+     * @param id The ID of the pet to retrieve.
+     * @return The pet with the given ID or null if not found.
+     */
+    @Override
+    public Pet getPet(int id) {
+        return stored(id, overlay.get(id));
+    }
+
+    /**
+     * Retrieves all pets owned by a specific owner, ignoring case.
+     * The cost is proportional to the number of pets returned.
+     *
+     * @param owner The owner's name.
+     * @return List of pets owned by the specified owner or an empty list if none found.
+     */
+    @Override
+    public List<Pet> getPetsByOwner(String owner) {
+        String key = OwnerIndex.key(owner);
+        List<Pet> pets = new ArrayList<>();
+        catalog.forEachSlotOfOwner(owner, slot -> {
+            if (!overlay.containsKey(catalog.id(slot))) {
+                pets.add(catalog.pet(slot));
+            }
+        });
+        for (Integer id : ownerIndex.get(owner)) {
+            Pet pet = overlay.get(id);
+            if (pet != null && pet != DELETED && Objects.equals(key, OwnerIndex.key(pet.getOwner()))) {
+                pets.add(pet);
+            }
+        }
+        return pets;
+    }
+
+    /**
+     * Stores a new instance holding the updated details in the overlay.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @return The updated pet or null if not found.
+     */
+    @Override
+    public Pet updatePet(int id, Pet updatedPet) {
+        return update(id, updatedPet, pet -> true, new boolean[1]);
+    }
+
+    /**
+     * Stores a new instance holding the updated details in the overlay if the stored pet matches an expected state.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet before updating it.
+     * @return The updated pet or null if not found.
+     * @throws PetPreconditionFailedException If the stored pet does not match.
+     */
+    @Override
+    public Pet updatePet(int id, Pet updatedPet, Predicate<Pet> expected) throws PetPreconditionFailedException {
+        boolean[] mismatch = new boolean[1];
+        Pet updated = update(id, updatedPet, expected, mismatch);
+        if (mismatch[0]) {
+            throw new PetPreconditionFailedException();
+        }
+        return updated;
+    }
+
+    private Pet update(int id, Pet updatedPet, Predicate<Pet> expected, boolean[] mismatch) {
+        Pet[] updated = new Pet[1];
+        overlay.compute(id, (key, current) -> {
+            Pet pet = stored(key, current);
+            if (pet == null) {
+                return current;
+            }
+            if (!expected.test(pet)) {
+                mismatch[0] = true;
+                return current;
+            }
+            updated[0] = new Pet(key, updatedPet.getName(), updatedPet.getAge(), updatedPet.getOwner());
+            if (current != null) {
+                ownerIndex.remove(current.getOwner(), key);
+            }
+            ownerIndex.add(updated[0].getOwner(), key);
+            overlayIds.add(key);
+            return updated[0];
+        });
+        return updated[0];
+    }
+
+    /**
+     * Deletes a pet by its ID, leaving a tombstone in the overlay.
+     *
+     * @param id The ID of the pet to delete.
+     * @return True if the pet was deleted, false otherwise.
+     */
+    @Override
+    public boolean deletePet(int id) {
+        boolean[] deleted = new boolean[1];
+        overlay.compute(id, (key, current) -> {
+            if (stored(key, current) == null) {
+                return current;
+            }
+            if (current != null) {
+                ownerIndex.remove(current.getOwner(), key);
+            }
+            overlayIds.add(key);
+            count.decrementAndGet();
+            deleted[0] = true;
+            return DELETED;
+        });
+        return deleted[0];
+    }
+
+    /**
+     * @param id      The ID of the pet.
+     * @param written The overlay value for that ID, or null if it was never written.
+     * @return The pet currently stored under the ID, or null if there is none.
+     */
+    private Pet stored(int id, Pet written) {
+        if (written != null) {
+            return written == DELETED ? null : written;
+        }
+        int slot = catalog.slotOf(id);
+        return slot < 0 ? null : catalog.pet(slot);
+    }
+}
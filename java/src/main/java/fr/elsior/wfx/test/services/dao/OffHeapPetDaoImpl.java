@@ -0,0 +1,480 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
+import fr.elsior.wfx.test.services.dao.offheap.OffHeapPetCatalog;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Author: Elimane
+ *
+ * Off-heap store, selected with {@code pets.store=offheap}.
+ * Pets are kept in an {@link OffHeapPetCatalog}: fixed records in direct memory, with free-list reuse of their
+ * slots and off-heap indexes by ID and by owner, so a growing catalog adds nothing for the garbage collector to
+ * trace or to promote. A {@link Pet} is built for each pet returned, and never kept: changing it does not change
+ * the store. {@link #writePets} writes pets as JSON from their records, without building them.
+ * <p>
+ * Reads share a read lock and writes take the write lock, which a batch holds once for all its pets.
+ * A full listing takes the read lock once per page of {@link #LISTING_PAGE_SIZE} pets, so that writers are never
+ * held for the whole catalog: like the concurrent store, it may see the writes made between two pages.
+ * The age aggregates are kept on the heap by the writes, one entry per distinct age, and the owner counts
+ * by the owner index.
+ */
+@Component
+@ConditionalOnProperty(name = "pets.store", havingValue = "offheap")
+public class OffHeapPetDaoImpl implements IPetDao {
+
+    private static final Comparator<Pet> BY_ID = Comparator.comparingInt(Pet::getId);
+
+    /**
+     * The number of pets a full listing builds under one hold of the read lock.
+     */
+    static final int LISTING_PAGE_SIZE = 1024;
+
+    private final OffHeapPetCatalog catalog;
+
+    private final Lock readLock;
+
+    private final Lock writeLock;
+
+    private final Map<Integer, Long> petsByAge = new TreeMap<>();
+
+    private long totalAge;
+
+    public OffHeapPetDaoImpl() {
+        this(16);
+    }
+
+    /**
+     * @param capacity The number of pets to hold before growing the ID index.
+     */
+    OffHeapPetDaoImpl(int capacity) {
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        this.catalog = new OffHeapPetCatalog(capacity);
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+    }
+
+    /**
+     * Initializes the store with default values.
+     * This method is called automatically after the bean is constructed.
+     */
+    @PostConstruct
+    void initPetList() {
+        addPets(DefaultPets.create());
+    }
+
+    /**
+     * Retrieves the list of all pets, page by page.
+     *
+     * @return New pets, in ID order.
+     */
+    @Override
+    public List<Pet> getPets() {
+        List<Pet> pets = new ArrayList<>(countPets());
+        List<Pet> page = getPets(null, LISTING_PAGE_SIZE);
+        pets.addAll(page);
+        while (page.size() == LISTING_PAGE_SIZE) {
+            page = getPets(page.get(page.size() - 1).getId(), LISTING_PAGE_SIZE);
+            pets.addAll(page);
+        }
+        return pets;
+    }
+
+    /**
+     * @return The number of stored pets.
+     */
+    @Override
+    public int countPets() {
+        readLock.lock();
+        try {
+            return catalog.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves a page of pets ordered by ID. The cost is proportional to the page size.
+     *
+     * @param afterId The ID of the last pet of the previous page, or null for the first page.
+     * @param limit   The maximum number of pets to return.
+     * @return The pets with an ID greater than afterId, in ID order.
+     */
+    @Override
+    public List<Pet> getPets(Integer afterId, int limit) {
+        readLock.lock();
+        try {
+            List<Pet> pets = new ArrayList<>(Math.min(limit, catalog.size()));
+            if (limit > 0) {
+                catalog.forEachSlotAfter(afterId, slot -> {
+                    pets.add(catalog.pet(slot));
+                    return pets.size() < limit;
+                });
+            }
+            return pets;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Writes a page of pets ordered by ID as newline delimited JSON, straight from their records.
+     *
+     * @param afterId The ID of the last pet of the previous page, or null for the first page.
+     * @param limit   The maximum number of pets to write.
+     * @param buffer  The buffer to write to.
+     * @return The ID of the last pet written if the page is full, or null if no pet is left after the page.
+     */
+    public Integer writePets(Integer afterId, int limit, DataBuffer buffer) {
+        int[] written = {0, 0};
+        readLock.lock();
+        try {
+            if (limit > 0) {
+                catalog.forEachSlotAfter(afterId, slot -> {
+                    catalog.writeJson(slot, buffer);
+                    buffer.write((byte) '\n');
+                    written[1] = catalog.id(slot);
+                    return ++written[0] < limit;
+                });
+            }
+        } finally {
+            readLock.unlock();
+        }
+        return written[0] == limit && limit > 0 ? written[1] : null;
+    }
+
+    /**
+     * Adds a new pet if no pet is stored under its ID.
+     *
+     * @param pet The pet to add.
+     * @return A copy of the stored pet or null if the ID is already taken.
+     */
+    @Override
+    public Pet addPet(Pet pet) {
+        writeLock.lock();
+        try {
+            return add(pet);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves a pet by its ID through the ID index.
+     *
+     * @param id The ID of the pet to retrieve.
+     * @return A new pet or null if not found.
+     */
+    @Override
+    public Pet getPet(int id) {
+        readLock.lock();
+        try {
+            int slot = catalog.slotOf(id);
+            return slot < 0 ? null : catalog.pet(slot);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves several pets by their IDs under one read lock, so they are consistent with each other.
+     *
+     * @param ids The IDs of the pets to retrieve.
+     * @return The pets found, by ID. Missing IDs have no entry.
+     */
+    @Override
+    public Map<Integer, Pet> getPetsById(Collection<Integer> ids) {
+        readLock.lock();
+        try {
+            Map<Integer, Pet> pets = new HashMap<>();
+            for (Integer id : ids) {
+                int slot = catalog.slotOf(id);
+                if (slot >= 0) {
+                    pets.put(id, catalog.pet(slot));
+                }
+            }
+            return pets;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves all pets owned by a specific owner, ignoring case, following the owner's chain of records.
+     *
+     * @param owner The owner's name.
+     * @return The owner's pets in ID order, or an empty list if none found.
+     */
+    @Override
+    public List<Pet> getPetsByOwner(String owner) {
+        return findPets(new PetQuery(null, null, null, owner));
+    }
+
+    /**
+     * Finds the pets matching a query, following the owner's chain of records when the query has an owner
+     * and scanning the catalog otherwise. Ages are tested on the records, so only the pets in the age range
+     * are built.
+     *
+     * @param query The query criteria and page.
+     * @return The matching pets, in ID order, at most the query limit.
+     */
+    @Override
+    public List<Pet> findPets(PetQuery query) {
+        List<Pet> pets = new ArrayList<>();
+        readLock.lock();
+        try {
+            if (query.getOwner() != null) {
+                catalog.forEachSlotOfOwner(query.getOwner(), slot -> collect(query, slot, pets));
+                pets.sort(BY_ID);
+                if (pets.size() > query.getLimit()) {
+                    pets.subList(query.getLimit(), pets.size()).clear();
+                }
+            } else {
+                catalog.forEachSlotAfter(query.getAfterId(), slot -> {
+                    collect(query, slot, pets);
+                    return pets.size() < query.getLimit();
+                });
+            }
+        } finally {
+            readLock.unlock();
+        }
+        return pets;
+    }
+
+    /**
+     * Scores every pet, built one at a time, so only the best matches are kept in memory.
+     *
+     * @param text  The searched text.
+     * @param limit The maximum number of results.
+     * @return The best matches, best first.
+     */
+    @Override
+    public List<PetSearchResult> searchPets(String text, int limit) {
+        readLock.lock();
+        try {
+            return PetSearchIndex.scan(catalog::pets, text, limit);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the catalog aggregates, kept up to date by the writes.
+     * It takes time in the number of distinct ages and of listed owners, whatever the number of pets.
+     *
+     * @param owners The owners to list, or null for every owner.
+     * @return The catalog aggregates.
+     */
+    @Override
+    public PetStats getStats(List<String> owners) {
+        readLock.lock();
+        try {
+            Map<String, Long> petsByOwner = new TreeMap<>();
+            if (owners == null) {
+                catalog.forEachOwner((owner, count) -> petsByOwner.put(owner, (long) count));
+            } else {
+                for (String owner : owners) {
+                    petsByOwner.put(OwnerIndex.key(owner), catalog.countOfOwner(owner));
+                }
+            }
+            int count = catalog.size();
+            return new PetStats(count, count > 0 ? (double) totalAge / count : 0,
+                    new TreeMap<>(petsByAge), catalog.ownerCount(), petsByOwner);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the fields of an existing pet.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @return A copy of the updated pet or null if not found.
+     */
+    @Override
+    public Pet updatePet(int id, Pet updatedPet) {
+        writeLock.lock();
+        try {
+            int slot = catalog.slotOf(id);
+            return slot < 0 ? null : set(slot, updatedPet);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the fields of an existing pet if the stored pet matches an expected state.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet before updating it.
+     * @return A copy of the updated pet or null if not found.
+     * @throws PetPreconditionFailedException If the stored pet does not match.
+     */
+    @Override
+    public Pet updatePet(int id, Pet updatedPet, Predicate<Pet> expected) throws PetPreconditionFailedException {
+        writeLock.lock();
+        try {
+            int slot = catalog.slotOf(id);
+            if (slot < 0) {
+                return null;
+            }
+            if (!expected.test(catalog.pet(slot))) {
+                throw new PetPreconditionFailedException();
+            }
+            return set(slot, updatedPet);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes a pet by its ID.
+     *
+     * @param id The ID of the pet to delete.
+     * @return True if the pet was deleted, false otherwise.
+     */
+    @Override
+    public boolean deletePet(int id) {
+        writeLock.lock();
+        try {
+            return remove(id);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a batch of pets under one write lock.
+     *
+     * @param pets The pets to add.
+     * @return For each pet, in order, a copy of the stored pet or null if its ID is already taken.
+     */
+    @Override
+    public List<Pet> addPets(List<Pet> pets) {
+        List<Pet> added = new ArrayList<>(pets.size());
+        writeLock.lock();
+        try {
+            for (Pet pet : pets) {
+                added.add(add(pet));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return added;
+    }
+
+    /**
+     * Stores a batch of pets under one write lock.
+     *
+     * @param pets The pets to store.
+     * @return For each pet, in order, true if it was added or false if it replaced a stored pet.
+     */
+    @Override
+    public boolean[] upsertPets(List<Pet> pets) {
+        boolean[] created = new boolean[pets.size()];
+        writeLock.lock();
+        try {
+            for (int i = 0; i < created.length; i++) {
+                Pet pet = pets.get(i);
+                int slot = catalog.slotOf(pet.getId());
+                created[i] = slot < 0;
+                if (created[i]) {
+                    add(pet);
+                } else {
+                    set(slot, pet);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return created;
+    }
+
+    /**
+     * Deletes a batch of pets under one write lock.
+     *
+     * @param ids The IDs of the pets to delete.
+     * @return For each ID, in order, true if the pet was deleted or false if not found.
+     */
+    @Override
+    public boolean[] deletePets(List<Integer> ids) {
+        boolean[] deleted = new boolean[ids.size()];
+        writeLock.lock();
+        try {
+            for (int i = 0; i < deleted.length; i++) {
+                deleted[i] = remove(ids.get(i));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return deleted;
+    }
+
+    private void collect(PetQuery query, int slot, List<Pet> pets) {
+        int age = catalog.age(slot);
+        if (query.getMinAge() != null && age < query.getMinAge()
+                || query.getMaxAge() != null && age > query.getMaxAge()) {
+            return;
+        }
+        Pet pet = catalog.pet(slot);
+        if (query.matches(pet)) {
+            pets.add(pet);
+        }
+    }
+
+    private Pet add(Pet pet) {
+        if (catalog.slotOf(pet.getId()) >= 0) {
+            return null;
+        }
+        catalog.add(pet);
+        countAge(pet.getAge(), 1);
+        return copyOf(pet.getId(), pet);
+    }
+
+    private Pet set(int slot, Pet updatedPet) {
+        countAge(catalog.age(slot), -1);
+        catalog.set(slot, updatedPet);
+        countAge(updatedPet.getAge(), 1);
+        return copyOf(catalog.id(slot), updatedPet);
+    }
+
+    private boolean remove(int id) {
+        int slot = catalog.slotOf(id);
+        if (slot < 0) {
+            return false;
+        }
+        countAge(catalog.age(slot), -1);
+        catalog.remove(slot);
+        return true;
+    }
+
+    private void countAge(int age, int delta) {
+        totalAge += (long) age * delta;
+        petsByAge.merge(age, (long) delta, (count, more) -> count + more == 0 ? null : count + more);
+    }
+
+    private static Pet copyOf(int id, Pet pet) {
+        return new Pet(id, pet.getName(), pet.getAge(), pet.getOwner());
+    }
+}
@@ -0,0 +1,77 @@
+package fr.elsior.wfx.test.services.dao;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Author: Elimane
+ *
+ * Secondary index from a normalized owner name to the IDs of the pets it owns.
+ * Callers must update it while holding the primary key lock of the pet they modify.
+ */
+final class OwnerIndex {
+
+    private final ConcurrentMap<String, Set<Integer>> petIdsByOwner = new ConcurrentHashMap<>();
+
+    /**
+     * Normalizes an owner name so that lookups ignore case.
+     *
+     * @param owner The owner's name.
+     * @return The index key or null if the owner is null.
+     */
+    static String key(String owner) {
+        return owner == null ? null : owner.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Registers a pet under its owner.
+     *
+     * @param owner The owner's name.
+     * @param id    The ID of the pet.
+     */
+    void add(String owner, int id) {
+        String key = key(owner);
+        if (key == null) {
+            return;
+        }
+        petIdsByOwner.compute(key, (k, ids) -> {
+            Set<Integer> petIds = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+            petIds.add(id);
+            return petIds;
+        });
+    }
+
+    /**
+     * Unregisters a pet from its owner, dropping the owner once it has no pet left.
+     *
+     * @param owner The owner's name.
+     * @param id    The ID of the pet.
+     */
+    void remove(String owner, int id) {
+        String key = key(owner);
+        if (key == null) {
+            return;
+        }
+        petIdsByOwner.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Retrieves the IDs of the pets owned by an owner.
+     *
+     * @param owner The owner's name.
+     * @return A live view of the IDs or an empty set if the owner is unknown.
+     */
+    Set<Integer> get(String owner) {
+        String key = key(owner);
+        if (key == null) {
+            return Collections.emptySet();
+        }
+        return petIdsByOwner.getOrDefault(key, Collections.emptySet());
+    }
+}
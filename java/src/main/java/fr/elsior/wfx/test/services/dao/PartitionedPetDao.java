@@ -0,0 +1,333 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Author: Elimane
+ *
+ * Store partitioned by pet ID hash into shards, selected with {@code pets.store=partitioned}.
+ * Each {@link PetShard} is written by its own thread, fed by a lock-free queue, so writes to different shards
+ * never contend and writes to one shard never lock. Reads of a pet go to the version last published by its shard.
+ * Pages, owner lookups and queries gather the shards' versions and merge them in ID order, lazily,
+ * so each shard is read at the pace the subscriber requests pets.
+ * <p>
+ * Each shard publishes its own versions, so a read across shards may see a write on one shard and not yet
+ * on another. Bulk writes are split by shard and each part is published at once. Readers and writers get copies
+ * of the stored pets, so a caller modifying a pet it got cannot change a version.
+ */
+@Component
+@ConditionalOnProperty(name = "pets.store", havingValue = "partitioned")
+public class PartitionedPetDao implements IReactivePetDao {
+
+    private static final Comparator<Pet> BY_ID = Comparator.comparingInt(Pet::getId);
+
+    private final PetShard[] shards;
+
+    private final PetStatistics statistics = new PetStatistics();
+
+    /**
+     * Constructor with dependency injection.
+     *
+     * @param shards The number of shards, 0 for one per available processor.
+     */
+    public PartitionedPetDao(@Value("${pets.partitioned.shards:0}") int shards) {
+        int count = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        this.shards = new PetShard[count];
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new PetShard("pet-shard-" + i, statistics, Schedulers.parallel());
+        }
+    }
+
+    /**
+     * Initializes the store with default values.
+     * This method is called automatically after the bean is constructed.
+     */
+    @PostConstruct
+    void initPetList() {
+        addPets(DefaultPets.create()).block();
+    }
+
+    /**
+     * Stops the shard writers once their queued writes are applied.
+     * This method is called automatically before the bean is destroyed.
+     *
+     * @throws InterruptedException If interrupted while waiting for a writer.
+     */
+    @PreDestroy
+    void close() throws InterruptedException {
+        for (PetShard shard : shards) {
+            shard.close();
+        }
+    }
+
+    @Override
+    public Flux<Pet> getPets() {
+        return merge(version -> version.pets()).map(PartitionedPetDao::copyOf);
+    }
+
+    @Override
+    public Flux<Pet> getPets(Integer afterId, int limit) {
+        return merge(version -> () -> version.petsAfter(afterId)).take(limit, true).map(PartitionedPetDao::copyOf);
+    }
+
+    /**
+     * Adds a new pet on its shard if no pet is stored under its ID.
+     *
+     * @param pet The pet to add.
+     * @return The stored copy of the pet, or empty if the ID is already taken.
+     */
+    @Override
+    public Mono<Pet> addPet(Pet pet) {
+        return shard(pet.getId()).write(draft -> add(draft, pet));
+    }
+
+    @Override
+    public Mono<Pet> getPet(int id) {
+        return Mono.fromSupplier(() -> shard(id).current().get(id)).map(PartitionedPetDao::copyOf);
+    }
+
+    /**
+     * Retrieves the pets of an owner, merging the owner index of every shard.
+     *
+     * @param owner The owner's name, compared ignoring case.
+     * @return The owner's pets in ID order, empty if the owner is unknown.
+     */
+    @Override
+    public Flux<Pet> getPetsByOwner(String owner) {
+        return merge(version -> version.petsOf(owner)).map(PartitionedPetDao::copyOf);
+    }
+
+    @Override
+    public Mono<Pet> updatePet(int id, Pet updatedPet) {
+        return shard(id).write(draft -> draft.get(id) == null ? null : replace(draft, id, updatedPet));
+    }
+
+    /**
+     * Updates a pet on its shard if the stored pet matches an expected state.
+     * The shard writer applies one write at a time, so the pet cannot change between the test and the update.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet before updating it.
+     * @return The updated pet, empty if not found, or an error {@link PetPreconditionFailedException}.
+     */
+    @Override
+    public Mono<Pet> updatePet(int id, Pet updatedPet, Predicate<Pet> expected) {
+        return shard(id).write(draft -> {
+            Pet current = draft.get(id);
+            if (current == null) {
+                return null;
+            }
+            if (!expected.test(current)) {
+                throw new PetPreconditionFailedException();
+            }
+            return replace(draft, id, updatedPet);
+        });
+    }
+
+    @Override
+    public Mono<Boolean> deletePet(int id) {
+        return shard(id).write(draft -> draft.remove(id));
+    }
+
+    @Override
+    public Mono<Integer> countPets() {
+        return Mono.fromSupplier(() -> {
+            int count = 0;
+            for (PetShard shard : shards) {
+                count += shard.current().size();
+            }
+            return count;
+        });
+    }
+
+    @Override
+    public Mono<Map<Integer, Pet>> getPetsById(Collection<Integer> ids) {
+        return Mono.fromSupplier(() -> {
+            Map<Integer, Pet> pets = new HashMap<>();
+            for (Integer id : ids) {
+                Pet pet = shard(id).current().get(id);
+                if (pet != null) {
+                    pets.put(id, copyOf(pet));
+                }
+            }
+            return pets;
+        });
+    }
+
+    /**
+     * Finds the pets matching a query, through the owner index of every shard when the query has an owner
+     * and by scanning the shards otherwise.
+     *
+     * @param query The query criteria and page.
+     * @return The matching pets, in ID order, at most the query limit.
+     */
+    @Override
+    public Flux<Pet> findPets(PetQuery query) {
+        return merge(version -> query.getOwner() == null ? version.pets() : version.petsOf(query.getOwner()))
+                .filter(query::matches)
+                .take(query.getLimit())
+                .map(PartitionedPetDao::copyOf);
+    }
+
+    @Override
+    public Flux<PetSearchResult> searchPets(String text, int limit) {
+        return PetSearchIndex.scan(getPets(), text, limit).flatMapIterable(results -> results);
+    }
+
+    /**
+     * Reads the catalog aggregates, maintained by the shard writers.
+     *
+     * @param owners The owners whose pets are counted, or null for every owner.
+     * @return The catalog aggregates.
+     */
+    @Override
+    public Mono<PetStats> getStats(List<String> owners) {
+        return Mono.fromSupplier(() -> statistics.snapshot(owners));
+    }
+
+    /**
+     * Adds a batch of pets, each shard adding its part at once.
+     *
+     * @param pets The pets to add.
+     * @return For each pet, in order, the stored copy or null if its ID is already taken.
+     */
+    @Override
+    public Mono<List<Pet>> addPets(List<Pet> pets) {
+        return scatter(pets, Pet::getId, (draft, pet) -> add(draft, pet))
+                .map(added -> {
+                    List<Pet> results = new ArrayList<>(pets.size());
+                    for (Object pet : added) {
+                        results.add((Pet) pet);
+                    }
+                    return results;
+                });
+    }
+
+    /**
+     * Stores a batch of pets, each shard storing its part at once.
+     *
+     * @param pets The pets to store.
+     * @return For each pet, in order, true if it was added or false if it replaced a stored pet.
+     */
+    @Override
+    public Mono<boolean[]> upsertPets(List<Pet> pets) {
+        return scatter(pets, Pet::getId, (draft, pet) -> draft.put(copyOf(pet.getId(), pet)) == null)
+                .map(PartitionedPetDao::toArray);
+    }
+
+    /**
+     * Deletes a batch of pets, each shard deleting its part at once.
+     *
+     * @param ids The IDs of the pets to delete.
+     * @return For each ID, in order, true if the pet was deleted or false if not found.
+     */
+    @Override
+    public Mono<boolean[]> deletePets(List<Integer> ids) {
+        return scatter(ids, id -> id, PetShard.Draft::remove)
+                .map(PartitionedPetDao::toArray);
+    }
+
+    private PetShard shard(int id) {
+        int hash = id * 0x9E3779B9;
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    /**
+     * Merges the pets of every shard in ID order, each read from the shard's version at subscription.
+     */
+    private Flux<Pet> merge(Function<PetCatalogVersion, Iterable<Pet>> pets) {
+        return Flux.defer(() -> {
+            if (shards.length == 1) {
+                return Flux.fromIterable(pets.apply(shards[0].current()));
+            }
+            List<Flux<Pet>> sources = new ArrayList<>(shards.length);
+            for (PetShard shard : shards) {
+                sources.add(Flux.fromIterable(pets.apply(shard.current())));
+            }
+            return Flux.mergeOrdered(BY_ID, sources.toArray(new Flux[0]));
+        });
+    }
+
+    /**
+     * Splits a batch by shard, applies each part with one write, and gathers the results in the batch order.
+     */
+    private <I> Mono<List<Object>> scatter(List<I> items, Function<I, Integer> id, BatchWrite<I> write) {
+        return Mono.defer(() -> {
+            Map<PetShard, List<Integer>> positions = new HashMap<>();
+            for (int i = 0; i < items.size(); i++) {
+                positions.computeIfAbsent(shard(id.apply(items.get(i))), shard -> new ArrayList<>()).add(i);
+            }
+            Object[] results = new Object[items.size()];
+            return Flux.fromIterable(positions.entrySet())
+                    .flatMap(part -> part.getKey().write(draft -> {
+                        for (int position : part.getValue()) {
+                            results[position] = write.apply(draft, items.get(position));
+                        }
+                        return results;
+                    }))
+                    .then(Mono.fromSupplier(() -> Arrays.asList(results)));
+        });
+    }
+
+    private static Pet add(PetShard.Draft draft, Pet pet) {
+        if (draft.get(pet.getId()) != null) {
+            return null;
+        }
+        Pet stored = copyOf(pet);
+        draft.put(stored);
+        return copyOf(stored);
+    }
+
+    private static Pet replace(PetShard.Draft draft, int id, Pet updatedPet) {
+        Pet stored = copyOf(id, updatedPet);
+        draft.put(stored);
+        return copyOf(stored);
+    }
+
+    private static Pet copyOf(int id, Pet pet) {
+        return new Pet(id, pet.getName(), pet.getAge(), pet.getOwner());
+    }
+
+    private static Pet copyOf(Pet pet) {
+        return copyOf(pet.getId(), pet);
+    }
+
+    private static boolean[] toArray(List<Object> values) {
+        boolean[] array = new boolean[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (Boolean) values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Applies one item of a batch on the writer of its shard.
+     */
+    @FunctionalInterface
+    private interface BatchWrite<I> {
+        Object apply(PetShard.Draft draft, I item);
+    }
+}
@@ -0,0 +1,118 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.services.dao.versioned.PersistentSortedMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Author: Elimane
+ *
+ * One immutable version of the catalog: the pets by ID and the same pets grouped by normalized owner.
+ * Applying a write returns the next version and shares every untouched node with this one.
+ * Pets held by a version are never modified.
+ */
+final class PetCatalogVersion {
+
+    static final PetCatalogVersion EMPTY =
+            new PetCatalogVersion(PersistentSortedMap.empty(), PersistentSortedMap.empty());
+
+    private final PersistentSortedMap<Integer, Pet> petsById;
+
+    private final PersistentSortedMap<String, PersistentSortedMap<Integer, Pet>> petsByOwner;
+
+    private PetCatalogVersion(PersistentSortedMap<Integer, Pet> petsById,
+                              PersistentSortedMap<String, PersistentSortedMap<Integer, Pet>> petsByOwner) {
+        this.petsById = petsById;
+        this.petsByOwner = petsByOwner;
+    }
+
+    int size() {
+        return petsById.size();
+    }
+
+    Pet get(int id) {
+        return petsById.get(id);
+    }
+
+    /**
+     * @return Every pet in ID order, as a read-only view of this version.
+     */
+    List<Pet> pets() {
+        return petsById.values();
+    }
+
+    /**
+     * @param afterId The exclusive lower bound, or null to start from the first pet.
+     * @return The pets with an ID greater than afterId in ID order, read lazily from this version.
+     */
+    Iterator<Pet> petsAfter(Integer afterId) {
+        return petsById.valuesAfter(afterId);
+    }
+
+    List<Pet> pets(Integer afterId, int limit) {
+        List<Pet> pets = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<Pet> iterator = petsById.valuesAfter(afterId);
+        while (pets.size() < limit && iterator.hasNext()) {
+            pets.add(iterator.next());
+        }
+        return pets;
+    }
+
+    /**
+     * @param owner The owner's name, compared ignoring case.
+     * @return The owner's pets in ID order, as a read-only view of this version.
+     */
+    List<Pet> petsOf(String owner) {
+        String key = OwnerIndex.key(owner);
+        PersistentSortedMap<Integer, Pet> pets = key == null ? null : petsByOwner.get(key);
+        return pets == null ? Collections.emptyList() : pets.values();
+    }
+
+    /**
+     * @param pet The pet to store, replacing the pet stored under its ID if any.
+     * @return The version holding the pet.
+     */
+    PetCatalogVersion put(Pet pet) {
+        Pet previous = petsById.get(pet.getId());
+        PersistentSortedMap<String, PersistentSortedMap<Integer, Pet>> owners =
+                previous == null ? petsByOwner : withoutPet(petsByOwner, previous);
+        return new PetCatalogVersion(petsById.put(pet.getId(), pet), withPet(owners, pet));
+    }
+
+    /**
+     * @param id The ID of the pet to remove.
+     * @return The version without the pet, or this version if no pet is stored under the ID.
+     */
+    PetCatalogVersion remove(int id) {
+        Pet previous = petsById.get(id);
+        if (previous == null) {
+            return this;
+        }
+        return new PetCatalogVersion(petsById.remove(id), withoutPet(petsByOwner, previous));
+    }
+
+    private static PersistentSortedMap<String, PersistentSortedMap<Integer, Pet>> withPet(
+            PersistentSortedMap<String, PersistentSortedMap<Integer, Pet>> owners, Pet pet) {
+        String key = OwnerIndex.key(pet.getOwner());
+        if (key == null) {
+            return owners;
+        }
+        PersistentSortedMap<Integer, Pet> pets = owners.get(key);
+        return owners.put(key, (pets == null ? PersistentSortedMap.<Integer, Pet>empty() : pets).put(pet.getId(), pet));
+    }
+
+    private static PersistentSortedMap<String, PersistentSortedMap<Integer, Pet>> withoutPet(
+            PersistentSortedMap<String, PersistentSortedMap<Integer, Pet>> owners, Pet pet) {
+        String key = OwnerIndex.key(pet.getOwner());
+        PersistentSortedMap<Integer, Pet> pets = key == null ? null : owners.get(key);
+        if (pets == null) {
+            return owners;
+        }
+        PersistentSortedMap<Integer, Pet> remaining = pets.remove(pet.getId());
+        return remaining.isEmpty() ? owners.remove(key) : owners.put(key, remaining);
+    }
+}
@@ -1,43 +1,74 @@
 package fr.elsior.wfx.test.services.dao;
 
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
 import fr.elsior.wfx.test.model.Pet;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * Author: Elimane
+ *
+ * List backed store, selected with {@code pets.store=list}.
+ * Every operation is a linear scan guarded by the instance lock.
  */
 @Component
+@ConditionalOnProperty(name = "pets.store", havingValue = "list", matchIfMissing = true)
 public class PetDaoImpl implements IPetDao {
 
-    private final List<Pet> datas = new ArrayList<>();
+    final List<Pet> datas = new ArrayList<>();
 
     /**
      * Initializes the pet list with default values.
      * This method is called automatically after the bean is constructed.
      */
     @PostConstruct
-    void initPetList() {
-        datas.add(new Pet(1, "Medor", 12, "Peter"));
-        datas.add(new Pet(2, "Mistigri", 5, "Jack"));
-        datas.add(new Pet(3, "Pepette", 8, "Sarah"));
-        datas.add(new Pet(4, "Snoopy", 21, "Sarah"));
-        datas.add(new Pet(5, "Garfield", 8, "Sarah"));
-        datas.add(new Pet(6, "Rex", 15, "Jack"));
+    synchronized void initPetList() {
+        datas.addAll(DefaultPets.create());
     }
 
     /**
      * Retrieves the list of all pets.
      *
-     * @return List of all pets.
+     * @return A copy of the list of all pets.
      */
     @Override
-    public List<Pet> getPets() {
-        return datas;
+    public synchronized List<Pet> getPets() {
+        return new ArrayList<>(datas);
+    }
+
+    /**
+     * @return The number of stored pets.
+     */
+    @Override
+    public synchronized int countPets() {
+        return datas.size();
+    }
+
+    /**
+     * Retrieves a page of pets ordered by ID.
+     *
+     * @param afterId The ID of the last pet of the previous page, or null for the first page.
+     * @param limit   The maximum number of pets to return.
+     * @return The pets with an ID greater than afterId, in ID order.
+     */
+    @Override
+    public synchronized List<Pet> getPets(Integer afterId, int limit) {
+        return datas.stream()
+                .filter(pet -> afterId == null || pet.getId() > afterId)
+                .sorted(Comparator.comparingInt(Pet::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -47,7 +78,7 @@ public class PetDaoImpl implements IPetDao {
      * @return The added pet.
      */
     @Override
-    public Pet addPet(Pet pet) {
+    public synchronized Pet addPet(Pet pet) {
         if (datas.stream().anyMatch(_pet -> _pet.getId() == pet.getId())) {
             return null;
         }
@@ -62,7 +93,7 @@ public class PetDaoImpl implements IPetDao {
      * @return The pet with the given ID or null if not found.
      */
     @Override
-    public Pet getPet(int id) {
+    public synchronized Pet getPet(int id) {
         return datas.stream()
                 .filter(pet -> pet.getId() == id)
                 .findFirst()
@@ -76,7 +107,7 @@ public class PetDaoImpl implements IPetDao {
      * @return List of pets owned by the specified owner or an empty list if none found.
      */
     @Override
-    public List<Pet> getPetsByOwner(String owner) {
+    public synchronized List<Pet> getPetsByOwner(String owner) {
         return datas.stream()
                 .filter(pet -> pet.getOwner().equalsIgnoreCase(owner))
                 .collect(Collectors.toList());
@@ -90,7 +121,7 @@ public class PetDaoImpl implements IPetDao {
      * @return The updated pet or null if not found.
      */
     @Override
-    public Pet updatePet(int id, Pet updatedPet) {
+    public synchronized Pet updatePet(int id, Pet updatedPet) {
         return datas.stream()
                 .filter(pet -> pet.getId() == id)
                 .findFirst()
@@ -103,6 +134,24 @@ public class PetDaoImpl implements IPetDao {
                 .orElse(null);
     }
 
+    /**
+     * Updates an existing pet if the stored pet matches an expected state.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet before updating it.
+     * @return The updated pet or null if not found.
+     * @throws PetPreconditionFailedException If the stored pet does not match.
+     */
+    @Override
+    public synchronized Pet updatePet(int id, Pet updatedPet, Predicate<Pet> expected) throws PetPreconditionFailedException {
+        Pet current = getPet(id);
+        if (current != null && !expected.test(current)) {
+            throw new PetPreconditionFailedException();
+        }
+        return updatePet(id, updatedPet);
+    }
+
     /**
      * Deletes a pet by its ID.
      *
@@ -110,7 +159,76 @@ public class PetDaoImpl implements IPetDao {
      * @return True if the pet was deleted, false otherwise.
      */
     @Override
-    public boolean deletePet(int id) {
+    public synchronized boolean deletePet(int id) {
         return datas.removeIf(pet -> pet.getId() == id);
     }
+
+    /**
+     * Adds a batch of pets under a single lock, indexing the taken IDs once instead of scanning per pet.
+     *
+     * @param pets The pets to add.
+     * @return For each pet, in order, the added pet or null if its ID is already taken.
+     */
+    @Override
+    public synchronized List<Pet> addPets(List<Pet> pets) {
+        Set<Integer> taken = datas.stream().map(Pet::getId).collect(Collectors.toCollection(HashSet::new));
+        List<Pet> added = new ArrayList<>(pets.size());
+        for (Pet pet : pets) {
+            if (taken.add(pet.getId())) {
+                datas.add(pet);
+                added.add(pet);
+            } else {
+                added.add(null);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Stores a batch of pets under a single lock, updating the stored pets in place.
+     *
+     * @param pets The pets to store.
+     * @return For each pet, in order, true if it was added or false if it replaced a stored pet.
+     */
+    @Override
+    public synchronized boolean[] upsertPets(List<Pet> pets) {
+        Map<Integer, Pet> stored = new HashMap<>();
+        datas.forEach(pet -> stored.putIfAbsent(pet.getId(), pet));
+        boolean[] created = new boolean[pets.size()];
+        for (int i = 0; i < created.length; i++) {
+            Pet pet = pets.get(i);
+            Pet existing = stored.get(pet.getId());
+            if (existing == null) {
+                datas.add(pet);
+                stored.put(pet.getId(), pet);
+                created[i] = true;
+            } else {
+                existing.setName(pet.getName());
+                existing.setAge(pet.getAge());
+                existing.setOwner(pet.getOwner());
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Deletes a batch of pets under a single lock, in one pass over the list.
+     *
+     * @param ids The IDs of the pets to delete.
+     * @return For each ID, in order, true if the pet was deleted or false if not found.
+     */
+    @Override
+    public synchronized boolean[] deletePets(List<Integer> ids) {
+        Set<Integer> present = datas.stream().map(Pet::getId).collect(Collectors.toCollection(HashSet::new));
+        Set<Integer> removed = new HashSet<>();
+        boolean[] deleted = new boolean[ids.size()];
+        for (int i = 0; i < deleted.length; i++) {
+            if (present.remove(ids.get(i))) {
+                removed.add(ids.get(i));
+                deleted[i] = true;
+            }
+        }
+        datas.removeIf(pet -> removed.contains(pet.getId()));
+        return deleted;
+    }
 }
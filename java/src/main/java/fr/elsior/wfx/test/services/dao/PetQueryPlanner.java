@@ -0,0 +1,165 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+
+/**
+ * Author: Elimane
+ *
+ * Answers a {@link PetQuery} from the secondary indexes of a store.
+ * The index matching the fewest pets drives the lookup, and the other criteria are checked on each candidate pet,
+ * which intersects it with the other indexes without reading them. Without any criterion the store is walked in ID order
+ * from the requested page, stopping once the page is full. Index candidates come in no particular order: only the
+ * page's worth of matches with the lowest IDs is kept while they are read, so memory follows the page and not the matches.
+ * <p>
+ * Candidates are read from the primary map and checked against every criterion, so a pet written concurrently
+ * is returned only if its stored state matches.
+ */
+final class PetQueryPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PetQueryPlanner.class);
+
+    private final Map<Integer, Pet> pets;
+
+    private final NavigableSet<Integer> ids;
+
+    private final OwnerIndex owners;
+
+    private final SortedIndex<Integer> ages;
+
+    private final SortedIndex<String> names;
+
+    /**
+     * @param pets   The pets of the store by ID.
+     * @param ids    The IDs of the store, in order.
+     * @param owners The owner index of the store.
+     * @param ages   The age index of the store.
+     * @param names  The index of the normalized names of the store.
+     */
+    PetQueryPlanner(Map<Integer, Pet> pets, NavigableSet<Integer> ids, OwnerIndex owners, SortedIndex<Integer> ages,
+                    SortedIndex<String> names) {
+        this.pets = pets;
+        this.ids = ids;
+        this.owners = owners;
+        this.ages = ages;
+        this.names = names;
+    }
+
+    /**
+     * Chooses the index driving a query. The owner index is tried first, then the name and age indexes,
+     * each counted only until it exceeds the best candidate so far.
+     *
+     * @param query The query criteria.
+     * @return The chosen plan.
+     */
+    Plan plan(PetQuery query) {
+        Plan best = null;
+        if (query.getOwner() != null) {
+            best = cheaper(best, "owner", owners.get(query.getOwner()));
+        }
+        if (query.getNamePrefix() != null) {
+            best = cheaper(best, "name", SortedIndex.prefix(names, PetQuery.normalize(query.getNamePrefix())));
+        }
+        if (query.hasAgeRange()) {
+            Integer minAge = query.getMinAge();
+            Integer maxAge = query.getMaxAge();
+            Collection<Integer> range = minAge != null && maxAge != null && minAge > maxAge ?
+                    Collections.emptyList() :
+                    ages.range(minAge, maxAge);
+            best = cheaper(best, "age", range);
+        }
+        return best == null ? new Plan("scan", null, pets.size()) : best;
+    }
+
+    /**
+     * Finds the pets matching a query.
+     *
+     * @param query The query criteria and page.
+     * @return The matching pets, in ID order, at most the query limit.
+     */
+    List<Pet> find(PetQuery query) {
+        Plan plan = plan(query);
+        logger.debug("Planned {} on the {} index, about {} candidates", query, plan.getIndex(), plan.getEstimate());
+        if (plan.candidates == null) {
+            return scan(query);
+        }
+        // Keyed by ID, as a pet moved between two keys during the lookup can be seen under both
+        TreeMap<Integer, Pet> found = new TreeMap<>();
+        for (Integer id : plan.candidates) {
+            Pet pet = pets.get(id);
+            if (pet != null && query.matches(pet)) {
+                found.put(pet.getId(), pet);
+                if (found.size() > query.getLimit()) {
+                    found.pollLastEntry();
+                }
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    private List<Pet> scan(PetQuery query) {
+        List<Pet> found = new ArrayList<>(Math.min(query.getLimit(), 1024));
+        Iterator<Integer> iterator = (query.getAfterId() == null ? ids : ids.tailSet(query.getAfterId(), false)).iterator();
+        while (found.size() < query.getLimit() && iterator.hasNext()) {
+            Pet pet = pets.get(iterator.next());
+            if (pet != null && query.matches(pet)) {
+                found.add(pet);
+            }
+        }
+        return found;
+    }
+
+    private static Plan cheaper(Plan best, String index, Collection<Integer> candidates) {
+        long bound = best == null ? Long.MAX_VALUE : best.estimate;
+        long estimate = 0;
+        for (Iterator<Integer> iterator = candidates.iterator(); iterator.hasNext(); iterator.next()) {
+            if (++estimate >= bound) {
+                return best;
+            }
+        }
+        return new Plan(index, candidates, estimate);
+    }
+
+    /**
+     * The index driving a query and the candidate pet IDs it yields.
+     */
+    static final class Plan {
+
+        private final String index;
+
+        private final Collection<Integer> candidates;
+
+        private final long estimate;
+
+        private Plan(String index, Collection<Integer> candidates, long estimate) {
+            this.index = index;
+            this.candidates = candidates;
+            this.estimate = estimate;
+        }
+
+        /**
+         * @return The driving index: owner, age or name, or scan in ID order without any criterion.
+         */
+        String getIndex() {
+            return index;
+        }
+
+        /**
+         * @return The number of candidate pets when the plan was made.
+         */
+        long getEstimate() {
+            return estimate;
+        }
+    }
+}
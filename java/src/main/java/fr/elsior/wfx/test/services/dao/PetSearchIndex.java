@@ -0,0 +1,602 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Author: Elimane
+ *
+ * Typo tolerant search on the names and owners of the pets, through inverted indexes of their {@link Trigrams}.
+ * A pet matches when the trigram similarity of its name or owner with the searched text reaches {@link #THRESHOLD},
+ * and the best matches are kept in a heap bounded by the number of results.
+ * <p>
+ * Name trigrams point to pet IDs held in primitive sets. Owner trigrams point to owner names only, expanded to their
+ * pets through the owner index, so an owner of many pets is indexed once.
+ * Callers must update it while holding the primary key lock of the pet they modify.
+ */
+final class PetSearchIndex {
+
+    /**
+     * The lowest similarity of a match.
+     */
+    static final double THRESHOLD = 0.3;
+
+    /**
+     * The most pets whose similarity is computed by a search, bounding the latency of texts made of common trigrams.
+     */
+    static final int MAX_CANDIDATES = 20_000;
+
+    private static final Comparator<PetSearchResult> WORST_FIRST = Comparator
+            .comparingDouble(PetSearchResult::getScore)
+            .thenComparing(result -> result.getPet().getId(), Comparator.reverseOrder());
+
+    private final Map<Integer, Pet> pets;
+
+    private final OwnerIndex owners;
+
+    private final ConcurrentMap<Long, IntSet> petIdsByNameTrigram = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Set<String>> ownersByTrigram = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Integer> petCountsByOwner = new ConcurrentHashMap<>();
+
+    /**
+     * @param pets   The pets of the store by ID.
+     * @param owners The owner index of the store.
+     */
+    PetSearchIndex(Map<Integer, Pet> pets, OwnerIndex owners) {
+        this.pets = pets;
+        this.owners = owners;
+    }
+
+    /**
+     * Indexes a new pet.
+     *
+     * @param pet The added pet.
+     */
+    void add(Pet pet) {
+        addName(pet.getName(), pet.getId());
+        addOwner(pet.getOwner());
+    }
+
+    /**
+     * Reindexes the name and owner of a pet when they changed.
+     *
+     * @param previous The pet before the update.
+     * @param updated  The pet after the update.
+     */
+    void update(Pet previous, Pet updated) {
+        if (!Objects.equals(PetQuery.normalize(previous.getName()), PetQuery.normalize(updated.getName()))) {
+            removeName(previous.getName(), previous.getId());
+            addName(updated.getName(), updated.getId());
+        }
+        if (!Objects.equals(OwnerIndex.key(previous.getOwner()), OwnerIndex.key(updated.getOwner()))) {
+            removeOwner(previous.getOwner());
+            addOwner(updated.getOwner());
+        }
+    }
+
+    /**
+     * Unindexes a deleted pet.
+     *
+     * @param pet The deleted pet.
+     */
+    void remove(Pet pet) {
+        removeName(pet.getName(), pet.getId());
+        removeOwner(pet.getOwner());
+    }
+
+    /**
+     * Finds the pets whose name or owner is the closest to a text.
+     * A pet reaching the threshold shares at least that fraction of the text trigrams, so it is listed under one of
+     * the rarest trigrams of the text: only those posting lists are read, counting in how many of them each pet is.
+     * Pets are then scored by decreasing count, until even a pet also listed under every unread trigram
+     * could not be among the best matches.
+     *
+     * @param text  The searched text.
+     * @param limit The maximum number of results.
+     * @return The best matches, best first.
+     */
+    List<PetSearchResult> search(String text, int limit) {
+        long[] query = Trigrams.of(text);
+        if (query.length == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+        int lists = query.length - Math.max(1, (int) Math.ceil(THRESHOLD * query.length)) + 1;
+        int unread = query.length - lists;
+        TopPets top = new TopPets(query, limit);
+        IntSet seen = new IntSet();
+        int budget = MAX_CANDIDATES;
+
+        List<IntSet> petIds = new ArrayList<>(query.length);
+        for (long trigram : query) {
+            petIds.add(petIdsByNameTrigram.getOrDefault(trigram, IntSet.EMPTY));
+        }
+        Counter counter = new Counter();
+        for (IntSet ids : smallest(petIds, IntSet::size, lists)) {
+            ids.forEach(counter::increment);
+        }
+        int[][] idsByCount = counter.idsByCount(lists);
+        for (int count = lists; count > 0; count--) {
+            // The similarity is at most the shared trigrams over the trigrams of the text
+            double bound = Math.min(1, (double) (count + unread) / query.length);
+            if (!top.accepts(bound)) {
+                break;
+            }
+            for (int id : idsByCount[count]) {
+                if (budget-- <= 0) {
+                    return top.results();
+                }
+                seen.add(id);
+                top.offer(pets.get(id));
+            }
+        }
+
+        List<Set<String>> ownerLists = new ArrayList<>(query.length);
+        for (long trigram : query) {
+            ownerLists.add(ownersByTrigram.getOrDefault(trigram, Collections.emptySet()));
+        }
+        Set<String> candidateOwners = new HashSet<>();
+        for (Set<String> ownerList : smallest(ownerLists, Set::size, lists)) {
+            candidateOwners.addAll(ownerList);
+        }
+        List<OwnerMatch> matchingOwners = new ArrayList<>();
+        for (String owner : candidateOwners) {
+            double score = top.similarity(owner);
+            if (score >= THRESHOLD) {
+                matchingOwners.add(new OwnerMatch(owner, score));
+            }
+        }
+        // Best owners first. The pets not seen yet have a name below the threshold, so they score as their owner
+        // and the remaining pets of an owner are skipped once they cannot be kept.
+        matchingOwners.sort(Comparator.comparingDouble((OwnerMatch match) -> match.score).reversed());
+        for (OwnerMatch owner : matchingOwners) {
+            for (Integer id : owners.get(owner.owner)) {
+                if (!top.accepts(owner.score)) {
+                    break;
+                }
+                if (seen.add(id)) {
+                    if (budget-- <= 0) {
+                        return top.results();
+                    }
+                    top.offer(pets.get(id));
+                }
+            }
+        }
+        return top.results();
+    }
+
+    /**
+     * Picks the smallest posting lists. Their sizes are read once before sorting, as writers change them meanwhile
+     * and a comparator reading them live would be inconsistent.
+     *
+     * @param lists The posting lists.
+     * @param size  Reads the size of a list.
+     * @param count The number of lists to pick.
+     * @return The count smallest lists, smallest first.
+     */
+    private static <T> List<T> smallest(List<T> lists, ToIntFunction<T> size, int count) {
+        long[] sizeAndIndex = new long[lists.size()];
+        for (int i = 0; i < sizeAndIndex.length; i++) {
+            sizeAndIndex[i] = (long) size.applyAsInt(lists.get(i)) << 32 | i;
+        }
+        Arrays.sort(sizeAndIndex);
+        List<T> smallest = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            smallest.add(lists.get((int) sizeAndIndex[i]));
+        }
+        return smallest;
+    }
+
+    /**
+     * Scores every pet of a collection, for the stores without a search index.
+     *
+     * @param pets  The pets to search, which may be built as they are iterated.
+     * @param text  The searched text.
+     * @param limit The maximum number of results.
+     * @return The best matches, best first.
+     */
+    static List<PetSearchResult> scan(Iterable<Pet> pets, String text, int limit) {
+        long[] query = Trigrams.of(text);
+        if (query.length == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+        TopPets top = new TopPets(query, limit);
+        pets.forEach(top::offer);
+        return top.results();
+    }
+
+    /**
+     * Scores every pet of a stream as it arrives, for the reactive stores without a search index.
+     * Only the best matches are kept, so the stream is never held in memory.
+     *
+     * @param pets  The pets to search.
+     * @param text  The searched text.
+     * @param limit The maximum number of results.
+     * @return The best matches, best first.
+     */
+    static Mono<List<PetSearchResult>> scan(Flux<Pet> pets, String text, int limit) {
+        long[] query = Trigrams.of(text);
+        if (query.length == 0 || limit <= 0) {
+            return Mono.just(Collections.emptyList());
+        }
+        return pets.reduceWith(() -> new TopPets(query, limit), (top, pet) -> {
+                    top.offer(pet);
+                    return top;
+                })
+                .map(TopPets::results);
+    }
+
+    private void addName(String name, int id) {
+        for (long trigram : Trigrams.of(name)) {
+            petIdsByNameTrigram.compute(trigram, (key, ids) -> {
+                IntSet petIds = ids == null ? new IntSet() : ids;
+                petIds.add(id);
+                return petIds;
+            });
+        }
+    }
+
+    private void removeName(String name, int id) {
+        for (long trigram : Trigrams.of(name)) {
+            petIdsByNameTrigram.computeIfPresent(trigram, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * Counts the pets of an owner, indexing its trigrams along with its first pet.
+     */
+    private void addOwner(String owner) {
+        String key = OwnerIndex.key(owner);
+        if (key == null) {
+            return;
+        }
+        petCountsByOwner.compute(key, (k, count) -> {
+            if (count != null) {
+                return count + 1;
+            }
+            for (long trigram : Trigrams.of(key)) {
+                ownersByTrigram.compute(trigram, (t, keys) -> {
+                    Set<String> ownerKeys = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+                    ownerKeys.add(key);
+                    return ownerKeys;
+                });
+            }
+            return 1;
+        });
+    }
+
+    /**
+     * Counts the pets of an owner, unindexing its trigrams along with its last pet.
+     */
+    private void removeOwner(String owner) {
+        String key = OwnerIndex.key(owner);
+        if (key == null) {
+            return;
+        }
+        petCountsByOwner.computeIfPresent(key, (k, count) -> {
+            if (count > 1) {
+                return count - 1;
+            }
+            for (long trigram : Trigrams.of(key)) {
+                ownersByTrigram.computeIfPresent(trigram, (t, keys) -> {
+                    keys.remove(key);
+                    return keys.isEmpty() ? null : keys;
+                });
+            }
+            return null;
+        });
+    }
+
+    private static final class OwnerMatch {
+
+        private final String owner;
+
+        private final double score;
+
+        private OwnerMatch(String owner, double score) {
+            this.owner = owner;
+            this.score = score;
+        }
+    }
+
+    /**
+     * The best matches found so far, in a heap whose head is the worst kept match.
+     */
+    private static final class TopPets {
+
+        private final long[] query;
+
+        private final int limit;
+
+        private final PriorityQueue<PetSearchResult> heap;
+
+        private long[] buffer = new long[64];
+
+        private TopPets(long[] query, int limit) {
+            this.query = query;
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.min(limit, 1024) + 1, WORST_FIRST);
+        }
+
+        /**
+         * @param score A score.
+         * @return False if a match with that score would not be kept.
+         */
+        private boolean accepts(double score) {
+            return heap.size() < limit || score >= heap.peek().getScore();
+        }
+
+        /**
+         * Scores a pet and keeps it if it is among the best matches.
+         *
+         * @param pet The pet, ignored if null.
+         */
+        private void offer(Pet pet) {
+            if (pet == null) {
+                return;
+            }
+            double score = Math.max(similarity(pet.getName()), similarity(pet.getOwner()));
+            if (score < THRESHOLD || !accepts(score)) {
+                return;
+            }
+            heap.add(new PetSearchResult(pet, score));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        private double similarity(String text) {
+            if (text == null) {
+                return 0;
+            }
+            if (buffer.length < Trigrams.capacity(text)) {
+                buffer = new long[Trigrams.capacity(text)];
+            }
+            return Trigrams.similarity(query, buffer, Trigrams.fill(text, buffer));
+        }
+
+        private List<PetSearchResult> results() {
+            PetSearchResult[] results = heap.toArray(new PetSearchResult[0]);
+            Arrays.sort(results, WORST_FIRST.reversed());
+            return Arrays.asList(results);
+        }
+    }
+
+    /**
+     * Counts of ints with open addressing and linear probing, for a single search.
+     */
+    private static final class Counter {
+
+        private int[] keys = IntSet.newSlots(256);
+
+        private int[] counts = new int[256];
+
+        private int size;
+
+        private int freeCount;
+
+        void increment(int value) {
+            if (value == IntSet.FREE) {
+                if (freeCount++ == 0) {
+                    size++;
+                }
+                return;
+            }
+            int mask = keys.length - 1;
+            int slot = IntSet.home(value, mask);
+            while (keys[slot] != IntSet.FREE) {
+                if (keys[slot] == value) {
+                    counts[slot]++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = value;
+            counts[slot] = 1;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+        }
+
+        /**
+         * @param maxCount The highest count.
+         * @return For each count, the values counted that many times.
+         */
+        int[][] idsByCount(int maxCount) {
+            int[] sizes = new int[maxCount + 1];
+            if (freeCount > 0) {
+                sizes[freeCount]++;
+            }
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != IntSet.FREE) {
+                    sizes[counts[slot]]++;
+                }
+            }
+            int[][] idsByCount = new int[maxCount + 1][];
+            for (int count = 0; count <= maxCount; count++) {
+                idsByCount[count] = new int[sizes[count]];
+                sizes[count] = 0;
+            }
+            if (freeCount > 0) {
+                idsByCount[freeCount][sizes[freeCount]++] = IntSet.FREE;
+            }
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != IntSet.FREE) {
+                    int count = counts[slot];
+                    idsByCount[count][sizes[count]++] = keys[slot];
+                }
+            }
+            return idsByCount;
+        }
+
+        private void grow() {
+            int[] previousKeys = keys;
+            int[] previousCounts = counts;
+            keys = IntSet.newSlots(previousKeys.length * 2);
+            counts = new int[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < previousKeys.length; i++) {
+                if (previousKeys[i] != IntSet.FREE) {
+                    int slot = IntSet.home(previousKeys[i], mask);
+                    while (keys[slot] != IntSet.FREE) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = previousKeys[i];
+                    counts[slot] = previousCounts[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Set of ints with open addressing and linear probing, about 8 bytes per element.
+     * Deletions shift the following elements back instead of leaving tombstones.
+     */
+    private static final class IntSet {
+
+        private static final int FREE = Integer.MIN_VALUE;
+
+        private static final IntSet EMPTY = new IntSet();
+
+        private int[] slots = newSlots(4);
+
+        private int size;
+
+        private boolean holdsFree;
+
+        synchronized boolean add(int value) {
+            if (value == FREE) {
+                if (holdsFree) {
+                    return false;
+                }
+                holdsFree = true;
+                size++;
+                return true;
+            }
+            int mask = slots.length - 1;
+            int slot = home(value, mask);
+            while (slots[slot] != FREE) {
+                if (slots[slot] == value) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = value;
+            if (++size * 2 > slots.length) {
+                grow();
+            }
+            return true;
+        }
+
+        synchronized boolean remove(int value) {
+            if (value == FREE) {
+                if (!holdsFree) {
+                    return false;
+                }
+                holdsFree = false;
+                size--;
+                return true;
+            }
+            int mask = slots.length - 1;
+            int slot = home(value, mask);
+            while (slots[slot] != value) {
+                if (slots[slot] == FREE) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            // Move back each following element whose home slot is not between the hole and itself
+            int hole = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                if (slots[next] == FREE) {
+                    break;
+                }
+                int nextHome = home(slots[next], mask);
+                boolean reachable = hole <= next ?
+                        hole < nextHome && nextHome <= next :
+                        hole < nextHome || nextHome <= next;
+                if (!reachable) {
+                    slots[hole] = slots[next];
+                    hole = next;
+                }
+            }
+            slots[hole] = FREE;
+            size--;
+            return true;
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Passes every element to a consumer, blocking writers of this set meanwhile.
+         *
+         * @param consumer Receives each element.
+         */
+        synchronized void forEach(IntConsumer consumer) {
+            if (holdsFree) {
+                consumer.accept(FREE);
+            }
+            for (int value : slots) {
+                if (value != FREE) {
+                    consumer.accept(value);
+                }
+            }
+        }
+
+        private void grow() {
+            int[] previous = slots;
+            slots = newSlots(previous.length * 2);
+            int mask = slots.length - 1;
+            for (int value : previous) {
+                if (value != FREE) {
+                    int slot = home(value, mask);
+                    while (slots[slot] != FREE) {
+                        slot = (slot + 1) & mask;
+                    }
+                    slots[slot] = value;
+                }
+            }
+        }
+
+        private static int home(int value, int mask) {
+            int hash = value * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        private static int[] newSlots(int capacity) {
+            int[] slots = new int[capacity];
+            Arrays.fill(slots, FREE);
+            return slots;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.concurrent.Queues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Author: Elimane
+ *
+ * One partition of a {@link PartitionedPetDao}, owned by a single writer thread.
+ * Writes are queued on a lock-free multi-producer single-consumer queue and applied in order by the writer,
+ * which publishes a new {@link PetCatalogVersion} once per drained batch, then completes the batch's writes.
+ * Readers take the published version with one volatile read, so they never wait on the writer.
+ */
+final class PetShard {
+
+    private static final int MAX_BATCH = 256;
+
+    private final Queue<Command<?>> commands = Queues.<Command<?>>unboundedMultiproducer().get();
+
+    private final Draft draft;
+
+    private final Scheduler completions;
+
+    private final Thread writer;
+
+    private volatile PetCatalogVersion current = PetCatalogVersion.EMPTY;
+
+    private volatile boolean sleeping;
+
+    private volatile boolean closed;
+
+    /**
+     * @param name        The name of the writer thread.
+     * @param statistics  The catalog aggregates, updated by each write.
+     * @param completions The scheduler write results are delivered on, so callers never run on the writer.
+     */
+    PetShard(String name, PetStatistics statistics, Scheduler completions) {
+        this.draft = new Draft(statistics);
+        this.completions = completions;
+        this.writer = new Thread(this::run, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return The latest published version.
+     */
+    PetCatalogVersion current() {
+        return current;
+    }
+
+    /**
+     * Queues a write for the writer thread.
+     *
+     * @param write The write, applied to the shard's latest version.
+     * @return The result of the write once it is published, empty if it returned null.
+     */
+    <T> Mono<T> write(Write<T> write) {
+        return Mono.<T>create(sink -> {
+            if (closed) {
+                sink.error(new IllegalStateException("Shard " + writer.getName() + " is closed"));
+                return;
+            }
+            commands.offer(new Command<>(write, sink));
+            if (sleeping) {
+                LockSupport.unpark(writer);
+            }
+        }).publishOn(completions);
+    }
+
+    /**
+     * Stops the writer once the queued writes are applied.
+     *
+     * @throws InterruptedException If interrupted while waiting for the writer.
+     */
+    void close() throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(writer);
+        writer.join();
+        // Queued while the writer was stopping
+        for (Command<?> command = commands.poll(); command != null; command = commands.poll()) {
+            command.sink.error(new IllegalStateException("Shard " + writer.getName() + " is closed"));
+        }
+    }
+
+    private void run() {
+        List<Command<?>> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            Command<?> command = commands.poll();
+            if (command != null) {
+                command.apply(draft);
+                batch.add(command);
+                if (batch.size() == MAX_BATCH) {
+                    publish(batch);
+                }
+            } else if (!batch.isEmpty()) {
+                publish(batch);
+            } else if (closed) {
+                return;
+            } else {
+                sleeping = true;
+                // Checked again after raising the flag, so a write queued meanwhile is not missed
+                if (commands.isEmpty() && !closed) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+            }
+        }
+    }
+
+    private void publish(List<Command<?>> batch) {
+        current = draft.version;
+        for (Command<?> command : batch) {
+            command.complete();
+        }
+        batch.clear();
+    }
+
+    /**
+     * A write run by the shard writer.
+     *
+     * @param <T> The result type.
+     */
+    @FunctionalInterface
+    interface Write<T> {
+
+        /**
+         * @param draft The shard's latest version, including the writes queued before this one.
+         * @return The result, or null for an empty Mono.
+         * @throws PetPreconditionFailedException To fail the write, before changing the draft.
+         */
+        T apply(Draft draft) throws PetPreconditionFailedException;
+    }
+
+    /**
+     * The writer's view of the shard: the next version to publish, changed in place by writes.
+     * Only the writer thread touches it.
+     */
+    static final class Draft {
+
+        private final PetStatistics statistics;
+
+        private PetCatalogVersion version = PetCatalogVersion.EMPTY;
+
+        private Draft(PetStatistics statistics) {
+            this.statistics = statistics;
+        }
+
+        Pet get(int id) {
+            return version.get(id);
+        }
+
+        /**
+         * @param pet The pet to store, replacing the pet stored under its ID if any.
+         * @return The replaced pet, or null if the pet was added.
+         */
+        Pet put(Pet pet) {
+            Pet previous = version.get(pet.getId());
+            version = version.put(pet);
+            if (previous == null) {
+                statistics.add(pet);
+            } else {
+                statistics.update(previous, pet);
+            }
+            return previous;
+        }
+
+        /**
+         * @param id The ID of the pet to remove.
+         * @return True if the pet was removed, false if not found.
+         */
+        boolean remove(int id) {
+            Pet previous = version.get(id);
+            if (previous == null) {
+                return false;
+            }
+            version = version.remove(id);
+            statistics.remove(previous);
+            return true;
+        }
+    }
+
+    /**
+     * A queued write and its caller.
+     */
+    private static final class Command<T> {
+
+        private final Write<T> write;
+
+        private final MonoSink<T> sink;
+
+        private T result;
+
+        private Exception error;
+
+        Command(Write<T> write, MonoSink<T> sink) {
+            this.write = write;
+            this.sink = sink;
+        }
+
+        void apply(Draft draft) {
+            try {
+                result = write.apply(draft);
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+
+        void complete() {
+            if (error != null) {
+                sink.error(error);
+            } else if (result == null) {
+                sink.success();
+            } else {
+                sink.success(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetStats;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Author: Elimane
+ *
+ * Catalog aggregates kept up to date by each write, so that reading them does not depend on the catalog size.
+ * Every write updates a few counters: the pet count and the age total are striped counters, as every writer
+ * updates them, while an age or owner count is a map entry, dropped once it falls to zero.
+ * Callers must update it while holding the primary key lock of the pet they modify. A read running along writes
+ * may see some counters of a write and not the others yet.
+ */
+final class PetStatistics {
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalAge = new LongAdder();
+
+    private final ConcurrentMap<Integer, Long> petsByAge = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Long> petsByOwner = new ConcurrentHashMap<>();
+
+    /**
+     * Counts an added pet.
+     *
+     * @param pet The added pet.
+     */
+    void add(Pet pet) {
+        count.increment();
+        addAge(pet.getAge(), 1);
+        addOwner(pet.getOwner(), 1);
+    }
+
+    /**
+     * Moves the counts of a replaced pet to its new age and owner.
+     *
+     * @param previous The replaced pet.
+     * @param updated  The pet replacing it.
+     */
+    void update(Pet previous, Pet updated) {
+        if (previous.getAge() != updated.getAge()) {
+            addAge(previous.getAge(), -1);
+            addAge(updated.getAge(), 1);
+        }
+        if (!Objects.equals(OwnerIndex.key(previous.getOwner()), OwnerIndex.key(updated.getOwner()))) {
+            addOwner(previous.getOwner(), -1);
+            addOwner(updated.getOwner(), 1);
+        }
+    }
+
+    /**
+     * Uncounts a deleted pet.
+     *
+     * @param pet The deleted pet.
+     */
+    void remove(Pet pet) {
+        count.decrement();
+        addAge(pet.getAge(), -1);
+        addOwner(pet.getOwner(), -1);
+    }
+
+    /**
+     * Copies the aggregates. It takes time in the number of distinct ages and of listed owners,
+     * whatever the number of pets.
+     *
+     * @param owners The owners to list, or null to list every owner.
+     * @return A copy of the aggregates.
+     */
+    PetStats snapshot(Collection<String> owners) {
+        long pets = count.sum();
+        Map<Integer, Long> ageHistogram = new TreeMap<>();
+        ageHistogram.putAll(petsByAge);
+        Map<String, Long> ownerCounts = new TreeMap<>();
+        if (owners == null) {
+            ownerCounts.putAll(petsByOwner);
+        } else {
+            for (String owner : owners) {
+                String key = OwnerIndex.key(owner);
+                ownerCounts.put(key, petsByOwner.getOrDefault(key, 0L));
+            }
+        }
+        return new PetStats(pets, pets > 0 ? (double) totalAge.sum() / pets : 0,
+                ageHistogram, petsByOwner.size(), ownerCounts);
+    }
+
+    /**
+     * Aggregates a whole catalog, for the stores that do not keep statistics.
+     *
+     * @param pets   The catalog.
+     * @param owners The owners to list, or null to list every owner.
+     * @return The aggregates of the catalog.
+     */
+    static PetStats of(Iterable<Pet> pets, Collection<String> owners) {
+        PetStatistics statistics = new PetStatistics();
+        for (Pet pet : pets) {
+            statistics.add(pet);
+        }
+        return statistics.snapshot(owners);
+    }
+
+    private void addAge(int age, int delta) {
+        totalAge.add((long) age * delta);
+        petsByAge.compute(age, (k, pets) -> {
+            long total = (pets == null ? 0 : pets) + delta;
+            return total == 0 ? null : total;
+        });
+    }
+
+    private void addOwner(String owner, long delta) {
+        String key = OwnerIndex.key(owner);
+        if (key == null) {
+            return;
+        }
+        petsByOwner.compute(key, (k, pets) -> {
+            long total = (pets == null ? 0 : pets) + delta;
+            return total == 0 ? null : total;
+        });
+    }
+}
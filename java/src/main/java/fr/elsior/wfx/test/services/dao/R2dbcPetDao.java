@@ -0,0 +1,473 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Author: Elimane
+ *
+ * Non-blocking store backed by an embedded H2 database through R2DBC, selected with {@code pets.store=r2dbc}.
+ * Connections come from a pool and are only held for the duration of a statement, or of a transaction
+ * for conditional updates and bulk writes. Pets are looked up through the primary key and an index on the
+ * normalized owner, large results are read by keyset pages as the subscriber requests them.
+ * <p>
+ * No call blocks a thread, so the service uses this store directly instead of running it on the DAO scheduler.
+ */
+@Component
+@ConditionalOnProperty(name = "pets.store", havingValue = "r2dbc")
+public class R2dbcPetDao implements IReactivePetDao {
+
+    private static final Logger logger = LoggerFactory.getLogger(R2dbcPetDao.class);
+
+    private static final String COLUMNS = "id, name, age, owner";
+
+    private static final String INSERT = "INSERT INTO pets (id, name, age, owner, owner_key) VALUES ($1, $2, $3, $4, $5)";
+
+    private static final String UPDATE = "UPDATE pets SET name = $1, age = $2, owner = $3, owner_key = $4 WHERE id = $5";
+
+    private final ConnectionPool pool;
+
+    private final int fetchSize;
+
+    /**
+     * Constructor with dependency injection.
+     *
+     * @param url         The R2DBC URL of the database.
+     * @param initialSize The number of connections opened on startup.
+     * @param maxSize     The maximum number of pooled connections.
+     * @param fetchSize   The number of pets read by each query of a catalog scan.
+     */
+    public R2dbcPetDao(@Value("${pets.r2dbc.url:r2dbc:h2:file:///./data/pets}") String url,
+                       @Value("${pets.r2dbc.pool.initial-size:4}") int initialSize,
+                       @Value("${pets.r2dbc.pool.max-size:16}") int maxSize,
+                       @Value("${pets.r2dbc.fetch-size:1000}") int fetchSize) {
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(url))
+                .name("pets")
+                .initialSize(initialSize)
+                .maxSize(maxSize)
+                .maxIdleTime(Duration.ofMinutes(30))
+                .build());
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Creates the table and its indexes if missing, and seeds the default pets into an empty table.
+     * This method is called automatically after the bean is constructed, and blocks until the schema is ready.
+     */
+    @PostConstruct
+    void open() {
+        Flux.usingWhen(pool.create(), connection -> Flux.concat(
+                rowsUpdated(connection.createStatement("CREATE TABLE IF NOT EXISTS pets (" +
+                        "id INT PRIMARY KEY, name VARCHAR(255), age INT NOT NULL, owner VARCHAR(255), owner_key VARCHAR(255))")),
+                rowsUpdated(connection.createStatement("CREATE INDEX IF NOT EXISTS pets_owner_key ON pets (owner_key)"))),
+                Connection::close).blockLast();
+        if (countPets().block() == 0) {
+            addPets(DefaultPets.create()).block();
+        }
+        logger.info("Opened R2DBC pet store with {} pets", countPets().block());
+    }
+
+    /**
+     * Closes the pooled connections.
+     * This method is called automatically before the bean is destroyed.
+     */
+    @PreDestroy
+    void close() {
+        pool.dispose();
+    }
+
+    /**
+     * Streams the whole catalog in ID order, one keyset page of the fetch size at a time.
+     * A page is only read once the previous one has been requested, and no connection is held between pages.
+     *
+     * @return All pets.
+     */
+    @Override
+    public Flux<Pet> getPets() {
+        return getPets(null, fetchSize).collectList()
+                .expand(page -> page.size() < fetchSize ?
+                        Mono.empty() :
+                        getPets(page.get(page.size() - 1).getId(), fetchSize).collectList())
+                .flatMapIterable(page -> page, 1);
+    }
+
+    @Override
+    public Flux<Pet> getPets(Integer afterId, int limit) {
+        return query(connection -> afterId == null ?
+                connection.createStatement("SELECT " + COLUMNS + " FROM pets ORDER BY id LIMIT $1")
+                        .bind("$1", limit) :
+                connection.createStatement("SELECT " + COLUMNS + " FROM pets WHERE id > $1 ORDER BY id LIMIT $2")
+                        .bind("$1", afterId)
+                        .bind("$2", limit));
+    }
+
+    /**
+     * Adds a new pet, relying on the primary key to reject a taken ID.
+     *
+     * @param pet The pet to add.
+     * @return The added pet, or empty if the ID is already taken.
+     */
+    @Override
+    public Mono<Pet> addPet(Pet pet) {
+        return Mono.usingWhen(pool.create(), connection -> insert(connection, pet), Connection::close);
+    }
+
+    @Override
+    public Mono<Pet> getPet(int id) {
+        return query(connection -> connection.createStatement("SELECT " + COLUMNS + " FROM pets WHERE id = $1")
+                .bind("$1", id))
+                .next();
+    }
+
+    /**
+     * Retrieves the pets of an owner through the owner index.
+     *
+     * @param owner The owner's name, compared ignoring case.
+     * @return The pets of the owner in ID order, empty if the owner is unknown.
+     */
+    @Override
+    public Flux<Pet> getPetsByOwner(String owner) {
+        if (owner == null) {
+            return Flux.empty();
+        }
+        return query(connection -> connection.createStatement(
+                "SELECT " + COLUMNS + " FROM pets WHERE owner_key = $1 ORDER BY id")
+                .bind("$1", OwnerIndex.key(owner)));
+    }
+
+    @Override
+    public Mono<Pet> updatePet(int id, Pet updatedPet) {
+        return Mono.usingWhen(pool.create(), connection -> update(connection, id, updatedPet), Connection::close);
+    }
+
+    /**
+     * Updates a pet within a transaction holding the lock of its row, so the stored pet cannot change
+     * between the test and the update.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet before updating it.
+     * @return The updated pet, empty if not found, or an error {@link PetPreconditionFailedException}.
+     */
+    @Override
+    public Mono<Pet> updatePet(int id, Pet updatedPet, Predicate<Pet> expected) {
+        return inTransaction(connection -> Flux.from(connection.createStatement(
+                "SELECT " + COLUMNS + " FROM pets WHERE id = $1 FOR UPDATE")
+                .bind("$1", id)
+                .execute())
+                .flatMap(result -> result.map((row, metadata) -> pet(row)))
+                .next()
+                .flatMap(pet -> expected.test(pet) ?
+                        update(connection, id, updatedPet) :
+                        Mono.error(new PetPreconditionFailedException())));
+    }
+
+    @Override
+    public Mono<Boolean> deletePet(int id) {
+        return Mono.usingWhen(pool.create(), connection -> delete(connection, id), Connection::close);
+    }
+
+    @Override
+    public Mono<Integer> countPets() {
+        return Mono.usingWhen(pool.create(), connection -> Flux.from(connection.createStatement(
+                "SELECT COUNT(*) FROM pets").execute())
+                .flatMap(result -> result.map((row, metadata) -> row.get(0, Long.class).intValue()))
+                .next(), Connection::close);
+    }
+
+    /**
+     * Reads several pets with one query.
+     *
+     * @param ids The IDs of the pets to retrieve.
+     * @return The pets found, by ID. Missing IDs have no entry.
+     */
+    @Override
+    public Mono<Map<Integer, Pet>> getPetsById(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+        return query(connection -> {
+            Statement statement = connection.createStatement(
+                    "SELECT " + COLUMNS + " FROM pets WHERE id IN (" + placeholders(1, ids.size()) + ")");
+            int index = 0;
+            for (Integer id : ids) {
+                statement.bind(index++, id);
+            }
+            return statement;
+        }).collectMap(Pet::getId, pet -> pet, () -> new HashMap<>(ids.size() * 2));
+    }
+
+    /**
+     * Finds the pets matching a query, with every criterion evaluated by the database.
+     *
+     * @param query The query criteria and page.
+     * @return The matching pets, in ID order, at most the query limit.
+     */
+    @Override
+    public Flux<Pet> findPets(PetQuery query) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        if (query.getMinAge() != null) {
+            values.add(query.getMinAge());
+            conditions.add("age >= $" + values.size());
+        }
+        if (query.getMaxAge() != null) {
+            values.add(query.getMaxAge());
+            conditions.add("age <= $" + values.size());
+        }
+        if (query.getNamePrefix() != null) {
+            values.add(escapeLike(PetQuery.normalize(query.getNamePrefix())) + "%");
+            conditions.add("LOWER(name) LIKE $" + values.size() + " ESCAPE '\\'");
+        }
+        if (query.getOwner() != null) {
+            values.add(OwnerIndex.key(query.getOwner()));
+            conditions.add("owner_key = $" + values.size());
+        }
+        if (query.getAfterId() != null) {
+            values.add(query.getAfterId());
+            conditions.add("id > $" + values.size());
+        }
+        String sql = "SELECT " + COLUMNS + " FROM pets" +
+                (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions)) + " ORDER BY id" +
+                (query.getLimit() == Integer.MAX_VALUE ? "" : " LIMIT " + query.getLimit());
+        return query(connection -> {
+            Statement statement = connection.createStatement(sql);
+            for (int i = 0; i < values.size(); i++) {
+                statement.bind(i, values.get(i));
+            }
+            return statement;
+        });
+    }
+
+    /**
+     * Scores every pet of the catalog as it streams, keeping only the best matches in memory.
+     *
+     * @param text  The searched text.
+     * @param limit The maximum number of results.
+     * @return The pets whose trigram similarity reaches 0.3, best first.
+     */
+    @Override
+    public Flux<PetSearchResult> searchPets(String text, int limit) {
+        return PetSearchIndex.scan(getPets(), text, limit).flatMapIterable(results -> results);
+    }
+
+    /**
+     * Computes the catalog aggregates with grouped queries, on one connection.
+     *
+     * @param owners The owners whose pets are counted, or null for every owner.
+     * @return The catalog aggregates.
+     */
+    @Override
+    public Mono<PetStats> getStats(List<String> owners) {
+        return Mono.usingWhen(pool.create(), connection -> {
+            Mono<long[]> totals = Flux.from(connection.createStatement(
+                    "SELECT COUNT(*), COALESCE(SUM(age), 0), COUNT(DISTINCT owner_key) FROM pets").execute())
+                    .flatMap(result -> result.map((row, metadata) -> new long[]{
+                            row.get(0, Long.class), ((Number) row.get(1)).longValue(), row.get(2, Long.class)}))
+                    .next();
+            Mono<Map<Integer, Long>> ages = Flux.from(connection.createStatement(
+                    "SELECT age, COUNT(*) FROM pets GROUP BY age").execute())
+                    .flatMap(result -> result.map((row, metadata) -> new Object[]{
+                            row.get(0, Integer.class), row.get(1, Long.class)}))
+                    .collectMap(row -> (Integer) row[0], row -> (Long) row[1], TreeMap::new);
+            return totals.zipWith(ages)
+                    .flatMap(aggregates -> countByOwner(connection, owners).map(petsByOwner -> {
+                        long[] total = aggregates.getT1();
+                        return new PetStats(total[0], total[0] > 0 ? (double) total[1] / total[0] : 0,
+                                aggregates.getT2(), (int) total[2], petsByOwner);
+                    }));
+        }, Connection::close);
+    }
+
+    /**
+     * Adds a batch of pets within one transaction.
+     *
+     * @param pets The pets to add.
+     * @return For each pet, in order, the added pet or null if its ID is already taken.
+     */
+    @Override
+    public Mono<List<Pet>> addPets(List<Pet> pets) {
+        return inTransaction(connection -> Flux.fromIterable(pets)
+                .concatMap(pet -> insert(connection, pet).map(Optional::of).defaultIfEmpty(Optional.empty()))
+                .collect(() -> new ArrayList<>(pets.size()), (added, pet) -> added.add(pet.orElse(null))));
+    }
+
+    /**
+     * Stores a batch of pets within one transaction, updating each pet and adding it when not found.
+     *
+     * @param pets The pets to store.
+     * @return For each pet, in order, true if it was added or false if it replaced a stored pet.
+     */
+    @Override
+    public Mono<boolean[]> upsertPets(List<Pet> pets) {
+        return inTransaction(connection -> Flux.fromIterable(pets)
+                .concatMap(pet -> update(connection, pet.getId(), pet).map(updated -> false)
+                        .switchIfEmpty(insert(connection, pet).map(added -> true))
+                        // Added concurrently between both statements
+                        .switchIfEmpty(update(connection, pet.getId(), pet).map(updated -> false)))
+                .collectList()
+                .map(R2dbcPetDao::toArray));
+    }
+
+    /**
+     * Deletes a batch of pets within one transaction.
+     *
+     * @param ids The IDs of the pets to delete.
+     * @return For each ID, in order, true if the pet was deleted or false if not found.
+     */
+    @Override
+    public Mono<boolean[]> deletePets(List<Integer> ids) {
+        return inTransaction(connection -> Flux.fromIterable(ids)
+                .concatMap(id -> delete(connection, id))
+                .collectList()
+                .map(R2dbcPetDao::toArray));
+    }
+
+    /**
+     * Runs a query on a pooled connection, released once the rows are consumed or the subscriber cancels.
+     * Rows are read as the subscriber requests them.
+     */
+    private Flux<Pet> query(Function<Connection, Statement> statement) {
+        return Flux.usingWhen(pool.create(),
+                connection -> Flux.from(statement.apply(connection).execute())
+                        .concatMap(result -> result.map((row, metadata) -> pet(row))),
+                Connection::close);
+    }
+
+    /**
+     * Runs work within a transaction, committed when it completes and rolled back when it fails or is cancelled.
+     */
+    private <T> Mono<T> inTransaction(Function<Connection, Mono<T>> work) {
+        return Mono.usingWhen(pool.create(),
+                connection -> Mono.from(connection.beginTransaction()).then(work.apply(connection)),
+                connection -> Mono.from(connection.commitTransaction()).then(Mono.from(connection.close())),
+                (connection, e) -> Mono.from(connection.rollbackTransaction()).then(Mono.from(connection.close())),
+                connection -> Mono.from(connection.rollbackTransaction()).then(Mono.from(connection.close())));
+    }
+
+    private static Mono<Pet> insert(Connection connection, Pet pet) {
+        Statement statement = connection.createStatement(INSERT).bind("$1", pet.getId());
+        bind(statement, "$2", pet.getName());
+        statement.bind("$3", pet.getAge());
+        bind(statement, "$4", pet.getOwner());
+        bind(statement, "$5", OwnerIndex.key(pet.getOwner()));
+        return rowsUpdated(statement)
+                .thenReturn(pet)
+                .onErrorResume(R2dbcDataIntegrityViolationException.class, e -> Mono.empty());
+    }
+
+    private static Mono<Pet> update(Connection connection, int id, Pet updatedPet) {
+        Statement statement = connection.createStatement(UPDATE);
+        bind(statement, "$1", updatedPet.getName());
+        statement.bind("$2", updatedPet.getAge());
+        bind(statement, "$3", updatedPet.getOwner());
+        bind(statement, "$4", OwnerIndex.key(updatedPet.getOwner()));
+        statement.bind("$5", id);
+        return rowsUpdated(statement)
+                .filter(rows -> rows > 0)
+                .map(rows -> new Pet(id, updatedPet.getName(), updatedPet.getAge(), updatedPet.getOwner()));
+    }
+
+    private static Mono<Boolean> delete(Connection connection, int id) {
+        return rowsUpdated(connection.createStatement("DELETE FROM pets WHERE id = $1").bind("$1", id))
+                .map(rows -> rows > 0);
+    }
+
+    private static Mono<Map<String, Long>> countByOwner(Connection connection, List<String> owners) {
+        if (owners != null && owners.isEmpty()) {
+            return Mono.just(new TreeMap<>());
+        }
+        Statement statement;
+        if (owners == null) {
+            statement = connection.createStatement(
+                    "SELECT owner_key, COUNT(*) FROM pets WHERE owner_key IS NOT NULL GROUP BY owner_key");
+        } else {
+            statement = connection.createStatement("SELECT owner_key, COUNT(*) FROM pets WHERE owner_key IN (" +
+                    placeholders(1, owners.size()) + ") GROUP BY owner_key");
+            for (int i = 0; i < owners.size(); i++) {
+                bind(statement, "$" + (i + 1), OwnerIndex.key(owners.get(i)));
+            }
+        }
+        return Flux.from(statement.execute())
+                .flatMap(result -> result.map((row, metadata) -> new Object[]{
+                        row.get(0, String.class), row.get(1, Long.class)}))
+                .collectMap(row -> (String) row[0], row -> (Long) row[1], TreeMap::new)
+                .map(counts -> {
+                    if (owners != null) {
+                        // Unknown owners are listed with no pet, as the in-memory stores do
+                        owners.forEach(owner -> counts.putIfAbsent(OwnerIndex.key(owner), 0L));
+                    }
+                    return counts;
+                });
+    }
+
+    private static Mono<Integer> rowsUpdated(Statement statement) {
+        return Flux.from(statement.execute())
+                .flatMap(result -> result.getRowsUpdated())
+                .reduce(0, Integer::sum);
+    }
+
+    private static void bind(Statement statement, String name, String value) {
+        if (value == null) {
+            statement.bindNull(name, String.class);
+        } else {
+            statement.bind(name, value);
+        }
+    }
+
+    private static Pet pet(Row row) {
+        return new Pet(row.get("id", Integer.class), row.get("name", String.class),
+                row.get("age", Integer.class), row.get("owner", String.class));
+    }
+
+    private static String placeholders(int first, int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "$" : ", $").append(first + i);
+        }
+        return placeholders.toString();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static boolean[] toArray(List<Boolean> values) {
+        boolean[] array = new boolean[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,151 @@
+package fr.elsior.wfx.test.services.dao;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Author: Elimane
+ *
+ * Secondary index on an ordered key of the pets, answering range and prefix lookups.
+ * It holds one (key, ID) entry per pet in a skip list, so nearly unique keys such as names cost a single node each.
+ * Callers must update it while holding the primary key lock of the pet they modify.
+ *
+ * @param <K> The type of the indexed key.
+ */
+final class SortedIndex<K extends Comparable<K>> {
+
+    private final ConcurrentSkipListSet<Entry<K>> entries = new ConcurrentSkipListSet<>();
+
+    /**
+     * Registers a pet under a key.
+     *
+     * @param key The indexed value of the pet, ignored if null.
+     * @param id  The ID of the pet.
+     */
+    void add(K key, int id) {
+        if (key != null) {
+            entries.add(new Entry<>(key, id));
+        }
+    }
+
+    /**
+     * Unregisters a pet from a key.
+     *
+     * @param key The indexed value of the pet, ignored if null.
+     * @param id  The ID of the pet.
+     */
+    void remove(K key, int id) {
+        if (key != null) {
+            entries.remove(new Entry<>(key, id));
+        }
+    }
+
+    /**
+     * Retrieves the IDs of the pets whose key is within a range.
+     *
+     * @param from The lowest key, inclusive, or null for no lower bound.
+     * @param to   The highest key, inclusive, or null for no upper bound.
+     * @return A live view of the IDs in key order. Sizing it walks the range.
+     */
+    Collection<Integer> range(K from, K to) {
+        NavigableSet<Entry<K>> range = entries;
+        if (from != null) {
+            range = range.tailSet(new Entry<>(from, Integer.MIN_VALUE), true);
+        }
+        if (to != null) {
+            range = range.headSet(new Entry<>(to, Integer.MAX_VALUE), true);
+        }
+        return new Ids<>(range);
+    }
+
+    /**
+     * Retrieves the IDs of the pets whose key starts with a prefix.
+     *
+     * @param index  A string index.
+     * @param prefix The prefix of the keys.
+     * @return A live view of the IDs in key order. Sizing it walks the range.
+     * It may hold keys past the prefix when the prefix ends with {@link Character#MAX_VALUE}.
+     */
+    static Collection<Integer> prefix(SortedIndex<String> index, String prefix) {
+        if (prefix.isEmpty()) {
+            return new Ids<>(index.entries);
+        }
+        NavigableSet<Entry<String>> tail = index.entries.tailSet(new Entry<>(prefix, Integer.MIN_VALUE), true);
+        // Every key starting with the prefix sorts before the prefix with its last character incremented
+        int last = prefix.length() - 1;
+        if (prefix.charAt(last) == Character.MAX_VALUE) {
+            // No such bound, the caller filters out the keys past the prefix
+            return new Ids<>(tail);
+        }
+        String end = prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+        return new Ids<>(tail.headSet(new Entry<>(end, Integer.MIN_VALUE), false));
+    }
+
+    private static final class Entry<K extends Comparable<K>> implements Comparable<Entry<K>> {
+
+        private final K key;
+
+        private final int id;
+
+        private Entry(K key, int id) {
+            this.key = key;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry<K> other) {
+            int byKey = key.compareTo(other.key);
+            return byKey != 0 ? byKey : Integer.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+            Entry<?> entry = (Entry<?>) other;
+            return id == entry.id && key.equals(entry.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + id;
+        }
+    }
+
+    /**
+     * The IDs of a range of entries.
+     */
+    private static final class Ids<K extends Comparable<K>> extends AbstractCollection<Integer> {
+
+        private final NavigableSet<Entry<K>> entries;
+
+        private Ids(NavigableSet<Entry<K>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            Iterator<Entry<K>> iterator = entries.iterator();
+            return new Iterator<Integer>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Integer next() {
+                    return iterator.next().id;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package fr.elsior.wfx.test.services.dao;
+
+import java.util.Arrays;
+
+/**
+ * Author: Elimane
+ *
+ * Trigrams of the words of a text, compared ignoring case. Each word is padded with two spaces before and one after,
+ * so "Rex" gives "  r", " re", "rex" and "ex ", and a typo only changes the few trigrams around it.
+ * A trigram is encoded as a long holding its three characters, and a text as the sorted distinct codes.
+ */
+final class Trigrams {
+
+    static final long[] NONE = new long[0];
+
+    private Trigrams() {}
+
+    /**
+     * @param text The text, or null.
+     * @return The sorted distinct trigram codes of the text, empty for a null or blank text.
+     */
+    static long[] of(String text) {
+        if (text == null || text.isEmpty()) {
+            return NONE;
+        }
+        long[] codes = new long[capacity(text)];
+        int count = fill(text, codes);
+        return count == 0 ? NONE : Arrays.copyOf(codes, count);
+    }
+
+    /**
+     * @param text The text.
+     * @return The length of a buffer large enough for the trigrams of the text. A word of n characters gives n + 1.
+     */
+    static int capacity(String text) {
+        return 2 * text.length();
+    }
+
+    /**
+     * Writes the sorted distinct trigram codes of a text at the start of a buffer, without allocating.
+     *
+     * @param text  The text.
+     * @param codes A buffer of at least {@link #capacity(String)} codes.
+     * @return The number of distinct codes written.
+     */
+    static int fill(String text, long[] codes) {
+        int length = text.length();
+        int count = 0;
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i == start) {
+                break;
+            }
+            char first = ' ';
+            char second = ' ';
+            for (int j = start; j <= i; j++) {
+                char third = j < i ? Character.toLowerCase(text.charAt(j)) : ' ';
+                codes[count++] = code(first, second, third);
+                first = second;
+                second = third;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(codes, 0, count);
+        int distinct = 1;
+        for (int j = 1; j < count; j++) {
+            if (codes[j] != codes[distinct - 1]) {
+                codes[distinct++] = codes[j];
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Jaccard similarity of two trigram sets: the shared trigrams over all the distinct trigrams of both.
+     *
+     * @param a Sorted distinct trigram codes.
+     * @param b Sorted distinct trigram codes.
+     * @return The similarity, from 0 (nothing shared) to 1 (same trigrams).
+     */
+    static double similarity(long[] a, long[] b) {
+        return similarity(a, b, b.length);
+    }
+
+    /**
+     * @param a       Sorted distinct trigram codes.
+     * @param b       Sorted distinct trigram codes at the start of an array.
+     * @param bLength The number of codes of b.
+     * @return The Jaccard similarity of both sets.
+     */
+    static double similarity(long[] a, long[] b, int bLength) {
+        if (a.length == 0 || bLength == 0) {
+            return 0;
+        }
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < bLength) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) shared / (a.length + bLength - shared);
+    }
+
+    private static long code(char first, char second, char third) {
+        return ((long) first << 32) | ((long) second << 16) | third;
+    }
+}
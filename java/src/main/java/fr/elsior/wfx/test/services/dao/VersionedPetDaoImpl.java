@@ -0,0 +1,336 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Author: Elimane
+ *
+ * Multi-version store, selected with {@code pets.store=versioned}.
+ * The catalog is an immutable {@link PetCatalogVersion}: writers build the next version under a single lock,
+ * copying only the changed tree paths, and publish it with one volatile write. Readers take the current version
+ * with one volatile read and never lock, so every read, including iterating the whole catalog, sees a consistent
+ * point in time even while writes go on. Stored pets are fresh instances that are never modified, and readers
+ * get copies of them, so a caller modifying a pet it read cannot change a version.
+ * <p>
+ * A version stays alive as long as a reader holds it, for instance a {@code GET /pets} response still being written,
+ * and is reclaimed by the garbage collector afterwards. Batches are published as a single version.
+ */
+@Component
+@ConditionalOnProperty(name = "pets.store", havingValue = "versioned")
+public class VersionedPetDaoImpl implements IPetDao {
+
+    private final Object writeLock = new Object();
+
+    private volatile PetCatalogVersion current = PetCatalogVersion.EMPTY;
+
+    /**
+     * Initializes the store with default values.
+     * This method is called automatically after the bean is constructed.
+     */
+    @PostConstruct
+    void initPetList() {
+        addPets(DefaultPets.create());
+    }
+
+    /**
+     * Retrieves the list of all pets.
+     *
+     * @return The pets of the current version in ID order, a read-only view unaffected by later writes,
+     * copying each pet as it is read.
+     */
+    @Override
+    public List<Pet> getPets() {
+        return copies(current.pets());
+    }
+
+    /**
+     * @return The number of stored pets.
+     */
+    @Override
+    public int countPets() {
+        return current.size();
+    }
+
+    /**
+     * Retrieves a page of pets ordered by ID, from a single version.
+     *
+     * @param afterId The ID of the last pet of the previous page, or null for the first page.
+     * @param limit   The maximum number of pets to return.
+     * @return The pets with an ID greater than afterId, in ID order.
+     */
+    @Override
+    public List<Pet> getPets(Integer afterId, int limit) {
+        List<Pet> pets = current.pets(afterId, limit);
+        pets.replaceAll(VersionedPetDaoImpl::copyOf);
+        return pets;
+    }
+
+    /**
+     * Retrieves a pet by its ID.
+     *
+     * @param id The ID of the pet to retrieve.
+     * @return The pet with the given ID or null if not found.
+     */
+    @Override
+    public Pet getPet(int id) {
+        Pet pet = current.get(id);
+        return pet == null ? null : copyOf(pet);
+    }
+
+    /**
+     * Retrieves several pets by their IDs from a single version, so they are consistent with each other.
+     *
+     * @param ids The IDs of the pets to retrieve.
+     * @return The pets found, by ID. Missing IDs have no entry.
+     */
+    @Override
+    public Map<Integer, Pet> getPetsById(Collection<Integer> ids) {
+        PetCatalogVersion version = current;
+        Map<Integer, Pet> pets = new HashMap<>();
+        for (Integer id : ids) {
+            Pet pet = version.get(id);
+            if (pet != null) {
+                pets.put(id, copyOf(pet));
+            }
+        }
+        return pets;
+    }
+
+    /**
+     * Retrieves all pets owned by a specific owner, ignoring case.
+     *
+     * @param owner The owner's name.
+     * @return The owner's pets in ID order, a read-only view unaffected by later writes,
+     * copying each pet as it is read.
+     */
+    @Override
+    public List<Pet> getPetsByOwner(String owner) {
+        return copies(current.petsOf(owner));
+    }
+
+    /**
+     * Finds the pets matching a query in a single version, through the owner index when the query has an owner
+     * and by scanning the version otherwise.
+     *
+     * @param query The query criteria and page.
+     * @return The matching pets, in ID order, at most the query limit.
+     */
+    @Override
+    public List<Pet> findPets(PetQuery query) {
+        PetCatalogVersion version = current;
+        Iterator<Pet> candidates = query.getOwner() == null ?
+                version.petsAfter(query.getAfterId()) :
+                version.petsOf(query.getOwner()).iterator();
+        List<Pet> pets = new ArrayList<>();
+        while (pets.size() < query.getLimit() && candidates.hasNext()) {
+            Pet pet = candidates.next();
+            if (query.matches(pet)) {
+                pets.add(copyOf(pet));
+            }
+        }
+        return pets;
+    }
+
+    /**
+     * Adds a new pet if no pet is stored under its ID.
+     *
+     * @param pet The pet to add.
+     * @return The stored copy of the pet or null if the ID is already taken.
+     */
+    @Override
+    public Pet addPet(Pet pet) {
+        synchronized (writeLock) {
+            if (current.get(pet.getId()) != null) {
+                return null;
+            }
+            Pet stored = copyOf(pet.getId(), pet);
+            current = current.put(stored);
+            return stored;
+        }
+    }
+
+    /**
+     * Publishes a new version of an existing pet.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @return The updated pet or null if not found.
+     */
+    @Override
+    public Pet updatePet(int id, Pet updatedPet) {
+        synchronized (writeLock) {
+            if (current.get(id) == null) {
+                return null;
+            }
+            Pet stored = copyOf(id, updatedPet);
+            current = current.put(stored);
+            return stored;
+        }
+    }
+
+    /**
+     * Publishes a new version of an existing pet if the stored pet matches an expected state.
+     *
+     * @param id         The ID of the pet to update.
+     * @param updatedPet The updated pet details.
+     * @param expected   Tested against the stored pet before updating it.
+     * @return The updated pet or null if not found.
+     * @throws PetPreconditionFailedException If the stored pet does not match.
+     */
+    @Override
+    public Pet updatePet(int id, Pet updatedPet, Predicate<Pet> expected) throws PetPreconditionFailedException {
+        synchronized (writeLock) {
+            Pet current = this.current.get(id);
+            if (current == null) {
+                return null;
+            }
+            if (!expected.test(current)) {
+                throw new PetPreconditionFailedException();
+            }
+            Pet stored = copyOf(id, updatedPet);
+            this.current = this.current.put(stored);
+            return stored;
+        }
+    }
+
+    /**
+     * Deletes a pet by its ID.
+     *
+     * @param id The ID of the pet to delete.
+     * @return True if the pet was deleted, false otherwise.
+     */
+    @Override
+    public boolean deletePet(int id) {
+        synchronized (writeLock) {
+            PetCatalogVersion next = current.remove(id);
+            if (next == current) {
+                return false;
+            }
+            current = next;
+            return true;
+        }
+    }
+
+    /**
+     * Adds a batch of pets, published as one version.
+     *
+     * @param pets The pets to add.
+     * @return For each pet, in order, the stored copy or null if its ID is already taken.
+     */
+    @Override
+    public List<Pet> addPets(List<Pet> pets) {
+        List<Pet> added = new ArrayList<>(pets.size());
+        synchronized (writeLock) {
+            PetCatalogVersion next = current;
+            for (Pet pet : pets) {
+                if (next.get(pet.getId()) != null) {
+                    added.add(null);
+                    continue;
+                }
+                Pet stored = copyOf(pet.getId(), pet);
+                next = next.put(stored);
+                added.add(stored);
+            }
+            current = next;
+        }
+        return added;
+    }
+
+    /**
+     * Stores a batch of pets, published as one version.
+     *
+     * @param pets The pets to store.
+     * @return For each pet, in order, true if it was added or false if it replaced a stored pet.
+     */
+    @Override
+    public boolean[] upsertPets(List<Pet> pets) {
+        boolean[] created = new boolean[pets.size()];
+        synchronized (writeLock) {
+            PetCatalogVersion next = current;
+            for (int i = 0; i < created.length; i++) {
+                Pet pet = pets.get(i);
+                created[i] = next.get(pet.getId()) == null;
+                next = next.put(copyOf(pet.getId(), pet));
+            }
+            current = next;
+        }
+        return created;
+    }
+
+    /**
+     * Deletes a batch of pets, published as one version.
+     *
+     * @param ids The IDs of the pets to delete.
+     * @return For each ID, in order, true if the pet was deleted or false if not found.
+     */
+    @Override
+    public boolean[] deletePets(List<Integer> ids) {
+        boolean[] deleted = new boolean[ids.size()];
+        synchronized (writeLock) {
+            PetCatalogVersion next = current;
+            for (int i = 0; i < deleted.length; i++) {
+                PetCatalogVersion removed = next.remove(ids.get(i));
+                deleted[i] = removed != next;
+                next = removed;
+            }
+            current = next;
+        }
+        return deleted;
+    }
+
+    private static Pet copyOf(int id, Pet pet) {
+        return new Pet(id, pet.getName(), pet.getAge(), pet.getOwner());
+    }
+
+    private static Pet copyOf(Pet pet) {
+        return copyOf(pet.getId(), pet);
+    }
+
+    /**
+     * @param pets Stored pets.
+     * @return A read-only view of the pets, copying each pet as it is read.
+     */
+    private static List<Pet> copies(List<Pet> pets) {
+        return new AbstractList<Pet>() {
+            @Override
+            public Pet get(int index) {
+                return copyOf(pets.get(index));
+            }
+
+            @Override
+            public int size() {
+                return pets.size();
+            }
+
+            @Override
+            public Iterator<Pet> iterator() {
+                Iterator<Pet> iterator = pets.iterator();
+                return new Iterator<Pet>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Pet next() {
+                        return copyOf(iterator.next());
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,134 @@
+package fr.elsior.wfx.test.services.dao.columnar;
+
+/**
+ * Author: Elimane
+ *
+ * Map from an int key to a non-negative int value, kept in two flat arrays with open addressing and linear probing,
+ * so an entry costs two array cells instead of a node and two boxed integers.
+ * Removals shift the following entries back instead of leaving tombstones, so lookups never slow down over time.
+ * Not thread-safe.
+ */
+public final class IntIntHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+
+    /**
+     * Value plus one, 0 marking a free cell.
+     */
+    private int[] values;
+
+    private int size;
+
+    public IntIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize The number of entries to hold without resizing.
+     */
+    public IntIntHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param key The key.
+     * @return The value, or -1 if the key is absent.
+     */
+    public int get(int key) {
+        int mask = keys.length - 1;
+        for (int cell = home(key, mask); values[cell] != 0; cell = (cell + 1) & mask) {
+            if (keys[cell] == key) {
+                return values[cell] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param key   The key.
+     * @param value The value, not negative.
+     * @return The replaced value, or -1 if the key was absent.
+     */
+    public int put(int key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        int mask = keys.length - 1;
+        int cell = home(key, mask);
+        for (; values[cell] != 0; cell = (cell + 1) & mask) {
+            if (keys[cell] == key) {
+                int previous = values[cell] - 1;
+                values[cell] = value + 1;
+                return previous;
+            }
+        }
+        keys[cell] = key;
+        values[cell] = value + 1;
+        if (++size > keys.length * 3 / 4) {
+            resize(keys.length << 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @param key The key.
+     * @return The removed value, or -1 if the key was absent.
+     */
+    public int remove(int key) {
+        int mask = keys.length - 1;
+        int cell = home(key, mask);
+        while (values[cell] != 0 && keys[cell] != key) {
+            cell = (cell + 1) & mask;
+        }
+        if (values[cell] == 0) {
+            return -1;
+        }
+        int removed = values[cell] - 1;
+        // Moves back each following entry whose home is not between the freed cell and its own cell
+        for (int next = (cell + 1) & mask; values[next] != 0; next = (next + 1) & mask) {
+            int home = home(keys[next], mask);
+            if (((next - home) & mask) >= ((next - cell) & mask)) {
+                keys[cell] = keys[next];
+                values[cell] = values[next];
+                cell = next;
+            }
+        }
+        values[cell] = 0;
+        size--;
+        return removed;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int cell = home(oldKeys[i], mask);
+                while (values[cell] != 0) {
+                    cell = (cell + 1) & mask;
+                }
+                keys[cell] = oldKeys[i];
+                values[cell] = oldValues[i];
+            }
+        }
+    }
+
+    private static int home(int key, int mask) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
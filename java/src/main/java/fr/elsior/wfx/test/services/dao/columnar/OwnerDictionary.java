@@ -0,0 +1,140 @@
+package fr.elsior.wfx.test.services.dao.columnar;
+
+import fr.elsior.wfx.test.model.PetQuery;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Author: Elimane
+ *
+ * Dictionary encoding of the owners: each distinct spelling of an owner is stored once and given a small int code,
+ * counted once per pet it is set on, and freed for reuse when no pet uses it anymore.
+ * Owners repeat across many pets, so a pet only costs its code. Not thread-safe.
+ */
+public final class OwnerDictionary {
+
+    private static final int[] NO_CODES = new int[0];
+
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    /**
+     * Codes of the spellings of each owner, keyed by {@link PetQuery#normalize}.
+     */
+    private final Map<String, int[]> codesByKey = new HashMap<>();
+
+    private String[] owners = new String[16];
+
+    private int[] counts = new int[16];
+
+    private int[] freeCodes = new int[16];
+
+    private int freeCount;
+
+    private int nextCode;
+
+    /**
+     * Counts one more use of an owner.
+     *
+     * @param owner The owner, may be null.
+     * @return Its code, or -1 for null.
+     */
+    public int acquire(String owner) {
+        if (owner == null) {
+            return -1;
+        }
+        Integer code = codes.get(owner);
+        if (code == null) {
+            code = freeCount > 0 ? freeCodes[--freeCount] : nextCode++;
+            if (code == owners.length) {
+                owners = Arrays.copyOf(owners, code * 2);
+                counts = Arrays.copyOf(counts, code * 2);
+            }
+            owners[code] = owner;
+            codes.put(owner, code);
+            codesByKey.merge(PetQuery.normalize(owner), new int[]{code}, OwnerDictionary::concat);
+        }
+        counts[code]++;
+        return code;
+    }
+
+    /**
+     * Counts one less use of an owner, freeing its code once unused.
+     *
+     * @param code The code returned by {@link #acquire}, or -1.
+     */
+    public void release(int code) {
+        if (code < 0 || --counts[code] > 0) {
+            return;
+        }
+        String owner = owners[code];
+        owners[code] = null;
+        codes.remove(owner);
+        codesByKey.computeIfPresent(PetQuery.normalize(owner), (key, spellings) -> {
+            int[] left = Arrays.stream(spellings).filter(spelling -> spelling != code).toArray();
+            return left.length == 0 ? null : left;
+        });
+        if (freeCount == freeCodes.length) {
+            freeCodes = Arrays.copyOf(freeCodes, freeCount * 2);
+        }
+        freeCodes[freeCount++] = code;
+    }
+
+    /**
+     * @param code A code, or -1.
+     * @return The owner, or null for -1.
+     */
+    public String owner(int code) {
+        return code < 0 ? null : owners[code];
+    }
+
+    /**
+     * @param owner The owner, compared ignoring case.
+     * @return The codes of every spelling of the owner, empty if the owner is unknown.
+     */
+    public int[] codesOf(String owner) {
+        return owner == null ? NO_CODES : codesByKey.getOrDefault(PetQuery.normalize(owner), NO_CODES);
+    }
+
+    /**
+     * @param owner The owner, compared ignoring case.
+     * @return The number of pets of the owner, whatever its spelling.
+     */
+    public long count(String owner) {
+        long count = 0;
+        for (int code : codesOf(owner)) {
+            count += counts[code];
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of distinct owners, ignoring case.
+     */
+    public int size() {
+        return codesByKey.size();
+    }
+
+    /**
+     * Visits every owner with its number of pets, whatever its spelling.
+     *
+     * @param consumer Receives each normalized owner and its number of pets.
+     */
+    public void forEachOwner(ObjIntConsumer<String> consumer) {
+        for (Map.Entry<String, int[]> owner : codesByKey.entrySet()) {
+            int count = 0;
+            for (int code : owner.getValue()) {
+                count += counts[code];
+            }
+            consumer.accept(owner.getKey(), count);
+        }
+    }
+
+    private static int[] concat(int[] codes, int[] more) {
+        int[] all = Arrays.copyOf(codes, codes.length + more.length);
+        System.arraycopy(more, 0, all, codes.length, more.length);
+        return all;
+    }
+}
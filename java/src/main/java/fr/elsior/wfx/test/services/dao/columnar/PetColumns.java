@@ -0,0 +1,275 @@
+package fr.elsior.wfx.test.services.dao.columnar;
+
+import fr.elsior.wfx.test.model.Pet;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Author: Elimane
+ *
+ * Pets stored as columns of primitives rather than as objects: one array per field, where a pet is a slot index.
+ * IDs and ages are ints, names are references into a {@link Utf8Arena}, owners are codes of an
+ * {@link OwnerDictionary}, and the pets of each owner are chained through two more int columns.
+ * Slots are found by ID through an {@link IntIntHashMap}, and visited in ID order through a {@link SortedIntSet}.
+ * Slots stay dense: removing a pet moves the last pet to its slot.
+ * <p>
+ * A pet costs about 40 bytes of arrays plus the bytes of its name, its owner being shared with the other pets
+ * of that owner, and a {@link Pet} is only built when a slot is read. Not thread-safe.
+ */
+public final class PetColumns {
+
+    private static final int NONE = -1;
+
+    private int[] ids;
+
+    private int[] ages;
+
+    private int[] names;
+
+    private int[] ownerCodes;
+
+    private int[] nextOfOwner;
+
+    private int[] previousOfOwner;
+
+    /**
+     * First slot of the chain of each owner code.
+     */
+    private int[] firstOfOwner = new int[16];
+
+    private int size;
+
+    private final IntIntHashMap slotsById;
+
+    private final SortedIntSet sortedIds = new SortedIntSet();
+
+    private final OwnerDictionary owners = new OwnerDictionary();
+
+    private Utf8Arena nameArena = new Utf8Arena();
+
+    public PetColumns() {
+        this(16);
+    }
+
+    /**
+     * @param capacity The number of pets to hold before growing the columns.
+     */
+    public PetColumns(int capacity) {
+        capacity = Math.max(16, capacity);
+        ids = new int[capacity];
+        ages = new int[capacity];
+        names = new int[capacity];
+        ownerCodes = new int[capacity];
+        nextOfOwner = new int[capacity];
+        previousOfOwner = new int[capacity];
+        slotsById = new IntIntHashMap(capacity);
+        Arrays.fill(firstOfOwner, NONE);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param id The ID of a pet.
+     * @return Its slot, or -1 if no pet is stored under the ID.
+     */
+    public int slotOf(int id) {
+        return slotsById.get(id);
+    }
+
+    public int id(int slot) {
+        return ids[slot];
+    }
+
+    public int age(int slot) {
+        return ages[slot];
+    }
+
+    public String name(int slot) {
+        return nameArena.get(names[slot]);
+    }
+
+    public String owner(int slot) {
+        return owners.owner(ownerCodes[slot]);
+    }
+
+    /**
+     * Builds the pet stored in a slot.
+     *
+     * @param slot The slot, between 0 and {@link #size()} excluded.
+     * @return A new pet.
+     */
+    public Pet pet(int slot) {
+        return new Pet(ids[slot], name(slot), ages[slot], owner(slot));
+    }
+
+    /**
+     * @return The owner dictionary, to count pets by owner. It must not be changed.
+     */
+    public OwnerDictionary owners() {
+        return owners;
+    }
+
+    /**
+     * Stores a new pet in the next slot.
+     *
+     * @param pet The pet, whose ID must not be stored yet.
+     */
+    public void add(Pet pet) {
+        if (size == ids.length) {
+            grow();
+        }
+        int slot = size++;
+        ids[slot] = pet.getId();
+        ages[slot] = pet.getAge();
+        names[slot] = nameArena.add(pet.getName());
+        ownerCodes[slot] = NONE;
+        setOwner(slot, pet.getOwner());
+        slotsById.put(pet.getId(), slot);
+        sortedIds.add(pet.getId());
+    }
+
+    /**
+     * Replaces the fields of the pet stored in a slot, keeping its ID.
+     *
+     * @param slot The slot.
+     * @param pet  The new details.
+     */
+    public void set(int slot, Pet pet) {
+        ages[slot] = pet.getAge();
+        nameArena.free(names[slot]);
+        names[slot] = nameArena.add(pet.getName());
+        if (!Objects.equals(owner(slot), pet.getOwner())) {
+            unlinkOwner(slot);
+            setOwner(slot, pet.getOwner());
+        }
+        compactNames();
+    }
+
+    /**
+     * Removes the pet stored in a slot, moving the pet of the last slot to it.
+     *
+     * @param slot The slot.
+     */
+    public void remove(int slot) {
+        int id = ids[slot];
+        slotsById.remove(id);
+        sortedIds.remove(id);
+        nameArena.free(names[slot]);
+        unlinkOwner(slot);
+        int last = --size;
+        if (slot != last) {
+            ids[slot] = ids[last];
+            ages[slot] = ages[last];
+            names[slot] = names[last];
+            ownerCodes[slot] = ownerCodes[last];
+            nextOfOwner[slot] = nextOfOwner[last];
+            previousOfOwner[slot] = previousOfOwner[last];
+            relink(slot);
+            slotsById.put(ids[slot], slot);
+        }
+        compactNames();
+    }
+
+    /**
+     * Visits the slots in the ID order of their pets.
+     *
+     * @param afterId The ID to start after, or null to start from the smallest ID.
+     * @param visitor Receives each slot, and returns false to stop.
+     */
+    public void forEachSlotAfter(Integer afterId, IntPredicate visitor) {
+        sortedIds.forEachAfter(afterId, id -> visitor.test(slotsById.get(id)));
+    }
+
+    /**
+     * Visits the slots of the pets of an owner, ignoring case.
+     *
+     * @param owner    The owner.
+     * @param consumer Receives each slot.
+     */
+    public void forEachSlotOfOwner(String owner, IntConsumer consumer) {
+        for (int code : owners.codesOf(owner)) {
+            for (int slot = firstOfOwner[code]; slot != NONE; slot = nextOfOwner[slot]) {
+                consumer.accept(slot);
+            }
+        }
+    }
+
+    private void setOwner(int slot, String owner) {
+        int code = owners.acquire(owner);
+        ownerCodes[slot] = code;
+        previousOfOwner[slot] = NONE;
+        nextOfOwner[slot] = NONE;
+        if (code == NONE) {
+            return;
+        }
+        if (code >= firstOfOwner.length) {
+            int length = firstOfOwner.length;
+            firstOfOwner = Arrays.copyOf(firstOfOwner, Math.max(code + 1, length * 2));
+            Arrays.fill(firstOfOwner, length, firstOfOwner.length, NONE);
+        }
+        int first = firstOfOwner[code];
+        if (first != NONE) {
+            previousOfOwner[first] = slot;
+            nextOfOwner[slot] = first;
+        }
+        firstOfOwner[code] = slot;
+    }
+
+    private void unlinkOwner(int slot) {
+        int code = ownerCodes[slot];
+        if (code == NONE) {
+            return;
+        }
+        int previous = previousOfOwner[slot];
+        int next = nextOfOwner[slot];
+        if (previous == NONE) {
+            firstOfOwner[code] = next;
+        } else {
+            nextOfOwner[previous] = next;
+        }
+        if (next != NONE) {
+            previousOfOwner[next] = previous;
+        }
+        owners.release(code);
+        ownerCodes[slot] = NONE;
+    }
+
+    /**
+     * Points the neighbours of a pet moved to a slot at that slot.
+     */
+    private void relink(int slot) {
+        int code = ownerCodes[slot];
+        if (code == NONE) {
+            return;
+        }
+        if (previousOfOwner[slot] == NONE) {
+            firstOfOwner[code] = slot;
+        } else {
+            nextOfOwner[previousOfOwner[slot]] = slot;
+        }
+        if (nextOfOwner[slot] != NONE) {
+            previousOfOwner[nextOfOwner[slot]] = slot;
+        }
+    }
+
+    private void compactNames() {
+        if (nameArena.shouldCompact()) {
+            nameArena = nameArena.compact(names, size);
+        }
+    }
+
+    private void grow() {
+        int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        names = Arrays.copyOf(names, capacity);
+        ownerCodes = Arrays.copyOf(ownerCodes, capacity);
+        nextOfOwner = Arrays.copyOf(nextOfOwner, capacity);
+        previousOfOwner = Arrays.copyOf(previousOfOwner, capacity);
+    }
+}
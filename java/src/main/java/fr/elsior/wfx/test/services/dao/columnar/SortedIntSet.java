@@ -0,0 +1,161 @@
+package fr.elsior.wfx.test.services.dao.columnar;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Author: Elimane
+ *
+ * Sorted set of ints stored in blocks of up to {@value #BLOCK} sorted values, ordered by their first value.
+ * An insertion or removal shifts at most one block, and values added in increasing order fill the last block,
+ * so a catalog loaded in ID order takes four bytes per value. Not thread-safe.
+ */
+public final class SortedIntSet {
+
+    static final int BLOCK = 1024;
+
+    private int[][] blocks = new int[4][];
+
+    private int[] lengths = new int[4];
+
+    private int blockCount;
+
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param value The value to add.
+     * @return True if the value was added, false if it was already in the set.
+     */
+    public boolean add(int value) {
+        if (blockCount == 0) {
+            insertBlock(0, value);
+            return true;
+        }
+        int block = Math.max(0, blockOf(value));
+        int position = Arrays.binarySearch(blocks[block], 0, lengths[block], value);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        if (lengths[block] == BLOCK) {
+            if (position == BLOCK && (block + 1 == blockCount || lengths[block + 1] == BLOCK)) {
+                insertBlock(block + 1, value);
+                return true;
+            }
+            if (position == BLOCK) {
+                block++;
+                position = 0;
+            } else {
+                split(block);
+                if (position > lengths[block]) {
+                    position -= lengths[block];
+                    block++;
+                }
+            }
+        }
+        int[] values = blocks[block];
+        System.arraycopy(values, position, values, position + 1, lengths[block] - position);
+        values[position] = value;
+        lengths[block]++;
+        size++;
+        return true;
+    }
+
+    /**
+     * @param value The value to remove.
+     * @return True if the value was removed, false if it was not in the set.
+     */
+    public boolean remove(int value) {
+        int block = blockOf(value);
+        if (block < 0) {
+            return false;
+        }
+        int position = Arrays.binarySearch(blocks[block], 0, lengths[block], value);
+        if (position < 0) {
+            return false;
+        }
+        int[] values = blocks[block];
+        System.arraycopy(values, position + 1, values, position, lengths[block] - position - 1);
+        size--;
+        if (--lengths[block] == 0) {
+            System.arraycopy(blocks, block + 1, blocks, block, blockCount - block - 1);
+            System.arraycopy(lengths, block + 1, lengths, block, blockCount - block - 1);
+            blocks[--blockCount] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Visits the values in increasing order.
+     *
+     * @param after   The value to start after, or null to start from the smallest value.
+     * @param visitor Receives each value, and returns false to stop.
+     */
+    public void forEachAfter(Integer after, IntPredicate visitor) {
+        int block = 0;
+        int position = 0;
+        if (after != null) {
+            block = Math.max(0, blockOf(after));
+            if (block < blockCount) {
+                position = Arrays.binarySearch(blocks[block], 0, lengths[block], after);
+                position = position >= 0 ? position + 1 : -position - 1;
+            }
+        }
+        for (; block < blockCount; block++, position = 0) {
+            int[] values = blocks[block];
+            for (int length = lengths[block]; position < length; position++) {
+                if (!visitor.test(values[position])) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The index of the last block whose first value is not greater than the value, or -1 if there is none.
+     */
+    private int blockOf(int value) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (blocks[middle][0] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    private void insertBlock(int block, int value) {
+        makeRoom(block);
+        blocks[block] = new int[BLOCK];
+        blocks[block][0] = value;
+        lengths[block] = 1;
+        size++;
+    }
+
+    private void split(int block) {
+        makeRoom(block + 1);
+        int half = lengths[block] / 2;
+        blocks[block + 1] = new int[BLOCK];
+        System.arraycopy(blocks[block], half, blocks[block + 1], 0, lengths[block] - half);
+        lengths[block + 1] = lengths[block] - half;
+        lengths[block] = half;
+    }
+
+    private void makeRoom(int block) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+            lengths = Arrays.copyOf(lengths, blockCount * 2);
+        }
+        System.arraycopy(blocks, block, blocks, block + 1, blockCount - block);
+        System.arraycopy(lengths, block, lengths, block + 1, blockCount - block);
+        blockCount++;
+    }
+}
@@ -0,0 +1,143 @@
+package fr.elsior.wfx.test.services.dao.columnar;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Author: Elimane
+ *
+ * Strings packed one after the other in a single byte array, each encoded in UTF-8 after its length,
+ * and referenced by the offset of its length. A string costs its bytes plus one or two length bytes, instead of
+ * a String and its byte array. Freed strings leave garbage behind until the arena is compacted. Not thread-safe.
+ */
+public final class Utf8Arena {
+
+    /**
+     * Reference of a null string.
+     */
+    public static final int NULL = -1;
+
+    /**
+     * Garbage below which the arena is never compacted, as copying it would cost more than the room it frees.
+     */
+    private static final int MIN_COMPACTED_GARBAGE = 1 << 16;
+
+    private byte[] bytes;
+
+    private int length;
+
+    private int garbage;
+
+    public Utf8Arena() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity The initial capacity, in bytes.
+     */
+    public Utf8Arena(int capacity) {
+        bytes = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * Appends a string.
+     *
+     * @param value The string, may be null.
+     * @return Its reference, or {@link #NULL} for null.
+     */
+    public int add(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(5 + encoded.length);
+        int reference = length;
+        // Length in 7 bit groups, the high bit marking that another group follows
+        for (int remaining = encoded.length; ; remaining >>>= 7) {
+            if (remaining < 0x80) {
+                bytes[length++] = (byte) remaining;
+                break;
+            }
+            bytes[length++] = (byte) (remaining & 0x7F | 0x80);
+        }
+        System.arraycopy(encoded, 0, bytes, length, encoded.length);
+        length += encoded.length;
+        return reference;
+    }
+
+    /**
+     * @param reference The reference returned by {@link #add}.
+     * @return A new string, or null for {@link #NULL}.
+     */
+    public String get(int reference) {
+        if (reference == NULL) {
+            return null;
+        }
+        return new String(bytes, start(reference), encodedLength(reference), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Marks a string as garbage.
+     *
+     * @param reference The reference of the string, which must not be read anymore.
+     */
+    public void free(int reference) {
+        if (reference != NULL) {
+            garbage += start(reference) - reference + encodedLength(reference);
+        }
+    }
+
+    /**
+     * @return True when freed strings take more room than live ones.
+     */
+    public boolean shouldCompact() {
+        return garbage > MIN_COMPACTED_GARBAGE && garbage > length - garbage;
+    }
+
+    /**
+     * Copies the live strings to a new arena, updating their references.
+     *
+     * @param references The references of every live string, updated in place.
+     * @param count      The number of references.
+     * @return The new arena.
+     */
+    public Utf8Arena compact(int[] references, int count) {
+        Utf8Arena compacted = new Utf8Arena(length - garbage);
+        for (int i = 0; i < count; i++) {
+            int reference = references[i];
+            if (reference != NULL) {
+                int end = start(reference) + encodedLength(reference);
+                compacted.ensureCapacity(end - reference);
+                references[i] = compacted.length;
+                System.arraycopy(bytes, reference, compacted.bytes, compacted.length, end - reference);
+                compacted.length += end - reference;
+            }
+        }
+        return compacted;
+    }
+
+    private int encodedLength(int reference) {
+        int value = 0;
+        for (int shift = 0, position = reference; ; shift += 7, position++) {
+            byte b = bytes[position];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private int start(int reference) {
+        int position = reference;
+        while (bytes[position] < 0) {
+            position++;
+        }
+        return position + 1;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(length + extra, bytes.length + (bytes.length >> 1)));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package fr.elsior.wfx.test.services.dao.mapped;
+
+import fr.elsior.wfx.test.model.Pet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+import static fr.elsior.wfx.test.services.dao.mapped.PetCatalogFile.*;
+
+/**
+ * Author: Elimane
+ *
+ * Read-only view over a memory-mapped {@link PetCatalogFile}.
+ * Opening only maps the file and checks its header: nothing is parsed up front, pages are loaded by the OS
+ * on first access and a {@link Pet} is only built when a slot is read.
+ * Every read uses absolute positions, so a catalog can be shared between threads.
+ */
+public final class MappedPetCatalog {
+
+    private final ByteBuffer buffer;
+
+    private final int count;
+
+    private final int ownerCount;
+
+    private final int[] offsets = new int[SECTIONS];
+
+    private MappedPetCatalog(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a pet catalog file");
+        }
+        this.count = buffer.getInt(8);
+        this.ownerCount = buffer.getInt(12);
+        for (int section = 0; section < SECTIONS; section++) {
+            long offset = buffer.getLong(16 + section * Long.BYTES);
+            if (offset < HEADER_LENGTH || offset > buffer.capacity()) {
+                throw new IOException("Corrupted pet catalog file");
+            }
+            offsets[section] = (int) offset;
+        }
+        if (offsets[NULL_NAMES] + (count + 7) / 8 != buffer.capacity()) {
+            throw new IOException("Truncated pet catalog file");
+        }
+    }
+
+    /**
+     * Maps a catalog file in memory.
+     *
+     * @param path The file written by {@link PetCatalogFile#write}.
+     * @return The catalog.
+     * @throws IOException If the file cannot be mapped or is not a catalog.
+     */
+    public static MappedPetCatalog open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Pet catalog too large to be mapped: " + path);
+            }
+            return new MappedPetCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return The number of pets.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Finds the slot of a pet by binary search over the sorted IDs.
+     *
+     * @param id The ID of the pet.
+     * @return The slot, or -1 if the pet is not in the catalog.
+     */
+    public int slotOf(int id) {
+        int slot = firstSlotFrom(id);
+        return slot < count && id(slot) == id ? slot : -1;
+    }
+
+    /**
+     * @param afterId The ID to start after, or null to start from the first pet.
+     * @return The slot of the first pet with an ID strictly greater, or {@link #size()} if there is none.
+     */
+    public int firstSlotAfter(Integer afterId) {
+        if (afterId == null) {
+            return 0;
+        }
+        return afterId == Integer.MAX_VALUE ? count : firstSlotFrom(afterId + 1);
+    }
+
+    public int id(int slot) {
+        return buffer.getInt(offsets[IDS] + slot * Integer.BYTES);
+    }
+
+    public int age(int slot) {
+        return buffer.getInt(offsets[AGES] + slot * Integer.BYTES);
+    }
+
+    public String name(int slot) {
+        int nullByte = buffer.get(offsets[NULL_NAMES] + (slot >>> 3));
+        if ((nullByte & 1 << (slot & 7)) != 0) {
+            return null;
+        }
+        return string(NAMES, NAME_OFFSETS, slot);
+    }
+
+    public String owner(int slot) {
+        int code = buffer.getInt(offsets[OWNER_CODES] + slot * Integer.BYTES);
+        return code < 0 ? null : string(OWNERS, OWNER_OFFSETS, code);
+    }
+
+    /**
+     * Builds the pet stored in a slot.
+     *
+     * @param slot The slot, between 0 and {@link #size()} excluded.
+     * @return A new pet.
+     */
+    public Pet pet(int slot) {
+        return new Pet(id(slot), name(slot), age(slot), owner(slot));
+    }
+
+    /**
+     * Visits the slots of the pets of an owner, ignoring case, in ID order for each spelling of the owner.
+     * The owner dictionary is sorted case-insensitively, so the spellings are found by binary search.
+     *
+     * @param owner    The owner.
+     * @param consumer Receives each slot.
+     */
+    public void forEachSlotOfOwner(String owner, IntConsumer consumer) {
+        if (owner == null) {
+            return;
+        }
+        String key = owner.toLowerCase(Locale.ROOT);
+        int low = 0;
+        int high = ownerCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ownerKey(middle).compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int code = low; code < ownerCount && ownerKey(code).equals(key); code++) {
+            int end = postingOffset(code + 1);
+            for (int posting = postingOffset(code); posting < end; posting++) {
+                consumer.accept(buffer.getInt(offsets[POSTINGS] + posting * Integer.BYTES));
+            }
+        }
+    }
+
+    private int firstSlotFrom(int id) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (id(middle) < id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private String ownerKey(int code) {
+        return string(OWNERS, OWNER_OFFSETS, code).toLowerCase(Locale.ROOT);
+    }
+
+    private int postingOffset(int code) {
+        return buffer.getInt(offsets[POSTING_OFFSETS] + code * Integer.BYTES);
+    }
+
+    private String string(int arena, int arenaOffsets, int index) {
+        int start = buffer.getInt(offsets[arenaOffsets] + index * Integer.BYTES);
+        int end = buffer.getInt(offsets[arenaOffsets] + (index + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        int position = offsets[arena] + start;
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(position + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
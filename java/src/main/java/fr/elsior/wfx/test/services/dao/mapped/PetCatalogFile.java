@@ -0,0 +1,194 @@
+package fr.elsior.wfx.test.services.dao.mapped;
+
+import fr.elsior.wfx.test.model.Pet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Author: Elimane
+ *
+ * Binary columnar layout of the pet catalog, designed to be memory-mapped and read in place.
+ * <pre>
+ * header          magic, version, pet count, owner count, then the offset of each section
+ * ids             int[count], sorted, so a pet is found by binary search
+ * ages            int[count]
+ * owner codes     int[count], index in the owner dictionary or -1 for no owner
+ * name offsets    int[count + 1], start of each name in the name arena
+ * owner offsets   int[owners + 1], start of each owner in the owner arena
+ * posting offsets int[owners + 1], start of the slots of each owner in the postings
+ * postings        int[], the slots of the pets of each owner, in ID order
+ * name arena      UTF-8 bytes of every name
+ * owner arena     UTF-8 bytes of every distinct owner, sorted case-insensitively
+ * null names      bitmap of the pets without a name
+ * </pre>
+ */
+public final class PetCatalogFile {
+
+    static final int MAGIC = 0x5045544d;
+    static final int VERSION = 1;
+
+    static final int SECTIONS = 10;
+    static final int HEADER_LENGTH = 4 * Integer.BYTES + SECTIONS * Long.BYTES;
+
+    static final int IDS = 0;
+    static final int AGES = 1;
+    static final int OWNER_CODES = 2;
+    static final int NAME_OFFSETS = 3;
+    static final int OWNER_OFFSETS = 4;
+    static final int POSTING_OFFSETS = 5;
+    static final int POSTINGS = 6;
+    static final int NAMES = 7;
+    static final int OWNERS = 8;
+    static final int NULL_NAMES = 9;
+
+    /**
+     * Orders owners so that names equal ignoring case are adjacent.
+     */
+    static final Comparator<String> OWNER_ORDER = Comparator
+            .comparing((String owner) -> owner.toLowerCase(Locale.ROOT))
+            .thenComparing(Comparator.naturalOrder());
+
+    private PetCatalogFile() {}
+
+    /**
+     * Writes a catalog file, replacing any previous one atomically.
+     *
+     * @param path The file to write.
+     * @param pets The pets, with distinct IDs.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path path, Collection<Pet> pets) throws IOException {
+        Pet[] sorted = pets.toArray(new Pet[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(Pet::getId));
+        int count = sorted.length;
+
+        String[] owners = Arrays.stream(sorted)
+                .map(Pet::getOwner)
+                .filter(owner -> owner != null)
+                .distinct()
+                .sorted(OWNER_ORDER)
+                .toArray(String[]::new);
+        Map<String, Integer> ownerCodes = new HashMap<>(owners.length * 2);
+        for (int code = 0; code < owners.length; code++) {
+            ownerCodes.put(owners[code], code);
+        }
+
+        int[] codes = new int[count];
+        List<List<Integer>> slotsByOwner = new ArrayList<>(owners.length);
+        for (int code = 0; code < owners.length; code++) {
+            slotsByOwner.add(new ArrayList<>());
+        }
+        ByteArrayOutputStream names = new ByteArrayOutputStream(count * 8);
+        int[] nameOffsets = new int[count + 1];
+        byte[] nullNames = new byte[(count + 7) / 8];
+        for (int slot = 0; slot < count; slot++) {
+            Pet pet = sorted[slot];
+            codes[slot] = pet.getOwner() == null ? -1 : ownerCodes.get(pet.getOwner());
+            if (codes[slot] >= 0) {
+                slotsByOwner.get(codes[slot]).add(slot);
+            }
+            if (pet.getName() == null) {
+                nullNames[slot >>> 3] |= 1 << (slot & 7);
+            } else {
+                names.write(pet.getName().getBytes(StandardCharsets.UTF_8));
+            }
+            nameOffsets[slot + 1] = checkedLength(names.size());
+        }
+
+        ByteArrayOutputStream ownerArena = new ByteArrayOutputStream(owners.length * 8);
+        int[] ownerOffsets = new int[owners.length + 1];
+        int[] postingOffsets = new int[owners.length + 1];
+        for (int code = 0; code < owners.length; code++) {
+            ownerArena.write(owners[code].getBytes(StandardCharsets.UTF_8));
+            ownerOffsets[code + 1] = checkedLength(ownerArena.size());
+            postingOffsets[code + 1] = postingOffsets[code] + slotsByOwner.get(code).size();
+        }
+
+        long[] lengths = new long[SECTIONS];
+        lengths[IDS] = (long) count * Integer.BYTES;
+        lengths[AGES] = (long) count * Integer.BYTES;
+        lengths[OWNER_CODES] = (long) count * Integer.BYTES;
+        lengths[NAME_OFFSETS] = (long) (count + 1) * Integer.BYTES;
+        lengths[OWNER_OFFSETS] = (long) (owners.length + 1) * Integer.BYTES;
+        lengths[POSTING_OFFSETS] = (long) (owners.length + 1) * Integer.BYTES;
+        lengths[POSTINGS] = (long) postingOffsets[owners.length] * Integer.BYTES;
+        lengths[NAMES] = names.size();
+        lengths[OWNERS] = ownerArena.size();
+        lengths[NULL_NAMES] = nullNames.length;
+        long[] offsets = new long[SECTIONS];
+        long offset = HEADER_LENGTH;
+        for (int section = 0; section < SECTIONS; section++) {
+            offsets[section] = offset;
+            offset += lengths[section];
+        }
+        checkedLength(offset);
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (OutputStream file = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(owners.length);
+            for (long sectionOffset : offsets) {
+                out.writeLong(sectionOffset);
+            }
+            for (Pet pet : sorted) {
+                out.writeInt(pet.getId());
+            }
+            for (Pet pet : sorted) {
+                out.writeInt(pet.getAge());
+            }
+            writeInts(out, codes);
+            writeInts(out, nameOffsets);
+            writeInts(out, ownerOffsets);
+            writeInts(out, postingOffsets);
+            for (List<Integer> slots : slotsByOwner) {
+                for (int slot : slots) {
+                    out.writeInt(slot);
+                }
+            }
+            names.writeTo(out);
+            ownerArena.writeTo(out);
+            out.write(nullNames);
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int checkedLength(long length) {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Pet catalog too large to be mapped: " + length + " bytes");
+        }
+        return (int) length;
+    }
+}
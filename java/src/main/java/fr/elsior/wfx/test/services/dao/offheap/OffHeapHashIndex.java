@@ -0,0 +1,196 @@
+package fr.elsior.wfx.test.services.dao.offheap;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Author: Elimane
+ *
+ * Hash table from a long key to a non-negative int value and an int counter, kept in native memory
+ * with open addressing and linear probing. A cell takes sixteen bytes: the key, the value plus one, 0 marking
+ * a free cell, and the counter. Removals shift the following entries back instead of leaving tombstones.
+ * Cells are addressed by index between {@link #find} and the next insertion or removal, which may move them.
+ * Not thread-safe.
+ */
+public final class OffHeapHashIndex {
+
+    private static final int CELL = 16;
+
+    private static final int KEY = 0;
+
+    private static final int VALUE = 8;
+
+    private static final int COUNTER = 12;
+
+    private static final int MAX_CHUNK_BYTES = 1 << 22;
+
+    private OffHeapSlots cells;
+
+    private int capacity;
+
+    private int size;
+
+    /**
+     * @param expectedSize The number of entries to hold without resizing.
+     */
+    public OffHeapHashIndex(int expectedSize) {
+        int capacity = 16;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The native memory reserved by the table, in bytes.
+     */
+    public long reservedBytes() {
+        return cells.reservedBytes();
+    }
+
+    /**
+     * @param key The key.
+     * @return The cell of the key, or -1 if the key is absent.
+     */
+    public int find(long key) {
+        int mask = capacity - 1;
+        for (int cell = home(key, mask); isUsed(cell); cell = (cell + 1) & mask) {
+            if (cells.getLong(cell, KEY) == key) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param key The key.
+     * @return The value of the key, or -1 if the key is absent.
+     */
+    public int get(long key) {
+        int cell = find(key);
+        return cell < 0 ? -1 : value(cell);
+    }
+
+    /**
+     * Adds an absent key.
+     *
+     * @param key     The key, which must be absent.
+     * @param value   The value, not negative.
+     * @param counter The counter.
+     */
+    public void insert(long key, int value, int counter) {
+        if (++size > capacity * 3 / 4) {
+            resize(capacity << 1);
+        }
+        int mask = capacity - 1;
+        int cell = home(key, mask);
+        while (isUsed(cell)) {
+            cell = (cell + 1) & mask;
+        }
+        cells.putLong(cell, KEY, key);
+        setValue(cell, value);
+        setCounter(cell, counter);
+    }
+
+    /**
+     * @param key The key.
+     * @return The value of the removed key, or -1 if the key was absent.
+     */
+    public int remove(long key) {
+        int cell = find(key);
+        if (cell < 0) {
+            return -1;
+        }
+        int removed = value(cell);
+        int mask = capacity - 1;
+        // Moves back each following entry whose home is not between the freed cell and its own cell
+        for (int next = (cell + 1) & mask; isUsed(next); next = (next + 1) & mask) {
+            int home = home(cells.getLong(next, KEY), mask);
+            if (((next - home) & mask) >= ((next - cell) & mask)) {
+                copy(next, cell);
+                cell = next;
+            }
+        }
+        cells.putInt(cell, VALUE, 0);
+        size--;
+        return removed;
+    }
+
+    public long key(int cell) {
+        return cells.getLong(cell, KEY);
+    }
+
+    public int value(int cell) {
+        return cells.getInt(cell, VALUE) - 1;
+    }
+
+    public void setValue(int cell, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        cells.putInt(cell, VALUE, value + 1);
+    }
+
+    public int counter(int cell) {
+        return cells.getInt(cell, COUNTER);
+    }
+
+    public void setCounter(int cell, int counter) {
+        cells.putInt(cell, COUNTER, counter);
+    }
+
+    /**
+     * Visits every used cell.
+     *
+     * @param visitor Receives each cell.
+     */
+    public void forEachCell(IntConsumer visitor) {
+        for (int cell = 0; cell < capacity; cell++) {
+            if (isUsed(cell)) {
+                visitor.accept(cell);
+            }
+        }
+    }
+
+    private boolean isUsed(int cell) {
+        return cells.getInt(cell, VALUE) != 0;
+    }
+
+    private void copy(int from, int to) {
+        cells.putLong(to, KEY, cells.getLong(from, KEY));
+        cells.putInt(to, VALUE, cells.getInt(from, VALUE));
+        cells.putInt(to, COUNTER, cells.getInt(from, COUNTER));
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        this.cells = new OffHeapSlots(CELL, Math.min(MAX_CHUNK_BYTES, capacity * CELL));
+        cells.reserve(capacity);
+    }
+
+    private void resize(int newCapacity) {
+        OffHeapSlots old = cells;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        int mask = newCapacity - 1;
+        for (int from = 0; from < oldCapacity; from++) {
+            if (old.getInt(from, VALUE) != 0) {
+                int cell = home(old.getLong(from, KEY), mask);
+                while (isUsed(cell)) {
+                    cell = (cell + 1) & mask;
+                }
+                cells.putLong(cell, KEY, old.getLong(from, KEY));
+                cells.putInt(cell, VALUE, old.getInt(from, VALUE));
+                cells.putInt(cell, COUNTER, old.getInt(from, COUNTER));
+            }
+        }
+    }
+
+    private static int home(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
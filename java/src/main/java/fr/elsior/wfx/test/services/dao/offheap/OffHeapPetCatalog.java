@@ -0,0 +1,445 @@
+package fr.elsior.wfx.test.services.dao.offheap;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Author: Elimane
+ *
+ * Pets stored as fixed records of {@value #RECORD} bytes in native memory, where a pet is a slot of
+ * {@link OffHeapSlots}. A record holds the ID, the age, the links of the chain of pets of its owner, the hash of
+ * its normalized owner and the UTF-8 lengths of its name and owner, followed by their bytes. The bytes that do not
+ * fit in the record go to continuation slots chained from it. Freed slots are reused by the next pets.
+ * <p>
+ * Slots are found by ID through an {@link OffHeapHashIndex}, and visited in ID order through
+ * {@link OffHeapSortedIds}. Owners are indexed by the 64-bit FNV-1a hash of their normalized name, mapped to the
+ * first slot of their chain and to their number of pets: readers building pets compare the owner, while the counts
+ * of two owners with the same hash, unlikely as it is, would be merged.
+ * <p>
+ * The heap holds no object per pet: a {@link Pet} is only built when a slot is read, and {@link #writeJson}
+ * copies a record to a buffer without building anything. Not thread-safe, though concurrent reads are.
+ */
+public final class OffHeapPetCatalog {
+
+    static final int RECORD = 64;
+
+    private static final int NONE = -1;
+
+    private static final int ID = 0;
+
+    private static final int AGE = 4;
+
+    private static final int NEXT_OF_OWNER = 8;
+
+    private static final int PREVIOUS_OF_OWNER = 12;
+
+    private static final int OWNER_KEY = 16;
+
+    private static final int NAME_LENGTH = 24;
+
+    private static final int OWNER_LENGTH = 28;
+
+    private static final int CONTINUATION = 32;
+
+    private static final int INLINE = 36;
+
+    private static final int INLINE_BYTES = RECORD - INLINE;
+
+    private static final int NEXT_CONTINUATION = 0;
+
+    private static final int CONTINUED = 4;
+
+    private static final int CONTINUED_BYTES = RECORD - CONTINUED;
+
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private static final byte[] ID_FIELD = ascii("{\"id\":");
+
+    private static final byte[] NAME_FIELD = ascii(",\"name\":");
+
+    private static final byte[] AGE_FIELD = ascii(",\"age\":");
+
+    private static final byte[] OWNER_FIELD = ascii(",\"owner\":");
+
+    private static final byte[] NULL = ascii("null");
+
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    private final OffHeapSlots records = new OffHeapSlots(RECORD, CHUNK_BYTES);
+
+    private final OffHeapHashIndex slotsById;
+
+    private final OffHeapHashIndex owners;
+
+    private final OffHeapSortedIds sortedIds = new OffHeapSortedIds();
+
+    public OffHeapPetCatalog() {
+        this(16);
+    }
+
+    /**
+     * @param capacity The number of pets to hold before growing the ID index.
+     */
+    public OffHeapPetCatalog(int capacity) {
+        slotsById = new OffHeapHashIndex(capacity);
+        owners = new OffHeapHashIndex(16);
+    }
+
+    public int size() {
+        return slotsById.size();
+    }
+
+    /**
+     * @return The native memory reserved by the records and the indexes, in bytes.
+     */
+    public long reservedBytes() {
+        return records.reservedBytes() + slotsById.reservedBytes() + owners.reservedBytes() + sortedIds.reservedBytes();
+    }
+
+    /**
+     * @param id The ID of a pet.
+     * @return Its slot, or -1 if no pet is stored under the ID.
+     */
+    public int slotOf(int id) {
+        return slotsById.get(id);
+    }
+
+    public int id(int slot) {
+        return records.getInt(slot, ID);
+    }
+
+    public int age(int slot) {
+        return records.getInt(slot, AGE);
+    }
+
+    public String name(int slot) {
+        return string(slot, 0, records.getInt(slot, NAME_LENGTH));
+    }
+
+    public String owner(int slot) {
+        return string(slot, Math.max(0, records.getInt(slot, NAME_LENGTH)), records.getInt(slot, OWNER_LENGTH));
+    }
+
+    /**
+     * Builds the pet stored in a slot.
+     *
+     * @param slot A slot of a stored pet.
+     * @return A new pet.
+     */
+    public Pet pet(int slot) {
+        return new Pet(id(slot), name(slot), age(slot), owner(slot));
+    }
+
+    /**
+     * Stores a new pet in a free slot.
+     *
+     * @param pet The pet, whose ID must not be stored yet.
+     */
+    public void add(Pet pet) {
+        int slot = records.allocate();
+        records.putInt(slot, ID, pet.getId());
+        records.putInt(slot, CONTINUATION, NONE);
+        write(slot, pet);
+        slotsById.insert(pet.getId(), slot, 0);
+        sortedIds.add(pet.getId());
+    }
+
+    /**
+     * Replaces the fields of the pet stored in a slot, keeping its ID and its slot.
+     *
+     * @param slot The slot.
+     * @param pet  The new details.
+     */
+    public void set(int slot, Pet pet) {
+        unlinkOwner(slot);
+        freeContinuations(slot);
+        write(slot, pet);
+    }
+
+    /**
+     * Removes the pet stored in a slot, freeing the slot for the next pets.
+     *
+     * @param slot The slot.
+     */
+    public void remove(int slot) {
+        int id = id(slot);
+        slotsById.remove(id);
+        sortedIds.remove(id);
+        unlinkOwner(slot);
+        freeContinuations(slot);
+        records.free(slot);
+    }
+
+    /**
+     * Visits the slots in the ID order of their pets.
+     *
+     * @param afterId The ID to start after, or null to start from the smallest ID.
+     * @param visitor Receives each slot, and returns false to stop.
+     */
+    public void forEachSlotAfter(Integer afterId, IntPredicate visitor) {
+        sortedIds.forEachAfter(afterId, id -> visitor.test(slotsById.get(id)));
+    }
+
+    /**
+     * @return An iterator building the pets in ID order, valid until the catalog is changed.
+     */
+    public Iterator<Pet> pets() {
+        PrimitiveIterator.OfInt ids = sortedIds.iterator();
+        return new Iterator<>() {
+
+            @Override
+            public boolean hasNext() {
+                return ids.hasNext();
+            }
+
+            @Override
+            public Pet next() {
+                return pet(slotOf(ids.nextInt()));
+            }
+        };
+    }
+
+    /**
+     * Visits the slots of the pets whose owner has the hash of an owner, ignoring case.
+     * The owner of each slot is to be compared by the caller.
+     *
+     * @param owner    The owner.
+     * @param consumer Receives each slot.
+     */
+    public void forEachSlotOfOwner(String owner, IntConsumer consumer) {
+        if (owner == null) {
+            return;
+        }
+        for (int slot = owners.get(ownerKey(owner)); slot != NONE; slot = records.getInt(slot, NEXT_OF_OWNER)) {
+            consumer.accept(slot);
+        }
+    }
+
+    /**
+     * @param owner The owner, ignoring case.
+     * @return The number of pets of the owner.
+     */
+    public long countOfOwner(String owner) {
+        int cell = owner == null ? NONE : owners.find(ownerKey(owner));
+        return cell < 0 ? 0 : owners.counter(cell);
+    }
+
+    /**
+     * @return The number of distinct owners, ignoring case.
+     */
+    public int ownerCount() {
+        return owners.size();
+    }
+
+    /**
+     * Visits the owners with their number of pets.
+     *
+     * @param consumer Receives each normalized owner name and its number of pets.
+     */
+    public void forEachOwner(ObjIntConsumer<String> consumer) {
+        owners.forEachCell(cell -> consumer.accept(PetQuery.normalize(owner(owners.value(cell))), owners.counter(cell)));
+    }
+
+    /**
+     * Writes the pet stored in a slot as JSON, straight from its record: the fields are written in the order and
+     * with the escapes Jackson uses for a {@link Pet}, and nothing is allocated.
+     *
+     * @param slot   The slot.
+     * @param buffer The buffer to write to.
+     */
+    public void writeJson(int slot, DataBuffer buffer) {
+        int nameLength = records.getInt(slot, NAME_LENGTH);
+        buffer.write(ID_FIELD);
+        writeInt(id(slot), buffer);
+        buffer.write(NAME_FIELD);
+        writeJsonString(slot, 0, nameLength, buffer);
+        buffer.write(AGE_FIELD);
+        writeInt(age(slot), buffer);
+        buffer.write(OWNER_FIELD);
+        writeJsonString(slot, Math.max(0, nameLength), records.getInt(slot, OWNER_LENGTH), buffer);
+        buffer.write((byte) '}');
+    }
+
+    private void write(int slot, Pet pet) {
+        byte[] name = utf8(pet.getName());
+        byte[] owner = utf8(pet.getOwner());
+        records.putInt(slot, AGE, pet.getAge());
+        records.putInt(slot, NAME_LENGTH, name == null ? NONE : name.length);
+        records.putInt(slot, OWNER_LENGTH, owner == null ? NONE : owner.length);
+        int segment = slot;
+        int offset = INLINE;
+        int end = RECORD;
+        for (byte[] bytes : new byte[][]{name, owner}) {
+            for (int i = 0; bytes != null && i < bytes.length; i++) {
+                if (offset == end) {
+                    int next = records.allocate();
+                    records.putInt(segment, segment == slot ? CONTINUATION : NEXT_CONTINUATION, next);
+                    records.putInt(next, NEXT_CONTINUATION, NONE);
+                    segment = next;
+                    offset = CONTINUED;
+                }
+                records.putByte(segment, offset++, bytes[i]);
+            }
+        }
+        linkOwner(slot, pet.getOwner());
+    }
+
+    private void linkOwner(int slot, String owner) {
+        records.putInt(slot, PREVIOUS_OF_OWNER, NONE);
+        records.putInt(slot, NEXT_OF_OWNER, NONE);
+        if (owner == null) {
+            return;
+        }
+        long key = ownerKey(owner);
+        records.putLong(slot, OWNER_KEY, key);
+        int cell = owners.find(key);
+        if (cell < 0) {
+            owners.insert(key, slot, 1);
+            return;
+        }
+        int first = owners.value(cell);
+        records.putInt(first, PREVIOUS_OF_OWNER, slot);
+        records.putInt(slot, NEXT_OF_OWNER, first);
+        owners.setValue(cell, slot);
+        owners.setCounter(cell, owners.counter(cell) + 1);
+    }
+
+    private void unlinkOwner(int slot) {
+        if (records.getInt(slot, OWNER_LENGTH) == NONE) {
+            return;
+        }
+        long key = records.getLong(slot, OWNER_KEY);
+        int cell = owners.find(key);
+        if (owners.counter(cell) == 1) {
+            owners.remove(key);
+            return;
+        }
+        int previous = records.getInt(slot, PREVIOUS_OF_OWNER);
+        int next = records.getInt(slot, NEXT_OF_OWNER);
+        if (previous == NONE) {
+            owners.setValue(cell, next);
+        } else {
+            records.putInt(previous, NEXT_OF_OWNER, next);
+        }
+        if (next != NONE) {
+            records.putInt(next, PREVIOUS_OF_OWNER, previous);
+        }
+        owners.setCounter(cell, owners.counter(cell) - 1);
+    }
+
+    private void freeContinuations(int slot) {
+        int next = records.getInt(slot, CONTINUATION);
+        while (next != NONE) {
+            int continuation = next;
+            next = records.getInt(continuation, NEXT_CONTINUATION);
+            records.free(continuation);
+        }
+        records.putInt(slot, CONTINUATION, NONE);
+    }
+
+    private String string(int slot, int from, int length) {
+        if (length == NONE) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        copy(slot, from, length, bytes, null);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeJsonString(int slot, int from, int length, DataBuffer buffer) {
+        if (length == NONE) {
+            buffer.write(NULL);
+            return;
+        }
+        buffer.write((byte) '"');
+        copy(slot, from, length, null, buffer);
+        buffer.write((byte) '"');
+    }
+
+    /**
+     * Copies bytes of the name and owner of a record, either to an array or escaped to a JSON buffer.
+     * Bytes of multibyte UTF-8 characters are never escaped, so they are copied unchanged.
+     */
+    private void copy(int slot, int from, int length, byte[] bytes, DataBuffer json) {
+        int segment = slot;
+        int start = 0;
+        int segmentBytes = INLINE_BYTES;
+        int offset = INLINE;
+        for (int i = from, end = from + length; i < end; i++) {
+            while (i >= start + segmentBytes) {
+                segment = records.getInt(segment, start == 0 ? CONTINUATION : NEXT_CONTINUATION);
+                start += segmentBytes;
+                segmentBytes = CONTINUED_BYTES;
+                offset = CONTINUED;
+            }
+            byte value = records.getByte(segment, offset + i - start);
+            if (bytes != null) {
+                bytes[i - from] = value;
+            } else {
+                writeJsonByte(value, json);
+            }
+        }
+    }
+
+    private static void writeJsonByte(byte value, DataBuffer buffer) {
+        if (value == '"' || value == '\\') {
+            buffer.write((byte) '\\').write(value);
+        } else if (value >= 0 && value < 0x20) {
+            buffer.write((byte) '\\');
+            switch (value) {
+                case '\b': buffer.write((byte) 'b'); break;
+                case '\t': buffer.write((byte) 't'); break;
+                case '\n': buffer.write((byte) 'n'); break;
+                case '\f': buffer.write((byte) 'f'); break;
+                case '\r': buffer.write((byte) 'r'); break;
+                default: buffer.write((byte) 'u').write((byte) '0').write((byte) '0')
+                        .write(HEX[value >> 4]).write(HEX[value & 0xF]);
+            }
+        } else {
+            buffer.write(value);
+        }
+    }
+
+    private static void writeInt(int value, DataBuffer buffer) {
+        long remaining = value;
+        if (remaining < 0) {
+            buffer.write((byte) '-');
+            remaining = -remaining;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= remaining) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.write((byte) ('0' + remaining / divisor % 10));
+        }
+    }
+
+    /**
+     * Hashes the normalized owner name with 64-bit FNV-1a over its chars.
+     */
+    static long ownerKey(String owner) {
+        String normalized = PetQuery.normalize(owner);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash = (hash ^ normalized.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,139 @@
+package fr.elsior.wfx.test.services.dao.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Author: Elimane
+ *
+ * Fixed-size slots of native memory, allocated in chunks of direct {@link ByteBuffer}s.
+ * The heap only holds one buffer object per chunk, so the garbage collector neither traces nor copies the slots.
+ * Freed slots are chained through their first four bytes and reused before the slots are extended.
+ * Every access uses absolute positions, so concurrent reads are safe while nothing writes. Not thread-safe.
+ */
+public final class OffHeapSlots {
+
+    private static final int NONE = -1;
+
+    private final int slotSize;
+
+    private final int slotShift;
+
+    private final int chunkShift;
+
+    private final int chunkMask;
+
+    private ByteBuffer[] chunks = new ByteBuffer[8];
+
+    private int chunkCount;
+
+    private int limit;
+
+    private int freeHead = NONE;
+
+    private int used;
+
+    /**
+     * @param slotSize   The size of a slot in bytes, a power of two of at least four bytes.
+     * @param chunkBytes The size of a chunk in bytes, a power of two of at least one slot.
+     */
+    public OffHeapSlots(int slotSize, int chunkBytes) {
+        if (Integer.bitCount(slotSize) != 1 || slotSize < Integer.BYTES
+                || Integer.bitCount(chunkBytes) != 1 || chunkBytes < slotSize) {
+            throw new IllegalArgumentException("Slot and chunk sizes must be powers of two: " + slotSize + ", " + chunkBytes);
+        }
+        this.slotSize = slotSize;
+        this.slotShift = Integer.numberOfTrailingZeros(slotSize);
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkBytes) - slotShift;
+        this.chunkMask = (1 << chunkShift) - 1;
+    }
+
+    /**
+     * @return A slot, reused if one was freed. Its bytes are zero only if it was never used.
+     */
+    public int allocate() {
+        used++;
+        if (freeHead != NONE) {
+            int slot = freeHead;
+            freeHead = getInt(slot, 0);
+            return slot;
+        }
+        reserve(limit + 1);
+        return limit - 1;
+    }
+
+    /**
+     * @param slot A slot returned by {@link #allocate}, which must not be used anymore.
+     */
+    public void free(int slot) {
+        putInt(slot, 0, freeHead);
+        freeHead = slot;
+        used--;
+    }
+
+    /**
+     * Makes the slots from 0 to a count addressable, for callers indexing the slots themselves
+     * rather than allocating them.
+     *
+     * @param count The number of slots.
+     */
+    public void reserve(int count) {
+        while (count > chunkCount << chunkShift) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            }
+            chunks[chunkCount++] = ByteBuffer.allocateDirect(slotSize << chunkShift);
+        }
+        limit = Math.max(limit, count);
+    }
+
+    /**
+     * @return The number of allocated slots.
+     */
+    public int used() {
+        return used;
+    }
+
+    /**
+     * @return The native memory reserved by the chunks, in bytes.
+     */
+    public long reservedBytes() {
+        return (long) chunkCount * slotSize << chunkShift;
+    }
+
+    public int slotSize() {
+        return slotSize;
+    }
+
+    public int getInt(int slot, int offset) {
+        return chunk(slot).getInt(position(slot, offset));
+    }
+
+    public void putInt(int slot, int offset, int value) {
+        chunk(slot).putInt(position(slot, offset), value);
+    }
+
+    public long getLong(int slot, int offset) {
+        return chunk(slot).getLong(position(slot, offset));
+    }
+
+    public void putLong(int slot, int offset, long value) {
+        chunk(slot).putLong(position(slot, offset), value);
+    }
+
+    public byte getByte(int slot, int offset) {
+        return chunk(slot).get(position(slot, offset));
+    }
+
+    public void putByte(int slot, int offset, byte value) {
+        chunk(slot).put(position(slot, offset), value);
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return chunks[slot >>> chunkShift];
+    }
+
+    private int position(int slot, int offset) {
+        return ((slot & chunkMask) << slotShift) + offset;
+    }
+}
@@ -0,0 +1,246 @@
+package fr.elsior.wfx.test.services.dao.offheap;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntPredicate;
+
+/**
+ * Author: Elimane
+ *
+ * Sorted set of ints stored in native blocks of up to {@value #BLOCK} sorted values, ordered by their first value.
+ * Only the block directory lives on the heap, three ints per block. An insertion or removal shifts at most one block,
+ * values added in increasing order fill the last block, and emptied blocks are reused. Not thread-safe.
+ */
+public final class OffHeapSortedIds {
+
+    static final int BLOCK = 1024;
+
+    private static final int CHUNK_BYTES = 1 << 22;
+
+    private final OffHeapSlots blocks = new OffHeapSlots(BLOCK * Integer.BYTES, CHUNK_BYTES);
+
+    private int[] blockSlots = new int[16];
+
+    private int[] firsts = new int[16];
+
+    private int[] lengths = new int[16];
+
+    private int blockCount;
+
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The native memory reserved by the blocks, in bytes.
+     */
+    public long reservedBytes() {
+        return blocks.reservedBytes();
+    }
+
+    /**
+     * @param value The value to add.
+     * @return True if the value was added, false if it was already in the set.
+     */
+    public boolean add(int value) {
+        if (blockCount == 0) {
+            insertBlock(0, value);
+            return true;
+        }
+        int block = Math.max(0, blockOf(value));
+        int position = search(block, value);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        if (lengths[block] == BLOCK) {
+            if (position == BLOCK && (block + 1 == blockCount || lengths[block + 1] == BLOCK)) {
+                insertBlock(block + 1, value);
+                return true;
+            }
+            if (position == BLOCK) {
+                block++;
+                position = 0;
+            } else {
+                split(block);
+                if (position > lengths[block]) {
+                    position -= lengths[block];
+                    block++;
+                }
+            }
+        }
+        int slot = blockSlots[block];
+        for (int i = lengths[block]; i > position; i--) {
+            blocks.putInt(slot, i * Integer.BYTES, blocks.getInt(slot, (i - 1) * Integer.BYTES));
+        }
+        blocks.putInt(slot, position * Integer.BYTES, value);
+        if (position == 0) {
+            firsts[block] = value;
+        }
+        lengths[block]++;
+        size++;
+        return true;
+    }
+
+    /**
+     * @param value The value to remove.
+     * @return True if the value was removed, false if it was not in the set.
+     */
+    public boolean remove(int value) {
+        int block = blockOf(value);
+        if (block < 0) {
+            return false;
+        }
+        int position = search(block, value);
+        if (position < 0) {
+            return false;
+        }
+        size--;
+        if (--lengths[block] == 0) {
+            blocks.free(blockSlots[block]);
+            System.arraycopy(blockSlots, block + 1, blockSlots, block, blockCount - block - 1);
+            System.arraycopy(firsts, block + 1, firsts, block, blockCount - block - 1);
+            System.arraycopy(lengths, block + 1, lengths, block, blockCount - block - 1);
+            blockCount--;
+            return true;
+        }
+        int slot = blockSlots[block];
+        for (int i = position; i < lengths[block]; i++) {
+            blocks.putInt(slot, i * Integer.BYTES, blocks.getInt(slot, (i + 1) * Integer.BYTES));
+        }
+        firsts[block] = blocks.getInt(slot, 0);
+        return true;
+    }
+
+    /**
+     * Visits the values in increasing order.
+     *
+     * @param after   The value to start after, or null to start from the smallest value.
+     * @param visitor Receives each value, and returns false to stop.
+     */
+    public void forEachAfter(Integer after, IntPredicate visitor) {
+        int block = 0;
+        int position = 0;
+        if (after != null) {
+            block = Math.max(0, blockOf(after));
+            if (block < blockCount) {
+                position = search(block, after);
+                position = position >= 0 ? position + 1 : -position - 1;
+            }
+        }
+        for (; block < blockCount; block++, position = 0) {
+            int slot = blockSlots[block];
+            for (int length = lengths[block]; position < length; position++) {
+                if (!visitor.test(blocks.getInt(slot, position * Integer.BYTES))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return An iterator over the values in increasing order, valid until the set is changed.
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+
+            private int block;
+
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return block < blockCount;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int value = blocks.getInt(blockSlots[block], position * Integer.BYTES);
+                if (++position == lengths[block]) {
+                    block++;
+                    position = 0;
+                }
+                return value;
+            }
+        };
+    }
+
+    /**
+     * @return The index of the last block whose first value is not greater than the value, or -1 if there is none.
+     */
+    private int blockOf(int value) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (firsts[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Binary search within a block, with the same result as {@link Arrays#binarySearch(int[], int)}.
+     */
+    private int search(int block, int value) {
+        int slot = blockSlots[block];
+        int low = 0;
+        int high = lengths[block] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int found = blocks.getInt(slot, middle * Integer.BYTES);
+            if (found < value) {
+                low = middle + 1;
+            } else if (found > value) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insertBlock(int block, int value) {
+        makeRoom(block);
+        blockSlots[block] = blocks.allocate();
+        blocks.putInt(blockSlots[block], 0, value);
+        firsts[block] = value;
+        lengths[block] = 1;
+        size++;
+    }
+
+    private void split(int block) {
+        makeRoom(block + 1);
+        int half = lengths[block] / 2;
+        int from = blockSlots[block];
+        int to = blocks.allocate();
+        for (int i = half; i < lengths[block]; i++) {
+            blocks.putInt(to, (i - half) * Integer.BYTES, blocks.getInt(from, i * Integer.BYTES));
+        }
+        blockSlots[block + 1] = to;
+        firsts[block + 1] = blocks.getInt(to, 0);
+        lengths[block + 1] = lengths[block] - half;
+        lengths[block] = half;
+    }
+
+    private void makeRoom(int block) {
+        if (blockCount == blockSlots.length) {
+            blockSlots = Arrays.copyOf(blockSlots, blockCount * 2);
+            firsts = Arrays.copyOf(firsts, blockCount * 2);
+            lengths = Arrays.copyOf(lengths, blockCount * 2);
+        }
+        System.arraycopy(blockSlots, block, blockSlots, block + 1, blockCount - block);
+        System.arraycopy(firsts, block, firsts, block + 1, blockCount - block);
+        System.arraycopy(lengths, block, lengths, block + 1, blockCount - block);
+        blockCount++;
+    }
+}
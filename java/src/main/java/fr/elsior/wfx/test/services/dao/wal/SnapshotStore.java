@@ -0,0 +1,222 @@
+package fr.elsior.wfx.test.services.dao.wal;
+
+import fr.elsior.wfx.test.model.Pet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Author: Elimane
+ *
+ * Compact full copies of the catalog, named after the highest LSN they cover.
+ * A snapshot is written to a temporary file, fsynced, then atomically renamed, so a crash never leaves a partial one.
+ */
+public final class SnapshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final int MAGIC = 0x50455453;
+    private static final int VERSION = 1;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path directory;
+
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Writes a snapshot and deletes the older ones.
+     *
+     * @param lsn  The highest LSN whose mutation is included in the pets.
+     * @param pets The whole catalog.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void write(long lsn, Collection<Pet> pets) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+
+        CRC32 crc = new CRC32();
+        try (OutputStream file = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lsn);
+            out.writeInt(pets.size());
+            for (Pet pet : pets) {
+                WalRecord.writePet(out, pet);
+            }
+            out.flush();
+            file.write(intBytes((int) crc.getValue()));
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (Path older : snapshots()) {
+            if (!older.equals(target) && snapshotLsn(older) < lsn) {
+                Files.deleteIfExists(older);
+            }
+        }
+    }
+
+    /**
+     * Reads the most recent readable snapshot, skipping corrupted ones.
+     *
+     * @return The snapshot, or null if there is none.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public Snapshot readLatest() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        List<Path> snapshots = snapshots();
+        Collections.reverse(snapshots);
+        for (Path path : snapshots) {
+            try {
+                return read(path);
+            } catch (IOException e) {
+                logger.warn("Skipping unreadable snapshot {}", path, e);
+            }
+        }
+        return null;
+    }
+
+    private Snapshot read(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        long bodyLength = Files.size(path) - Integer.BYTES;
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(
+                     new CheckedInputStream(new BoundedInputStream(file, bodyLength), crc)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a pet snapshot: " + path);
+            }
+            long lsn = in.readLong();
+            int count = in.readInt();
+            List<Pet> pets = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                pets.add(WalRecord.readPet(in));
+            }
+            if (in.read() != -1) {
+                throw new IOException("Trailing bytes in snapshot " + path);
+            }
+            int expected = new DataInputStream(file).readInt();
+            if (expected != (int) crc.getValue()) {
+                throw new IOException("Checksum mismatch in snapshot " + path);
+            }
+            return new Snapshot(lsn, pets);
+        }
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long snapshotLsn(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    /**
+     * A catalog read back from disk with the LSN it covers.
+     */
+    public static final class Snapshot {
+
+        private final long lsn;
+
+        private final List<Pet> pets;
+
+        Snapshot(long lsn, List<Pet> pets) {
+            this.lsn = lsn;
+            this.pets = pets;
+        }
+
+        public long getLsn() {
+            return lsn;
+        }
+
+        public List<Pet> getPets() {
+            return pets;
+        }
+    }
+
+    /**
+     * Reads at most a given number of bytes from a stream, leaving the rest unread.
+     */
+    private static final class BoundedInputStream extends InputStream {
+
+        private final InputStream in;
+
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int value = in.read();
+            if (value >= 0) {
+                remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The underlying stream is closed by its owner
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package fr.elsior.wfx.test.services.dao.wal;
+
+import fr.elsior.wfx.test.model.Pet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Author: Elimane
+ *
+ * One entry of the write-ahead log. A PUT carries the full pet as stored after the write,
+ * a DELETE only its ID, so replaying records in order is idempotent.
+ * Names and owners are written as modified UTF-8 of at most {@value #MAX_FIELD_LENGTH} bytes: a longer one is
+ * rejected when the record is built, before it can fail the group commit of other records.
+ */
+public final class WalRecord {
+
+    public enum Type {
+        PUT, DELETE
+    }
+
+    static final int MAX_FIELD_LENGTH = 65535;
+
+    private final long lsn;
+
+    private final Type type;
+
+    private final int id;
+
+    private final Pet pet;
+
+    private WalRecord(long lsn, Type type, int id, Pet pet) {
+        this.lsn = lsn;
+        this.type = type;
+        this.id = id;
+        this.pet = pet;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the name or the owner of the pet is too long to be logged.
+     */
+    static WalRecord put(long lsn, Pet pet) {
+        checkPut(pet);
+        return new WalRecord(lsn, Type.PUT, pet.getId(), pet);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the name or the owner of the pet is too long to be logged.
+     */
+    static void checkPut(Pet pet) {
+        checkLength("name", pet.getName());
+        checkLength("owner", pet.getOwner());
+    }
+
+    static WalRecord delete(long lsn, int id) {
+        return new WalRecord(lsn, Type.DELETE, id, null);
+    }
+
+    public long getLsn() {
+        return lsn;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return The stored pet for a PUT, null for a DELETE.
+     */
+    public Pet getPet() {
+        return pet;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(lsn);
+        out.writeByte(type.ordinal());
+        if (type == Type.PUT) {
+            writePet(out, pet);
+        } else {
+            out.writeInt(id);
+        }
+    }
+
+    static WalRecord readFrom(DataInput in) throws IOException {
+        long lsn = in.readLong();
+        int type = in.readByte();
+        if (type == Type.PUT.ordinal()) {
+            return put(lsn, readPet(in));
+        } else if (type == Type.DELETE.ordinal()) {
+            return delete(lsn, in.readInt());
+        }
+        throw new IOException("Unknown record type " + type + " at LSN " + lsn);
+    }
+
+    static void writePet(DataOutput out, Pet pet) throws IOException {
+        out.writeInt(pet.getId());
+        out.writeInt(pet.getAge());
+        writeNullable(out, pet.getName());
+        writeNullable(out, pet.getOwner());
+    }
+
+    static Pet readPet(DataInput in) throws IOException {
+        int id = in.readInt();
+        int age = in.readInt();
+        String name = readNullable(in);
+        String owner = readNullable(in);
+        return new Pet(id, name, age, owner);
+    }
+
+    private static void checkLength(String field, String value) {
+        if (value == null || value.length() * 3L <= MAX_FIELD_LENGTH) {
+            return;
+        }
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        if (length > MAX_FIELD_LENGTH) {
+            throw new IllegalArgumentException("The pet " + field + " is longer than " + MAX_FIELD_LENGTH + " bytes");
+        }
+    }
+
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,390 @@
+package fr.elsior.wfx.test.services.dao.wal;
+
+import fr.elsior.wfx.test.model.Pet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Author: Elimane
+ *
+ * Append-only log of pet mutations split into segment files.
+ * A single writer thread drains every pending record, writes them at once and fsyncs once per batch (group commit).
+ * <p>
+ * Each segment is named after the last LSN assigned when it was opened, so every record of the previous
+ * segments has a lower or equal LSN. Once a snapshot covers that LSN, the previous segments can be deleted.
+ * Records are framed as length, CRC32 and payload, so a torn write at the tail is detected on replay.
+ * A batch that cannot be written is truncated away, so later records are never appended after a torn frame;
+ * if even that fails, the log rejects every later record.
+ */
+public final class WriteAheadLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int FRAME_HEADER_LENGTH = 8;
+
+    private static final int MAX_PAYLOAD_LENGTH = 1 << 20;
+
+    private final Path directory;
+
+    private final int maxBatchSize;
+
+    private final boolean fsync;
+
+    private final int recordsPerSegment;
+
+    private final Runnable onSegmentRolled;
+
+    private final AtomicLong lastLsn;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    /**
+     * Set when a failed batch could not be removed from the segment: nothing can be appended after it.
+     */
+    private volatile IOException failure;
+
+    private FileChannel segment;
+
+    private int recordsInSegment;
+
+    /**
+     * Opens a new segment after the given LSN and starts the writer thread.
+     * Existing segments must have been replayed beforehand with {@link #replay(Path, long, Consumer)}.
+     *
+     * @param directory         The directory holding the segments.
+     * @param lastLsn           The highest LSN already on disk.
+     * @param maxBatchSize      The maximum number of records written per fsync.
+     * @param fsync             Whether each batch is forced to the storage device.
+     * @param recordsPerSegment The number of records after which a new segment is opened.
+     * @param onSegmentRolled   Called on the writer thread each time a new segment is opened.
+     * @throws IOException If the segment cannot be created.
+     */
+    public WriteAheadLog(Path directory, long lastLsn, int maxBatchSize, boolean fsync,
+                         int recordsPerSegment, Runnable onSegmentRolled) throws IOException {
+        this.directory = directory;
+        this.lastLsn = new AtomicLong(lastLsn);
+        this.maxBatchSize = maxBatchSize;
+        this.fsync = fsync;
+        this.recordsPerSegment = recordsPerSegment;
+        this.onSegmentRolled = onSegmentRolled;
+        Files.createDirectories(directory);
+        this.segment = openSegment(lastLsn);
+        this.writer = new Thread(this::writeLoop, "pet-wal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Logs that a pet is now stored as given.
+     *
+     * @param pet The pet as stored after the write.
+     * @return A future completed once the record is durable.
+     * @throws IllegalArgumentException If the name or the owner of the pet is too long to be logged.
+     */
+    public CompletableFuture<Void> appendPut(Pet pet) {
+        return append(WalRecord.put(lastLsn.incrementAndGet(), pet));
+    }
+
+    /**
+     * Checks that a pet can be logged, so that a batch is rejected whole before any of its records is queued.
+     *
+     * @param pet The pet as it would be stored.
+     * @throws IllegalArgumentException If the name or the owner of the pet is too long to be logged.
+     */
+    public void checkPut(Pet pet) {
+        WalRecord.checkPut(pet);
+    }
+
+    /**
+     * Logs that a pet has been deleted.
+     *
+     * @param id The ID of the deleted pet.
+     * @return A future completed once the record is durable.
+     */
+    public CompletableFuture<Void> appendDelete(int id) {
+        return append(WalRecord.delete(lastLsn.incrementAndGet(), id));
+    }
+
+    /**
+     * @return The highest LSN assigned so far. Every mutation applied before this call has an LSN lower or equal.
+     */
+    public long lastLsn() {
+        return lastLsn.get();
+    }
+
+    /**
+     * Deletes the segments whose records all have an LSN lower or equal to the given one.
+     *
+     * @param coveredLsn The LSN covered by the latest snapshot.
+     */
+    public void deleteSegmentsCoveredBy(long coveredLsn) {
+        try {
+            List<Path> segments = segments(directory);
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                if (segmentStart(segments.get(i + 1)) <= coveredLsn) {
+                    Files.deleteIfExists(segments.get(i));
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Cannot delete covered WAL segments in {}", directory, e);
+        }
+    }
+
+    /**
+     * Writes every pending record, then stops the writer thread.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.close();
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.durable.completeExceptionally(new IllegalStateException("The write-ahead log is closed"));
+        }
+    }
+
+    /**
+     * Replays every record of the segments in a directory with an LSN greater than the given one.
+     * A torn or corrupted record ends its segment: the segment is truncated before it.
+     *
+     * @param directory The directory holding the segments.
+     * @param afterLsn  The LSN already covered by a snapshot.
+     * @param consumer  Receives each record to apply.
+     * @return The highest LSN found, or afterLsn if none is higher.
+     * @throws IOException If a segment cannot be read.
+     */
+    public static long replay(Path directory, long afterLsn, Consumer<WalRecord> consumer) throws IOException {
+        long highestLsn = afterLsn;
+        if (!Files.isDirectory(directory)) {
+            return highestLsn;
+        }
+        for (Path path : segments(directory)) {
+            long validLength = 0;
+            try (InputStream input = Files.newInputStream(path);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(input))) {
+                byte[] payload;
+                while ((payload = readFrame(in)) != null) {
+                    validLength += FRAME_HEADER_LENGTH + payload.length;
+                    WalRecord record = WalRecord.readFrom(new DataInputStream(new ByteArrayInputStream(payload)));
+                    highestLsn = Math.max(highestLsn, record.getLsn());
+                    if (record.getLsn() > afterLsn) {
+                        consumer.accept(record);
+                    }
+                }
+            }
+            if (validLength < Files.size(path)) {
+                logger.warn("Truncating torn tail of WAL segment {} at {} bytes", path, validLength);
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                }
+            }
+        }
+        return highestLsn;
+    }
+
+    private CompletableFuture<Void> append(WalRecord record) {
+        if (closed) {
+            throw new IllegalStateException("The write-ahead log is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("The write-ahead log failed", failure);
+        }
+        Pending pending = new Pending(record);
+        queue.add(pending);
+        return pending.durable;
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                writeBatch(batch);
+                recordsInSegment += batch.size();
+                if (recordsInSegment >= recordsPerSegment) {
+                    rollSegment();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("WAL writer failure", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes and forces a batch. On failure the segment is truncated back to its length before the batch,
+     * so that a partly written frame never sits before the records of the next batches.
+     */
+    private void writeBatch(List<Pending> batch) {
+        if (failure != null) {
+            fail(batch, failure);
+            return;
+        }
+        long length = -1;
+        try {
+            length = segment.size();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 64);
+            for (Pending pending : batch) {
+                writeFrame(bytes, pending.record);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+            if (fsync) {
+                segment.force(false);
+            }
+            batch.forEach(pending -> pending.durable.complete(null));
+        } catch (IOException e) {
+            logger.error("Cannot write {} WAL records", batch.size(), e);
+            discardFrom(length, e);
+            fail(batch, e);
+        }
+    }
+
+    private void discardFrom(long length, IOException cause) {
+        try {
+            if (length < 0) {
+                throw cause;
+            }
+            segment.truncate(length);
+            if (fsync) {
+                segment.force(true);
+            }
+        } catch (IOException e) {
+            logger.error("Cannot truncate the failed WAL batch, rejecting every later record", e);
+            failure = e;
+        }
+    }
+
+    private static void fail(List<Pending> batch, IOException cause) {
+        UncheckedIOException failure = new UncheckedIOException(cause);
+        batch.forEach(pending -> pending.durable.completeExceptionally(failure));
+    }
+
+    private void rollSegment() {
+        try {
+            FileChannel previous = segment;
+            segment = openSegment(lastLsn.get());
+            previous.close();
+            recordsInSegment = 0;
+            onSegmentRolled.run();
+        } catch (IOException e) {
+            logger.error("Cannot open a new WAL segment in {}", directory, e);
+        }
+    }
+
+    private FileChannel openSegment(long start) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX));
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static void writeFrame(ByteArrayOutputStream bytes, WalRecord record) throws IOException {
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(64);
+        record.writeTo(new DataOutputStream(recordBytes));
+        byte[] payload = recordBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+    }
+
+    /**
+     * Reads the payload of the next frame.
+     *
+     * @return The payload, or null at the end of the segment or on a torn or corrupted frame.
+     */
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0 || length > MAX_PAYLOAD_LENGTH) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static final class Pending {
+
+        private final WalRecord record;
+
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private Pending(WalRecord record) {
+            this.record = record;
+        }
+    }
+}
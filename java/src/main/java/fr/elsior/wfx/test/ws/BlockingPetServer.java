@@ -0,0 +1,53 @@
+package fr.elsior.wfx.test.ws;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * @author Elimane
+ *
+ * JDK HTTP server serving the /pets routes with a {@link BlockingPetsHandler}, each exchange running on a task of
+ * the given executor. Started when built, stopped when closed.
+ */
+public class BlockingPetServer implements AutoCloseable {
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param address  The address to listen on, port 0 for any free port.
+     * @param backlog  The number of connections queued before they are accepted.
+     * @param handler  The handler of the /pets routes.
+     * @param executor The executor each exchange runs on, shut down with the server.
+     * @throws IOException If the server cannot listen on the address.
+     */
+    public BlockingPetServer(InetSocketAddress address, int backlog, HttpHandler handler, ExecutorService executor)
+            throws IOException {
+        this.executor = executor;
+        this.server = HttpServer.create(address, backlog);
+        server.createContext("/pets", handler);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting connections, lets the exchanges in progress finish for up to a second, and shuts the executor down.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,263 @@
+package fr.elsior.wfx.test.ws;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import fr.elsior.wfx.test.exceptions.OwnerNotFoundException;
+import fr.elsior.wfx.test.exceptions.PetAlreadyExistsException;
+import fr.elsior.wfx.test.exceptions.PetNotFoundException;
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.services.BlockingPetService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Elimane
+ *
+ * Serves the routes of {@link PetsRestController} on the JDK HTTP server, in the blocking style: each exchange
+ * is handled from start to end on the thread the server gives it, which calls the store and writes the response.
+ * Responses carry the same bodies, statuses and ETags as the WebFlux routes. Bulk routes, streams and searches
+ * are only served by WebFlux.
+ */
+public class BlockingPetsHandler implements HttpHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockingPetsHandler.class);
+
+    private static final String PREFIX = "/pets";
+
+    private final BlockingPetService petService;
+
+    private final ObjectMapper objectMapper;
+
+    private final int maxPageSize;
+
+    /**
+     * @param petService   The blocking service for handling pets.
+     * @param objectMapper Reads and writes the JSON bodies.
+     * @param maxPageSize  The largest page a client can request.
+     */
+    public BlockingPetsHandler(BlockingPetService petService, ObjectMapper objectMapper, int maxPageSize) {
+        this.petService = petService;
+        this.objectMapper = objectMapper;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange);
+        } catch (PetNotFoundException e) {
+            send(exchange, HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (OwnerNotFoundException e) {
+            send(exchange, HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (PetAlreadyExistsException e) {
+            send(exchange, HttpStatus.CONFLICT, e.getMessage());
+        } catch (PetPreconditionFailedException e) {
+            send(exchange, HttpStatus.PRECONDITION_FAILED, e.getMessage());
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            send(exchange, HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Failed to handle {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            send(exchange, HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException, PetNotFoundException, OwnerNotFoundException,
+            PetAlreadyExistsException, PetPreconditionFailedException {
+        String path = exchange.getRequestURI().getPath().substring(PREFIX.length());
+        Map<String, List<String>> params = params(exchange.getRequestURI().getRawQuery());
+        if (!path.isEmpty() && path.charAt(0) != '/') {
+            send(exchange, HttpStatus.NOT_FOUND, null);
+            return;
+        }
+        if (!allows(exchange, path)) {
+            return;
+        }
+        if (path.isEmpty() || path.equals("/")) {
+            listPets(exchange, params);
+        } else if (path.equals("/query")) {
+            queryPets(exchange, params);
+        } else if (path.equals("/stats")) {
+            json(exchange, HttpStatus.OK, petService.getStats(params.getOrDefault("owner", List.of())), null);
+        } else if (path.equals("/add")) {
+            json(exchange, HttpStatus.CREATED, petService.addPet(body(exchange)), null);
+        } else if (path.startsWith("/owner/")) {
+            List<Pet> pets = petService.getPetsByOwner(path.substring("/owner/".length()));
+            json(exchange, HttpStatus.OK, pets, PetETags.of(pets));
+        } else if (path.startsWith("/update/")) {
+            updatePet(exchange, id(path.substring("/update/".length())));
+        } else if (path.startsWith("/remove/")) {
+            petService.deletePet(id(path.substring("/remove/".length())));
+            send(exchange, HttpStatus.NO_CONTENT, null);
+        } else if (path.indexOf('/', 1) < 0) {
+            Pet pet = petService.getPet(id(path.substring(1)));
+            json(exchange, HttpStatus.OK, pet, PetETags.of(pet));
+        } else {
+            send(exchange, HttpStatus.NOT_FOUND, null);
+        }
+    }
+
+    /**
+     * Updates a pet, with the same rules as the WebFlux route: a missing pet fails the If-Match with 412.
+     */
+    private void updatePet(HttpExchange exchange, int id)
+            throws IOException, PetNotFoundException, PetPreconditionFailedException {
+        String ifMatch = exchange.getRequestHeaders().getFirst(HttpHeaders.IF_MATCH);
+        Pet pet;
+        try {
+            pet = petService.updatePet(id, body(exchange),
+                    ifMatch == null ? null : current -> PetETags.matches(ifMatch, current));
+        } catch (PetNotFoundException e) {
+            if (ifMatch == null) {
+                throw e;
+            }
+            throw new PetPreconditionFailedException();
+        }
+        json(exchange, HttpStatus.OK, pet, PetETags.of(pet));
+    }
+
+    private void queryPets(HttpExchange exchange, Map<String, List<String>> params) throws IOException {
+        Integer limit = intParam(params, "limit");
+        PetQuery query = new PetQuery(intParam(params, "minAge"), intParam(params, "maxAge"), param(params, "name"),
+                param(params, "owner"), intParam(params, "after"),
+                limit == null ? Integer.MAX_VALUE : Math.max(1, Math.min(limit, maxPageSize)));
+        if (!query.hasCriterion() && limit == null) {
+            throw new IllegalArgumentException("A query without any criterion needs a limit");
+        }
+        json(exchange, HttpStatus.OK, petService.findPets(query), null);
+    }
+
+    private void listPets(HttpExchange exchange, Map<String, List<String>> params) throws IOException {
+        Integer limit = intParam(params, "limit");
+        if (limit == null) {
+            json(exchange, HttpStatus.OK, petService.getPets(), null);
+            return;
+        }
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        List<Pet> pets = petService.getPets(intParam(params, "after"), pageSize);
+        if (pets.size() == pageSize) {
+            int nextAfter = pets.get(pets.size() - 1).getId();
+            exchange.getResponseHeaders().set(HttpHeaders.LINK,
+                    "</pets?after=" + nextAfter + "&limit=" + pageSize + ">; rel=\"next\"");
+        }
+        json(exchange, HttpStatus.OK, pets, null);
+    }
+
+    /**
+     * Writes a JSON body, or 304 (Not Modified) without a body when the request's If-None-Match holds the ETag.
+     */
+    private void json(HttpExchange exchange, HttpStatus status, Object body, String etag) throws IOException {
+        if (etag != null) {
+            exchange.getResponseHeaders().set(HttpHeaders.ETAG, etag);
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst(HttpHeaders.IF_NONE_MATCH);
+            if (ifNoneMatch != null && Arrays.stream(ifNoneMatch.split(",")).map(String::trim).anyMatch(etag::equals)) {
+                sendEmpty(exchange, HttpStatus.NOT_MODIFIED);
+                return;
+            }
+        }
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+        exchange.sendResponseHeaders(status.value(), bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void send(HttpExchange exchange, HttpStatus status, String message) throws IOException {
+        if (message == null) {
+            sendEmpty(exchange, status);
+            return;
+        }
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE + ";charset=UTF-8");
+        exchange.sendResponseHeaders(status.value(), bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Answers without a body. The request is drained first: the server ends such an exchange as soon as its headers
+     * are sent, and closes the connection instead of reusing it if the request has not been read to its end by then.
+     */
+    private static void sendEmpty(HttpExchange exchange, HttpStatus status) throws IOException {
+        exchange.getRequestBody().close();
+        exchange.sendResponseHeaders(status.value(), -1);
+    }
+
+    private Pet body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return objectMapper.readValue(in, Pet.class);
+        }
+    }
+
+    /**
+     * Answers 405 (Method Not Allowed) to a request whose method is not the method of its route.
+     */
+    private static boolean allows(HttpExchange exchange, String path) throws IOException {
+        String method = path.equals("/add") ? "POST" :
+                path.startsWith("/update/") ? "PUT" :
+                path.startsWith("/remove/") ? "DELETE" :
+                "GET";
+        if (exchange.getRequestMethod().equals(method)) {
+            return true;
+        }
+        exchange.getResponseHeaders().set(HttpHeaders.ALLOW, method);
+        send(exchange, HttpStatus.METHOD_NOT_ALLOWED, null);
+        return false;
+    }
+
+    private static int id(String value) {
+        return Integer.parseInt(value);
+    }
+
+    private static String param(Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    private static Integer intParam(Map<String, List<String>> params, String name) {
+        String value = param(params, name);
+        return value == null ? null : Integer.valueOf(value);
+    }
+
+    /**
+     * Decodes a query string, splitting comma separated values like Spring binds them to a list.
+     */
+    private static Map<String, List<String>> params(String query) {
+        Map<String, List<String>> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals <= 0) {
+                continue;
+            }
+            String name = URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8);
+            for (String value : pair.substring(equals + 1).split(",")) {
+                params.computeIfAbsent(name, key -> new ArrayList<>()).add(URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+}
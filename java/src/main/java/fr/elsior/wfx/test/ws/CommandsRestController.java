@@ -1,11 +1,17 @@
 package fr.elsior.wfx.test.ws;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import fr.elsior.wfx.test.services.CachingPetService;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Author: Elimane
  */
@@ -13,6 +19,17 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/commands")
 public class CommandsRestController {
 
+    private final ObjectProvider<CachingPetService> cachingPetService;
+
+    /**
+     * Constructor with dependency injection.
+     *
+     * @param cachingPetService The pet cache, only available when pets.cache.enabled is true.
+     */
+    public CommandsRestController(ObjectProvider<CachingPetService> cachingPetService) {
+        this.cachingPetService = cachingPetService;
+    }
+
     /**
      * Health check endpoint.
      * Verifies if the service is up and running.
@@ -24,4 +41,28 @@ public class CommandsRestController {
         return new ResponseEntity<>("pong", HttpStatus.OK);
     }
 
+    /**
+     * Pet cache statistics endpoint.
+     *
+     * @return HTTP 200 (OK) with the hit and miss counters of each cache, or 404 (Not Found) if the cache is disabled.
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Map<String, Number>>> cacheStats() {
+        CachingPetService cache = cachingPetService.getIfAvailable();
+        if (cache == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Map<String, Number>> body = new LinkedHashMap<>();
+        cache.stats().forEach((name, stats) -> body.put(name, counters(stats)));
+        return ResponseEntity.ok(body);
+    }
+
+    private static Map<String, Number> counters(CacheStats stats) {
+        Map<String, Number> counters = new LinkedHashMap<>();
+        counters.put("hits", stats.hitCount());
+        counters.put("misses", stats.missCount());
+        counters.put("hitRate", stats.hitRate());
+        counters.put("evictions", stats.evictionCount());
+        return counters;
+    }
 }
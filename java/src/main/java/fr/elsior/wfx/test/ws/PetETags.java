@@ -0,0 +1,89 @@
+package fr.elsior.wfx.test.ws;
+
+import fr.elsior.wfx.test.model.Pet;
+
+import java.util.List;
+
+/**
+ * Author: Elimane
+ *
+ * Strong entity tags computed from the content of a pet or of an ordered list of pets, with 64 bit FNV-1a.
+ * Any change to a field, or to the pets of a list, gives a different tag, so no version has to be stored.
+ */
+final class PetETags {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private PetETags() {}
+
+    /**
+     * @param pet The pet.
+     * @return The quoted entity tag of the pet.
+     */
+    static String of(Pet pet) {
+        return format(hash(FNV_OFFSET_BASIS, pet));
+    }
+
+    /**
+     * @param pets The pets, in response order.
+     * @return The quoted entity tag of the list.
+     */
+    static String of(List<Pet> pets) {
+        long hash = hash(FNV_OFFSET_BASIS, pets.size());
+        for (Pet pet : pets) {
+            hash = hash(hash, pet);
+        }
+        return format(hash);
+    }
+
+    /**
+     * Compares an If-Match header with the current tag of a pet, using the strong comparison.
+     *
+     * @param ifMatch The header value: {@code *} or a comma separated list of tags.
+     * @param pet     The stored pet.
+     * @return True if the header matches the pet.
+     */
+    static boolean matches(String ifMatch, Pet pet) {
+        String etag = of(pet);
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long hash(long hash, Pet pet) {
+        hash = hash(hash, pet.getId());
+        hash = hash(hash, pet.getAge());
+        hash = hash(hash, pet.getName());
+        return hash(hash, pet.getOwner());
+    }
+
+    private static long hash(long hash, int value) {
+        for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return hash(hash, -1);
+        }
+        hash = hash(hash, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static String format(long hash) {
+        return '"' + Long.toHexString(hash) + '"';
+    }
+}
@@ -0,0 +1,77 @@
+package fr.elsior.wfx.test.ws;
+
+import fr.elsior.wfx.test.model.PetEvent;
+import fr.elsior.wfx.test.services.PetEventFeed;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+/**
+ * @author Elimane
+ *
+ * Streams the changes of the catalog, so clients no longer poll GET /pets.
+ */
+@RestController
+@RequestMapping("/pets/events")
+public class PetEventsRestController {
+
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private final PetEventFeed petEvents;
+
+    /**
+     * Constructor with dependency injection.
+     *
+     * @param petEvents The change feed of the catalog.
+     */
+    public PetEventsRestController(PetEventFeed petEvents) {
+        this.petEvents = petEvents;
+    }
+
+    /**
+     * Streams the changes as server-sent events whose ID is the sequence number.
+     * A reconnecting EventSource sends the last ID it received in Last-Event-ID and resumes right after it.
+     *
+     * @param lastEventId The Last-Event-ID header, absent on a first connection.
+     * @param after       The sequence number to resume after, used when the header is absent.
+     * @return A reactive stream (Flux) of events, or HTTP status 410 (Gone) if the following events are no longer kept.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<PetEvent>> streamEvents(@RequestHeader(value = LAST_EVENT_ID, required = false) Long lastEventId,
+                                                        @RequestParam(required = false) Long after) {
+        return events(lastEventId != null ? lastEventId : after)
+                .map(event -> ServerSentEvent.builder(event)
+                        .id(Long.toString(event.getSequence()))
+                        .event(event.getType().name())
+                        .build());
+    }
+
+    /**
+     * Streams the changes as newline delimited JSON.
+     *
+     * @param after The sequence number to resume after, absent to only get new events.
+     * @return A reactive stream (Flux) of events, or HTTP status 410 (Gone) if the following events are no longer kept.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<PetEvent> streamEventsAsNdjson(@RequestParam(required = false) Long after) {
+        return events(after);
+    }
+
+    private Flux<PetEvent> events(Long after) {
+        if (after == null) {
+            return petEvents.events();
+        }
+        if (!petEvents.canResumeAfter(after)) {
+            throw new ResponseStatusException(HttpStatus.GONE,
+                    "Events after " + after + " are no longer kept, the last one is " + petEvents.lastSequence());
+        }
+        return petEvents.eventsAfter(after);
+    }
+}
@@ -0,0 +1,102 @@
+package fr.elsior.wfx.test.ws;
+
+import fr.elsior.wfx.test.services.dao.OffHeapPetDaoImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * @author Elimane
+ *
+ * Exports the catalog of the off-heap store as newline delimited JSON, written by the store straight from its
+ * records into the buffers of the response: no pet is built and Jackson is not involved.
+ */
+@RestController
+@RequestMapping("/pets/export")
+@ConditionalOnProperty(name = "pets.store", havingValue = "offheap")
+public class PetExportRestController {
+
+    private final OffHeapPetDaoImpl petDao;
+
+    private final Scheduler petDaoScheduler;
+
+    private final int pageSize;
+
+    /**
+     * Constructor with dependency injection.
+     *
+     * @param petDao          The off-heap store.
+     * @param petDaoScheduler The scheduler DAO calls run on.
+     * @param pageSize        The number of pets written to each buffer.
+     */
+    public PetExportRestController(OffHeapPetDaoImpl petDao, Scheduler petDaoScheduler,
+                                   @Value("${pets.page.max-size:1000}") int pageSize) {
+        this.petDao = petDao;
+        this.petDaoScheduler = petDaoScheduler;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Streams all pets as newline delimited JSON, one buffer per page of pets.
+     * Each page is written to a buffer of the response's factory, pooled and direct on Netty, as the client
+     * consumes the previous one.
+     *
+     * @param response The response, whose factory allocates the buffers.
+     * @return A reactive stream (Flux) of buffers of pets, in ID order.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DataBuffer> exportPets(ServerHttpResponse response) {
+        DataBufferFactory factory = response.bufferFactory();
+        return page(factory, null)
+                .expand(page -> page.nextAfter == null ? Mono.empty() : page(factory, page.nextAfter))
+                .<DataBuffer>handle((page, sink) -> {
+                    if (page.buffer.readableByteCount() > 0) {
+                        sink.next(page.buffer);
+                    } else {
+                        DataBufferUtils.release(page.buffer);
+                    }
+                })
+                .doOnDiscard(Page.class, page -> DataBufferUtils.release(page.buffer))
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    private Mono<Page> page(DataBufferFactory factory, Integer afterId) {
+        return Mono.fromCallable(() -> {
+            DataBuffer buffer = factory.allocateBuffer();
+            try {
+                return new Page(buffer, petDao.writePets(afterId, pageSize, buffer));
+            } catch (RuntimeException e) {
+                DataBufferUtils.release(buffer);
+                throw e;
+            }
+        }).subscribeOn(petDaoScheduler);
+    }
+
+    /**
+     * A page of pets written to a buffer, with the ID to continue after.
+     */
+    private static final class Page {
+
+        private final DataBuffer buffer;
+
+        /**
+         * The ID of the last pet written, or null if no pet is left.
+         */
+        private final Integer nextAfter;
+
+        private Page(DataBuffer buffer, Integer nextAfter) {
+            this.buffer = buffer;
+            this.nextAfter = nextAfter;
+        }
+    }
+}
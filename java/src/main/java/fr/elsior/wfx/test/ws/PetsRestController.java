@@ -1,10 +1,17 @@
 package fr.elsior.wfx.test.ws;
 
 import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetBulkResult;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
 import fr.elsior.wfx.test.services.IPetService;
 import fr.elsior.wfx.test.exceptions.OwnerNotFoundException;
 import fr.elsior.wfx.test.exceptions.PetAlreadyExistsException;
 import fr.elsior.wfx.test.exceptions.PetNotFoundException;
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -12,6 +19,8 @@ import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 /**
  * @author Elimane
  */
@@ -21,13 +30,28 @@ public class PetsRestController {
 
     private final IPetService petService;
 
+    private final int maxPageSize;
+
+    private final int bulkBatchSize;
+
+    private final int maxSearchResults;
+
     /**
      * Constructor with dependency injection.
      *
-     * @param petService The service for handling pets.
+     * @param petService       The service for handling pets.
+     * @param maxPageSize      The largest page a client can request.
+     * @param bulkBatchSize    The number of pets of a bulk request stored at once.
+     * @param maxSearchResults The largest number of search results a client can request.
      */
-    public PetsRestController(IPetService petService) {
+    public PetsRestController(IPetService petService,
+                              @Value("${pets.page.max-size:1000}") int maxPageSize,
+                              @Value("${pets.bulk.batch-size:500}") int bulkBatchSize,
+                              @Value("${pets.search.max-results:100}") int maxSearchResults) {
         this.petService = petService;
+        this.maxPageSize = maxPageSize;
+        this.bulkBatchSize = bulkBatchSize;
+        this.maxSearchResults = maxSearchResults;
     }
 
     /**
@@ -40,6 +64,96 @@ public class PetsRestController {
         return petService.getPets();
     }
 
+    /**
+     * Retrieves a page of pets ordered by ID.
+     * When the page is full, a Link header points to the next page.
+     *
+     * @param after The ID of the last pet of the previous page, absent for the first page.
+     * @param limit The page size, capped to pets.page.max-size.
+     * @return A reactive Mono with the pets of the page and HTTP status 200 (OK).
+     */
+    @GetMapping(params = "limit")
+    public Mono<ResponseEntity<List<Pet>>> listPetsPage(@RequestParam(required = false) Integer after,
+                                                        @RequestParam int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        return petService.getPets(after, pageSize)
+                .collectList()
+                .map(pets -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (pets.size() == pageSize) {
+                        int nextAfter = pets.get(pets.size() - 1).getId();
+                        response.header(HttpHeaders.LINK,
+                                "</pets?after=" + nextAfter + "&limit=" + pageSize + ">; rel=\"next\"");
+                    }
+                    return response.body(pets);
+                });
+    }
+
+    /**
+     * Streams all pets as newline delimited JSON.
+     * The catalog is read from the store page by page as the client consumes it.
+     *
+     * @return A reactive stream (Flux) of pets, in ID order.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Pet> streamPets() {
+        return petService.streamPets(maxPageSize);
+    }
+
+    /**
+     * Finds the pets matching every given criterion, as a JSON array or as newline delimited JSON.
+     * The store looks them up through its most selective index for the criteria.
+     * A query without any criterion reads the whole catalog, so it must be paged.
+     *
+     * @param minAge The lowest age, inclusive.
+     * @param maxAge The highest age, inclusive.
+     * @param name   The start of the name, ignoring case.
+     * @param owner  The owner's name, ignoring case.
+     * @param after  The ID of the last pet of the previous page, absent for the first page.
+     * @param limit  The page size, capped to pets.page.max-size, required without any criterion.
+     * @return A reactive stream (Flux) of the matching pets, in ID order, or HTTP status 400 (Bad Request)
+     * without any criterion nor limit.
+     */
+    @GetMapping(value = "/query", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Pet> queryPets(@RequestParam(required = false) Integer minAge,
+                               @RequestParam(required = false) Integer maxAge,
+                               @RequestParam(required = false) String name,
+                               @RequestParam(required = false) String owner,
+                               @RequestParam(required = false) Integer after,
+                               @RequestParam(required = false) Integer limit) {
+        PetQuery query = new PetQuery(minAge, maxAge, name, owner, after,
+                limit == null ? Integer.MAX_VALUE : Math.max(1, Math.min(limit, maxPageSize)));
+        if (!query.hasCriterion() && limit == null) {
+            return Flux.error(new IllegalArgumentException("A query without any criterion needs a limit"));
+        }
+        return petService.findPets(query);
+    }
+
+    /**
+     * Searches pets by a partly remembered name or owner, tolerating typos, as a JSON array or as newline delimited JSON.
+     *
+     * @param q     The searched text.
+     * @param limit The maximum number of results, capped to pets.search.max-results.
+     * @return A reactive stream (Flux) of the best matches with their score, best first.
+     */
+    @GetMapping(value = "/search", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<PetSearchResult> searchPets(@RequestParam(defaultValue = "") String q,
+                                            @RequestParam(defaultValue = "10") int limit) {
+        return petService.searchPets(q, Math.max(1, Math.min(limit, maxSearchResults)));
+    }
+
+    /**
+     * Retrieves the catalog aggregates, for dashboards. Reading them does not depend on the number of pets.
+     * Owners are only listed on request, as there can be as many as pets.
+     *
+     * @param owner The owners whose pets are counted, none if absent.
+     * @return A Mono with the number of pets, their average age and their counts by age and by requested owner.
+     */
+    @GetMapping("/stats")
+    public Mono<PetStats> getStats(@RequestParam(required = false) List<String> owner) {
+        return petService.getStats(owner == null ? List.of() : owner);
+    }
+
     /**
      * Adds a new pet.
      *
@@ -61,56 +175,115 @@ public class PetsRestController {
 
     /**
      * Retrieves a pet by its ID.
+     * The response carries the pet's ETag, and a request whose If-None-Match holds it gets 304 (Not Modified)
+     * without the pet being serialized.
      *
      * @param id The ID of the pet.
      * @return A reactive Mono with the requested pet and HTTP status 200 (OK).
      * @throws PetNotFoundException If no pet is found with the given ID.
      */
     @GetMapping(value = "/{id}")
-    public Mono<Pet> getPet(@PathVariable int id) throws PetNotFoundException {
-        return petService.getPet(id);
+    public Mono<ResponseEntity<Pet>> getPet(@PathVariable int id) throws PetNotFoundException {
+        return petService.getPet(id)
+                .map(pet -> ResponseEntity.ok().eTag(PetETags.of(pet)).body(pet));
     }
 
 
     /**
      * Retrieves all pets owned by a specific owner.
+     * The response carries the ETag of the whole list, and a request whose If-None-Match holds it
+     * gets 304 (Not Modified) without the pets being serialized.
      *
      * @param owner The name of the owner.
-     * @return A reactive stream (Flux) of pets owned by the specified owner.
+     * @return A reactive Mono with the pets owned by the specified owner and HTTP status 200 (OK).
      * @throws OwnerNotFoundException If no pets are found for the given owner.
      */
     @GetMapping("/owner/{owner}")
-    public Flux<Pet> getPetsByOwner(@PathVariable String owner) throws OwnerNotFoundException {
-        return petService.getPetsByOwner(owner);
+    public Mono<ResponseEntity<List<Pet>>> getPetsByOwner(@PathVariable String owner) throws OwnerNotFoundException {
+        return petService.getPetsByOwner(owner)
+                .collectList()
+                .map(pets -> ResponseEntity.ok().eTag(PetETags.of(pets)).body(pets));
     }
 
     /**
      * Updates an existing pet.
+     * With an If-Match header, the pet is only updated if its current ETag is listed, otherwise the last writer wins.
      *
      * @param id         The ID of the pet to update.
      * @param updatedPet The updated pet details.
-     * @return A reactive Mono with the updated pet and HTTP status 200 (OK).
-     * @throws PetNotFoundException If no pet is found with the given ID.
+     * @param ifMatch    The ETags the pet is expected to have, or * for any existing pet.
+     * @return A reactive Mono with the updated pet, its new ETag and HTTP status 200 (OK),
+     * HTTP status 404 (Not Found) if no pet is found with the given ID,
+     * or HTTP status 412 (Precondition Failed) if the pet has been modified or, with an If-Match header, does not exist.
      */
     @PutMapping("/update/{id}")
-    public Mono<ResponseEntity<Pet>> updatePet(@PathVariable int id, @RequestBody Pet updatedPet) throws PetNotFoundException {
-        return petService.updatePet(id, updatedPet)
-                .map(pet -> ResponseEntity.ok().body(pet))
+    public Mono<ResponseEntity<Pet>> updatePet(@PathVariable int id, @RequestBody Pet updatedPet,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+            throws PetNotFoundException, PetPreconditionFailedException {
+        Mono<Pet> updated = ifMatch == null ?
+                petService.updatePet(id, updatedPet) :
+                petService.updatePet(id, updatedPet, current -> PetETags.matches(ifMatch, current));
+        return updated
+                .map(pet -> ResponseEntity.ok().eTag(PetETags.of(pet)).body(pet))
                 .onErrorResume(PetNotFoundException.class,
-                        ex -> Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).build()));
+                        ex -> Mono.just(ResponseEntity.status(ifMatch == null ?
+                                HttpStatus.NOT_FOUND : HttpStatus.PRECONDITION_FAILED).build()))
+                .onErrorResume(PetPreconditionFailedException.class,
+                        ex -> Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build()));
     }
 
     /**
      * Deletes a pet by its ID.
      *
      * @param id The ID of the pet to delete.
-     * @return HTTP status 204 (No Content) if the deletion is successful.
+     * @return A reactive Mono with HTTP status 204 (No Content) if the deletion is successful.
      * @throws PetNotFoundException If no pet is found with the given ID.
      */
     @DeleteMapping("remove/{id}")
-    public ResponseEntity<Void> deletePet(@PathVariable int id) throws PetNotFoundException {
-        petService.deletePet(id);
-        return ResponseEntity.noContent().build();
+    public Mono<ResponseEntity<Void>> deletePet(@PathVariable int id) throws PetNotFoundException {
+        return petService.deletePet(id)
+                .then(Mono.fromSupplier(() -> ResponseEntity.noContent().<Void>build()));
+    }
+
+    /**
+     * Adds pets sent as a JSON array or as newline delimited JSON.
+     * The body is decoded and stored batch by batch, without being buffered whole.
+     *
+     * @param pets The pets to add.
+     * @return A reactive stream (Flux) with the result of each pet: CREATED or ALREADY_EXISTS.
+     */
+    @PostMapping(value = "/bulk/add",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<PetBulkResult> addPets(@RequestBody Flux<Pet> pets) {
+        return petService.addPets(pets, bulkBatchSize);
+    }
+
+    /**
+     * Adds or replaces pets sent as a JSON array or as newline delimited JSON.
+     * The body is decoded and stored batch by batch, without being buffered whole.
+     *
+     * @param pets The pets to store.
+     * @return A reactive stream (Flux) with the result of each pet: CREATED or UPDATED.
+     */
+    @PutMapping(value = "/bulk/update",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<PetBulkResult> upsertPets(@RequestBody Flux<Pet> pets) {
+        return petService.upsertPets(pets, bulkBatchSize);
+    }
+
+    /**
+     * Deletes the pets whose IDs are sent as a JSON array or as newline delimited JSON.
+     *
+     * @param ids The IDs of the pets to delete.
+     * @return A reactive stream (Flux) with the result of each ID: DELETED or NOT_FOUND.
+     */
+    @PostMapping(value = "/bulk/remove",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<PetBulkResult> deletePets(@RequestBody Flux<Integer> ids) {
+        return petService.deletePets(ids, bulkBatchSize);
     }
 
     /**
@@ -127,6 +300,10 @@ public class PetsRestController {
             return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage()));
         } else if (ex instanceof OwnerNotFoundException) {
             return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage()));
+        } else if (ex instanceof PetPreconditionFailedException) {
+            return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(ex.getMessage()));
+        } else if (ex instanceof IllegalArgumentException) {
+            return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage()));
         }
         return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body("Internal server error: " + ex.getMessage()));
@@ -0,0 +1,150 @@
+package fr.elsior.wfx.test.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @Author: Elimane
+ */
+class AdmissionControlFilterTest {
+
+    private static final WebFilterChain COMPLETE = exchange -> Mono.empty();
+
+    private static final WebFilterChain PENDING = exchange -> Mono.never();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    /**
+     * Test to verify that routes are classified as cheap reads, writes or scans, and the change feed is not limited.
+     */
+    @Test
+    void route_ShouldClassifyRoutes() {
+        assertEquals(AdmissionControlFilter.Route.READ, AdmissionControlFilter.route(MockServerHttpRequest.get("/pets/1").build()));
+        assertEquals(AdmissionControlFilter.Route.READ, AdmissionControlFilter.route(MockServerHttpRequest.get("/pets?limit=10").build()));
+        assertEquals(AdmissionControlFilter.Route.WRITE, AdmissionControlFilter.route(MockServerHttpRequest.post("/pets/add").build()));
+        assertEquals(AdmissionControlFilter.Route.SCAN, AdmissionControlFilter.route(MockServerHttpRequest.get("/pets").build()));
+        assertEquals(AdmissionControlFilter.Route.SCAN, AdmissionControlFilter.route(MockServerHttpRequest.post("/pets/bulk/add").build()));
+        assertEquals(AdmissionControlFilter.Route.SCAN, AdmissionControlFilter.route(MockServerHttpRequest.get("/pets/export").build()));
+        assertNull(AdmissionControlFilter.route(MockServerHttpRequest.get("/pets/events").build()));
+        assertNull(AdmissionControlFilter.route(MockServerHttpRequest.get("/commands/ping").build()));
+    }
+
+    /**
+     * Test to verify that a client over its rate gets 429 with Retry-After, while other clients are still served.
+     */
+    @Test
+    void filter_ShouldRateLimitEachClient() {
+        AdmissionControlFilter filter = filter(10, 0.5, 3, 3);
+
+        assertNull(status(filter, MockServerHttpRequest.get("/pets/1"), "10.0.0.1"));
+        assertNull(status(filter, MockServerHttpRequest.get("/pets/2"), "10.0.0.1"));
+        MockServerWebExchange rejected = exchange(MockServerHttpRequest.get("/pets"), "10.0.0.1");
+        filter.filter(rejected, COMPLETE).block();
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getResponse().getStatusCode());
+        assertEquals("2", rejected.getResponse().getHeaders().getFirst("Retry-After"));
+        assertNull(status(filter, MockServerHttpRequest.get("/pets/3"), "10.0.0.2"));
+        assertEquals(1, registry.get(AdmissionControlFilter.SHED_COUNTER)
+                .tag("route", "scan").tag("reason", "rate-limited").counter().count());
+    }
+
+    /**
+     * Test to verify that requests over the concurrency limit get 503, and permits are released on completion.
+     */
+    @Test
+    void filter_ShouldShedRequestsOverTheLimit() {
+        AdmissionControlFilter filter = filter(2, 1, 100, 1);
+        Disposable first = pending(filter, "/pets/1");
+        Disposable second = pending(filter, "/pets/2");
+
+        MockServerWebExchange rejected = exchange(MockServerHttpRequest.get("/pets/3"), "10.0.0.1");
+        filter.filter(rejected, COMPLETE).block();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getResponse().getStatusCode());
+        assertEquals("1", rejected.getResponse().getHeaders().getFirst("Retry-After"));
+        assertEquals(2.0, registry.get(AdmissionControlFilter.IN_FLIGHT_GAUGE).tag("route", "read").gauge().value());
+
+        first.dispose();
+        second.dispose();
+        assertNull(status(filter, MockServerHttpRequest.get("/pets/3"), "10.0.0.1"));
+    }
+
+    /**
+     * Test to verify that scans are shed first, once reads use their share of the read limit.
+     */
+    @Test
+    void filter_ShouldShedScansBeforeReads() {
+        AdmissionControlFilter filter = filter(4, 0.5, 100, 1);
+        pending(filter, "/pets/1");
+        assertNull(status(filter, MockServerHttpRequest.get("/pets"), "10.0.0.1"));
+
+        pending(filter, "/pets/2");
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, status(filter, MockServerHttpRequest.get("/pets"), "10.0.0.1"));
+        assertNull(status(filter, MockServerHttpRequest.get("/pets/3"), "10.0.0.1"));
+        assertEquals(1, registry.get(AdmissionControlFilter.SHED_COUNTER)
+                .tag("route", "scan").tag("reason", "overloaded").counter().count());
+    }
+
+    /**
+     * Test to verify that slow requests shrink the limit and fast requests grow it back, within its bounds.
+     */
+    @Test
+    void adaptiveLimit_ShouldFollowLatency() {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 10, TimeUnit.MILLISECONDS.toNanos(10), 0.5);
+
+        for (int i = 0; i < 5; i++) {
+            limit.tryAcquire();
+            limit.release(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        assertEquals(2, limit.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            int acquired = 0;
+            while (limit.tryAcquire()) {
+                acquired++;
+            }
+            for (int j = 0; j < acquired; j++) {
+                limit.release(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        assertEquals(10, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    private AdmissionControlFilter filter(int readLimit, double scanYield, int burst, int scanCost) {
+        Map<AdmissionControlFilter.Route, AdaptiveLimit> limits = new EnumMap<>(AdmissionControlFilter.Route.class);
+        for (AdmissionControlFilter.Route route : AdmissionControlFilter.Route.values()) {
+            limits.put(route, new AdaptiveLimit(1, route == AdmissionControlFilter.Route.READ ? readLimit : 10,
+                    TimeUnit.SECONDS.toNanos(10), 0.9));
+        }
+        return new AdmissionControlFilter(limits, scanYield, 1, burst, scanCost, 1, registry);
+    }
+
+    private Disposable pending(AdmissionControlFilter filter, String path) {
+        return filter.filter(exchange(MockServerHttpRequest.get(path), "10.0.0.1"), PENDING).subscribe();
+    }
+
+    private static HttpStatus status(AdmissionControlFilter filter, MockServerHttpRequest.BaseBuilder<?> request,
+                                     String client) {
+        MockServerWebExchange exchange = exchange(request, client);
+        filter.filter(exchange, COMPLETE).block();
+        return exchange.getResponse().getStatusCode();
+    }
+
+    private static MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request, String client) {
+        return MockServerWebExchange.from(request.remoteAddress(new InetSocketAddress(client, 40000)));
+    }
+}
@@ -0,0 +1,66 @@
+package fr.elsior.wfx.test.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @Author: Elimane
+ */
+class LogSamplingFilterTest {
+
+    private final Logger logger = new LoggerContext().getLogger(LogSamplingFilterTest.class);
+
+    private LogSamplingFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new LogSamplingFilter();
+        filter.setPrefix("Fetching");
+        filter.setRate(10);
+    }
+
+    /**
+     * Test to verify that one matching line in rate is kept, counted per message template.
+     */
+    @Test
+    void decide_ShouldKeepOneLineInRate_PerTemplate() {
+        assertEquals(3, kept("Fetching pet with ID {}", Level.INFO, 25));
+        assertEquals(1, kept("Fetching pets for owner: {}", Level.INFO, 10));
+    }
+
+    /**
+     * Test to verify that other messages and levels are never sampled.
+     */
+    @Test
+    void decide_ShouldIgnoreOtherMessagesAndLevels() {
+        assertEquals(20, kept("Updating pet with ID {}", Level.INFO, 20));
+        assertEquals(20, kept("Fetching pet with ID {}", Level.WARN, 20));
+        assertEquals(20, kept("Fetching pet with ID {}", Level.DEBUG, 20));
+    }
+
+    /**
+     * Test to verify that a rate of one keeps every line.
+     */
+    @Test
+    void decide_ShouldKeepEverything_WhenRateIsOne() {
+        filter.setRate(1);
+
+        assertEquals(20, kept("Fetching pet with ID {}", Level.INFO, 20));
+    }
+
+    private int kept(String format, Level level, int lines) {
+        int kept = 0;
+        for (int i = 0; i < lines; i++) {
+            if (filter.decide(null, logger, level, format, new Object[]{i}, null) != FilterReply.DENY) {
+                kept++;
+            }
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,97 @@
+package fr.elsior.wfx.test.config;
+
+import fr.elsior.wfx.test.exceptions.PetNotFoundException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.services.IPetService;
+import fr.elsior.wfx.test.services.PetEventFeed;
+import fr.elsior.wfx.test.services.PetServiceImpl;
+import fr.elsior.wfx.test.services.dao.IPetDao;
+import fr.elsior.wfx.test.services.dao.PartitionedPetDao;
+import fr.elsior.wfx.test.services.dao.PetDaoImpl;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class PetMetricsPostProcessorTest {
+
+    private MeterRegistry registry;
+
+    private IPetDao petDao;
+
+    private IPetService petService;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("registry", registry);
+        PetMetricsPostProcessor postProcessor =
+                new PetMetricsPostProcessor(beanFactory.getBeanProvider(MeterRegistry.class));
+        PetDaoImpl store = new PetDaoImpl();
+        store.addPet(new Pet(1, "Rex", 5, "Jack"));
+        petDao = (IPetDao) postProcessor.postProcessAfterInitialization(store, "petDao");
+        petService = (IPetService) postProcessor.postProcessAfterInitialization(
+                new PetServiceImpl(petDao, Schedulers.immediate(), new PetEventFeed(1024, 256, PetEventFeed.SlowConsumerPolicy.DROP)), "petService");
+    }
+
+    /**
+     * Test to verify that store calls are timed and the catalog size is published.
+     */
+    @Test
+    void daoCalls_ShouldBeTimed() throws Exception {
+        assertTrue(petDao instanceof PetDaoImpl);
+        petDao.getPet(1);
+        petDao.getPet(2);
+
+        assertEquals(2, registry.get(PetMetricsPostProcessor.DAO_TIMER)
+                .tags("bean", "petDao", "method", "getPet", "exception", "none").timer().count());
+        assertEquals(1, registry.get(PetMetricsPostProcessor.CATALOG_SIZE_GAUGE).gauge().value());
+    }
+
+    /**
+     * Test to verify that the catalog size of a reactive store is published from the previous count.
+     */
+    @Test
+    void reactiveStore_ShouldPublishCatalogSize() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("registry", registry);
+        PetMetricsPostProcessor postProcessor =
+                new PetMetricsPostProcessor(beanFactory.getBeanProvider(MeterRegistry.class));
+        PartitionedPetDao store = new PartitionedPetDao(2);
+        store.addPet(new Pet(1, "Rex", 5, "Jack")).block();
+        store.addPet(new Pet(2, "Tom", 3, "Jill")).block();
+        postProcessor.postProcessAfterInitialization(store, "reactiveDao");
+
+        Gauge gauge = registry.get(PetMetricsPostProcessor.CATALOG_SIZE_GAUGE).tags("bean", "reactiveDao").gauge();
+        gauge.value();
+        assertEquals(2, gauge.value());
+    }
+
+    /**
+     * Test to verify that reactive calls are timed on termination and tagged with their exception.
+     */
+    @Test
+    void serviceCalls_ShouldBeTimedByOutcome() throws Exception {
+        Mono<Pet> found = petService.getPet(1);
+        assertTrue(registry.find(PetMetricsPostProcessor.SERVICE_TIMER).timers().isEmpty());
+
+        StepVerifier.create(found).expectNextCount(1).verifyComplete();
+        StepVerifier.create(petService.deletePet(2)).expectError(PetNotFoundException.class).verify();
+
+        assertEquals(1, registry.get(PetMetricsPostProcessor.SERVICE_TIMER)
+                .tags("method", "getPet", "exception", "none").timer().count());
+        assertEquals(1, registry.get(PetMetricsPostProcessor.SERVICE_TIMER)
+                .tags("method", "deletePet", "exception", "PetNotFoundException").timer().count());
+    }
+}
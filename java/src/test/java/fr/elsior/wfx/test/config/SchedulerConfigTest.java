@@ -0,0 +1,30 @@
+package fr.elsior.wfx.test.config;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class SchedulerConfigTest {
+
+    private final SchedulerConfig schedulerConfig = new SchedulerConfig();
+
+    /**
+     * Test to verify that in-memory stores run on the calling thread, but the durable store never does.
+     */
+    @Test
+    void petDaoScheduler_ShouldNotRunDurableStoreOnEventLoop() {
+        Scheduler concurrent = schedulerConfig.petDaoScheduler("concurrent", "event-loop", 2, 10);
+        Scheduler durable = schedulerConfig.petDaoScheduler("durable", "event-loop", 2, 10);
+        try {
+            assertSame(Schedulers.immediate(), concurrent);
+            assertNotSame(Schedulers.immediate(), durable);
+        } finally {
+            durable.dispose();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package fr.elsior.wfx.test.services;
+
+import fr.elsior.wfx.test.exceptions.PetNotFoundException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetBulkResult;
+import fr.elsior.wfx.test.model.PetEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * @Author: Elimane
+ */
+class CachingPetServiceTest {
+
+    @Mock
+    private IPetService delegate;
+
+    private PetEventFeed petEvents;
+
+    private CachingPetService petService;
+
+    private Pet pet1;
+    private Pet pet2;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        petEvents = new PetEventFeed(100, 100, PetEventFeed.SlowConsumerPolicy.DROP);
+        petService = new CachingPetService(delegate, petEvents, 100, 100);
+        pet1 = new Pet(1, "Rex", 5, "Jack");
+        pet2 = new Pet(2, "Bella", 3, "Jack");
+        when(delegate.getPet(1)).thenReturn(Mono.just(pet1));
+        when(delegate.getPetsByOwner(any())).thenReturn(Flux.just(pet1, pet2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        petService.close();
+        petEvents.close();
+    }
+
+    /**
+     * Test to verify that a pet is read from the delegate only once.
+     */
+    @Test
+    void getPet_ShouldBeCached() throws Exception {
+        StepVerifier.create(petService.getPet(1)).expectNext(pet1).verifyComplete();
+        StepVerifier.create(petService.getPet(1)).expectNext(pet1).verifyComplete();
+
+        verify(delegate, times(1)).getPet(1);
+        assertEquals(1, petService.stats().get("pets").hitCount());
+        assertEquals(1, petService.stats().get("pets").missCount());
+    }
+
+    /**
+     * Test to verify that missing pets are not cached.
+     */
+    @Test
+    void getPet_ShouldNotCacheMissingPets() throws Exception {
+        when(delegate.getPet(9)).thenReturn(Mono.error(new PetNotFoundException()));
+
+        StepVerifier.create(petService.getPet(9)).expectError(PetNotFoundException.class).verify();
+        StepVerifier.create(petService.getPet(9)).expectError(PetNotFoundException.class).verify();
+
+        verify(delegate, times(2)).getPet(9);
+    }
+
+    /**
+     * Test to verify that owner lookups ignore case and share one entry.
+     */
+    @Test
+    void getPetsByOwner_ShouldBeCachedIgnoringCase() throws Exception {
+        StepVerifier.create(petService.getPetsByOwner("Jack")).expectNext(pet1, pet2).verifyComplete();
+        StepVerifier.create(petService.getPetsByOwner("JACK")).expectNext(pet1, pet2).verifyComplete();
+
+        verify(delegate, times(1)).getPetsByOwner(any());
+    }
+
+    /**
+     * Test to verify that an update invalidates its ID, its previous owner and its new owner.
+     */
+    @Test
+    void updatePet_ShouldInvalidateIdAndOwners() throws Exception {
+        Pet moved = new Pet(1, "Rex", 6, "Alice");
+        when(delegate.updatePet(1, moved)).thenReturn(Mono.just(moved));
+        when(delegate.getPetsByOwner("Alice")).thenReturn(Flux.empty());
+        petService.getPet(1).block();
+        petService.getPetsByOwner("Jack").collectList().block();
+        petService.getPetsByOwner("Alice").collectList().block();
+
+        petService.updatePet(1, moved).block();
+        petService.getPet(1).block();
+        petService.getPetsByOwner("Jack").collectList().block();
+        petService.getPetsByOwner("Alice").collectList().block();
+
+        verify(delegate, times(2)).getPet(1);
+        verify(delegate, times(2)).getPetsByOwner("Jack");
+        verify(delegate, times(2)).getPetsByOwner("Alice");
+    }
+
+    /**
+     * Test to verify that a deletion invalidates its ID and the owners listing it, and nothing else.
+     */
+    @Test
+    void deletePet_ShouldInvalidateOnlyTouchedEntries() throws Exception {
+        when(delegate.deletePet(1)).thenReturn(Mono.empty());
+        when(delegate.getPetsByOwner("Sarah")).thenReturn(Flux.just(new Pet(3, "Pepette", 2, "Sarah")));
+        petService.getPet(1).block();
+        petService.getPetsByOwner("Jack").collectList().block();
+        petService.getPetsByOwner("Sarah").collectList().block();
+
+        StepVerifier.create(petService.deletePet(1)).verifyComplete();
+        petService.getPet(1).block();
+        petService.getPetsByOwner("Jack").collectList().block();
+        petService.getPetsByOwner("Sarah").collectList().block();
+
+        verify(delegate, times(2)).getPet(1);
+        verify(delegate, times(2)).getPetsByOwner("Jack");
+        verify(delegate, times(1)).getPetsByOwner("Sarah");
+    }
+
+    /**
+     * Test to verify that a failed write leaves the cache untouched.
+     */
+    @Test
+    void failedWrite_ShouldNotInvalidate() throws Exception {
+        when(delegate.deletePet(anyInt())).thenReturn(Mono.error(new PetNotFoundException()));
+        petService.getPet(1).block();
+
+        StepVerifier.create(petService.deletePet(1)).expectError(PetNotFoundException.class).verify();
+        petService.getPet(1).block();
+
+        verify(delegate, times(1)).getPet(1);
+    }
+
+    /**
+     * Test to verify that a read overlapping a write does not leave its stale result in the cache.
+     */
+    @Test
+    void getPet_ShouldNotCacheReadOverlappingWrite() throws Exception {
+        Pet renamed = new Pet(1, "Max", 5, "Jack");
+        when(delegate.updatePet(1, renamed)).thenReturn(Mono.just(renamed));
+        when(delegate.getPet(1)).thenReturn(Mono.fromCallable(() -> {
+            petService.updatePet(1, renamed).block();
+            return pet1;
+        }));
+
+        StepVerifier.create(petService.getPet(1)).expectNext(pet1).verifyComplete();
+        when(delegate.getPet(1)).thenReturn(Mono.just(renamed));
+
+        StepVerifier.create(petService.getPet(1)).expectNext(renamed).verifyComplete();
+    }
+
+    /**
+     * Test to verify that a bulk write invalidates the new owner of each written pet.
+     */
+    @Test
+    void upsertPets_ShouldInvalidateNewOwners() throws Exception {
+        Pet moved = new Pet(1, "Rex", 6, "Alice");
+        when(delegate.upsertPets(any(), anyInt())).thenAnswer(invocation -> {
+            Flux<Pet> pets = invocation.getArgument(0);
+            return pets.map(pet -> new PetBulkResult(pet.getId(), PetBulkResult.Status.UPDATED));
+        });
+        when(delegate.getPetsByOwner("Alice")).thenReturn(Flux.just(new Pet(3, "Kitty", 2, "Alice")));
+        petService.getPetsByOwner("Alice").collectList().block();
+
+        StepVerifier.create(petService.upsertPets(Flux.just(moved), 10)).expectNextCount(1).verifyComplete();
+        petService.getPetsByOwner("Alice").collectList().block();
+
+        verify(delegate, times(2)).getPetsByOwner("Alice");
+    }
+
+    /**
+     * Test to verify that a write made without the service, published to the change feed, invalidates its entries.
+     */
+    @Test
+    void publishedEvent_ShouldInvalidateIdAndOwners() throws Exception {
+        Pet moved = new Pet(1, "Rex", 6, "Alice");
+        when(delegate.getPetsByOwner("Alice")).thenReturn(Flux.empty());
+        petService.getPet(1).block();
+        petService.getPetsByOwner("Jack").collectList().block();
+        petService.getPetsByOwner("Alice").collectList().block();
+
+        petEvents.publish(PetEvent.Type.UPDATED, 1, moved);
+        // Events are dispatched in order: once the second one is numbered, the first one has been handled
+        petEvents.publish(PetEvent.Type.DELETED, 99, null);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (petEvents.lastSequence() < 2 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        petService.getPet(1).block();
+        petService.getPetsByOwner("Jack").collectList().block();
+        petService.getPetsByOwner("Alice").collectList().block();
+
+        verify(delegate, times(2)).getPet(1);
+        verify(delegate, times(2)).getPetsByOwner("Jack");
+        verify(delegate, times(2)).getPetsByOwner("Alice");
+    }
+}
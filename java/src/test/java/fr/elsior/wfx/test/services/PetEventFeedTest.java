@@ -0,0 +1,154 @@
+package fr.elsior.wfx.test.services;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Exceptions;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class PetEventFeedTest {
+
+    private PetEventFeed petEvents;
+
+    @AfterEach
+    void tearDown() {
+        if (petEvents != null) {
+            petEvents.close();
+        }
+    }
+
+    /**
+     * Test to verify that events published from many threads are numbered without gaps and delivered in order.
+     */
+    @Test
+    void publish_ShouldNumberEventsInOrder_FromManyThreads() throws Exception {
+        petEvents = new PetEventFeed(10_000, 10_000, PetEventFeed.SlowConsumerPolicy.DISCONNECT);
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        try {
+            StepVerifier.create(petEvents.events().take(4_000).map(PetEvent::getSequence).collectList())
+                    .then(() -> {
+                        for (int thread = 0; thread < 4; thread++) {
+                            int first = thread * 1_000;
+                            writers.execute(() -> {
+                                for (int id = first; id < first + 1_000; id++) {
+                                    petEvents.publish(PetEvent.Type.ADDED, id, new Pet(id, "Pet" + id, 1, "Owner"));
+                                }
+                            });
+                        }
+                    })
+                    .assertNext(sequences -> assertEquals(LongStream.rangeClosed(1, 4_000).boxed().collect(Collectors.toList()), sequences))
+                    .verifyComplete();
+        } finally {
+            writers.shutdownNow();
+        }
+        assertEquals(4_000, petEvents.lastSequence());
+    }
+
+    /**
+     * Test to verify that a subscriber resumes with the kept events, then the live ones, without duplicates.
+     */
+    @Test
+    void eventsAfter_ShouldReplayThenFollowLiveEvents() {
+        petEvents = new PetEventFeed(100, 100, PetEventFeed.SlowConsumerPolicy.DROP);
+        publish(petEvents, 1, 5);
+        awaitSequence(petEvents, 5);
+
+        StepVerifier.create(petEvents.eventsAfter(3).map(PetEvent::getId))
+                .expectNext(4, 5)
+                .then(() -> publish(petEvents, 6, 7))
+                .expectNext(6, 7)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Test to verify that resuming fails once the following events have left the replay ring.
+     */
+    @Test
+    void eventsAfter_ShouldFail_WhenEventsAreNoLongerKept() {
+        petEvents = new PetEventFeed(4, 100, PetEventFeed.SlowConsumerPolicy.DROP);
+        publish(petEvents, 1, 10);
+        awaitSequence(petEvents, 10);
+
+        assertTrue(petEvents.canResumeAfter(6));
+        assertFalse(petEvents.canResumeAfter(5));
+        assertFalse(petEvents.canResumeAfter(11));
+        StepVerifier.create(petEvents.eventsAfter(2))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Test to verify the policies applied when a subscriber does not request events fast enough.
+     */
+    @Test
+    void slowConsumers_ShouldFollowPolicy() {
+        assertEquals(List.of(1, 2, 3), slowConsumerIds(PetEventFeed.SlowConsumerPolicy.DROP));
+        assertEquals(List.of(8, 9, 10), slowConsumerIds(PetEventFeed.SlowConsumerPolicy.LATEST));
+
+        petEvents = new PetEventFeed(100, 3, PetEventFeed.SlowConsumerPolicy.DISCONNECT);
+        StepVerifier.create(petEvents.events(), 0)
+                .then(() -> {
+                    publish(petEvents, 1, 10);
+                    awaitSequence(petEvents, 10);
+                })
+                .thenRequest(3)
+                .expectNextCount(3)
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private static List<Integer> slowConsumerIds(PetEventFeed.SlowConsumerPolicy policy) {
+        PetEventFeed feed = new PetEventFeed(100, 3, policy);
+        List<Integer> ids = new ArrayList<>();
+        try {
+            StepVerifier.create(feed.events().map(PetEvent::getId), 0)
+                    .then(() -> {
+                        publish(feed, 1, 10);
+                        awaitSequence(feed, 10);
+                    })
+                    .thenRequest(3)
+                    .recordWith(() -> ids)
+                    .expectNextCount(3)
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(5));
+        } finally {
+            feed.close();
+        }
+        return ids;
+    }
+
+    private static void publish(PetEventFeed feed, int firstId, int lastId) {
+        for (int id = firstId; id <= lastId; id++) {
+            feed.publish(PetEvent.Type.ADDED, id, new Pet(id, "Pet" + id, 1, "Owner"));
+        }
+    }
+
+    /**
+     * Waits until an event has been dispatched to the subscribers.
+     */
+    private static void awaitSequence(PetEventFeed feed, long sequence) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (feed.lastSequence() < sequence && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        // The sequence is set just before the event is emitted
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+}
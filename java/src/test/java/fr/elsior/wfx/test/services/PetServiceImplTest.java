@@ -4,19 +4,27 @@ import fr.elsior.wfx.test.exceptions.OwnerNotFoundException;
 import fr.elsior.wfx.test.exceptions.PetAlreadyExistsException;
 import fr.elsior.wfx.test.exceptions.PetNotFoundException;
 import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetBulkResult;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
 import fr.elsior.wfx.test.services.dao.IPetDao;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
-import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
-import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 /**
@@ -27,7 +35,8 @@ class PetServiceImplTest {
     @Mock
     private IPetDao petDao;
 
-    @InjectMocks
+    private final PetEventFeed petEvents = new PetEventFeed(16, 16, PetEventFeed.SlowConsumerPolicy.DROP);
+
     private PetServiceImpl petService;
 
     private Pet pet1;
@@ -36,6 +45,7 @@ class PetServiceImplTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        petService = new PetServiceImpl(petDao, Schedulers.immediate(), petEvents);
         pet1 = new Pet(1, "Rex", 5, "Jack");
         pet2 = new Pet(2, "Bella", 3, "Alice");
     }
@@ -55,6 +65,42 @@ class PetServiceImplTest {
         verify(petDao, times(1)).getPets();
     }
 
+    /**
+     * Test to verify that the getPets() method returns a page of pets.
+     */
+    @Test
+    void getPetsPage_ShouldReturnPage() {
+        when(petDao.getPets(1, 10)).thenReturn(Arrays.asList(pet2));
+
+        StepVerifier.create(petService.getPets(1, 10))
+                .expectNext(pet2)
+                .verifyComplete();
+
+        verify(petDao, times(1)).getPets(1, 10);
+    }
+
+    /**
+     * Test to verify that the streamPets() method reads at most one page ahead of the demand.
+     */
+    @Test
+    void streamPets_ShouldReadPagesOnDemand() {
+        Pet pet3 = new Pet(3, "Kitty", 2, "Alice");
+        Pet pet4 = new Pet(4, "Tom", 7, "Alice");
+        Pet pet5 = new Pet(5, "Felix", 1, "Jack");
+        when(petDao.getPets(null, 2)).thenReturn(Arrays.asList(pet1, pet2));
+        when(petDao.getPets(2, 2)).thenReturn(Arrays.asList(pet3, pet4));
+        when(petDao.getPets(4, 2)).thenReturn(Arrays.asList(pet5));
+
+        StepVerifier.create(petService.streamPets(2), 1)
+                .expectNext(pet1)
+                .then(() -> verify(petDao, never()).getPets(4, 2))
+                .thenRequest(4)
+                .expectNext(pet2, pet3, pet4, pet5)
+                .verifyComplete();
+
+        verify(petDao, times(1)).getPets(4, 2);
+    }
+
     /**
      * Test to verify that the addPet() method adds a new pet.
      */
@@ -111,6 +157,42 @@ class PetServiceImplTest {
         verify(petDao, times(1)).getPet(1);
     }
 
+    /**
+     * Test to verify that the getPet() method fails when the DAO finds no pet.
+     */
+    @Test
+    void getPet_ShouldFail_WhenDaoReturnsNull() throws PetNotFoundException {
+        when(petDao.getPet(9)).thenReturn(null);
+
+        StepVerifier.create(petService.getPet(9))
+                .expectError(PetNotFoundException.class)
+                .verify();
+    }
+
+    /**
+     * Test to verify that the addPet() method fails when the DAO reports a taken ID.
+     */
+    @Test
+    void addPet_ShouldFail_WhenDaoReturnsNull() throws PetAlreadyExistsException {
+        when(petDao.addPet(pet1)).thenReturn(null);
+
+        StepVerifier.create(petService.addPet(pet1))
+                .expectError(PetAlreadyExistsException.class)
+                .verify();
+    }
+
+    /**
+     * Test to verify that the updatePet() method fails when the DAO finds no pet.
+     */
+    @Test
+    void updatePet_ShouldFail_WhenDaoReturnsNull() throws PetNotFoundException {
+        when(petDao.updatePet(9, pet1)).thenReturn(null);
+
+        StepVerifier.create(petService.updatePet(9, pet1))
+                .expectError(PetNotFoundException.class)
+                .verify();
+    }
+
     /**
      * Test to verify that the getPetsByOwner() method returns pets for a given owner.
      */
@@ -126,6 +208,46 @@ class PetServiceImplTest {
         verify(petDao, times(1)).getPetsByOwner("Jack");
     }
 
+    /**
+     * Test to verify that queries are answered by the store.
+     */
+    @Test
+    void findPets_ShouldReturnMatchingPets() {
+        PetQuery query = new PetQuery(1, 5, "Re", null);
+        when(petDao.findPets(query)).thenReturn(Arrays.asList(pet1));
+
+        StepVerifier.create(petService.findPets(query))
+                .expectNext(pet1)
+                .verifyComplete();
+    }
+
+    /**
+     * Test to verify that searches are answered by the store, best match first.
+     */
+    @Test
+    void searchPets_ShouldReturnRankedMatches() {
+        PetSearchResult best = new PetSearchResult(pet1, 0.8);
+        PetSearchResult second = new PetSearchResult(pet2, 0.4);
+        when(petDao.searchPets("rex", 10)).thenReturn(Arrays.asList(best, second));
+
+        StepVerifier.create(petService.searchPets("rex", 10))
+                .expectNext(best, second)
+                .verifyComplete();
+    }
+
+    /**
+     * Test to verify that the statistics are read from the store.
+     */
+    @Test
+    void getStats_ShouldReturnStoreStatistics() {
+        PetStats stats = new PetStats(2, 4.5, Map.of(3, 1L, 6, 1L), 1, Map.of("jack", 2L));
+        when(petDao.getStats(List.of("Jack"))).thenReturn(stats);
+
+        StepVerifier.create(petService.getStats(List.of("Jack")))
+                .expectNext(stats)
+                .verifyComplete();
+    }
+
     /**
      * Test to verify that the getPetsByOwner() method throws an exception if the owner is not found.
      */
@@ -140,6 +262,18 @@ class PetServiceImplTest {
         verify(petDao, times(1)).getPetsByOwner("Unknown");
     }
 
+    /**
+     * Test to verify that a lookup without owner fails as an unknown owner, without reading the store.
+     */
+    @Test
+    void getPetsByOwner_ShouldThrowException_WhenOwnerIsNull() throws OwnerNotFoundException {
+        StepVerifier.create(petService.getPetsByOwner(null))
+                .expectError(OwnerNotFoundException.class)
+                .verify();
+
+        verify(petDao, never()).getPetsByOwner(any());
+    }
+
     /**
      * Test to verify that the updatePet() method updates a pet.
      */
@@ -177,7 +311,9 @@ class PetServiceImplTest {
     void deletePet_ShouldDeletePet() throws PetNotFoundException {
         when(petDao.deletePet(1)).thenReturn(true);
 
-        assertDoesNotThrow(() -> petService.deletePet(1));
+        StepVerifier.create(petService.deletePet(1))
+                .verifyComplete();
+
         verify(petDao, times(1)).deletePet(1);
     }
 
@@ -189,7 +325,238 @@ class PetServiceImplTest {
     void deletePet_ShouldThrowException_WhenPetNotFound() throws PetNotFoundException {
         doThrow(new PetNotFoundException()).when(petDao).deletePet(8);
 
-        assertThrows(PetNotFoundException.class, () -> petService.deletePet(8));
+        StepVerifier.create(petService.deletePet(8))
+                .expectError(PetNotFoundException.class)
+                .verify();
+
         verify(petDao, times(1)).deletePet(8);
     }
+
+    /**
+     * Test to verify that the deletePet() method fails when the store did not delete anything.
+     */
+    @Test
+    void deletePet_ShouldThrowException_WhenNothingDeleted() throws PetNotFoundException {
+        when(petDao.deletePet(8)).thenReturn(false);
+
+        StepVerifier.create(petService.deletePet(8))
+                .expectError(PetNotFoundException.class)
+                .verify();
+    }
+
+    /**
+     * Test to verify that successful writes are published to the change feed, and failed ones are not.
+     */
+    @Test
+    void writes_ShouldPublishEvents() throws Exception {
+        when(petDao.addPet(pet1)).thenReturn(pet1);
+        when(petDao.addPet(pet2)).thenReturn(null);
+        when(petDao.updatePet(1, pet1)).thenReturn(pet1);
+        when(petDao.deletePet(1)).thenReturn(true);
+        when(petDao.deletePets(Arrays.asList(2, 3))).thenReturn(new boolean[]{true, false});
+
+        StepVerifier.create(petEvents.events().map(event -> event.getSequence() + ":" + event.getType() + ":" + event.getId()))
+                .then(() -> {
+                    petService.addPet(pet1).block();
+                    petService.addPet(pet2).onErrorResume(e -> Mono.empty()).block();
+                    petService.updatePet(1, pet1).block();
+                    petService.deletePet(1).block();
+                    petService.deletePets(Flux.just(2, 3), 10).blockLast();
+                })
+                .expectNext("1:ADDED:1", "2:UPDATED:1", "3:DELETED:1", "4:DELETED:2")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Test to verify that DAO calls run on the DAO scheduler and only once subscribed.
+     */
+    @Test
+    void getPet_ShouldCallDaoOnDaoScheduler() throws PetNotFoundException {
+        Scheduler scheduler = Schedulers.newSingle("pet-dao-test");
+        try {
+            PetServiceImpl service = new PetServiceImpl(petDao, scheduler, petEvents);
+            when(petDao.getPet(1)).thenAnswer(invocation ->
+                    Thread.currentThread().getName().startsWith("pet-dao-test") ? pet1 : null);
+
+            Mono<Pet> result = service.getPet(1);
+            verify(petDao, never()).getPet(1);
+
+            StepVerifier.create(result)
+                    .expectNext(pet1)
+                    .verifyComplete();
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    /**
+     * Test to verify that concurrent lookups of the same ID share one store read.
+     */
+    @Test
+    void getPet_ShouldShareConcurrentLookups() throws PetNotFoundException {
+        Scheduler scheduler = Schedulers.newBoundedElastic(2, 16, "pet-dao-test");
+        try {
+            PetServiceImpl service = new PetServiceImpl(petDao, scheduler, petEvents);
+            CountDownLatch read = new CountDownLatch(1);
+            when(petDao.getPet(1)).thenAnswer(invocation -> {
+                read.await();
+                return pet1;
+            });
+
+            StepVerifier.create(Flux.merge(service.getPet(1), service.getPet(1)))
+                    .then(read::countDown)
+                    .expectNext(pet1, pet1)
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(5));
+
+            verify(petDao, times(1)).getPet(1);
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    /**
+     * Test to verify that concurrent lookups of the same owner in a different case share one store read.
+     */
+    @Test
+    void getPetsByOwner_ShouldShareConcurrentLookups_IgnoringCase() throws OwnerNotFoundException {
+        Scheduler scheduler = Schedulers.newBoundedElastic(2, 16, "pet-dao-test");
+        try {
+            PetServiceImpl service = new PetServiceImpl(petDao, scheduler, petEvents);
+            CountDownLatch read = new CountDownLatch(1);
+            when(petDao.getPetsByOwner(anyString())).thenAnswer(invocation -> {
+                read.await();
+                return Arrays.asList(pet1);
+            });
+
+            StepVerifier.create(Flux.merge(service.getPetsByOwner("Jack"), service.getPetsByOwner("jack")))
+                    .then(read::countDown)
+                    .expectNext(pet1, pet1)
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(5));
+
+            verify(petDao, times(1)).getPetsByOwner(anyString());
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    /**
+     * Test to verify that a lookup made after a write does not join a lookup that started before it.
+     */
+    @Test
+    void getPet_ShouldNotShareLookupStartedBeforeWrite() throws PetNotFoundException {
+        // Spare threads, so that no lookup is queued behind the blocked one
+        Scheduler scheduler = Schedulers.newBoundedElastic(4, 16, "pet-dao-test");
+        try {
+            PetServiceImpl service = new PetServiceImpl(petDao, scheduler, petEvents);
+            Pet renamed = new Pet(1, "Max", 5, "Jack");
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch read = new CountDownLatch(1);
+            when(petDao.getPet(1)).thenAnswer(invocation -> {
+                started.countDown();
+                read.await();
+                return pet1;
+            }).thenReturn(renamed);
+            when(petDao.updatePet(1, renamed)).thenReturn(renamed);
+
+            StepVerifier.create(service.getPet(1))
+                    .then(() -> {
+                        try {
+                            started.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    })
+                    .then(() -> service.updatePet(1, renamed).block())
+                    .then(() -> StepVerifier.create(service.getPet(1))
+                            .expectNext(renamed)
+                            .expectComplete()
+                            .verify(Duration.ofSeconds(5)))
+                    .then(read::countDown)
+                    .expectNext(pet1)
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(5));
+
+            verify(petDao, times(2)).getPet(1);
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    /**
+     * Test to verify that lookups of distinct IDs within the batch window are read by one multi-get.
+     */
+    @Test
+    void getPet_ShouldBatchDistinctIds() throws PetNotFoundException {
+        PetServiceImpl service = new PetServiceImpl(petDao, Schedulers.immediate(), petEvents, 20, 10);
+        when(petDao.getPetsById(any())).thenReturn(Map.of(1, pet1, 2, pet2));
+
+        StepVerifier.create(Flux.merge(service.getPet(1), service.getPet(2), service.getPet(3))
+                        .onErrorResume(PetNotFoundException.class, e -> Mono.empty()))
+                .expectNextCount(2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        verify(petDao, times(1)).getPetsById(argThat(ids -> ids.size() == 3 && ids.containsAll(List.of(1, 2, 3))));
+        verify(petDao, never()).getPet(anyInt());
+    }
+
+    /**
+     * Test to verify that a batch is read as soon as it holds the maximum number of IDs, before its window closes.
+     */
+    @Test
+    void getPet_ShouldSendFullBatchesAtOnce() throws PetNotFoundException {
+        PetServiceImpl service = new PetServiceImpl(petDao, Schedulers.immediate(), petEvents, 60_000, 2);
+        when(petDao.getPetsById(any())).thenReturn(Map.of(1, pet1, 2, pet2));
+
+        StepVerifier.create(Flux.merge(service.getPet(1), service.getPet(2)))
+                .expectNextCount(2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Test to verify that bulk additions are stored by batches, with one result per pet in order.
+     */
+    @Test
+    void addPets_ShouldStoreByBatches() throws PetAlreadyExistsException {
+        Pet pet3 = new Pet(3, "Kitty", 2, "Alice");
+        when(petDao.addPets(Arrays.asList(pet1, pet2))).thenReturn(Arrays.asList(pet1, null));
+        when(petDao.addPets(Arrays.asList(pet3))).thenReturn(Arrays.asList(pet3));
+
+        StepVerifier.create(petService.addPets(Flux.just(pet1, pet2, pet3), 2)
+                        .map(result -> result.getId() + ":" + result.getStatus()))
+                .expectNext("1:CREATED", "2:ALREADY_EXISTS", "3:CREATED")
+                .verifyComplete();
+
+        verify(petDao, times(2)).addPets(any());
+    }
+
+    /**
+     * Test to verify that bulk upserts report created and updated pets.
+     */
+    @Test
+    void upsertPets_ShouldReportCreatedOrUpdated() throws PetNotFoundException, PetAlreadyExistsException {
+        when(petDao.upsertPets(Arrays.asList(pet1, pet2))).thenReturn(new boolean[]{false, true});
+
+        StepVerifier.create(petService.upsertPets(Flux.just(pet1, pet2), 10)
+                        .map(PetBulkResult::getStatus))
+                .expectNext(PetBulkResult.Status.UPDATED, PetBulkResult.Status.CREATED)
+                .verifyComplete();
+    }
+
+    /**
+     * Test to verify that bulk deletions report the IDs not found.
+     */
+    @Test
+    void deletePets_ShouldReportNotFound() throws PetNotFoundException {
+        when(petDao.deletePets(Arrays.asList(1, 9))).thenReturn(new boolean[]{true, false});
+
+        StepVerifier.create(petService.deletePets(Flux.just(1, 9), 10)
+                        .map(PetBulkResult::getStatus))
+                .expectNext(PetBulkResult.Status.DELETED, PetBulkResult.Status.NOT_FOUND)
+                .verifyComplete();
+    }
 }
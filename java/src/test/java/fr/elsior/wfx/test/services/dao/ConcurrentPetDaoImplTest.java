@@ -0,0 +1,186 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ *
+ * Cases specific to the owner, age and name indexes and the statistics of the concurrent store, the behaviour
+ * shared by every store being covered by {@link PetDaoContractTest}.
+ */
+class ConcurrentPetDaoImplTest {
+
+    private ConcurrentPetDaoImpl petDao;
+
+    @BeforeEach
+    void setUp() {
+        petDao = new ConcurrentPetDaoImpl();
+        petDao.initPetList();
+    }
+
+    /**
+     * Test to verify that an update publishes a new instance instead of mutating the stored one.
+     */
+    @Test
+    void updatePet_ShouldNotMutatePreviouslyReadPet() {
+        Pet before = petDao.getPet(1);
+        petDao.updatePet(1, new Pet(1, "UpdatedName", 10, "UpdatedOwner"));
+
+        assertEquals("Medor", before.getName());
+        assertEquals("UpdatedName", petDao.getPet(1).getName());
+    }
+
+    /**
+     * Test to verify that a pet moves to its new owner when the owner is updated.
+     */
+    @Test
+    void getPetsByOwner_ShouldFollowOwnerUpdates() {
+        petDao.updatePet(4, new Pet(4, "Snoopy", 21, "Alice"));
+
+        assertEquals(2, petDao.getPetsByOwner("Sarah").size());
+        List<Pet> pets = petDao.getPetsByOwner("Alice");
+        assertEquals(1, pets.size());
+        assertEquals(4, pets.get(0).getId());
+    }
+
+    /**
+     * Test to verify that added and deleted pets are reflected by the owner lookup.
+     */
+    @Test
+    void getPetsByOwner_ShouldFollowAddsAndDeletes() {
+        petDao.addPet(new Pet(7, "Buddy", 3, "Alice"));
+        assertEquals(1, petDao.getPetsByOwner("alice").size());
+
+        petDao.deletePet(7);
+        assertTrue(petDao.getPetsByOwner("Alice").isEmpty());
+    }
+
+    /**
+     * Test to verify that queries combine age, name and owner criteria.
+     */
+    @Test
+    void findPets_ShouldMatchEveryCriterion() {
+        assertEquals(Arrays.asList(2, 3, 5), ids(petDao.findPets(new PetQuery(5, 10, null, null))));
+        assertEquals(Arrays.asList(3, 5), ids(petDao.findPets(new PetQuery(5, 10, null, "sarah"))));
+        assertEquals(Arrays.asList(5), ids(petDao.findPets(new PetQuery(null, 10, "ga", null))));
+        assertEquals(Arrays.asList(2), ids(petDao.findPets(new PetQuery(null, null, "MI", null))));
+        assertTrue(petDao.findPets(new PetQuery(10, 5, null, null)).isEmpty());
+        assertEquals(6, petDao.findPets(new PetQuery()).size());
+    }
+
+    /**
+     * Test to verify that queries follow updated ages and names and deleted pets.
+     */
+    @Test
+    void findPets_ShouldFollowUpdatesAndDeletes() {
+        petDao.updatePet(4, new Pet(4, "Gaston", 7, "Sarah"));
+        petDao.deletePet(5);
+
+        assertEquals(Arrays.asList(3, 4), ids(petDao.findPets(new PetQuery(5, 10, null, "Sarah"))));
+        assertEquals(Arrays.asList(4), ids(petDao.findPets(new PetQuery(null, null, "Ga", null))));
+        assertTrue(petDao.findPets(new PetQuery(20, null, null, null)).isEmpty());
+    }
+
+    /**
+     * Test to verify that the statistics follow added, updated and deleted pets.
+     */
+    @Test
+    void getStats_ShouldFollowWrites() {
+        petDao.updatePet(4, new Pet(4, "Snoopy", 8, "Jack"));
+        petDao.deletePet(1);
+        petDao.addPet(new Pet(7, "Buddy", 3, "Alice"));
+
+        PetStats stats = petDao.getStats(null);
+
+        assertEquals(6, stats.getCount());
+        assertEquals(47.0 / 6, stats.getAverageAge());
+        assertEquals(Map.of(3, 1L, 5, 1L, 8, 3L, 15, 1L), stats.getAgeHistogram());
+        assertEquals(3, stats.getOwners());
+        assertEquals(Map.of("alice", 1L, "jack", 3L, "sarah", 2L), stats.getPetsByOwner());
+        assertEquals(Map.of("jack", 3L, "peter", 0L),
+                petDao.getStats(Arrays.asList("JACK", "Peter")).getPetsByOwner());
+    }
+
+    /**
+     * Test to verify that the statistics match the catalog after concurrent writes.
+     */
+    @Test
+    void getStats_ShouldMatchTheCatalog_AfterConcurrentWrites() {
+        IntStream.range(0, 20_000).parallel().forEach(i -> {
+            int id = i % 500;
+            Pet pet = new Pet(id, "Pet" + id, i % 17, "Owner" + (i % 13));
+            switch (i % 3) {
+                case 0:
+                    petDao.addPet(pet);
+                    break;
+                case 1:
+                    petDao.updatePet(id, pet);
+                    break;
+                default:
+                    petDao.deletePet(id);
+            }
+        });
+
+        PetStats stats = petDao.getStats(null);
+        List<Pet> pets = petDao.getPets();
+        Map<Integer, Long> ageHistogram = new TreeMap<>();
+        Map<String, Long> petsByOwner = new TreeMap<>();
+        for (Pet pet : pets) {
+            ageHistogram.merge(pet.getAge(), 1L, Long::sum);
+            petsByOwner.merge(pet.getOwner().toLowerCase(), 1L, Long::sum);
+        }
+
+        assertEquals(pets.size(), stats.getCount());
+        assertEquals(pets.stream().mapToInt(Pet::getAge).average().orElse(0), stats.getAverageAge(), 1e-9);
+        assertEquals(ageHistogram, stats.getAgeHistogram());
+        assertEquals(petsByOwner, stats.getPetsByOwner());
+    }
+
+    /**
+     * Test to verify that an age no pet has any more is dropped from the statistics.
+     */
+    @Test
+    void getStats_ShouldDropEmptiedAges() {
+        for (int age = 100; age < 1_100; age++) {
+            petDao.updatePet(1, new Pet(1, "Medor", age, "Jack"));
+        }
+        petDao.deletePet(2);
+
+        Map<Integer, Long> ageHistogram = petDao.getStats(null).getAgeHistogram();
+        assertTrue(ageHistogram.containsKey(1_099));
+        assertFalse(ageHistogram.keySet().stream().anyMatch(age -> age >= 100 && age < 1_099));
+        assertFalse(ageHistogram.containsValue(0L));
+    }
+
+    /**
+     * Test to verify that a batch upsert adds new pets, replaces stored ones and keeps the indexes in step.
+     */
+    @Test
+    void upsertPets_ShouldAddOrReplaceAndIndex() {
+        boolean[] created = petDao.upsertPets(Arrays.asList(new Pet(1, "Medor", 12, "Alice"), new Pet(7, "Buddy", 3, "Alice")));
+
+        assertArrayEquals(new boolean[]{false, true}, created);
+        assertEquals(7, petDao.countPets());
+        assertEquals(Arrays.asList(1, 7), ids(petDao.getPetsByOwner("alice")));
+        assertTrue(petDao.getPetsByOwner("Peter").isEmpty());
+        assertEquals(Arrays.asList(7), ids(petDao.getPets(6, 10)));
+        assertEquals(Map.of("alice", 2L), petDao.getStats(Arrays.asList("Alice")).getPetsByOwner());
+    }
+
+    private static List<Integer> ids(List<Pet> pets) {
+        return pets.stream().map(Pet::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,222 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class DurablePetDaoImplTest {
+
+    @TempDir
+    Path directory;
+
+    private DurablePetDaoImpl petDao;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        petDao = open(1000);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (petDao != null) {
+            petDao.close();
+        }
+    }
+
+    /**
+     * Test to verify that the default pets are seeded on the first start only.
+     */
+    @Test
+    void open_ShouldSeedDefaultPets_OnFirstStart() throws IOException {
+        assertEquals(6, petDao.getPets().size());
+
+        petDao.deletePet(1);
+        restart(1000);
+
+        assertEquals(5, petDao.getPets().size());
+    }
+
+    /**
+     * Test to verify that additions, updates and deletions survive a restart.
+     */
+    @Test
+    void writes_ShouldSurviveRestart() throws IOException {
+        petDao.addPet(new Pet(7, "Buddy", 3, "Alice"));
+        petDao.updatePet(1, new Pet(1, "UpdatedName", 10, "UpdatedOwner"));
+        petDao.deletePet(2);
+
+        restart(1000);
+
+        assertEquals(6, petDao.getPets().size());
+        assertEquals("Buddy", petDao.getPet(7).getName());
+        assertEquals("UpdatedOwner", petDao.getPet(1).getOwner());
+        assertNull(petDao.getPet(2));
+        assertEquals(1, petDao.getPetsByOwner("updatedowner").size());
+    }
+
+    /**
+     * Test to verify that writes are recovered from the log when the store was not closed.
+     */
+    @Test
+    void writes_ShouldBeReplayedFromLog_AfterCrash() throws IOException {
+        petDao.addPet(new Pet(7, "Buddy", 3, "Alice"));
+        petDao.deletePet(3);
+
+        DurablePetDaoImpl recovered = open(1000);
+        try {
+            assertNotNull(recovered.getPet(7));
+            assertNull(recovered.getPet(3));
+            assertEquals(6, recovered.getPets().size());
+        } finally {
+            recovered.close();
+        }
+    }
+
+    /**
+     * Test to verify that snapshots delete the log segments they cover.
+     */
+    @Test
+    void snapshots_ShouldBoundTheLog() throws IOException {
+        restart(10);
+        for (int id = 100; id < 300; id++) {
+            petDao.addPet(new Pet(id, "Pet" + id, id % 20, "Owner" + id % 7));
+        }
+        for (int id = 100; id < 200; id++) {
+            petDao.deletePet(id);
+        }
+
+        restart(10);
+
+        assertEquals(106, petDao.getPets().size());
+        assertNull(petDao.getPet(150));
+        assertNotNull(petDao.getPet(250));
+        assertTrue(files("wal-").size() <= 2);
+        assertEquals(1, files("snapshot-").size());
+    }
+
+    /**
+     * Test to verify that a torn record at the end of the log is dropped on recovery.
+     */
+    @Test
+    void open_ShouldIgnoreTornTail() throws IOException {
+        petDao.addPet(new Pet(7, "Buddy", 3, "Alice"));
+        Path lastSegment = files("wal-").get(files("wal-").size() - 1);
+        Files.write(lastSegment, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        DurablePetDaoImpl recovered = open(1000);
+        try {
+            assertNotNull(recovered.getPet(7));
+            assertEquals(7, recovered.getPets().size());
+        } finally {
+            recovered.close();
+        }
+    }
+
+    /**
+     * Test to verify that batches are logged and survive a restart.
+     */
+    @Test
+    void batches_ShouldSurviveRestart() throws IOException {
+        List<Pet> added = petDao.addPets(Arrays.asList(new Pet(7, "Buddy", 3, "Alice"), new Pet(1, "Duplicate", 1, "Peter")));
+        boolean[] created = petDao.upsertPets(Arrays.asList(new Pet(2, "UpdatedName", 10, "Jack"), new Pet(8, "Max", 4, "Bob")));
+        boolean[] deleted = petDao.deletePets(Arrays.asList(3, 30));
+
+        restart(1000);
+
+        assertNull(added.get(1));
+        assertArrayEquals(new boolean[]{false, true}, created);
+        assertArrayEquals(new boolean[]{true, false}, deleted);
+        assertEquals(7, petDao.getPets().size());
+        assertEquals("Medor", petDao.getPet(1).getName());
+        assertEquals("UpdatedName", petDao.getPet(2).getName());
+        assertNotNull(petDao.getPet(8));
+        assertNull(petDao.getPet(3));
+    }
+
+    /**
+     * Test to verify that writes which cannot be logged are not applied in memory.
+     */
+    @Test
+    void writes_ShouldLeaveStoreUnchanged_WhenNotLogged() throws IOException {
+        petDao.close();
+
+        assertThrows(IllegalStateException.class, () -> petDao.addPet(new Pet(7, "Buddy", 3, "Alice")));
+        assertThrows(IllegalStateException.class, () -> petDao.updatePet(1, new Pet(1, "UpdatedName", 10, "Peter")));
+        assertThrows(IllegalStateException.class, () -> petDao.deletePet(2));
+        assertThrows(IllegalStateException.class, () -> petDao.upsertPets(Arrays.asList(new Pet(8, "Max", 4, "Bob"))));
+
+        assertNull(petDao.getPet(7));
+        assertNull(petDao.getPet(8));
+        assertEquals("Medor", petDao.getPet(1).getName());
+        assertNotNull(petDao.getPet(2));
+        petDao = null;
+    }
+
+    /**
+     * Test to verify that a name too long to be logged is rejected alone, without failing the other writes.
+     */
+    @Test
+    void addPet_ShouldRejectOversizedName() throws IOException {
+        String name = "é".repeat(40000);
+
+        assertThrows(IllegalArgumentException.class, () -> petDao.addPet(new Pet(7, name, 3, "Alice")));
+        petDao.addPet(new Pet(8, "Max", 4, "Bob"));
+        restart(1000);
+
+        assertNull(petDao.getPet(7));
+        assertEquals("Max", petDao.getPet(8).getName());
+    }
+
+    /**
+     * Test to verify that a batch holding a name too long to be logged is rejected whole, even after a restart.
+     */
+    @Test
+    void addPetsAndUpsertPets_ShouldRejectBatch_WithOversizedName() throws IOException {
+        Pet oversized = new Pet(8, "é".repeat(40000), 3, "Alice");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> petDao.addPets(List.of(new Pet(7, "Buddy", 3, "Alice"), oversized, new Pet(9, "Max", 4, "Bob"))));
+        assertThrows(IllegalArgumentException.class,
+                () -> petDao.upsertPets(List.of(new Pet(1, "Rex", 3, "Alice"), oversized)));
+        restart(1000);
+
+        assertNull(petDao.getPet(7));
+        assertNull(petDao.getPet(9));
+        assertEquals("Medor", petDao.getPet(1).getName());
+    }
+
+    private DurablePetDaoImpl open(int snapshotEvery) throws IOException {
+        DurablePetDaoImpl dao = new DurablePetDaoImpl(directory.toString(), 64, true, snapshotEvery);
+        dao.open();
+        return dao;
+    }
+
+    private void restart(int snapshotEvery) throws IOException {
+        petDao.close();
+        petDao = open(snapshotEvery);
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.services.dao.mapped.PetCatalogFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class MappedPetDaoImplTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedPetDaoImpl petDao;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        petDao = open();
+    }
+
+    /**
+     * Test to verify that a catalog file with the default pets is written on the first start.
+     */
+    @Test
+    void open_ShouldWriteDefaultPets_OnFirstStart() {
+        assertTrue(Files.exists(directory.resolve("pets.catalog")));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), ids(petDao.getPets()));
+        assertEquals("Medor", petDao.getPet(1).getName());
+        assertNull(petDao.getPet(7));
+    }
+
+    /**
+     * Test to verify that every column is read back from the mapped file, including missing names and owners.
+     */
+    @Test
+    void getPet_ShouldReadEveryColumn() throws IOException {
+        PetCatalogFile.write(directory.resolve("pets.catalog"), Arrays.asList(
+                new Pet(30, null, 4, null),
+                new Pet(10, "Réglisse", 2, "Zoé"),
+                new Pet(20, "Rex", 7, "zoé")));
+        petDao = open();
+
+        assertEquals(Arrays.asList(10, 20, 30), ids(petDao.getPets()));
+        Pet pet = petDao.getPet(10);
+        assertEquals("Réglisse", pet.getName());
+        assertEquals(2, pet.getAge());
+        assertEquals("Zoé", pet.getOwner());
+        assertNull(petDao.getPet(30).getName());
+        assertNull(petDao.getPet(30).getOwner());
+        assertNull(petDao.getPet(15));
+    }
+
+    /**
+     * Test to verify that owner lookups ignore case across dictionary entries and the overlay.
+     */
+    @Test
+    void getPetsByOwner_ShouldIgnoreCase() {
+        petDao.addPet(new Pet(7, "Buddy", 3, "SARAH"));
+        petDao.updatePet(3, new Pet(3, "Pepette", 5, "Alice"));
+
+        List<Integer> ids = ids(petDao.getPetsByOwner("sarah"));
+        ids.sort(null);
+
+        assertEquals(Arrays.asList(4, 5, 7), ids);
+        assertEquals(Arrays.asList(3), ids(petDao.getPetsByOwner("alice")));
+        assertTrue(petDao.getPetsByOwner("Unknown").isEmpty());
+    }
+
+    /**
+     * Test to verify that a conditional update checks the mapped pet and leaves it untouched on a mismatch.
+     */
+    @Test
+    void conditionalUpdate_ShouldCheckStoredPet() throws PetPreconditionFailedException {
+        assertThrows(PetPreconditionFailedException.class,
+                () -> petDao.updatePet(1, new Pet(1, "Rex", 1, "Jack"), pet -> pet.getAge() == 99));
+        assertEquals("Medor", petDao.getPet(1).getName());
+
+        assertEquals("Rex", petDao.updatePet(1, new Pet(1, "Rex", 1, "Jack"), pet -> pet.getAge() == 12).getName());
+        List<Integer> jackPets = ids(petDao.getPetsByOwner("jack"));
+        jackPets.sort(null);
+        assertEquals(Arrays.asList(1, 2, 6), jackPets);
+        assertNull(petDao.updatePet(42, new Pet(42, "Ghost", 1, "Nobody"), pet -> true));
+    }
+
+    /**
+     * Test to verify that writes are merged with the mapped catalog and follow the store contract.
+     */
+    @Test
+    void writes_ShouldBeMergedWithCatalog() {
+        assertNull(petDao.addPet(new Pet(1, "Duplicate", 1, "Peter")));
+        assertNotNull(petDao.addPet(new Pet(0, "Zero", 1, "Peter")));
+        assertEquals("UpdatedName", petDao.updatePet(2, new Pet(2, "UpdatedName", 10, "Jack")).getName());
+        assertTrue(petDao.deletePet(4));
+        assertFalse(petDao.deletePet(4));
+        assertNull(petDao.updatePet(4, new Pet(4, "Ghost", 1, "Sarah")));
+        assertNotNull(petDao.addPet(new Pet(4, "Reborn", 1, "Sarah")));
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), ids(petDao.getPets()));
+        assertEquals("UpdatedName", petDao.getPet(2).getName());
+        assertEquals("Reborn", petDao.getPet(4).getName());
+    }
+
+    /**
+     * Test to verify that pages merge the mapped catalog with the overlay in ID order.
+     */
+    @Test
+    void getPets_ShouldPageAcrossCatalogAndOverlay() {
+        petDao.addPet(new Pet(8, "Buddy", 3, "Alice"));
+        petDao.deletePet(3);
+        petDao.updatePet(5, new Pet(5, "Garfield", 12, "Sarah"));
+
+        assertEquals(Arrays.asList(1, 2, 4), ids(petDao.getPets(null, 3)));
+        assertEquals(Arrays.asList(5, 6, 8), ids(petDao.getPets(4, 3)));
+        assertEquals(12, petDao.getPets(4, 1).get(0).getAge());
+        assertTrue(petDao.getPets(8, 3).isEmpty());
+    }
+
+    /**
+     * Test to verify that writes are persisted into the catalog file on close.
+     */
+    @Test
+    void close_ShouldRewriteCatalog() throws IOException {
+        petDao.addPet(new Pet(7, "Buddy", 3, "Alice"));
+        petDao.deletePet(2);
+        petDao.close();
+
+        petDao = open();
+
+        assertEquals(Arrays.asList(1, 3, 4, 5, 6, 7), ids(petDao.getPets()));
+        assertEquals(1, petDao.getPetsByOwner("ALICE").size());
+    }
+
+    private MappedPetDaoImpl open() throws IOException {
+        MappedPetDaoImpl dao = new MappedPetDaoImpl(directory.resolve("pets.catalog").toString());
+        dao.open();
+        return dao;
+    }
+
+    private static List<Integer> ids(List<Pet> pets) {
+        return pets.stream().map(Pet::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,173 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class OffHeapPetDaoImplTest {
+
+    private OffHeapPetDaoImpl petDao;
+
+    @BeforeEach
+    void setUp() {
+        petDao = new OffHeapPetDaoImpl();
+        petDao.initPetList();
+    }
+
+    /**
+     * Test to verify that pets and pages are returned in ID order.
+     */
+    @Test
+    void getPets_ShouldReturnPetsInIdOrder() {
+        petDao.addPet(new Pet(0, "Buddy", 3, "Alice"));
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), ids(petDao.getPets()));
+        assertEquals(Arrays.asList(4, 5, 6), ids(petDao.getPets(3, 4)));
+        assertTrue(petDao.getPets(6, 4).isEmpty());
+        assertEquals(7, petDao.countPets());
+    }
+
+    /**
+     * Test to verify that a full listing spanning several pages returns every pet once, in ID order.
+     */
+    @Test
+    void getPets_ShouldListEveryPage() {
+        int size = 2 * OffHeapPetDaoImpl.LISTING_PAGE_SIZE;
+        for (int id = 7; id <= size; id++) {
+            petDao.addPet(new Pet(id, "Pet" + id, id % 20, "Owner" + id % 7));
+        }
+
+        assertEquals(IntStream.rangeClosed(1, size).boxed().collect(Collectors.toList()), ids(petDao.getPets()));
+    }
+
+    /**
+     * Test to verify that the store keeps its own copy of the pets it is given, and returns new ones.
+     */
+    @Test
+    void writes_ShouldStoreCopies() {
+        Pet pet = new Pet(7, "Bübchen", 3, "Alice");
+        petDao.addPet(pet);
+        pet.setName("Changed");
+        petDao.getPet(7).setName("Changed too");
+
+        assertEquals("Bübchen", petDao.getPet(7).getName());
+        assertNull(petDao.addPet(new Pet(7, "Duplicate", 1, "Bob")));
+        assertNull(petDao.updatePet(42, pet));
+        assertNull(petDao.getPet(42));
+        assertFalse(petDao.deletePet(42));
+    }
+
+    /**
+     * Test to verify that owner lookups ignore case and follow updates and deletions.
+     */
+    @Test
+    void getPetsByOwner_ShouldFollowWrites() {
+        petDao.updatePet(1, new Pet(1, "Medor", 5, "sarah"));
+        petDao.addPet(new Pet(7, "Buddy", 3, "SARAH"));
+        petDao.addPet(new Pet(8, "Nemo", 1, null));
+        petDao.deletePet(4);
+
+        assertTrue(petDao.getPetsByOwner("Peter").isEmpty());
+        assertEquals(Arrays.asList(1, 3, 5, 7), ids(petDao.getPetsByOwner("Sarah")));
+        assertEquals("SARAH", petDao.getPet(7).getOwner());
+        assertNull(petDao.getPet(8).getOwner());
+    }
+
+    /**
+     * Test to verify that a conditional update applies when the stored pet matches, and fails otherwise.
+     */
+    @Test
+    void updatePet_ShouldCheckExpectedState() throws PetPreconditionFailedException {
+        assertEquals(13, petDao.updatePet(1, new Pet(1, "Medor", 13, "Peter"), pet -> pet.getAge() == 12).getAge());
+        assertThrows(PetPreconditionFailedException.class,
+                () -> petDao.updatePet(1, new Pet(1, "Medor", 14, "Peter"), pet -> pet.getAge() == 12));
+        assertEquals(13, petDao.getPet(1).getAge());
+    }
+
+    /**
+     * Test to verify that queries test every criterion, with and without an owner.
+     */
+    @Test
+    void findPets_ShouldMatchEveryCriterion() {
+        assertEquals(Arrays.asList(3, 5), ids(petDao.findPets(new PetQuery(5, 10, null, "SARAH"))));
+        assertEquals(Arrays.asList(5), ids(petDao.findPets(new PetQuery(null, null, "gar", null))));
+        assertEquals(Arrays.asList(1, 6), ids(petDao.findPets(new PetQuery(12, 20, null, null))));
+        assertEquals(5, petDao.searchPets("Garfeld", 3).get(0).getPet().getId());
+    }
+
+    /**
+     * Test to verify that the statistics follow the writes.
+     */
+    @Test
+    void getStats_ShouldFollowWrites() {
+        petDao.updatePet(1, new Pet(1, "Medor", 8, "Sarah"));
+        petDao.deletePet(2);
+        petDao.addPet(new Pet(7, "Buddy", 3, "jack"));
+
+        PetStats stats = petDao.getStats(null);
+        assertEquals(6, stats.getCount());
+        assertEquals((8 + 8 + 21 + 8 + 15 + 3) / 6.0, stats.getAverageAge(), 1e-9);
+        assertEquals(Map.of(3, 1L, 8, 3L, 15, 1L, 21, 1L), stats.getAgeHistogram());
+        assertEquals(2, stats.getOwners());
+        assertEquals(Map.of("jack", 2L, "sarah", 4L), stats.getPetsByOwner());
+        assertEquals(Map.of("peter", 0L), petDao.getStats(List.of("Peter")).getPetsByOwner());
+        assertEquals(PetStatistics.of(petDao.getPets(), null).getPetsByOwner(), stats.getPetsByOwner());
+    }
+
+    /**
+     * Test to verify that batches report each item like single writes.
+     */
+    @Test
+    void batches_ShouldReportEachItem() {
+        List<Pet> added = petDao.addPets(Arrays.asList(new Pet(7, "Buddy", 3, "Alice"), new Pet(1, "Duplicate", 1, "Peter")));
+        boolean[] created = petDao.upsertPets(Arrays.asList(new Pet(2, "UpdatedName", 10, "Jack"), new Pet(8, "Max", 4, "Bob")));
+        boolean[] deleted = petDao.deletePets(Arrays.asList(3, 30));
+
+        assertNotNull(added.get(0));
+        assertNull(added.get(1));
+        assertArrayEquals(new boolean[]{false, true}, created);
+        assertArrayEquals(new boolean[]{true, false}, deleted);
+        assertEquals(7, petDao.countPets());
+        assertEquals("Medor", petDao.getPet(1).getName());
+        assertEquals("UpdatedName", petDao.getPet(2).getName());
+    }
+
+    /**
+     * Test to verify that pets are written as JSON lines page by page, with the ID to continue after.
+     */
+    @Test
+    void writePets_ShouldWritePagesOfJsonLines() {
+        petDao.deletePet(2);
+        DataBuffer first = new DefaultDataBufferFactory().allocateBuffer();
+        DataBuffer last = new DefaultDataBufferFactory().allocateBuffer();
+
+        assertEquals(3, petDao.writePets(null, 2, first));
+        assertNull(petDao.writePets(3, 10, last));
+        assertNull(petDao.writePets(6, 10, new DefaultDataBufferFactory().allocateBuffer()));
+
+        assertEquals("{\"id\":1,\"name\":\"Medor\",\"age\":12,\"owner\":\"Peter\"}\n"
+                + "{\"id\":3,\"name\":\"Pepette\",\"age\":8,\"owner\":\"Sarah\"}\n", first.toString(StandardCharsets.UTF_8));
+        assertEquals(3, last.toString(StandardCharsets.UTF_8).split("\n").length);
+    }
+
+    private static List<Integer> ids(List<Pet> pets) {
+        return pets.stream().map(Pet::getId).collect(Collectors.toList());
+    }
+}
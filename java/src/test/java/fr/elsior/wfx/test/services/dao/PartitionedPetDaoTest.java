@@ -0,0 +1,216 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class PartitionedPetDaoTest {
+
+    private PartitionedPetDao petDao;
+
+    @BeforeEach
+    void setUp() {
+        petDao = new PartitionedPetDao(4);
+        petDao.initPetList();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        petDao.close();
+    }
+
+    /**
+     * Test to verify that all pets are retrieved in ID order, merged across shards.
+     */
+    @Test
+    void getPets_ShouldMergeShardsInIdOrder() {
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), ids(petDao.getPets()));
+    }
+
+    /**
+     * Test to verify that pages are returned in ID order after the cursor.
+     */
+    @Test
+    void getPetsPage_ShouldReturnPetsAfterCursor() {
+        petDao.addPet(new Pet(0, "Buddy", 3, "Alice")).block();
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), ids(petDao.getPets(null, 4)));
+        assertEquals(Arrays.asList(4, 5, 6), ids(petDao.getPets(3, 4)));
+        assertTrue(ids(petDao.getPets(6, 4)).isEmpty());
+    }
+
+    /**
+     * Test to verify that readers and writers get copies, so modifying them does not change the shards' versions.
+     */
+    @Test
+    void reads_ShouldReturnCopies() {
+        petDao.getPet(1).block().setName("Changed");
+        petDao.getPets().blockFirst().setName("Changed");
+        petDao.getPets(null, 1).blockFirst().setName("Changed");
+        petDao.getPetsById(List.of(1)).block().get(1).setName("Changed");
+        petDao.getPetsByOwner("Peter").blockFirst().setName("Changed");
+        petDao.findPets(new PetQuery(null, null, null, "Peter")).blockFirst().setName("Changed");
+        petDao.updatePet(1, new Pet(1, "Medor", 12, "Peter")).block().setName("Changed");
+        petDao.addPet(new Pet(7, "Buddy", 3, "Alice")).block().setName("Changed");
+
+        assertEquals("Medor", petDao.getPet(1).block().getName());
+        assertEquals("Medor", petDao.getPetsByOwner("Peter").blockFirst().getName());
+        assertEquals("Buddy", petDao.getPet(7).block().getName());
+    }
+
+    /**
+     * Test to verify that a new pet is added and readable once the Mono completes.
+     */
+    @Test
+    void addPet_ShouldAddNewPet() {
+        StepVerifier.create(petDao.addPet(new Pet(7, "Buddy", 3, "Alice")))
+                .expectNextMatches(pet -> pet.getId() == 7)
+                .verifyComplete();
+        assertEquals("Buddy", petDao.getPet(7).block().getName());
+        assertEquals(7, petDao.countPets().block());
+    }
+
+    /**
+     * Test to verify that adding a pet with an existing ID completes empty.
+     */
+    @Test
+    void addPet_ShouldBeEmpty_WhenPetAlreadyExists() {
+        StepVerifier.create(petDao.addPet(new Pet(1, "Duplicate", 4, "John")))
+                .verifyComplete();
+        assertEquals("Medor", petDao.getPet(1).block().getName());
+    }
+
+    /**
+     * Test to verify that retrieving a non-existing pet by ID completes empty.
+     */
+    @Test
+    void getPet_ShouldBeEmpty_WhenPetNotFound() {
+        StepVerifier.create(petDao.getPet(10))
+                .verifyComplete();
+    }
+
+    /**
+     * Test to verify that an owner's pets are gathered from every shard, ignoring case.
+     */
+    @Test
+    void getPetsByOwner_ShouldGatherShards() {
+        assertEquals(Arrays.asList(3, 4, 5), ids(petDao.getPetsByOwner("sARAH")));
+        assertTrue(ids(petDao.getPetsByOwner("Unknown")).isEmpty());
+    }
+
+    /**
+     * Test to verify that a pet is updated and found under its new owner.
+     */
+    @Test
+    void updatePet_ShouldUpdateExistingPet() {
+        Pet result = petDao.updatePet(1, new Pet(1, "UpdatedName", 10, "UpdatedOwner")).block();
+
+        assertNotNull(result);
+        assertEquals("UpdatedName", result.getName());
+        assertEquals(Arrays.asList(1), ids(petDao.getPetsByOwner("updatedowner")));
+        assertTrue(ids(petDao.getPetsByOwner("Peter")).isEmpty());
+        StepVerifier.create(petDao.updatePet(10, new Pet(10, "NonExistent", 5, "NoOwner")))
+                .verifyComplete();
+    }
+
+    /**
+     * Test to verify that a conditional update applies when the stored pet matches, and fails otherwise.
+     */
+    @Test
+    void updatePet_ShouldCheckExpectedState() {
+        StepVerifier.create(petDao.updatePet(1, new Pet(1, "Medor", 13, "Peter"), pet -> pet.getAge() == 12))
+                .expectNextMatches(pet -> pet.getAge() == 13)
+                .verifyComplete();
+        StepVerifier.create(petDao.updatePet(1, new Pet(1, "Medor", 14, "Peter"), pet -> pet.getAge() == 12))
+                .verifyError(PetPreconditionFailedException.class);
+
+        assertEquals(13, petDao.getPet(1).block().getAge());
+    }
+
+    /**
+     * Test to verify that deleting reports whether the pet was found.
+     */
+    @Test
+    void deletePet_ShouldDeletePet() {
+        assertTrue(petDao.deletePet(1).block());
+        assertFalse(petDao.deletePet(1).block());
+        assertEquals(5, petDao.countPets().block());
+    }
+
+    /**
+     * Test to verify that a batch spread over shards reports each pet in the batch order.
+     */
+    @Test
+    void bulkWrites_ShouldKeepTheBatchOrder() {
+        Pet buddy = new Pet(7, "Buddy", 3, "Alice");
+        List<Pet> added = petDao.addPets(Arrays.asList(buddy, new Pet(1, "Duplicate", 1, "Peter"),
+                new Pet(7, "Again", 1, "Alice"))).block();
+        assertEquals(Arrays.asList(7, null, null),
+                added.stream().map(pet -> pet == null ? null : pet.getId()).collect(Collectors.toList()));
+
+        assertArrayEquals(new boolean[]{false, true}, petDao.upsertPets(Arrays.asList(
+                new Pet(1, "UpdatedName", 10, "Peter"), new Pet(8, "Nemo", 2, "Alice"))).block());
+        assertArrayEquals(new boolean[]{true, false, true, false},
+                petDao.deletePets(Arrays.asList(1, 10, 2, 1)).block());
+        assertEquals(Arrays.asList(3, 4, 5, 6, 7, 8), ids(petDao.getPets()));
+    }
+
+    /**
+     * Test to verify that queries and multi-gets read every shard.
+     */
+    @Test
+    void reads_ShouldSpanShards() {
+        assertEquals(Arrays.asList(3, 5), ids(petDao.findPets(new PetQuery(5, 10, null, "SARAH"))));
+        assertEquals(Arrays.asList(5), ids(petDao.findPets(new PetQuery(null, null, "gar", null))));
+
+        Map<Integer, Pet> pets = petDao.getPetsById(Arrays.asList(2, 5, 99)).block();
+        assertEquals(Arrays.asList(2, 5), pets.keySet().stream().sorted().collect(Collectors.toList()));
+        assertEquals(5, petDao.searchPets("Garfeld", 3).blockFirst().getPet().getId());
+    }
+
+    /**
+     * Test to verify that concurrent writes from many threads are all applied, and the statistics follow them.
+     */
+    @Test
+    void concurrentWrites_ShouldAllBeApplied() {
+        Flux.range(100, 2000)
+                .parallel(8)
+                .runOn(Schedulers.parallel())
+                .flatMap(id -> petDao.addPet(new Pet(id, "Pet" + id, id % 20, "Owner" + id % 10))
+                        .then(id % 2 == 0 ? petDao.deletePet(id).then() : petDao.updatePet(id, new Pet(id, "Pet" + id, 1, "Owner0")).then()))
+                .sequential()
+                .blockLast();
+
+        List<Integer> odd = IntStream.range(100, 2100).filter(id -> id % 2 == 1).boxed().collect(Collectors.toList());
+        assertEquals(odd, ids(petDao.getPets()).stream().filter(id -> id >= 100).collect(Collectors.toList()));
+        assertEquals(odd, ids(petDao.getPetsByOwner("owner0")));
+        PetStats stats = petDao.getStats(Arrays.asList("Owner0")).block();
+        assertEquals(6 + odd.size(), stats.getCount());
+        assertEquals(Map.of("owner0", (long) odd.size()), stats.getPetsByOwner());
+    }
+
+    private static List<Integer> ids(Flux<Pet> pets) {
+        List<Integer> ids = new ArrayList<>();
+        pets.map(Pet::getId).toStream().forEach(ids::add);
+        return ids;
+    }
+}
@@ -0,0 +1,225 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ *
+ * Stress tests run against every in-memory store.
+ */
+class PetDaoConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int PETS_PER_THREAD = 2_000;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    static Stream<Arguments> stores() {
+        return Stream.of(
+                Arguments.of("list", (Supplier<IPetDao>) () -> {
+                    PetDaoImpl dao = new PetDaoImpl();
+                    dao.initPetList();
+                    return dao;
+                }),
+                Arguments.of("concurrent", (Supplier<IPetDao>) () -> {
+                    ConcurrentPetDaoImpl dao = new ConcurrentPetDaoImpl();
+                    dao.initPetList();
+                    return dao;
+                }),
+                Arguments.of("versioned", (Supplier<IPetDao>) () -> {
+                    VersionedPetDaoImpl dao = new VersionedPetDaoImpl();
+                    dao.initPetList();
+                    return dao;
+                }),
+                Arguments.of("columnar", (Supplier<IPetDao>) () -> {
+                    ColumnarPetDaoImpl dao = new ColumnarPetDaoImpl();
+                    dao.initPetList();
+                    return dao;
+                }),
+                Arguments.of("offheap", (Supplier<IPetDao>) () -> {
+                    OffHeapPetDaoImpl dao = new OffHeapPetDaoImpl();
+                    dao.initPetList();
+                    return dao;
+                }));
+    }
+
+    /**
+     * Test to verify that concurrent inserts of distinct IDs are never lost.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void addPet_ShouldKeepEveryPet_WhenCalledConcurrently(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < PETS_PER_THREAD; i++) {
+                int id = 100 + thread * PETS_PER_THREAD + i;
+                assertNotNull(petDao.addPet(new Pet(id, "Pet" + id, i % 20, "Owner" + thread)));
+            }
+            return null;
+        });
+
+        assertEquals(6 + THREADS * PETS_PER_THREAD, petDao.getPets().size());
+        assertEquals(PETS_PER_THREAD, petDao.getPetsByOwner("Owner3").size());
+    }
+
+    /**
+     * Test to verify that exactly one of several concurrent inserts of the same ID wins.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void addPet_ShouldAcceptOneInsertPerId_WhenCalledConcurrently(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+        AtomicInteger accepted = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int id = 100; id < 100 + PETS_PER_THREAD; id++) {
+                if (petDao.addPet(new Pet(id, "Pet" + id, 1, "Owner" + thread)) != null) {
+                    accepted.incrementAndGet();
+                }
+            }
+            return null;
+        });
+
+        assertEquals(PETS_PER_THREAD, accepted.get());
+        assertEquals(6 + PETS_PER_THREAD, petDao.getPets().size());
+    }
+
+    /**
+     * Test to verify that readers can iterate while writers add and delete pets.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void reads_ShouldNotFail_WhileWritersAddAndDelete(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < PETS_PER_THREAD; i++) {
+                if (thread % 2 == 0) {
+                    int id = 100 + thread * PETS_PER_THREAD + i;
+                    petDao.addPet(new Pet(id, "Pet" + id, i % 20, "Sarah"));
+                    assertTrue(petDao.deletePet(id));
+                } else {
+                    for (Pet pet : petDao.getPets()) {
+                        assertNotNull(pet);
+                    }
+                    assertTrue(petDao.getPetsByOwner("Sarah").size() >= 3);
+                }
+            }
+            return null;
+        });
+
+        assertEquals(6, petDao.getPets().size());
+    }
+
+    /**
+     * Test to verify that conditional updates retried on a failed precondition never lose an increment.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void conditionalUpdate_ShouldNotLoseUpdates_WhenCalledConcurrently(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+        petDao.updatePet(1, new Pet(1, "Medor", 0, "Peter"));
+        int incrementsPerThread = 200;
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < incrementsPerThread; i++) {
+                while (true) {
+                    int age = petDao.getPet(1).getAge();
+                    try {
+                        petDao.updatePet(1, new Pet(1, "Medor", age + 1, "Peter"), current -> current.getAge() == age);
+                        break;
+                    } catch (PetPreconditionFailedException e) {
+                        // Another thread updated the pet first, read it again
+                    }
+                }
+            }
+            return null;
+        });
+
+        assertEquals(THREADS * incrementsPerThread, petDao.getPet(1).getAge());
+        assertNull(petDao.updatePet(42, new Pet(42, "Ghost", 1, "Nobody"), current -> true));
+    }
+
+    /**
+     * Test to verify that readers never see a half applied update on the concurrent store.
+     */
+    @Test
+    void getPet_ShouldNeverReturnTornUpdate_OnConcurrentStore() throws Exception {
+        ConcurrentPetDaoImpl petDao = new ConcurrentPetDaoImpl();
+        petDao.initPetList();
+        petDao.updatePet(1, new Pet(1, "Name0", 0, "Owner0"));
+        AtomicBoolean torn = new AtomicBoolean();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < PETS_PER_THREAD; i++) {
+                if (thread == 0) {
+                    petDao.updatePet(1, new Pet(1, "Name" + i, i, "Owner" + i));
+                } else {
+                    Pet pet = petDao.getPet(1);
+                    if (!pet.getName().equals("Name" + pet.getAge())
+                            || !pet.getOwner().equals("Owner" + pet.getAge())) {
+                        torn.set(true);
+                    }
+                }
+            }
+            return null;
+        });
+
+        assertFalse(torn.get());
+    }
+
+    private void runConcurrently(ThreadTask task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int index = thread;
+            Callable<Void> callable = () -> {
+                start.await();
+                return task.run(index);
+            };
+            futures.add(executor.submit(callable));
+        }
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        Void run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,331 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetStats;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ *
+ * Behaviour every in-memory store shares, run against each of them from the same initial catalog.
+ */
+class PetDaoContractTest {
+
+    static Stream<Arguments> stores() {
+        return Stream.of(
+                Arguments.of("list", (Supplier<IPetDao>) () -> {
+                    PetDaoImpl dao = new PetDaoImpl();
+                    dao.initPetList();
+                    return dao;
+                }),
+                Arguments.of("concurrent", (Supplier<IPetDao>) () -> {
+                    ConcurrentPetDaoImpl dao = new ConcurrentPetDaoImpl();
+                    dao.initPetList();
+                    return dao;
+                }),
+                Arguments.of("versioned", (Supplier<IPetDao>) () -> {
+                    VersionedPetDaoImpl dao = new VersionedPetDaoImpl();
+                    dao.initPetList();
+                    return dao;
+                }),
+                Arguments.of("columnar", (Supplier<IPetDao>) () -> {
+                    ColumnarPetDaoImpl dao = new ColumnarPetDaoImpl();
+                    dao.initPetList();
+                    return dao;
+                }),
+                Arguments.of("offheap", (Supplier<IPetDao>) () -> {
+                    OffHeapPetDaoImpl dao = new OffHeapPetDaoImpl();
+                    dao.initPetList();
+                    return dao;
+                }));
+    }
+
+    /**
+     * Test to verify that all pets are retrieved successfully.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void getPets_ShouldReturnAllPets(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        List<Pet> pets = petDao.getPets();
+        assertEquals(6, pets.size());
+    }
+
+    /**
+     * Test to verify that pages are returned in ID order after the cursor.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void getPetsPage_ShouldReturnPetsAfterCursor(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        petDao.addPet(new Pet(0, "Buddy", 3, "Alice"));
+
+        List<Pet> firstPage = petDao.getPets(null, 4);
+        List<Pet> secondPage = petDao.getPets(3, 4);
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), ids(firstPage));
+        assertEquals(Arrays.asList(4, 5, 6), ids(secondPage));
+        assertTrue(petDao.getPets(6, 4).isEmpty());
+    }
+
+    /**
+     * Test to verify that a new pet is added successfully.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void addPet_ShouldAddNewPet(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        Pet newPet = new Pet(7, "Buddy", 3, "Alice");
+        Pet addedPet = petDao.addPet(newPet);
+
+        assertNotNull(addedPet);
+        assertEquals(7, addedPet.getId());
+        assertEquals(7, petDao.getPets().size());
+    }
+
+    /**
+     * Test to verify that adding a pet with an existing ID returns null.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void addPet_ShouldReturnNull_WhenPetAlreadyExists(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        Pet duplicatePet = new Pet(1, "Duplicate", 4, "John");
+        Pet result = petDao.addPet(duplicatePet);
+
+        assertNull(result);
+        assertEquals(6, petDao.getPets().size());
+    }
+
+    /**
+     * Test to verify that a pet is retrieved by its ID.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void getPet_ShouldReturnPetById(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        Pet pet = petDao.getPet(1);
+
+        assertNotNull(pet);
+        assertEquals("Medor", pet.getName());
+    }
+
+    /**
+     * Test to verify that retrieving a non-existing pet by ID returns null.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void getPet_ShouldReturnNull_WhenPetNotFound(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        Pet pet = petDao.getPet(10);
+
+        assertNull(pet);
+    }
+
+    /**
+     * Test to verify that pets are retrieved by their owner.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void getPetsByOwner_ShouldReturnPetsByOwner(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        List<Pet> pets = petDao.getPetsByOwner("Sarah");
+
+        assertEquals(3, pets.size());
+    }
+
+    /**
+     * Test to verify that retrieving pets for a non-existing owner returns an empty list.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void getPetsByOwner_ShouldReturnEmptyList_WhenOwnerNotFound(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        List<Pet> pets = petDao.getPetsByOwner("Unknown");
+
+        assertTrue(pets.isEmpty());
+    }
+
+    /**
+     * Test to verify that the owner lookup ignores case.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void getPetsByOwner_ShouldIgnoreCase(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        assertEquals(3, petDao.getPetsByOwner("sARAH").size());
+    }
+
+    /**
+     * Test to verify that a pet is updated successfully.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void updatePet_ShouldUpdateExistingPet(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        Pet updatedPet = new Pet(1, "UpdatedName", 10, "UpdatedOwner");
+        Pet result = petDao.updatePet(1, updatedPet);
+
+        assertNotNull(result);
+        assertEquals("UpdatedName", result.getName());
+        assertEquals(10, result.getAge());
+        assertEquals("UpdatedOwner", result.getOwner());
+    }
+
+    /**
+     * Test to verify that updating a non-existing pet returns null.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void updatePet_ShouldReturnNull_WhenPetNotFound(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        Pet updatedPet = new Pet(10, "NonExistent", 5, "NoOwner");
+        Pet result = petDao.updatePet(10, updatedPet);
+
+        assertNull(result);
+    }
+
+    /**
+     * Test to verify that a pet is deleted successfully.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void deletePet_ShouldDeletePet(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        boolean result = petDao.deletePet(1);
+
+        assertTrue(result);
+        assertEquals(5, petDao.getPets().size());
+    }
+
+    /**
+     * Test to verify that deleting a non-existing pet returns false.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void deletePet_ShouldReturnFalse_WhenPetNotFound(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        boolean result = petDao.deletePet(10);
+
+        assertFalse(result);
+    }
+
+    /**
+     * Test to verify that a batch is added in order, rejecting taken IDs and duplicates within the batch.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void addPets_ShouldRejectTakenIds(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        List<Pet> added = petDao.addPets(Arrays.asList(new Pet(7, "Buddy", 3, "Alice"),
+                new Pet(1, "Duplicate", 1, "Peter"), new Pet(7, "Again", 1, "Alice")));
+
+        assertEquals("Buddy", added.get(0).getName());
+        assertNull(added.get(1));
+        assertNull(added.get(2));
+        assertEquals(7, petDao.getPets().size());
+        assertEquals("Medor", petDao.getPet(1).getName());
+    }
+
+    /**
+     * Test to verify that a batch upsert updates stored pets and adds the others.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void upsertPets_ShouldUpdateOrAdd(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        boolean[] created = petDao.upsertPets(Arrays.asList(new Pet(1, "UpdatedName", 10, "Peter"),
+                new Pet(7, "Buddy", 3, "Alice")));
+
+        assertArrayEquals(new boolean[]{false, true}, created);
+        assertEquals("UpdatedName", petDao.getPet(1).getName());
+        assertEquals(7, petDao.getPets().size());
+    }
+
+    /**
+     * Test to verify that a batch deletion reports the IDs not found.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void deletePets_ShouldReportMissingIds(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        boolean[] deleted = petDao.deletePets(Arrays.asList(1, 10, 2, 1));
+
+        assertArrayEquals(new boolean[]{true, false, true, false}, deleted);
+        assertEquals(Arrays.asList(3, 4, 5, 6), ids(petDao.getPets()));
+    }
+
+    /**
+     * Test to verify that queries scan the catalog for every criterion.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void findPets_ShouldMatchEveryCriterion(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        assertEquals(Arrays.asList(3, 5), ids(petDao.findPets(new PetQuery(5, 10, null, "SARAH"))));
+        assertEquals(Arrays.asList(5), ids(petDao.findPets(new PetQuery(null, null, "gar", null))));
+    }
+
+    /**
+     * Test to verify that several pets are read at once, missing IDs being left out.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void getPetsById_ShouldReturnFoundPets(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        Map<Integer, Pet> pets = petDao.getPetsById(Arrays.asList(2, 5, 99));
+
+        assertEquals(Arrays.asList(2, 5), pets.keySet().stream().sorted().collect(Collectors.toList()));
+        assertEquals("Garfield", pets.get(5).getName());
+    }
+
+    /**
+     * Test to verify that the statistics aggregate the catalog.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("stores")
+    void getStats_ShouldAggregateTheCatalog(String name, Supplier<IPetDao> store) throws Exception {
+        IPetDao petDao = store.get();
+
+        PetStats stats = petDao.getStats(null);
+
+        assertEquals(6, stats.getCount());
+        assertEquals(11.5, stats.getAverageAge());
+        assertEquals(Map.of(5, 1L, 8, 2L, 12, 1L, 15, 1L, 21, 1L), stats.getAgeHistogram());
+        assertEquals(Map.of("jack", 2L, "peter", 1L, "sarah", 3L), stats.getPetsByOwner());
+    }
+
+    private static List<Integer> ids(List<Pet> pets) {
+        return pets.stream().map(Pet::getId).collect(Collectors.toList());
+    }
+}
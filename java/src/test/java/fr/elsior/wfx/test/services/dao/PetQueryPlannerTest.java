@@ -0,0 +1,114 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @Author: Elimane
+ */
+class PetQueryPlannerTest {
+
+    private final Map<Integer, Pet> pets = new HashMap<>();
+
+    private final NavigableSet<Integer> ids = new TreeSet<>();
+
+    private final OwnerIndex owners = new OwnerIndex();
+
+    private final SortedIndex<Integer> ages = new SortedIndex<>();
+
+    private final SortedIndex<String> names = new SortedIndex<>();
+
+    private PetQueryPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        // 1000 pets: 10 owners, ages 0 to 19, names Pet<id>
+        for (int id = 1; id <= 1000; id++) {
+            add(new Pet(id, "Pet" + id, id % 20, "Owner" + id % 10));
+        }
+        planner = new PetQueryPlanner(pets, ids, owners, ages, names);
+    }
+
+    /**
+     * Test to verify that the index matching the fewest pets drives the query.
+     */
+    @Test
+    void plan_ShouldPickTheMostSelectiveIndex() {
+        // 100 pets per owner, 50 per age, 12 names starting with Pet10
+        assertEquals("owner", planner.plan(new PetQuery(0, 5, null, "Owner3")).getIndex());
+        assertEquals("age", planner.plan(new PetQuery(4, 4, null, "Owner3")).getIndex());
+        assertEquals("name", planner.plan(new PetQuery(0, 19, "pet10", "Owner3")).getIndex());
+        assertEquals(12, planner.plan(new PetQuery(null, null, "Pet10", null)).getEstimate());
+        assertEquals("scan", planner.plan(new PetQuery()).getIndex());
+    }
+
+    /**
+     * Test to verify that indexed lookups return the same pets as a full scan.
+     */
+    @Test
+    void find_ShouldMatchAFullScan() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            Integer minAge = random.nextBoolean() ? random.nextInt(22) - 1 : null;
+            Integer maxAge = random.nextBoolean() ? random.nextInt(22) - 1 : null;
+            String name = null;
+            if (random.nextBoolean()) {
+                String petName = "pet" + random.nextInt(120);
+                name = petName.substring(0, 3 + random.nextInt(petName.length() - 2));
+            }
+            String owner = random.nextInt(3) == 0 ? "OWNER" + random.nextInt(11) : null;
+            PetQuery query = new PetQuery(minAge, maxAge, name, owner);
+
+            List<Pet> expected = pets.values().stream()
+                    .filter(query::matches)
+                    .sorted(Comparator.comparingInt(Pet::getId))
+                    .collect(Collectors.toList());
+
+            assertEquals(expected, planner.find(query), query.toString());
+        }
+    }
+
+    /**
+     * Test to verify that pages of every plan, scan included, follow each other in ID order.
+     */
+    @Test
+    void find_ShouldReturnPagesInIdOrder() {
+        for (PetQuery criteria : List.of(new PetQuery(), new PetQuery(null, null, null, "Owner3"),
+                new PetQuery(4, 6, null, null), new PetQuery(null, null, "pet1", null))) {
+            List<Pet> expected = planner.find(criteria);
+            List<Pet> paged = new ArrayList<>();
+            Integer after = null;
+            List<Pet> page;
+            do {
+                page = planner.find(new PetQuery(criteria.getMinAge(), criteria.getMaxAge(), criteria.getNamePrefix(),
+                        criteria.getOwner(), after, 7));
+                paged.addAll(page);
+                after = page.isEmpty() ? after : page.get(page.size() - 1).getId();
+            } while (page.size() == 7);
+
+            assertEquals(expected, paged, criteria.toString());
+        }
+    }
+
+    private void add(Pet pet) {
+        pets.put(pet.getId(), pet);
+        ids.add(pet.getId());
+        owners.add(pet.getOwner(), pet.getId());
+        ages.add(pet.getAge(), pet.getId());
+        names.add(PetQuery.normalize(pet.getName()), pet.getId());
+    }
+}
@@ -0,0 +1,149 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @Author: Elimane
+ */
+class PetSearchIndexTest {
+
+    private static final String[] SYLLABLES = {"ga", "rf", "ie", "ld", "sn", "oo", "py", "re", "x", "me", "do", "r",
+            "mi", "st", "ig", "pe", "tt", "sa", "ra", "h", "ja", "ck"};
+
+    private ConcurrentPetDaoImpl petDao;
+
+    @BeforeEach
+    void setUp() {
+        petDao = new ConcurrentPetDaoImpl();
+        petDao.initPetList();
+    }
+
+    /**
+     * Test to verify that misspelled names and owners find the closest pets first.
+     */
+    @Test
+    void searchPets_ShouldTolerateTypos() {
+        assertEquals(5, petDao.searchPets("Garfeild", 10).get(0).getPet().getId());
+        assertEquals(4, petDao.searchPets("snopy", 10).get(0).getPet().getId());
+        assertEquals(Arrays.asList(3, 4, 5), ids(petDao.searchPets("SARA", 3)));
+        assertTrue(petDao.searchPets("Zorglub", 10).isEmpty());
+        assertTrue(petDao.searchPets("  ", 10).isEmpty());
+    }
+
+    /**
+     * Test to verify that the results are ranked by score and limited.
+     */
+    @Test
+    void searchPets_ShouldRankAndLimitResults() {
+        petDao.addPet(new Pet(7, "Garfield Junior", 2, "Jon"));
+
+        List<PetSearchResult> results = petDao.searchPets("garfield", 1);
+
+        assertEquals(1, results.size());
+        assertEquals(5, results.get(0).getPet().getId());
+        assertEquals(1.0, results.get(0).getScore());
+        assertEquals(Arrays.asList(5, 7), ids(petDao.searchPets("garfield", 10)));
+    }
+
+    /**
+     * Test to verify that renamed, moved and deleted pets are reindexed.
+     */
+    @Test
+    void searchPets_ShouldFollowUpdatesAndDeletes() {
+        petDao.updatePet(5, new Pet(5, "Odie", 8, "Jon"));
+        petDao.deletePet(4);
+
+        assertTrue(petDao.searchPets("garfield", 10).isEmpty());
+        assertTrue(petDao.searchPets("snoopy", 10).isEmpty());
+        assertEquals(Arrays.asList(5), ids(petDao.searchPets("odie", 10)));
+        assertEquals(Arrays.asList(3), ids(petDao.searchPets("sarah", 10)));
+    }
+
+    /**
+     * Test to verify that indexed searches return the same results as scoring every pet, after random writes.
+     */
+    @Test
+    void searchPets_ShouldMatchAFullScan() {
+        Random random = new Random(7);
+        for (int i = 0; i < 3000; i++) {
+            int id = random.nextInt(2000) - 100;
+            Pet pet = new Pet(id, randomWords(random, 1 + random.nextInt(2)), 1, randomWords(random, 1));
+            switch (random.nextInt(3)) {
+                case 0:
+                    petDao.deletePet(id);
+                    break;
+                case 1:
+                    petDao.updatePet(id, pet);
+                    break;
+                default:
+                    petDao.addPet(pet);
+            }
+        }
+
+        for (int i = 0; i < 300; i++) {
+            String text = randomWords(random, 1 + random.nextInt(2));
+            int limit = 1 + random.nextInt(20);
+
+            List<PetSearchResult> expected = PetSearchIndex.scan(petDao.getPets(), text, limit);
+            List<PetSearchResult> actual = petDao.searchPets(text, limit);
+
+            assertEquals(ids(expected), ids(actual), text);
+        }
+    }
+
+    /**
+     * Test to verify that searches running along writes complete, while the posting lists they read change size.
+     */
+    @Test
+    void searchPets_ShouldNotFail_DuringWrites() throws InterruptedException {
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            Random random = new Random(11);
+            while (writing.get()) {
+                int id = random.nextInt(500);
+                if (petDao.addPet(new Pet(id, randomWords(random, 1), 1, randomWords(random, 1))) == null) {
+                    petDao.deletePet(id);
+                }
+            }
+        });
+        writer.start();
+        try {
+            Random random = new Random(13);
+            for (int i = 0; i < 2000; i++) {
+                assertTrue(petDao.searchPets(randomWords(random, 2), 10).size() <= 10);
+            }
+        } finally {
+            writing.set(false);
+            writer.join();
+        }
+    }
+
+    private static String randomWords(Random random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                words.append(' ');
+            }
+            for (int syllables = 1 + random.nextInt(3); syllables >= 0; syllables--) {
+                words.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+        }
+        return words.toString();
+    }
+
+    private static List<Integer> ids(List<PetSearchResult> results) {
+        return results.stream().map(result -> result.getPet().getId()).collect(Collectors.toList());
+    }
+}
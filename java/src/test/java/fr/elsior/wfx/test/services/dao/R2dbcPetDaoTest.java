@@ -0,0 +1,281 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class R2dbcPetDaoTest {
+
+    private R2dbcPetDao petDao;
+
+    @BeforeEach
+    void setUp() {
+        petDao = new R2dbcPetDao("r2dbc:h2:mem:///pets-" + UUID.randomUUID() + "?DB_CLOSE_DELAY=-1", 1, 4, 2);
+        petDao.open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        petDao.close();
+    }
+
+    /**
+     * Test to verify that all pets are retrieved successfully, across several keyset pages.
+     */
+    @Test
+    void getPets_ShouldReturnAllPets() {
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), ids(petDao.getPets()));
+    }
+
+    /**
+     * Test to verify that the catalog is read as the subscriber requests it.
+     */
+    @Test
+    void getPets_ShouldFollowDemand() {
+        StepVerifier.create(petDao.getPets(), 1)
+                .expectNextMatches(pet -> pet.getId() == 1)
+                .thenRequest(2)
+                .expectNextMatches(pet -> pet.getId() == 2)
+                .expectNextMatches(pet -> pet.getId() == 3)
+                .thenCancel()
+                .verify();
+    }
+
+    /**
+     * Test to verify that pages are returned in ID order after the cursor.
+     */
+    @Test
+    void getPetsPage_ShouldReturnPetsAfterCursor() {
+        petDao.addPet(new Pet(0, "Buddy", 3, "Alice")).block();
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), ids(petDao.getPets(null, 4)));
+        assertEquals(Arrays.asList(4, 5, 6), ids(petDao.getPets(3, 4)));
+        assertTrue(ids(petDao.getPets(6, 4)).isEmpty());
+    }
+
+    /**
+     * Test to verify that a new pet is added successfully.
+     */
+    @Test
+    void addPet_ShouldAddNewPet() {
+        StepVerifier.create(petDao.addPet(new Pet(7, "Buddy", 3, "Alice")))
+                .expectNextMatches(pet -> pet.getId() == 7)
+                .verifyComplete();
+        assertEquals(7, petDao.countPets().block());
+    }
+
+    /**
+     * Test to verify that adding a pet with an existing ID completes empty.
+     */
+    @Test
+    void addPet_ShouldBeEmpty_WhenPetAlreadyExists() {
+        StepVerifier.create(petDao.addPet(new Pet(1, "Duplicate", 4, "John")))
+                .verifyComplete();
+        assertEquals(6, petDao.countPets().block());
+        assertEquals("Medor", petDao.getPet(1).block().getName());
+    }
+
+    /**
+     * Test to verify that a pet is retrieved by its ID.
+     */
+    @Test
+    void getPet_ShouldReturnPetById() {
+        StepVerifier.create(petDao.getPet(1))
+                .expectNextMatches(pet -> "Medor".equals(pet.getName()) && pet.getAge() == 12 && "Peter".equals(pet.getOwner()))
+                .verifyComplete();
+    }
+
+    /**
+     * Test to verify that retrieving a non-existing pet by ID completes empty.
+     */
+    @Test
+    void getPet_ShouldBeEmpty_WhenPetNotFound() {
+        StepVerifier.create(petDao.getPet(10))
+                .verifyComplete();
+    }
+
+    /**
+     * Test to verify that pets are retrieved by their owner, ignoring case.
+     */
+    @Test
+    void getPetsByOwner_ShouldReturnPetsByOwner() {
+        assertEquals(Arrays.asList(3, 4, 5), ids(petDao.getPetsByOwner("sARAH")));
+    }
+
+    /**
+     * Test to verify that retrieving pets for a non-existing owner completes empty.
+     */
+    @Test
+    void getPetsByOwner_ShouldBeEmpty_WhenOwnerNotFound() {
+        assertTrue(ids(petDao.getPetsByOwner("Unknown")).isEmpty());
+    }
+
+    /**
+     * Test to verify that a pet is updated successfully, and found under its new owner.
+     */
+    @Test
+    void updatePet_ShouldUpdateExistingPet() {
+        Pet result = petDao.updatePet(1, new Pet(1, "UpdatedName", 10, "UpdatedOwner")).block();
+
+        assertNotNull(result);
+        assertEquals("UpdatedName", result.getName());
+        assertEquals(10, result.getAge());
+        assertEquals("UpdatedOwner", result.getOwner());
+        assertEquals(Arrays.asList(1), ids(petDao.getPetsByOwner("updatedowner")));
+        assertTrue(ids(petDao.getPetsByOwner("Peter")).isEmpty());
+    }
+
+    /**
+     * Test to verify that updating a non-existing pet completes empty.
+     */
+    @Test
+    void updatePet_ShouldBeEmpty_WhenPetNotFound() {
+        StepVerifier.create(petDao.updatePet(10, new Pet(10, "NonExistent", 5, "NoOwner")))
+                .verifyComplete();
+    }
+
+    /**
+     * Test to verify that a conditional update applies when the stored pet matches, and fails otherwise
+     * leaving the pet unchanged.
+     */
+    @Test
+    void updatePet_ShouldCheckExpectedState() {
+        StepVerifier.create(petDao.updatePet(1, new Pet(1, "Medor", 13, "Peter"), pet -> pet.getAge() == 12))
+                .expectNextMatches(pet -> pet.getAge() == 13)
+                .verifyComplete();
+        StepVerifier.create(petDao.updatePet(1, new Pet(1, "Medor", 14, "Peter"), pet -> pet.getAge() == 12))
+                .verifyError(PetPreconditionFailedException.class);
+        StepVerifier.create(petDao.updatePet(10, new Pet(10, "NonExistent", 5, "NoOwner"), pet -> true))
+                .verifyComplete();
+
+        assertEquals(13, petDao.getPet(1).block().getAge());
+    }
+
+    /**
+     * Test to verify that a pet is deleted successfully.
+     */
+    @Test
+    void deletePet_ShouldDeletePet() {
+        assertTrue(petDao.deletePet(1).block());
+        assertEquals(5, petDao.countPets().block());
+    }
+
+    /**
+     * Test to verify that deleting a non-existing pet returns false.
+     */
+    @Test
+    void deletePet_ShouldReturnFalse_WhenPetNotFound() {
+        assertFalse(petDao.deletePet(10).block());
+    }
+
+    /**
+     * Test to verify that a batch is added in order, rejecting taken IDs and duplicates within the batch.
+     */
+    @Test
+    void addPets_ShouldRejectTakenIds() {
+        Pet buddy = new Pet(7, "Buddy", 3, "Alice");
+        List<Pet> added = petDao.addPets(Arrays.asList(buddy, new Pet(1, "Duplicate", 1, "Peter"),
+                new Pet(7, "Again", 1, "Alice"))).block();
+
+        assertEquals(Arrays.asList(buddy, null, null), added);
+        assertEquals(7, petDao.countPets().block());
+        assertEquals("Medor", petDao.getPet(1).block().getName());
+    }
+
+    /**
+     * Test to verify that a batch upsert updates stored pets and adds the others.
+     */
+    @Test
+    void upsertPets_ShouldUpdateOrAdd() {
+        boolean[] created = petDao.upsertPets(Arrays.asList(new Pet(1, "UpdatedName", 10, "Peter"),
+                new Pet(7, "Buddy", 3, "Alice"))).block();
+
+        assertArrayEquals(new boolean[]{false, true}, created);
+        assertEquals("UpdatedName", petDao.getPet(1).block().getName());
+        assertEquals(7, petDao.countPets().block());
+    }
+
+    /**
+     * Test to verify that a batch deletion reports the IDs not found.
+     */
+    @Test
+    void deletePets_ShouldReportMissingIds() {
+        boolean[] deleted = petDao.deletePets(Arrays.asList(1, 10, 2, 1)).block();
+
+        assertArrayEquals(new boolean[]{true, false, true, false}, deleted);
+        assertEquals(Arrays.asList(3, 4, 5, 6), ids(petDao.getPets()));
+    }
+
+    /**
+     * Test to verify that queries match every criterion, names and owners ignoring case.
+     */
+    @Test
+    void findPets_ShouldMatchEveryCriterion() {
+        assertEquals(Arrays.asList(3, 5), ids(petDao.findPets(new PetQuery(5, 10, null, "SARAH"))));
+        assertEquals(Arrays.asList(5), ids(petDao.findPets(new PetQuery(null, null, "gar", null))));
+        assertTrue(ids(petDao.findPets(new PetQuery(null, null, "%", null))).isEmpty());
+    }
+
+    /**
+     * Test to verify that several pets are read at once, missing IDs being left out.
+     */
+    @Test
+    void getPetsById_ShouldReturnFoundPets() {
+        Map<Integer, Pet> pets = petDao.getPetsById(Arrays.asList(2, 5, 99)).block();
+
+        assertEquals(Arrays.asList(2, 5), pets.keySet().stream().sorted().collect(Collectors.toList()));
+        assertEquals("Garfield", pets.get(5).getName());
+    }
+
+    /**
+     * Test to verify that searches tolerate typos.
+     */
+    @Test
+    void searchPets_ShouldFindCloseNames() {
+        List<PetSearchResult> results = petDao.searchPets("Garfeld", 3).collectList().block();
+
+        assertFalse(results.isEmpty());
+        assertEquals(5, results.get(0).getPet().getId());
+    }
+
+    /**
+     * Test to verify that the statistics aggregate the catalog.
+     */
+    @Test
+    void getStats_ShouldAggregateTheCatalog() {
+        PetStats stats = petDao.getStats(null).block();
+
+        assertEquals(6, stats.getCount());
+        assertEquals(11.5, stats.getAverageAge());
+        assertEquals(Map.of(5, 1L, 8, 2L, 12, 1L, 15, 1L, 21, 1L), stats.getAgeHistogram());
+        assertEquals(3, stats.getOwners());
+        assertEquals(Map.of("jack", 2L, "peter", 1L, "sarah", 3L), stats.getPetsByOwner());
+        assertEquals(Map.of("sarah", 3L, "nobody", 0L),
+                petDao.getStats(Arrays.asList("Sarah", "Nobody")).block().getPetsByOwner());
+    }
+
+    private static List<Integer> ids(Flux<Pet> pets) {
+        List<Integer> ids = new ArrayList<>();
+        pets.map(Pet::getId).toStream().forEach(ids::add);
+        return ids;
+    }
+}
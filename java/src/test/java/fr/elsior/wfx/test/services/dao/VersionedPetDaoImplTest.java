@@ -0,0 +1,172 @@
+package fr.elsior.wfx.test.services.dao;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class VersionedPetDaoImplTest {
+
+    private VersionedPetDaoImpl petDao;
+
+    @BeforeEach
+    void setUp() {
+        petDao = new VersionedPetDaoImpl();
+        petDao.initPetList();
+    }
+
+    /**
+     * Test to verify that pets and pages are returned in ID order.
+     */
+    @Test
+    void getPets_ShouldReturnPetsInIdOrder() {
+        petDao.addPet(new Pet(0, "Buddy", 3, "Alice"));
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), ids(petDao.getPets()));
+        assertEquals(Arrays.asList(4, 5, 6), ids(petDao.getPets(3, 4)));
+        assertEquals(7, petDao.countPets());
+    }
+
+    /**
+     * Test to verify that a list already returned is not affected by later writes.
+     */
+    @Test
+    void getPets_ShouldReturnSnapshot_UnaffectedByLaterWrites() {
+        List<Pet> before = petDao.getPets();
+        List<Pet> jackPets = petDao.getPetsByOwner("jack");
+        Pet first = petDao.getPet(1);
+
+        petDao.updatePet(1, new Pet(1, "UpdatedName", 10, "Jack"));
+        petDao.deletePet(2);
+        petDao.addPet(new Pet(7, "Buddy", 3, "Jack"));
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), ids(before));
+        assertEquals("Medor", before.get(0).getName());
+        assertEquals("Medor", first.getName());
+        assertEquals(Arrays.asList(2, 6), ids(jackPets));
+        assertEquals("UpdatedName", petDao.getPet(1).getName());
+        assertEquals(Arrays.asList(1, 6, 7), ids(petDao.getPetsByOwner("JACK")));
+    }
+
+    /**
+     * Test to verify that owner lookups follow updates and deletions.
+     */
+    @Test
+    void getPetsByOwner_ShouldFollowWrites() {
+        petDao.updatePet(1, new Pet(1, "Medor", 5, "Sarah"));
+        petDao.addPet(new Pet(7, "Buddy", 3, "sarah"));
+        petDao.deletePet(7);
+
+        assertTrue(petDao.getPetsByOwner("Peter").isEmpty());
+        assertEquals(Arrays.asList(1, 3, 4, 5), ids(petDao.getPetsByOwner("SARAH")));
+    }
+
+    /**
+     * Test to verify that several pets are read at once, missing IDs being left out.
+     */
+    @Test
+    void getPetsById_ShouldReturnFoundPets() {
+        Map<Integer, Pet> pets = petDao.getPetsById(Arrays.asList(1, 4, 99));
+
+        assertEquals(2, pets.size());
+        assertEquals("Medor", pets.get(1).getName());
+        assertEquals("Snoopy", pets.get(4).getName());
+    }
+
+    /**
+     * Test to verify that the store keeps its own copy of the pets it is given.
+     */
+    @Test
+    void writes_ShouldStoreCopies() {
+        Pet pet = new Pet(7, "Buddy", 3, "Alice");
+        petDao.addPet(pet);
+        pet.setName("Changed");
+
+        assertEquals("Buddy", petDao.getPet(7).getName());
+        assertNull(petDao.addPet(new Pet(7, "Duplicate", 1, "Bob")));
+        assertNull(petDao.updatePet(42, pet));
+        assertFalse(petDao.deletePet(42));
+    }
+
+    /**
+     * Test to verify that modifying a pet read from the store does not change the stored pet.
+     */
+    @Test
+    void reads_ShouldReturnCopies() {
+        petDao.getPet(1).setName("Changed");
+        petDao.getPets().get(0).setName("Changed");
+        petDao.getPets().iterator().next().setName("Changed");
+        petDao.getPets(null, 1).get(0).setName("Changed");
+        petDao.getPetsById(List.of(1)).get(1).setName("Changed");
+        petDao.getPetsByOwner("Peter").get(0).setName("Changed");
+        petDao.findPets(new PetQuery(null, null, null, "Peter")).get(0).setName("Changed");
+
+        assertEquals("Medor", petDao.getPet(1).getName());
+        assertEquals("Medor", petDao.getPetsByOwner("Peter").get(0).getName());
+    }
+
+    /**
+     * Test to verify that batches report each item like single writes.
+     */
+    @Test
+    void batches_ShouldReportEachItem() {
+        List<Pet> added = petDao.addPets(Arrays.asList(new Pet(7, "Buddy", 3, "Alice"), new Pet(1, "Duplicate", 1, "Peter")));
+        boolean[] created = petDao.upsertPets(Arrays.asList(new Pet(2, "UpdatedName", 10, "Jack"), new Pet(8, "Max", 4, "Bob")));
+        boolean[] deleted = petDao.deletePets(Arrays.asList(3, 30));
+
+        assertNotNull(added.get(0));
+        assertNull(added.get(1));
+        assertArrayEquals(new boolean[]{false, true}, created);
+        assertArrayEquals(new boolean[]{true, false}, deleted);
+        assertEquals(7, petDao.countPets());
+        assertEquals("Medor", petDao.getPet(1).getName());
+    }
+
+    /**
+     * Test to verify that a reader iterating the whole catalog sees every batch either entirely or not at all.
+     */
+    @Test
+    void getPets_ShouldSeeBatchesAtomically_WhileWritersRun() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (int round = 0; running.get(); round++) {
+                List<Pet> batch = new ArrayList<>();
+                for (int id = 100; id < 200; id++) {
+                    batch.add(new Pet(id, "Round" + round, round % 20, "Owner"));
+                }
+                petDao.upsertPets(batch);
+            }
+        });
+        try {
+            for (int i = 0; i < 500; i++) {
+                List<String> names = petDao.getPets().stream()
+                        .filter(pet -> pet.getId() >= 100)
+                        .map(Pet::getName)
+                        .distinct()
+                        .collect(Collectors.toList());
+                assertTrue(names.size() <= 1, "Torn batch: " + names);
+            }
+        } finally {
+            running.set(false);
+            writer.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static List<Integer> ids(List<Pet> pets) {
+        return pets.stream().map(Pet::getId).collect(Collectors.toList());
+    }
+}
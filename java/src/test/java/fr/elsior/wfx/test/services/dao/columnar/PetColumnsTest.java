@@ -0,0 +1,127 @@
+package fr.elsior.wfx.test.services.dao.columnar;
+
+import fr.elsior.wfx.test.model.Pet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class PetColumnsTest {
+
+    /**
+     * Test to verify that random adds, updates and removes match a TreeMap of pets, in lookups, order and owner chains.
+     */
+    @Test
+    void updates_ShouldMatchTreeMap() {
+        Random random = new Random(42);
+        TreeMap<Integer, Pet> expected = new TreeMap<>();
+        PetColumns columns = new PetColumns();
+
+        for (int i = 0; i < 50_000; i++) {
+            int id = random.nextInt(5_000) - 1_000;
+            int slot = columns.slotOf(id);
+            Pet pet = new Pet(id, random.nextInt(10) == 0 ? null : "Pét" + i, i % 20,
+                    random.nextInt(10) == 0 ? null : (random.nextBoolean() ? "Owner" : "OWNER") + random.nextInt(30));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id) != null, slot >= 0);
+                if (slot >= 0) {
+                    columns.remove(slot);
+                }
+            } else if (slot >= 0) {
+                columns.set(slot, pet);
+                expected.put(id, pet);
+            } else {
+                columns.add(pet);
+                expected.put(id, pet);
+            }
+        }
+
+        assertEquals(expected.size(), columns.size());
+        for (Pet pet : expected.values()) {
+            assertEquals(describe(pet), describe(columns.pet(columns.slotOf(pet.getId()))));
+        }
+        assertEquals(new ArrayList<>(expected.tailMap(2_000, false).keySet()), idsAfter(columns, 2_000));
+        assertEquals(new ArrayList<>(expected.keySet()), idsAfter(columns, null));
+        for (int owner = 0; owner < 30; owner++) {
+            String name = "owner" + owner;
+            List<Integer> ids = new ArrayList<>();
+            columns.forEachSlotOfOwner(name, slot -> ids.add(columns.id(slot)));
+            ids.sort(null);
+            assertEquals(expected.values().stream()
+                    .filter(pet -> name.equalsIgnoreCase(pet.getOwner()))
+                    .map(Pet::getId)
+                    .collect(Collectors.toList()), ids);
+            assertEquals(ids.size(), columns.owners().count(name.toUpperCase()));
+        }
+    }
+
+    /**
+     * Test to verify that unused owner codes and freed names are reclaimed.
+     */
+    @Test
+    void removes_ShouldReclaimOwnersAndNames() {
+        PetColumns columns = new PetColumns();
+        for (int round = 0; round < 100; round++) {
+            for (int id = 0; id < 1_000; id++) {
+                columns.add(new Pet(id, "Name" + round + "-" + id, 1, "Owner" + round));
+            }
+            for (int id = 0; id < 1_000; id++) {
+                columns.remove(columns.slotOf(id));
+            }
+        }
+        columns.add(new Pet(7, "Buddy", 3, "Alice"));
+
+        assertEquals(1, columns.size());
+        assertEquals(1, columns.owners().size());
+        Map<String, Integer> owners = new HashMap<>();
+        columns.owners().forEachOwner(owners::put);
+        assertEquals(Map.of("alice", 1), owners);
+        assertEquals("Buddy", columns.name(columns.slotOf(7)));
+    }
+
+    /**
+     * Test to verify that the ID index finds every key after random puts and removes, with colliding keys.
+     */
+    @Test
+    void intIntHashMap_ShouldMatchHashMap() {
+        Random random = new Random(7);
+        Map<Integer, Integer> expected = new HashMap<>();
+        IntIntHashMap map = new IntIntHashMap();
+
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(3_000) * 1024;
+            if (random.nextBoolean()) {
+                assertEquals(expected.getOrDefault(key, -1), map.remove(key));
+                expected.remove(key);
+            } else {
+                assertEquals(expected.getOrDefault(key, -1), map.put(key, i));
+                expected.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int key = 0; key < 3_000 * 1024; key += 1024) {
+            assertEquals(expected.getOrDefault(key, -1), map.get(key));
+        }
+    }
+
+    private static List<Integer> idsAfter(PetColumns columns, Integer afterId) {
+        List<Integer> ids = new ArrayList<>();
+        columns.forEachSlotAfter(afterId, slot -> ids.add(columns.id(slot)));
+        return ids;
+    }
+
+    private static String describe(Pet pet) {
+        return pet.getId() + "/" + pet.getName() + "/" + pet.getAge() + "/" + pet.getOwner();
+    }
+}
@@ -0,0 +1,162 @@
+package fr.elsior.wfx.test.services.dao.offheap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.elsior.wfx.test.model.Pet;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class OffHeapPetCatalogTest {
+
+    /**
+     * Test to verify that random adds, updates and removes match a TreeMap of pets, in lookups, order and owner chains,
+     * with names long enough to need continuation slots.
+     */
+    @Test
+    void updates_ShouldMatchTreeMap() {
+        Random random = new Random(42);
+        TreeMap<Integer, Pet> expected = new TreeMap<>();
+        OffHeapPetCatalog catalog = new OffHeapPetCatalog();
+
+        for (int i = 0; i < 50_000; i++) {
+            int id = random.nextInt(5_000) - 1_000;
+            int slot = catalog.slotOf(id);
+            String name = random.nextInt(10) == 0 ? null : "Pét" + "x".repeat(random.nextInt(150)) + i;
+            Pet pet = new Pet(id, name, i % 20,
+                    random.nextInt(10) == 0 ? null : (random.nextBoolean() ? "Owner" : "OWNER") + random.nextInt(30));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id) != null, slot >= 0);
+                if (slot >= 0) {
+                    catalog.remove(slot);
+                }
+            } else if (slot >= 0) {
+                catalog.set(slot, pet);
+                expected.put(id, pet);
+            } else {
+                catalog.add(pet);
+                expected.put(id, pet);
+            }
+        }
+
+        assertEquals(expected.size(), catalog.size());
+        for (Pet pet : expected.values()) {
+            assertEquals(describe(pet), describe(catalog.pet(catalog.slotOf(pet.getId()))));
+        }
+        assertEquals(new ArrayList<>(expected.tailMap(2_000, false).keySet()), idsAfter(catalog, 2_000));
+        assertEquals(new ArrayList<>(expected.keySet()), idsAfter(catalog, null));
+        List<Integer> iterated = new ArrayList<>();
+        catalog.pets().forEachRemaining(pet -> iterated.add(pet.getId()));
+        assertEquals(new ArrayList<>(expected.keySet()), iterated);
+        for (int owner = 0; owner < 30; owner++) {
+            String name = "owner" + owner;
+            List<Integer> ids = new ArrayList<>();
+            catalog.forEachSlotOfOwner(name, slot -> ids.add(catalog.id(slot)));
+            ids.sort(null);
+            assertEquals(expected.values().stream()
+                    .filter(pet -> name.equalsIgnoreCase(pet.getOwner()))
+                    .map(Pet::getId)
+                    .collect(Collectors.toList()), ids);
+            assertEquals(ids.size(), catalog.countOfOwner(name.toUpperCase()));
+        }
+    }
+
+    /**
+     * Test to verify that freed slots and owners are reused, so churn does not reserve more native memory.
+     */
+    @Test
+    void removes_ShouldReuseSlots() {
+        OffHeapPetCatalog catalog = new OffHeapPetCatalog();
+        long reserved = 0;
+        for (int round = 0; round < 100; round++) {
+            for (int id = 0; id < 1_000; id++) {
+                catalog.add(new Pet(id, "A rather long name to fill a continuation " + round + "-" + id, 1, "Owner" + round));
+            }
+            for (int id = 0; id < 1_000; id++) {
+                catalog.remove(catalog.slotOf(id));
+            }
+            if (round == 0) {
+                reserved = catalog.reservedBytes();
+            }
+        }
+        catalog.add(new Pet(7, "Buddy", 3, "Alice"));
+
+        assertEquals(reserved, catalog.reservedBytes());
+        assertEquals(1, catalog.size());
+        assertEquals(1, catalog.ownerCount());
+        Map<String, Integer> owners = new HashMap<>();
+        catalog.forEachOwner(owners::put);
+        assertEquals(Map.of("alice", 1), owners);
+        assertEquals("Buddy", catalog.name(catalog.slotOf(7)));
+    }
+
+    /**
+     * Test to verify that a record is written as the same JSON as Jackson writes for the pet.
+     */
+    @Test
+    void writeJson_ShouldMatchJackson() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        OffHeapPetCatalog catalog = new OffHeapPetCatalog();
+        List<Pet> pets = List.of(
+                new Pet(1, "Medor", 12, "Peter"),
+                new Pet(-2, null, Integer.MIN_VALUE, null),
+                new Pet(Integer.MAX_VALUE, "", 0, "Bübchen \"le\" \\ grand"),
+                new Pet(4, "Tab\tline\nbell\u0007 €", -7, "日本の飼い主".repeat(10)));
+        pets.forEach(catalog::add);
+
+        for (Pet pet : pets) {
+            DataBuffer buffer = new DefaultDataBufferFactory().allocateBuffer(16);
+            catalog.writeJson(catalog.slotOf(pet.getId()), buffer);
+            assertEquals(mapper.writeValueAsString(pet), buffer.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Test to verify that the native hash index finds every key after random inserts and removes, with colliding keys.
+     */
+    @Test
+    void hashIndex_ShouldMatchHashMap() {
+        Random random = new Random(7);
+        Map<Long, Integer> expected = new HashMap<>();
+        OffHeapHashIndex index = new OffHeapHashIndex(0);
+
+        for (int i = 0; i < 100_000; i++) {
+            long key = (long) random.nextInt(3_000) << 32;
+            if (random.nextBoolean()) {
+                assertEquals(expected.getOrDefault(key, -1), index.remove(key));
+                expected.remove(key);
+            } else if (index.find(key) < 0) {
+                index.insert(key, i, 0);
+                expected.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (long key = 0; key < 3_000; key++) {
+            assertEquals(expected.getOrDefault(key << 32, -1), index.get(key << 32));
+        }
+    }
+
+    private static List<Integer> idsAfter(OffHeapPetCatalog catalog, Integer afterId) {
+        List<Integer> ids = new ArrayList<>();
+        catalog.forEachSlotAfter(afterId, slot -> ids.add(catalog.id(slot)));
+        return ids;
+    }
+
+    private static String describe(Pet pet) {
+        return pet.getId() + "/" + pet.getName() + "/" + pet.getAge() + "/" + pet.getOwner();
+    }
+}
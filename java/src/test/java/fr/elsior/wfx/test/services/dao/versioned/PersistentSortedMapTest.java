@@ -0,0 +1,71 @@
+package fr.elsior.wfx.test.services.dao.versioned;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class PersistentSortedMapTest {
+
+    /**
+     * Test to verify that random puts and removes match a TreeMap, in lookups, order and positions.
+     */
+    @Test
+    void updates_ShouldMatchTreeMap() {
+        Random random = new Random(42);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        PersistentSortedMap<Integer, String> map = PersistentSortedMap.empty();
+
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, "v" + i);
+                map = map.put(key, "v" + i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.values()), map.values());
+        for (int key = 0; key < 2_000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        int index = 0;
+        for (String value : expected.values()) {
+            assertEquals(value, map.valueAt(index++));
+        }
+        assertEquals(new ArrayList<>(expected.tailMap(1_000, false).values()), toList(map.valuesAfter(1_000)));
+        assertEquals(new ArrayList<>(expected.tailMap(-1, false).values()), toList(map.valuesAfter(-1)));
+        assertFalse(map.valuesAfter(5_000).hasNext());
+    }
+
+    /**
+     * Test to verify that updates leave the previous maps unchanged.
+     */
+    @Test
+    void updates_ShouldNotAlterPreviousMaps() {
+        PersistentSortedMap<Integer, String> first = PersistentSortedMap.<Integer, String>empty().put(1, "a").put(2, "b");
+
+        PersistentSortedMap<Integer, String> second = first.put(2, "c").put(3, "d").remove(1);
+
+        assertEquals(List.of("a", "b"), first.values());
+        assertEquals(List.of("c", "d"), second.values());
+        assertSame(second, second.remove(42));
+    }
+
+    private static List<String> toList(Iterator<String> iterator) {
+        List<String> values = new ArrayList<>();
+        iterator.forEachRemaining(values::add);
+        return values;
+    }
+}
@@ -0,0 +1,149 @@
+package fr.elsior.wfx.test.ws;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetEvent;
+import fr.elsior.wfx.test.services.BlockingPetService;
+import fr.elsior.wfx.test.services.PetEventFeed;
+import fr.elsior.wfx.test.services.dao.ConcurrentPetDaoImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @Author: Elimane
+ */
+class BlockingPetsHandlerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private PetEventFeed petEvents;
+
+    private BlockingPetServer server;
+
+    /**
+     * The server runs on platform threads here, the blocking handler being the same on virtual threads.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        ConcurrentPetDaoImpl petDao = new ConcurrentPetDaoImpl();
+        petDao.addPets(List.of(new Pet(1, "Medor", 12, "Peter"), new Pet(2, "Mistigri", 5, "Jack"),
+                new Pet(3, "Pepette", 8, "Sarah")));
+        petEvents = new PetEventFeed(16, 16, PetEventFeed.SlowConsumerPolicy.DROP);
+        server = new BlockingPetServer(new InetSocketAddress("localhost", 0), 16,
+                new BlockingPetsHandler(new BlockingPetService(petDao, petEvents), objectMapper, 2),
+                Executors.newCachedThreadPool());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Test to verify that a pet is returned with its ETag, and that a matching If-None-Match gets 304.
+     */
+    @Test
+    void getPet_ShouldReturnPetWithETag() throws Exception {
+        HttpResponse<String> response = send(request("/1").GET());
+        HttpResponse<String> notModified = send(request("/1").GET()
+                .header("If-None-Match", response.headers().firstValue("ETag").orElseThrow()));
+
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"id\":1,\"name\":\"Medor\",\"age\":12,\"owner\":\"Peter\"}", response.body());
+        assertEquals(304, notModified.statusCode());
+        assertEquals(404, send(request("/42").GET()).statusCode());
+        assertEquals(400, send(request("/abc").GET()).statusCode());
+        assertEquals(405, send(request("/1").DELETE()).statusCode());
+    }
+
+    /**
+     * Test to verify that pages are capped and link to the next page, like the WebFlux route.
+     */
+    @Test
+    void listPets_ShouldReturnPagesWithLink() throws Exception {
+        HttpResponse<String> page = send(request("?limit=10").GET());
+
+        assertEquals(2, objectMapper.readValue(page.body(), Pet[].class).length);
+        assertEquals("</pets?after=2&limit=2>; rel=\"next\"", page.headers().firstValue("Link").orElseThrow());
+        assertEquals(3, objectMapper.readValue(send(request("").GET()).body(), Pet[].class).length);
+        assertEquals(404, send(request("/owner/Nobody").GET()).statusCode());
+        assertEquals("[{\"id\":3,\"name\":\"Pepette\",\"age\":8,\"owner\":\"Sarah\"}]",
+                send(request("/owner/sarah").GET()).body());
+    }
+
+    /**
+     * Test to verify that writes answer with the statuses of the WebFlux routes and publish their changes.
+     */
+    @Test
+    void writes_ShouldAnswerStatusesAndPublishEvents() throws Exception {
+        String rex = "{\"id\":4,\"name\":\"Rex\",\"age\":3,\"owner\":\"Sarah\"}";
+        StepVerifier.create(petEvents.events().map(PetEvent::getType).take(3))
+                .then(() -> {
+                    try {
+                        assertEquals(201, send(request("/add").POST(body(rex))).statusCode());
+                        assertEquals(409, send(request("/add").POST(body(rex))).statusCode());
+                        assertEquals(412, send(request("/update/4").PUT(body(rex)).header("If-Match", "\"0\"")).statusCode());
+                        assertEquals(200, send(request("/update/4").PUT(body(rex)).header("If-Match", "*")).statusCode());
+                        assertEquals(404, send(request("/update/40").PUT(body(rex))).statusCode());
+                        assertEquals(204, send(request("/remove/4").DELETE()).statusCode());
+                        assertEquals(404, send(request("/remove/4").DELETE()).statusCode());
+                        assertEquals(400, send(request("/add").POST(body("{"))).statusCode());
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                })
+                .expectNext(PetEvent.Type.ADDED, PetEvent.Type.UPDATED, PetEvent.Type.DELETED)
+                .verifyComplete();
+    }
+
+    /**
+     * Test to verify that an update with If-Match of a nonexistent pet fails its precondition, like the WebFlux route.
+     */
+    @Test
+    void updatePet_ShouldFailPrecondition_WhenIfMatchPetDoesNotExist() throws Exception {
+        String rex = "{\"id\":40,\"name\":\"Rex\",\"age\":3,\"owner\":\"Sarah\"}";
+
+        assertEquals(412, send(request("/update/40").PUT(body(rex)).header("If-Match", "*")).statusCode());
+        assertEquals(404, send(request("/update/40").PUT(body(rex))).statusCode());
+    }
+
+    /**
+     * Test to verify that queries and statistics read the same parameters as the WebFlux routes.
+     */
+    @Test
+    void queries_ShouldReadParameters() throws Exception {
+        assertEquals("[{\"id\":3,\"name\":\"Pepette\",\"age\":8,\"owner\":\"Sarah\"}]",
+                send(request("/query?minAge=6&maxAge=10").GET()).body());
+        assertTrue(send(request("/stats?owner=Peter,Jack").GET()).body()
+                .contains("\"petsByOwner\":{\"jack\":1,\"peter\":1}"));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/pets" + path))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json");
+    }
+
+    private static HttpRequest.BodyPublisher body(String json) {
+        return HttpRequest.BodyPublishers.ofString(json);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,91 @@
+package fr.elsior.wfx.test.ws;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetEvent;
+import fr.elsior.wfx.test.services.PetEventFeed;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @Author: Elimane
+ */
+@WebFluxTest(PetEventsRestController.class)
+class PetEventsRestControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private PetEventFeed petEvents;
+
+    /**
+     * Test to verify that events are sent as server-sent events, resuming after the Last-Event-ID header.
+     */
+    @Test
+    void streamEvents_ShouldResumeAfterLastEventId() {
+        Mockito.when(petEvents.canResumeAfter(41)).thenReturn(true);
+        Mockito.when(petEvents.eventsAfter(41)).thenReturn(Flux.just(event(42, PetEvent.Type.UPDATED, 1)));
+
+        Flux<ServerSentEvent<PetEvent>> events = webTestClient.get().uri("/pets/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .header("Last-Event-ID", "41")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<PetEvent>>() {})
+                .getResponseBody();
+
+        StepVerifier.create(events)
+                .assertNext(event -> {
+                    assertEquals("42", event.id());
+                    assertEquals("UPDATED", event.event());
+                    assertEquals("Rex", event.data().getPet().getName());
+                })
+                .verifyComplete();
+    }
+
+    /**
+     * Test to verify that events are sent as newline delimited JSON.
+     */
+    @Test
+    void streamEventsAsNdjson_ShouldReturnLiveEvents() {
+        Mockito.when(petEvents.events()).thenReturn(Flux.just(event(1, PetEvent.Type.ADDED, 1), event(2, PetEvent.Type.DELETED, 1)));
+
+        webTestClient.get().uri("/pets/events")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(PetEvent.class)
+                .hasSize(2);
+    }
+
+    /**
+     * Test to verify that resuming after events that are no longer kept returns a 410 error.
+     */
+    @Test
+    void streamEvents_ShouldReturnGone_WhenEventsAreNoLongerKept() {
+        Mockito.when(petEvents.canResumeAfter(3)).thenReturn(false);
+
+        webTestClient.get().uri("/pets/events?after=3")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GONE);
+    }
+
+    private static PetEvent event(long sequence, PetEvent.Type type, int id) {
+        PetEvent event = new PetEvent(type, id, type == PetEvent.Type.DELETED ? null : new Pet(id, "Rex", 5, "Jack"));
+        event.setSequence(sequence);
+        return event;
+    }
+}
@@ -0,0 +1,66 @@
+package fr.elsior.wfx.test.ws;
+
+import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.services.dao.OffHeapPetDaoImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @Author: Elimane
+ */
+@WebFluxTest(controllers = PetExportRestController.class, properties = {"pets.store=offheap", "pets.page.max-size=4"})
+class PetExportRestControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private OffHeapPetDaoImpl petDao;
+
+    @TestConfiguration
+    static class Stores {
+
+        @Bean
+        OffHeapPetDaoImpl petDao() {
+            return new OffHeapPetDaoImpl();
+        }
+
+        @Bean
+        Scheduler petDaoScheduler() {
+            return Schedulers.immediate();
+        }
+    }
+
+    /**
+     * Test to verify that the whole catalog is exported as newline delimited JSON over several pages.
+     */
+    @Test
+    void exportPets_ShouldWriteEveryPetInIdOrder() {
+        petDao.addPet(new Pet(7, "Bübchen \"le grand\"", 3, null));
+
+        List<Pet> pets = webTestClient.get().uri("/pets/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Pet.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7), pets.stream().map(Pet::getId).collect(Collectors.toList()));
+        assertEquals("Bübchen \"le grand\"", pets.get(6).getName());
+        assertEquals("Peter", pets.get(0).getOwner());
+    }
+}
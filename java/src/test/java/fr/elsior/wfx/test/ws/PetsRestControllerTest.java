@@ -4,7 +4,12 @@ import fr.elsior.wfx.test.services.IPetService;
 import fr.elsior.wfx.test.exceptions.OwnerNotFoundException;
 import fr.elsior.wfx.test.exceptions.PetAlreadyExistsException;
 import fr.elsior.wfx.test.exceptions.PetNotFoundException;
+import fr.elsior.wfx.test.exceptions.PetPreconditionFailedException;
 import fr.elsior.wfx.test.model.Pet;
+import fr.elsior.wfx.test.model.PetBulkResult;
+import fr.elsior.wfx.test.model.PetQuery;
+import fr.elsior.wfx.test.model.PetSearchResult;
+import fr.elsior.wfx.test.model.PetStats;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +17,7 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -20,6 +26,8 @@ import reactor.core.publisher.Mono;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -59,6 +67,176 @@ class PetsRestControllerTest {
                 .hasSize(2);
     }
 
+    /**
+     * Test to verify that the API returns a page of pets with a link to the next page.
+     */
+    @Test
+    void listPetsPage_ShouldReturnPageWithNextLink() {
+        Mockito.when(petService.getPets(null, 2)).thenReturn(Flux.just(pet1, pet2));
+
+        webTestClient.get().uri("/pets?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.LINK, "</pets?after=2&limit=2>; rel=\"next\"")
+                .expectBodyList(Pet.class)
+                .hasSize(2);
+    }
+
+    /**
+     * Test to verify that the API caps the page size and omits the link on the last page.
+     */
+    @Test
+    void listPetsPage_ShouldCapPageSize() {
+        Mockito.when(petService.getPets(1, 1000)).thenReturn(Flux.just(pet2));
+
+        webTestClient.get().uri("/pets?after=1&limit=5000")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(HttpHeaders.LINK)
+                .expectBodyList(Pet.class)
+                .hasSize(1);
+    }
+
+    /**
+     * Test to verify that the API streams pets as newline delimited JSON.
+     */
+    @Test
+    void streamPets_ShouldReturnNdjson() {
+        Mockito.when(petService.streamPets(1000)).thenReturn(Flux.just(pet1, pet2));
+
+        webTestClient.get().uri("/pets/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Pet.class)
+                .hasSize(2);
+    }
+
+    /**
+     * Test to verify that the query parameters are passed to the service as a single query.
+     */
+    @Test
+    void queryPets_ShouldReturnMatchingPets() {
+        Mockito.when(petService.findPets(Mockito.any(PetQuery.class))).thenReturn(Flux.just(pet1));
+
+        webTestClient.get().uri("/pets/query?minAge=5&maxAge=10&name=Re&owner=Jack")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Pet.class)
+                .hasSize(1);
+
+        Mockito.verify(petService).findPets(Mockito.argThat(query -> query.getMinAge() == 5 && query.getMaxAge() == 10
+                && "Re".equals(query.getNamePrefix()) && "Jack".equals(query.getOwner())));
+    }
+
+    /**
+     * Test to verify that a query without any criterion must be paged, its limit being capped.
+     */
+    @Test
+    void queryPets_ShouldRequireLimit_WithoutCriterion() {
+        Mockito.when(petService.findPets(Mockito.any(PetQuery.class))).thenReturn(Flux.just(pet1));
+
+        webTestClient.get().uri("/pets/query")
+                .exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri("/pets/query?after=3&limit=5000")
+                .exchange()
+                .expectStatus().isOk();
+
+        Mockito.verify(petService).findPets(Mockito.argThat(query -> query.getAfterId() == 3 && query.getLimit() == 1000));
+    }
+
+    /**
+     * Test to verify that searches return the ranked matches and cap the number of results.
+     */
+    @Test
+    void searchPets_ShouldReturnRankedMatches() {
+        Mockito.when(petService.searchPets("rx", 100)).thenReturn(Flux.just(new PetSearchResult(pet1, 0.4)));
+
+        webTestClient.get().uri("/pets/search?q=rx&limit=5000")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].pet.name").isEqualTo("Rex")
+                .jsonPath("$[0].score").isEqualTo(0.4);
+    }
+
+    /**
+     * Test to verify that the statistics are served as JSON.
+     */
+    @Test
+    void getStats_ShouldReturnAggregates() {
+        Mockito.when(petService.getStats(List.of("Jack")))
+                .thenReturn(Mono.just(new PetStats(2, 4.5, Map.of(3, 1L, 6, 1L), 1, Map.of("jack", 2L))));
+
+        webTestClient.get().uri("/pets/stats?owner=Jack")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(2)
+                .jsonPath("$.averageAge").isEqualTo(4.5)
+                .jsonPath("$.ageHistogram.3").isEqualTo(1)
+                .jsonPath("$.petsByOwner.jack").isEqualTo(2);
+    }
+
+    /**
+     * Test to verify that owners are only listed on request.
+     */
+    @Test
+    void getStats_ShouldNotListOwners_ByDefault() {
+        Mockito.when(petService.getStats(List.of()))
+                .thenReturn(Mono.just(new PetStats(2, 4.5, Map.of(3, 1L, 6, 1L), 1, Map.of())));
+
+        webTestClient.get().uri("/pets/stats")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.owners").isEqualTo(1)
+                .jsonPath("$.petsByOwner").isEmpty();
+    }
+
+    /**
+     * Test to verify that bulk additions accept newline delimited JSON and return one result per pet.
+     */
+    @Test
+    void addPets_ShouldAcceptNdjson() {
+        Mockito.when(petService.addPets(Mockito.any(), Mockito.eq(500))).thenAnswer(invocation -> {
+            Flux<Pet> pets = invocation.getArgument(0);
+            return pets.map(pet -> new PetBulkResult(pet.getId(), PetBulkResult.Status.CREATED));
+        });
+
+        webTestClient.post().uri("/pets/bulk/add")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"id\":1,\"name\":\"Rex\",\"age\":5,\"owner\":\"Jack\"}\n"
+                        + "{\"id\":2,\"name\":\"Bella\",\"age\":3,\"owner\":\"Alice\"}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(PetBulkResult.class)
+                .value(results -> assertEquals(Arrays.asList(1, 2),
+                        Arrays.asList(results.get(0).getId(), results.get(1).getId())));
+    }
+
+    /**
+     * Test to verify that bulk deletions accept a JSON array of IDs.
+     */
+    @Test
+    void deletePets_ShouldAcceptJsonArray() {
+        Mockito.when(petService.deletePets(Mockito.any(), Mockito.eq(500))).thenAnswer(invocation -> {
+            Flux<Integer> ids = invocation.getArgument(0);
+            return ids.map(id -> new PetBulkResult(id, PetBulkResult.Status.NOT_FOUND));
+        });
+
+        webTestClient.post().uri("/pets/bulk/remove")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[4, 5, 6]")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(PetBulkResult.class)
+                .hasSize(3);
+    }
+
     /**
      * Test to verify that the API adds a new pet.
      */
@@ -106,6 +284,34 @@ class PetsRestControllerTest {
                 .value(pet -> assertEquals("Rex", pet.getName()));
     }
 
+    /**
+     * Test to verify that a pet is answered with 304 while its ETag is unchanged, and with the new pet afterwards.
+     */
+    @Test
+    void getPet_ShouldReturnNotModified_WhenETagMatches() throws PetNotFoundException {
+        Mockito.when(petService.getPet(1)).thenReturn(Mono.just(pet1));
+        String etag = webTestClient.get().uri("/pets/1")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Pet.class)
+                .getResponseHeaders().getETag();
+
+        webTestClient.get().uri("/pets/1")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+                .expectBody().isEmpty();
+
+        Mockito.when(petService.getPet(1)).thenReturn(Mono.just(new Pet(1, "Rex", 6, "Jack")));
+        webTestClient.get().uri("/pets/1")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Pet.class)
+                .value(pet -> assertEquals(6, pet.getAge()));
+    }
+
     /**
      * Test to verify that the API returns a 404 error if the pet does not exist.
      */
@@ -136,6 +342,32 @@ class PetsRestControllerTest {
                 .hasSize(1);
     }
 
+    /**
+     * Test to verify that an owner's pets are answered with 304 until one of them changes.
+     */
+    @Test
+    void getPetsByOwner_ShouldReturnNotModified_WhenETagMatches() throws OwnerNotFoundException {
+        Mockito.when(petService.getPetsByOwner("Jack")).thenReturn(Flux.just(pet1));
+        String etag = webTestClient.get().uri("/pets/owner/Jack")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Pet.class)
+                .getResponseHeaders().getETag();
+
+        webTestClient.get().uri("/pets/owner/Jack")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        Mockito.when(petService.getPetsByOwner("Jack")).thenReturn(Flux.just(pet1, new Pet(3, "Max", 2, "Jack")));
+        webTestClient.get().uri("/pets/owner/Jack")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Pet.class)
+                .hasSize(2);
+    }
+
     /**
      * Test to verify that the API returns a 404 error if the owner does not exist.
      */
@@ -169,12 +401,72 @@ class PetsRestControllerTest {
                 .value(pet -> Assertions.assertEquals(6, pet.getAge()));
     }
 
+    /**
+     * Test to verify that an update with If-Match only applies while the ETag is the current one.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void updatePet_ShouldCheckIfMatch() throws Exception {
+        Mockito.when(petService.getPet(1)).thenReturn(Mono.just(pet1));
+        String etag = webTestClient.get().uri("/pets/1")
+                .exchange()
+                .returnResult(Pet.class)
+                .getResponseHeaders().getETag();
+        Pet updatedPet = new Pet(1, "Rex", 6, "Jack");
+        Mockito.when(petService.updatePet(Mockito.eq(1), Mockito.any(), Mockito.any()))
+                .thenAnswer(invocation -> ((Predicate<Pet>) invocation.getArgument(2)).test(pet1) ?
+                        Mono.just(updatedPet) :
+                        Mono.error(new PetPreconditionFailedException()));
+
+        String newEtag = webTestClient.put().uri("/pets/update/1")
+                .header(HttpHeaders.IF_MATCH, etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(updatedPet)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Pet.class)
+                .getResponseHeaders().getETag();
+
+        Assertions.assertNotEquals(etag, newEtag);
+        webTestClient.put().uri("/pets/update/1")
+                .header(HttpHeaders.IF_MATCH, newEtag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(updatedPet)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        Mockito.verify(petService, Mockito.never()).updatePet(Mockito.eq(1), Mockito.any());
+    }
+
+    /**
+     * Test to verify that an update with If-Match of a nonexistent pet fails its precondition instead of 404.
+     */
+    @Test
+    void updatePet_ShouldReturnPreconditionFailed_WhenIfMatchPetDoesNotExist() throws Exception {
+        Pet updatedPet = new Pet(40, "Rex", 6, "Jack");
+        Mockito.when(petService.updatePet(Mockito.eq(40), Mockito.any(), Mockito.any()))
+                .thenReturn(Mono.error(new PetNotFoundException()));
+        Mockito.when(petService.updatePet(Mockito.eq(40), Mockito.any()))
+                .thenReturn(Mono.error(new PetNotFoundException()));
+
+        webTestClient.put().uri("/pets/update/40")
+                .header(HttpHeaders.IF_MATCH, "*")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(updatedPet)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        webTestClient.put().uri("/pets/update/40")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(updatedPet)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
     /**
      * Test to verify that the API deletes a pet.
      */
     @Test
     void deletePet_ShouldReturnNoContent() throws PetNotFoundException {
-        Mockito.doNothing().when(petService).deletePet(1);
+        Mockito.when(petService.deletePet(1)).thenReturn(Mono.empty());
 
         webTestClient.delete().uri("/pets/remove/1")
                 .exchange()
@@ -187,7 +479,7 @@ class PetsRestControllerTest {
      */
     @Test
     void deletePet_ShouldReturnNotFound_WhenPetDoesNotExist() throws PetNotFoundException {
-        Mockito.doThrow(new PetNotFoundException()).when(petService).deletePet(1);
+        Mockito.when(petService.deletePet(1)).thenReturn(Mono.error(new PetNotFoundException()));
 
         webTestClient.delete().uri("/pets/remove/1")
                 .exchange()